@@ -6,6 +6,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Configuration for asynchronous processing
@@ -28,4 +29,12 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Executor for streamed AI responses (SSE); virtual threads, since each stream mostly waits on the model
+     */
+    @Bean(name = "streamExecutor")
+    public Executor streamExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
 }
@@ -11,6 +11,8 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
 import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import share_app.tphucshareapp.service.search.PhotoTextSearchService;
 
 @Configuration
 @RequiredArgsConstructor
@@ -29,6 +31,7 @@ public class MongoIndexConfig {
             createLikeIndexes();
             createCommentIndexes();
             createFollowIndexes();
+            createTagIndexes();
 
             log.info("MongoDB indexes synchronized successfully!");
         };
@@ -44,6 +47,10 @@ public class MongoIndexConfig {
         ensureIndex(collection,
                 new Index().on("email", Sort.Direction.ASC).unique());
 
+        // popular-user leaderboard seed and follower-ranked search
+        ensureIndex(collection,
+                new Index().on("followerCount", Sort.Direction.DESC));
+
         log.info("✓ User indexes synchronized");
     }
 
@@ -56,15 +63,35 @@ public class MongoIndexConfig {
                                 .append("createdAt", -1)
                 ));
 
+        // "recent" and "top" tag pages, keyset-paged on (sort field, _id)
         ensureIndex(collection,
                 new CompoundIndexDefinition(
                         new Document("tags", 1)
                                 .append("createdAt", -1)
+                                .append("_id", -1)
+                ));
+
+        ensureIndex(collection,
+                new CompoundIndexDefinition(
+                        new Document("tags", 1)
+                                .append("rankScore", -1)
+                                .append("_id", -1)
                 ));
 
         ensureIndex(collection,
                 new Index().on("userTags.taggedUserId", Sort.Direction.ASC));
 
+        // trending pool refresh scans the recent window
+        ensureIndex(collection,
+                new Index().on("createdAt", Sort.Direction.DESC));
+
+        // caption and tag search; one text index per collection
+        ensureIndex(collection,
+                TextIndexDefinition.builder()
+                        .onField(PhotoTextSearchService.FIELD)
+                        .withDefaultLanguage(PhotoTextSearchService.LANGUAGE)
+                        .build());
+
         log.info("✓ Photo indexes synchronized");
     }
 
@@ -111,6 +138,16 @@ public class MongoIndexConfig {
         log.info("✓ Follow indexes synchronized");
     }
 
+    private void createTagIndexes() {
+        String collection = "tags";
+
+        // nodes pull catalog changes by last write
+        ensureIndex(collection,
+                new Index().on("updatedAt", Sort.Direction.ASC));
+
+        log.info("✓ Tag indexes synchronized");
+    }
+
     /**
      * Helper method to safely create indexes
      */
@@ -1,5 +1,6 @@
 package share_app.tphucshareapp.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -56,6 +57,13 @@ public class SecurityConfig {
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        List<String> adminUrls =
+                List.of(
+                        API + "/admin/**",
+                        API + "/recommendations/admin/**",
+                        API + "/search/admin/**",
+                        API + "/ai/admin/**"
+                );
         List<String> securedUrls =
                 List.of(
                         API + "/user/**",
@@ -77,7 +85,9 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS).permitAll()
-                        .requestMatchers(API + "/admin/**").hasAuthority("ROLE_ADMIN")
+                        // SSE responses complete on an async dispatch that carries no token; the request was authorized already
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers(adminUrls.toArray(String[]::new)).hasAuthority("ROLE_ADMIN")
                         .requestMatchers(securedUrls.toArray(String[]::new)).authenticated()
                         .requestMatchers(API + "/auth/**").permitAll()
                         .anyRequest().permitAll())
@@ -1,8 +1,11 @@
 package share_app.tphucshareapp.controller;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import share_app.tphucshareapp.dto.request.ai.CaptionSuggestionRequest;
 import share_app.tphucshareapp.dto.request.ai.EngagementAnalysisRequest;
 import share_app.tphucshareapp.dto.response.ApiResponse;
@@ -10,16 +13,25 @@ import share_app.tphucshareapp.dto.response.ai.CaptionSuggestionResponse;
 import share_app.tphucshareapp.dto.response.ai.EngagementAnalysisResponse;
 import share_app.tphucshareapp.dto.response.ai.PostTimingSuggestionResponse;
 import share_app.tphucshareapp.model.User;
-import share_app.tphucshareapp.service.ai.AIService;
+import share_app.tphucshareapp.service.ai.AIStreamListener;
+import share_app.tphucshareapp.service.ai.IAIService;
+import share_app.tphucshareapp.service.ai.OutboundHttpClient;
 import share_app.tphucshareapp.service.user.UserService;
 
+import java.io.IOException;
+import java.util.Map;
+
 @RestController
 @RequestMapping("${api.prefix}/ai")
 @RequiredArgsConstructor
+@Slf4j
 public class AIController {
 
-    private final AIService aiService;
+    private static final long STREAM_TIMEOUT_MS = 120_000;
+
+    private final IAIService aiService;
     private final UserService userService;
+    private final OutboundHttpClient outboundHttpClient;
 
 
     @PostMapping("/suggest-caption")
@@ -39,10 +51,65 @@ public class AIController {
         return ResponseEntity.ok(ApiResponse.success(response, "Engagement analysis completed"));
     }
 
+    /**
+     * Streaming variant of /suggest-caption: events {@code caption} ({index, caption}), {@code tags}, {@code done}.
+     * POST /api/v1/ai/suggest-caption/stream
+     */
+    @PostMapping(value = "/suggest-caption/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCaptionSuggestions(@RequestBody CaptionSuggestionRequest request) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        aiService.streamCaptions(request, streamListener(emitter));
+        return emitter;
+    }
+
+    /**
+     * Streaming variant of /analyze-engagement: events {@code metrics}, {@code summary} (text deltas), {@code done}.
+     * POST /api/v1/ai/analyze-engagement/stream
+     */
+    @PostMapping(value = "/analyze-engagement/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEngagementAnalysis(@RequestBody(required = false) EngagementAnalysisRequest request) {
+        // resolved here: the analysis runs on a stream thread without the security context
+        User currentUser = userService.getCurrentUser();
+        int postCount = request != null && request.getRecentPostCount() > 0
+                ? request.getRecentPostCount() : 20;
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        aiService.streamEngagementAnalysis(currentUser.getId(), postCount, streamListener(emitter));
+        return emitter;
+    }
+
+    private AIStreamListener streamListener(SseEmitter emitter) {
+        return new AIStreamListener() {
+            @Override
+            public boolean send(String event, Object data) {
+                try {
+                    emitter.send(SseEmitter.event().name(event).data(data));
+                    return true;
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("AI stream client went away: {}", e.getMessage());
+                    return false;
+                }
+            }
+
+            @Override
+            public void complete() {
+                emitter.complete();
+            }
+        };
+    }
+
     @GetMapping("/suggest-timing")
     public ResponseEntity<ApiResponse<PostTimingSuggestionResponse>> suggestPostTiming() {
         User currentUser = userService.getCurrentUser();
         PostTimingSuggestionResponse response = aiService.suggestPostTiming(currentUser.getId());
         return ResponseEntity.ok(ApiResponse.success(response, "Timing suggestions generated"));
     }
+
+    /**
+     * Circuit breaker state, bulkhead occupancy and call outcomes per outbound AI dependency.
+     * GET /api/v1/ai/admin/dependencies
+     */
+    @GetMapping("/admin/dependencies")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getDependencyStatus() {
+        return ResponseEntity.ok(ApiResponse.success(outboundHttpClient.status(), "AI dependency status retrieved"));
+    }
 }
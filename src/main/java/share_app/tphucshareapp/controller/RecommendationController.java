@@ -6,9 +6,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import share_app.tphucshareapp.dto.response.ApiResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
+import share_app.tphucshareapp.dto.response.recommendation.IndexJobStatusResponse;
 import share_app.tphucshareapp.dto.response.recommendation.RecommendedUserResponse;
 import share_app.tphucshareapp.model.User;
+import share_app.tphucshareapp.service.ai.BatchIndexingService;
+import share_app.tphucshareapp.service.ai.CoEngagementService;
 import share_app.tphucshareapp.service.ai.RecommendationService;
+import share_app.tphucshareapp.service.ai.RedisVectorService;
+import share_app.tphucshareapp.service.ai.VectorBenchmarkService;
+import share_app.tphucshareapp.service.ai.VectorStorageService;
 import share_app.tphucshareapp.service.user.UserService;
 
 import java.util.List;
@@ -21,16 +27,21 @@ import java.util.Map;
 public class RecommendationController {
 
     private final RecommendationService recommendationService;
+    private final BatchIndexingService batchIndexingService;
+    private final VectorStorageService vectorStorageService;
+    private final CoEngagementService coEngagementService;
+    private final VectorBenchmarkService vectorBenchmarkService;
     private final UserService userService;
 
     /**
-     * Get related/similar photos for a given photo (Explore page).
-     * e.g., GET /api/v1/recommendations/photos/{photoId}/related?limit=12
+     * Get related/similar photos for a given photo (Explore page), optionally only ones carrying a tag.
+     * e.g., GET /api/v1/recommendations/photos/{photoId}/related?limit=12&tag=travel
      */
     @GetMapping("/photos/{photoId}/related")
     public ResponseEntity<ApiResponse<List<PhotoResponse>>> getRelatedPhotos(
             @PathVariable String photoId,
-            @RequestParam(defaultValue = "12") int limit) {
+            @RequestParam(defaultValue = "12") int limit,
+            @RequestParam(required = false) String tag) {
         log.info("Getting related photos for photoId: {}, limit: {}", photoId, limit);
 
         User currentUser = null;
@@ -40,7 +51,7 @@ public class RecommendationController {
             log.debug("No authenticated user for related photos");
         }
 
-        List<PhotoResponse> relatedPhotos = recommendationService.getRelatedPhotos(photoId, limit, currentUser);
+        List<PhotoResponse> relatedPhotos = recommendationService.getRelatedPhotos(photoId, limit, currentUser, tag);
         return ResponseEntity.ok(
                 ApiResponse.success(relatedPhotos, "Related photos retrieved successfully")
         );
@@ -63,23 +74,186 @@ public class RecommendationController {
     }
 
     /**
-     * Admin endpoint: batch index all photos and users (for initial setup).
-     * POST /api/v1/recommendations/admin/index-all
+     * Admin endpoint: start (or resume) background indexing of all photos and users.
+     * POST /api/v1/recommendations/admin/index-all?restart=false
      */
     @PostMapping("/admin/index-all")
-    public ResponseEntity<ApiResponse<Map<String, Integer>>> batchIndexAll() {
-        log.info("Starting batch indexing of all photos and users");
+    public ResponseEntity<ApiResponse<IndexJobStatusResponse>> batchIndexAll(
+            @RequestParam(defaultValue = "false") boolean restart) {
+        log.info("Starting batch indexing of all photos and users (restart={})", restart);
 
-        int photosIndexed = recommendationService.batchIndexAllPhotos();
-        int usersIndexed = recommendationService.batchIndexAllUsers();
+        boolean started = batchIndexingService.start(restart);
+        return ResponseEntity.ok(
+                ApiResponse.success(batchIndexingService.getStatus(),
+                        started ? "Batch indexing started" : "Batch indexing already running")
+        );
+    }
+
+    /**
+     * Admin endpoint: progress, throughput and ETA of the indexing job.
+     * GET /api/v1/recommendations/admin/index-all/status
+     */
+    @GetMapping("/admin/index-all/status")
+    public ResponseEntity<ApiResponse<IndexJobStatusResponse>> getBatchIndexStatus() {
+        return ResponseEntity.ok(
+                ApiResponse.success(batchIndexingService.getStatus(), "Batch indexing status retrieved")
+        );
+    }
+
+    /**
+     * Admin endpoint: stop the indexing job after the current chunk; it can be resumed later.
+     * DELETE /api/v1/recommendations/admin/index-all
+     */
+    @DeleteMapping("/admin/index-all")
+    public ResponseEntity<ApiResponse<Void>> cancelBatchIndex() {
+        batchIndexingService.cancel();
+        return ResponseEntity.ok(
+                ApiResponse.success(null, "Batch indexing will stop after the current chunk")
+        );
+    }
+
+    /**
+     * Admin endpoint: re-encode stored embeddings to the configured vector type and swap the indexes over
+     * (runs in background). Set ai.vector.redis.type on every node and restart before calling it.
+     * POST /api/v1/recommendations/admin/vectors/migrate
+     */
+    @PostMapping("/admin/vectors/migrate")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> migrateVectorStorage() {
+        if (vectorStorageService.isMigrationRunning()) {
+            return ResponseEntity.ok(
+                    ApiResponse.success(vectorStorageService.getLastMigration(), "Vector migration already running")
+            );
+        }
+        vectorStorageService.migrateAsync();
+        return ResponseEntity.ok(
+                ApiResponse.success(Map.of("status", "started"), "Vector migration started")
+        );
+    }
 
-        Map<String, Integer> result = Map.of(
-                "photosIndexed", photosIndexed,
-                "usersIndexed", usersIndexed
+    /**
+     * Admin endpoint: status of the last vector storage migration.
+     * GET /api/v1/recommendations/admin/vectors/migrate
+     */
+    @GetMapping("/admin/vectors/migrate")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getVectorMigrationStatus() {
+        return ResponseEntity.ok(
+                ApiResponse.success(vectorStorageService.getLastMigration(), "Vector migration status retrieved")
         );
+    }
 
+    /**
+     * Admin endpoint: recall@k versus memory for each vector encoding, measured on stored photo vectors.
+     * e.g., GET /api/v1/recommendations/admin/vectors/quantization-report?sample=2000&k=10
+     */
+    @GetMapping("/admin/vectors/quantization-report")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getQuantizationReport(
+            @RequestParam(defaultValue = "2000") int sample,
+            @RequestParam(defaultValue = "10") int k) {
+        Map<String, Object> report = vectorStorageService.buildReport(Math.min(sample, 20000), k);
+        return ResponseEntity.ok(
+                ApiResponse.success(report, "Quantization report generated")
+        );
+    }
+
+    /**
+     * Admin endpoint: rebuild RediSearch vector indexes with the configured HNSW parameters and swap the
+     * alias once the new index has caught up (runs in background).
+     * e.g., POST /api/v1/recommendations/admin/vectors/reindex?index=photos
+     */
+    @PostMapping("/admin/vectors/reindex")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reindexVectors(
+            @RequestParam(defaultValue = "all") String index) {
+        if (vectorStorageService.isReindexRunning()) {
+            return ResponseEntity.ok(
+                    ApiResponse.success(vectorStorageService.getLastReindex(), "Vector reindex already running")
+            );
+        }
+        List<String> aliases = switch (index) {
+            case "photos" -> List.of(RedisVectorService.PHOTO_INDEX);
+            case "users" -> List.of(RedisVectorService.USER_INDEX);
+            case "all" -> List.of(RedisVectorService.PHOTO_INDEX, RedisVectorService.USER_INDEX);
+            default -> throw new RuntimeException("Unknown index: " + index + " (expected photos, users or all)");
+        };
+        vectorStorageService.reindexAsync(aliases);
+        return ResponseEntity.ok(
+                ApiResponse.success(Map.of("status", "started", "indexes", aliases), "Vector reindex started")
+        );
+    }
+
+    /**
+     * Admin endpoint: status of the last vector reindex.
+     * GET /api/v1/recommendations/admin/vectors/reindex
+     */
+    @GetMapping("/admin/vectors/reindex")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getVectorReindexStatus() {
+        return ResponseEntity.ok(
+                ApiResponse.success(vectorStorageService.getLastReindex(), "Vector reindex status retrieved")
+        );
+    }
+
+    /**
+     * Admin endpoint: ANN benchmark on synthetic vectors, one row per engine and HNSW parameter set (runs in background).
+     * e.g., POST /api/v1/recommendations/admin/vectors/benchmark?engine=local,redis&vectors=10000&m=8,16,32&efRuntime=10,50,200
+     */
+    @PostMapping("/admin/vectors/benchmark")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> runVectorBenchmark(
+            @RequestParam(defaultValue = "local") List<String> engine,
+            @RequestParam(defaultValue = "10000") int vectors,
+            @RequestParam(defaultValue = "200") int queries,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "16") List<Integer> m,
+            @RequestParam(defaultValue = "200") List<Integer> efConstruction,
+            @RequestParam(defaultValue = "10,50,100,200") List<Integer> efRuntime,
+            @RequestParam(defaultValue = "42") long seed) {
+        if (vectorBenchmarkService.isRunning()) {
+            return ResponseEntity.ok(
+                    ApiResponse.success(vectorBenchmarkService.getLastReport(), "Vector benchmark already running")
+            );
+        }
+        VectorBenchmarkService.Request request = new VectorBenchmarkService.Request(engine,
+                Math.min(vectors, 200_000), Math.min(queries, 2_000), k, m, efConstruction, efRuntime, seed);
+        vectorBenchmarkService.runAsync(request);
+        return ResponseEntity.ok(
+                ApiResponse.success(Map.of("status", "started", "request", request), "Vector benchmark started")
+        );
+    }
+
+    /**
+     * Admin endpoint: report of the last vector benchmark.
+     * GET /api/v1/recommendations/admin/vectors/benchmark
+     */
+    @GetMapping("/admin/vectors/benchmark")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getVectorBenchmark() {
+        return ResponseEntity.ok(
+                ApiResponse.success(vectorBenchmarkService.getLastReport(), "Vector benchmark report retrieved")
+        );
+    }
+
+    /**
+     * Admin endpoint: recompute co-engagement neighbours for every photo (runs in background).
+     * POST /api/v1/recommendations/admin/co-engagement/rebuild
+     */
+    @PostMapping("/admin/co-engagement/rebuild")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildCoEngagement() {
+        if (coEngagementService.isRunning()) {
+            return ResponseEntity.ok(
+                    ApiResponse.success(coEngagementService.getLastRun(), "Co-engagement rebuild already running")
+            );
+        }
+        coEngagementService.rebuildAsync();
+        return ResponseEntity.ok(
+                ApiResponse.success(Map.of("status", "started"), "Co-engagement rebuild started")
+        );
+    }
+
+    /**
+     * Admin endpoint: statistics of the last co-engagement rebuild.
+     * GET /api/v1/recommendations/admin/co-engagement
+     */
+    @GetMapping("/admin/co-engagement")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCoEngagementStatus() {
         return ResponseEntity.ok(
-                ApiResponse.success(result, "Batch indexing completed")
+                ApiResponse.success(coEngagementService.getLastRun(), "Co-engagement status retrieved")
         );
     }
 }
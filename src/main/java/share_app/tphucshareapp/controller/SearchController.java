@@ -2,17 +2,23 @@ package share_app.tphucshareapp.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import share_app.tphucshareapp.dto.response.ApiResponse;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
+import share_app.tphucshareapp.dto.response.search.TagSuggestionResponse;
+import share_app.tphucshareapp.dto.response.search.TrendingTagResponse;
 import share_app.tphucshareapp.dto.response.search.UserSearchResponseSimple;
 import share_app.tphucshareapp.service.photo.ExploreService;
 import share_app.tphucshareapp.service.search.SearchService;
+import share_app.tphucshareapp.service.search.TagCatalogService;
+import share_app.tphucshareapp.service.search.TextSearchBenchmarkService;
+import share_app.tphucshareapp.service.search.TrendingTagService;
 import share_app.tphucshareapp.service.user.UserService;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("${api.prefix}/search")
@@ -23,38 +29,45 @@ public class SearchController {
     private final SearchService searchService;
     private final ExploreService exploreService;
     private final UserService userService;
+    private final TrendingTagService trendingTagService;
+    private final TextSearchBenchmarkService textSearchBenchmarkService;
+    private final TagCatalogService tagCatalogService;
 
     @GetMapping("/users")
-    public ResponseEntity<ApiResponse<Page<UserSearchResponseSimple>>> searchUsers(
+    public ResponseEntity<ApiResponse<SliceResponse<UserSearchResponseSimple>>> searchUsers(
             @RequestParam("q") String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        Page<UserSearchResponseSimple> users = searchService.searchUsers(query, page, size);
+        SliceResponse<UserSearchResponseSimple> users = searchService.searchUsers(query, page, size);
         return ResponseEntity.ok(
                 ApiResponse.success(users, "User search completed successfully")
         );
     }
 
     @GetMapping("/photos")
-    public ResponseEntity<ApiResponse<Page<PhotoResponse>>> searchPhotos(
+    public ResponseEntity<ApiResponse<SliceResponse<PhotoResponse>>> searchPhotos(
             @RequestParam("q") String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        Page<PhotoResponse> photos = searchService.searchPhotos(query, page, size);
+        SliceResponse<PhotoResponse> photos = searchService.searchPhotos(query, page, size);
         return ResponseEntity.ok(
                 ApiResponse.success(photos, "Photo search completed successfully")
         );
     }
 
     @GetMapping("/photos/tags")
-    public ResponseEntity<ApiResponse<Page<PhotoResponse>>> searchPhotosByTags(
+    public ResponseEntity<ApiResponse<SliceResponse<PhotoResponse>>> searchPhotosByTags(
             @RequestParam("q") String query,
+            @RequestParam(defaultValue = "any") String match,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        Page<PhotoResponse> photos = searchService.searchPhotosByTags(query, page, size);
+        // offset pages hold skip + size hits in memory; deeper than this needs the cursor
+        SliceResponse<PhotoResponse> photos = searchService.searchPhotosByTags(query, match, cursor,
+                Math.max(0, Math.min(page, 500)), Math.max(1, Math.min(size, 100)));
         return ResponseEntity.ok(
                 ApiResponse.success(photos, "Photo tag search completed successfully")
         );
@@ -71,16 +84,28 @@ public class SearchController {
         );
     }
 
+    @GetMapping("/tags/suggestions")
+    public ResponseEntity<ApiResponse<List<TagSuggestionResponse>>> getTagSuggestions(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        List<TagSuggestionResponse> tags = tagCatalogService.complete(query, limit);
+        return ResponseEntity.ok(
+                ApiResponse.success(tags, "Tag suggestions retrieved successfully")
+        );
+    }
+
     // ── Explore (discover) endpoints ──
 
     @GetMapping("/explore")
-    public ResponseEntity<ApiResponse<Page<PhotoResponse>>> getExploreFeed(
+    public ResponseEntity<ApiResponse<SliceResponse<PhotoResponse>>> getExploreFeed(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         try {
             String userId = userService.getCurrentUser().getId();
             log.info("Fetching explore feed for user: {}", userId);
-            Page<PhotoResponse> exploreFeed = exploreService.getExploreFeed(userId, page, size);
+            SliceResponse<PhotoResponse> exploreFeed = exploreService.getExploreFeed(userId, cursor, page, size);
             return ResponseEntity.ok(ApiResponse.success(exploreFeed, "Explore feed retrieved successfully"));
         } catch (Exception e) {
             log.error("Error fetching explore feed: ", e);
@@ -89,21 +114,64 @@ public class SearchController {
     }
 
     @GetMapping("/explore/popular")
-    public ResponseEntity<ApiResponse<Page<PhotoResponse>>> getPopularPhotos(
+    public ResponseEntity<ApiResponse<SliceResponse<PhotoResponse>>> getPopularPhotos(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         log.info("Fetching popular photos, page: {}, size: {}", page, size);
-        Page<PhotoResponse> popular = exploreService.getPopularPhotos(page, size);
+        SliceResponse<PhotoResponse> popular = exploreService.getPopularPhotos(page, size);
         return ResponseEntity.ok(ApiResponse.success(popular, "Popular photos retrieved successfully"));
     }
 
     @GetMapping("/explore/tags/{tag}")
-    public ResponseEntity<ApiResponse<Page<PhotoResponse>>> getPhotosByTag(
+    public ResponseEntity<ApiResponse<SliceResponse<PhotoResponse>>> getPhotosByTag(
             @PathVariable String tag,
+            @RequestParam(defaultValue = "top") String sort,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         log.info("Fetching photos for tag: {}", tag);
-        Page<PhotoResponse> photos = exploreService.getPhotosByTag(tag, page, size);
+        SliceResponse<PhotoResponse> photos = exploreService.getPhotosByTag(tag, sort, cursor, page, size);
         return ResponseEntity.ok(ApiResponse.success(photos, "Photos retrieved for tag: " + tag));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/explore/trending-tags")
+    public ResponseEntity<ApiResponse<List<TrendingTagResponse>>> getTrendingTags(
+            @RequestParam(defaultValue = "20") int limit) {
+        List<TrendingTagResponse> tags = trendingTagService.getTrendingTags(limit);
+        return ResponseEntity.ok(ApiResponse.success(tags, "Trending tags retrieved successfully"));
+    }
+
+    /**
+     * Admin endpoint: caption regex vs text index latency on synthetic photos (runs in background).
+     * e.g., POST /api/v1/search/admin/photos/benchmark?photos=100000&queries=500
+     */
+    @PostMapping("/admin/photos/benchmark")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> runPhotoSearchBenchmark(
+            @RequestParam(defaultValue = "100000") int photos,
+            @RequestParam(defaultValue = "500") int queries,
+            @RequestParam(defaultValue = "20") int pageSize,
+            @RequestParam(defaultValue = "42") long seed) {
+        if (textSearchBenchmarkService.isRunning()) {
+            return ResponseEntity.ok(
+                    ApiResponse.success(textSearchBenchmarkService.getLastReport(), "Photo search benchmark already running")
+            );
+        }
+        TextSearchBenchmarkService.Request request = new TextSearchBenchmarkService.Request(
+                Math.min(photos, 1_000_000), Math.min(queries, 5_000), Math.min(pageSize, 100), seed);
+        textSearchBenchmarkService.runAsync(request);
+        return ResponseEntity.ok(
+                ApiResponse.success(Map.of("status", "started", "request", request), "Photo search benchmark started")
+        );
+    }
+
+    /**
+     * Admin endpoint: report of the last photo search benchmark.
+     * GET /api/v1/search/admin/photos/benchmark
+     */
+    @GetMapping("/admin/photos/benchmark")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getPhotoSearchBenchmark() {
+        return ResponseEntity.ok(
+                ApiResponse.success(textSearchBenchmarkService.getLastReport(), "Photo search benchmark report retrieved")
+        );
+    }
+}
@@ -1,11 +1,11 @@
 package share_app.tphucshareapp.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import share_app.tphucshareapp.dto.request.share.SharePhotoRequest;
 import share_app.tphucshareapp.dto.response.ApiResponse;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.dto.response.share.ShareResponse;
 import share_app.tphucshareapp.dto.response.share.ShareWithPhotoResponse;
@@ -54,11 +54,11 @@ public class ShareController {
 
     // Get shares by user ID (for profile page)
     @GetMapping("/user/{userId}")
-    public ResponseEntity<ApiResponse<Page<ShareWithPhotoResponse>>> getUserShares(
+    public ResponseEntity<ApiResponse<SliceResponse<ShareWithPhotoResponse>>> getUserShares(
             @PathVariable String userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
-        Page<ShareWithPhotoResponse> shares = shareService.getSharesByUserId(userId, page, size);
+        SliceResponse<ShareWithPhotoResponse> shares = shareService.getSharesByUserId(userId, page, size);
         return ResponseEntity.ok(ApiResponse.success(shares, "User shares retrieved successfully"));
     }
 }
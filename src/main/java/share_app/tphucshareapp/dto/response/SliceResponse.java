@@ -0,0 +1,44 @@
+package share_app.tphucshareapp.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * One page of a list endpoint. {@code hasNext} comes from reading one row past the page, so no count query
+ * runs; {@code totalElements} is an approximate, cached or counter-backed total where one is available and
+ * {@code null} otherwise. Keyset-paginated endpoints also return {@code nextCursor} to pass back for the
+ * following page.
+ */
+@Data
+@NoArgsConstructor
+public class SliceResponse<T> {
+    private List<T> content;
+    private int page;
+    private int size;
+    private boolean hasNext;
+    private Long totalElements;
+    private String nextCursor;
+
+    public SliceResponse(List<T> content, int page, int size, boolean hasNext, Long totalElements) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.totalElements = totalElements;
+    }
+
+    public static <T> SliceResponse<T> of(Slice<T> slice) {
+        return of(slice, null);
+    }
+
+    public static <T> SliceResponse<T> of(Slice<T> slice, Long approximateTotal) {
+        return new SliceResponse<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(), approximateTotal);
+    }
+
+    public static <T> SliceResponse<T> empty(int page, int size) {
+        return new SliceResponse<>(List.of(), page, size, false, 0L);
+    }
+}
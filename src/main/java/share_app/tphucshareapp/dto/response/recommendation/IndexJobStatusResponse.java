@@ -0,0 +1,25 @@
+package share_app.tphucshareapp.dto.response.recommendation;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Progress of the background embedding indexer (admin).
+ */
+@Data
+public class IndexJobStatusResponse {
+    private String status;     // IDLE, RUNNING, COMPLETED, FAILED, CANCELLED
+    private String phase;      // PHOTOS or USERS
+    private String lastId;     // checkpoint: last _id fully processed in the current phase
+    private long processed;
+    private long indexed;
+    private long skipped;      // already had an embedding
+    private long failed;
+    private long total;        // estimated photos + users
+    private double itemsPerSecond;
+    private Long etaSeconds;
+    private Instant startedAt;
+    private Instant updatedAt;
+    private String error;
+}
@@ -0,0 +1,16 @@
+package share_app.tphucshareapp.dto.response.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TagSuggestionResponse {
+    private String tag;
+    private long photoCount;
+    private Instant lastUsedAt;
+}
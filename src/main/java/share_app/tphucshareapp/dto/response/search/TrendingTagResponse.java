@@ -0,0 +1,13 @@
+package share_app.tphucshareapp.dto.response.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingTagResponse {
+    private String tag;
+    private double score;
+}
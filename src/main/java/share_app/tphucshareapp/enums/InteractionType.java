@@ -0,0 +1,7 @@
+package share_app.tphucshareapp.enums;
+
+public enum InteractionType {
+    POST,
+    LIKE,
+    FAVORITE
+}
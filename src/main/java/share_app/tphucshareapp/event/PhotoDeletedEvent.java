@@ -0,0 +1,21 @@
+package share_app.tphucshareapp.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event published after a photo is deleted
+ * Used to drop derived data (embeddings, cached recommendations) outside the delete transaction
+ */
+@Getter
+public class PhotoDeletedEvent extends ApplicationEvent {
+
+    private final String photoId;
+    private final String authorId;
+
+    public PhotoDeletedEvent(Object source, String photoId, String authorId) {
+        super(source);
+        this.photoId = photoId;
+        this.authorId = authorId;
+    }
+}
@@ -0,0 +1,30 @@
+package share_app.tphucshareapp.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import share_app.tphucshareapp.enums.InteractionType;
+
+/**
+ * Event published when a user likes or saves a photo, or takes that back ({@code removed})
+ * Used to update interest profiles without blocking the request
+ */
+@Getter
+public class PhotoEngagementEvent extends ApplicationEvent {
+
+    private final String userId;
+    private final String photoId;
+    private final InteractionType type;
+    private final boolean removed;
+
+    public PhotoEngagementEvent(Object source, String userId, String photoId, InteractionType type) {
+        this(source, userId, photoId, type, false);
+    }
+
+    public PhotoEngagementEvent(Object source, String userId, String photoId, InteractionType type, boolean removed) {
+        super(source);
+        this.userId = userId;
+        this.photoId = photoId;
+        this.type = type;
+        this.removed = removed;
+    }
+}
@@ -5,8 +5,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
+import share_app.tphucshareapp.enums.InteractionType;
+import share_app.tphucshareapp.service.ai.IVectorSearchService;
 import share_app.tphucshareapp.service.ai.RecommendationService;
+import share_app.tphucshareapp.service.ai.UserInterestService;
 import share_app.tphucshareapp.service.photo.NewsfeedService;
+import share_app.tphucshareapp.service.search.TrendingTagService;
 
 /**
  * Event listener for photo-related events
@@ -19,6 +23,9 @@ public class PhotoEventListener {
 
     private final NewsfeedService newsfeedService;
     private final RecommendationService recommendationService;
+    private final UserInterestService userInterestService;
+    private final IVectorSearchService vectorSearchService;
+    private final TrendingTagService trendingTagService;
 
     /**
      * Handle photo creation event by updating followers' newsfeeds
@@ -37,12 +44,50 @@ public class PhotoEventListener {
             log.error("Error updating followers' feeds for photo: {}", event.getPhotoId(), e);
         }
 
-        // Index the new photo embedding for AI recommendations
+        // Index the new photo embedding, then fold it into the author's interest vector
         try {
             recommendationService.indexNewPhoto(event.getPhotoId());
-            recommendationService.reindexUser(event.getAuthorId());
+            userInterestService.recordInteraction(event.getAuthorId(), event.getPhotoId(), InteractionType.POST);
         } catch (Exception e) {
             log.warn("Failed to index embedding for photo: {}", event.getPhotoId(), e);
         }
     }
+
+    /**
+     * Handle photo deletion by removing its embedding and cached related photos
+     */
+    @EventListener
+    @Async("eventExecutor")
+    public void handlePhotoDeleted(PhotoDeletedEvent event) {
+        try {
+            vectorSearchService.deletePhotoEmbedding(event.getPhotoId());
+            recommendationService.invalidateRelatedPhotos(event.getPhotoId());
+        } catch (Exception e) {
+            log.warn("Failed to clean up AI data for deleted photo: {}", event.getPhotoId(), e);
+        }
+    }
+
+    /**
+     * Handle like/favorite by updating the user's interest vector and the photo's tag trends;
+     * unlike/unsave only takes the photo back out of the interest vector
+     */
+    @EventListener
+    @Async("eventExecutor")
+    public void handlePhotoEngagement(PhotoEngagementEvent event) {
+        try {
+            if (event.isRemoved()) {
+                userInterestService.removeInteraction(event.getUserId(), event.getPhotoId(), event.getType());
+            } else {
+                userInterestService.recordInteraction(event.getUserId(), event.getPhotoId(), event.getType());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to update interest vector for user {}: {}", event.getUserId(), e.getMessage());
+        }
+        if (event.isRemoved()) return;
+        try {
+            trendingTagService.recordEngagement(event.getPhotoId(), event.getType());
+        } catch (Exception e) {
+            log.warn("Failed to record tag engagement for photo {}: {}", event.getPhotoId(), e.getMessage());
+        }
+    }
 }
@@ -30,6 +30,12 @@ public class Photo {
     private long commentCount;
     private long shareCount;
 
+    // engagement points plus a recency offset; orders "top" tag pages (see TagRankingService)
+    private double rankScore;
+
+    // folded caption and tag terms behind the photos text index (see PhotoTextSearchService)
+    private String searchText;
+
     private List<EmbeddedUserTag> userTags;
 
     @Data
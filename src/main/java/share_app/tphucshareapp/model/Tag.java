@@ -0,0 +1,31 @@
+package share_app.tphucshareapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Catalog entry for one hashtag: how many photos carry it and when it was last used. Maintained by photo
+ * create and delete, so tag popularity never requires scanning {@code photos}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "tags")
+public class Tag {
+
+    // the tag as stored in Photo.tags
+    @Id
+    private String name;
+
+    private long photoCount;
+
+    private Instant lastUsedAt;
+
+    // last write of any kind; nodes pull catalog changes by it
+    private Instant updatedAt;
+}
@@ -0,0 +1,59 @@
+package share_app.tphucshareapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Per-user engagement rollup: engagement ({@code likes + 2 × comments}) of the user's photos bucketed by
+ * the weekday and hour they were posted, plus a window of the most recent posts for rolling averages and
+ * trends. Maintained incrementally, so analytics read one small document however old the account is.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "user_engagement_rollups")
+public class UserEngagementRollup {
+
+    @Id
+    private String userId;
+
+    private long postCount;
+    private long totalLikes;
+    private long totalComments;
+
+    // index 0 = Monday, in the app's time zone
+    private List<Double> dayEngagement;
+    private List<Long> dayPosts;
+    private List<Double> hourEngagement;
+    private List<Long> hourPosts;
+
+    // newest first
+    private List<RecentPost> recentPosts;
+
+    private Instant builtAt;
+
+    // set on the placeholder stored while the rollup is first built; photos changed meanwhile are listed
+    // in touchedPhotoIds and recounted before the placeholder is replaced
+    private boolean building;
+    private List<String> touchedPhotoIds;
+    private long touchVersion;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecentPost {
+        private String photoId;
+        private String imageUrl;
+        private String caption;
+        private List<String> tags;
+        private Instant createdAt;
+        private long likeCount;
+        private long commentCount;
+    }
+}
@@ -1,10 +1,11 @@
 package share_app.tphucshareapp.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import share_app.tphucshareapp.model.Favorite;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,7 +15,9 @@ public interface FavoriteRepository extends MongoRepository<Favorite, String> {
 
     boolean existsByUserIdAndPhotoId(String userId, String photoId);
 
-    Page<Favorite> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+    List<Favorite> findByUserIdAndPhotoIdIn(String userId, Collection<String> photoIds);
+
+    Slice<Favorite> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
 
     List<Favorite> findByUserId(String userId);
 
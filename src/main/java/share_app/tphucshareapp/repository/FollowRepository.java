@@ -1,7 +1,7 @@
 package share_app.tphucshareapp.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import share_app.tphucshareapp.model.Follow;
 
@@ -13,9 +13,9 @@ public interface FollowRepository extends MongoRepository<Follow, String> {
 
     boolean existsByFollowerIdAndFollowingId(String followerId, String followingId);
 
-    Page<Follow> findByFollowingIdOrderByCreatedAtDesc(String followingId, Pageable pageable);
+    Slice<Follow> findByFollowingIdOrderByCreatedAtDesc(String followingId, Pageable pageable);
 
-    Page<Follow> findByFollowerIdOrderByCreatedAtDesc(String followerId, Pageable pageable);
+    Slice<Follow> findByFollowerIdOrderByCreatedAtDesc(String followerId, Pageable pageable);
 
     List<Follow> findByFollowerId(String followerId);
 
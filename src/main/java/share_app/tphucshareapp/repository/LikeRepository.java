@@ -3,6 +3,7 @@ package share_app.tphucshareapp.repository;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import share_app.tphucshareapp.model.Like;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,5 +14,7 @@ public interface LikeRepository extends MongoRepository<Like, String> {
 
     boolean existsByPhotoIdAndUserId(String photoId, String userId);
 
+    List<Like> findByUserIdAndPhotoIdIn(String userId, Collection<String> photoIds);
+
     void deleteAllByPhotoId(String photoId);
 }
@@ -1,14 +1,14 @@
 package share_app.tphucshareapp.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import share_app.tphucshareapp.model.Notification;
 
 import java.util.List;
 
 public interface NotificationRepository extends MongoRepository<Notification, String> {
-    Page<Notification> findByRecipientIdOrderByCreatedAtDesc(String recipientId, Pageable pageable);
+    Slice<Notification> findByRecipientIdOrderByCreatedAtDesc(String recipientId, Pageable pageable);
     
     List<Notification> findByRecipientIdAndReadFalseOrderByCreatedAtDesc(String recipientId);
     
@@ -2,8 +2,8 @@ package share_app.tphucshareapp.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import share_app.tphucshareapp.model.Photo;
 
 import java.time.Instant;
@@ -15,12 +15,7 @@ public interface PhotoRepository extends MongoRepository<Photo, String> {
 
     Page<Photo> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
-    @Query("{ 'caption': { $regex: ?0, $options: 'i' } }")
-    Page<Photo> findByTextSearch(String searchText, Pageable pageable);
-
-    Page<Photo> findByCaptionContainingIgnoreCase(String caption, Pageable pageable);
-
-    Page<Photo> findByTagsIn(List<String> tagNames, Pageable pageable);
+    Slice<Photo> findByTagsIn(List<String> tagNames, Pageable pageable);
 
     // For newsfeed - get recent photos from followed users
     List<Photo> findByUser_UserIdInAndCreatedAtAfterOrderByCreatedAtDesc(List<String> userIds, Instant createdAt);
@@ -1,7 +1,7 @@
 package share_app.tphucshareapp.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import share_app.tphucshareapp.model.Share;
 
@@ -11,9 +11,11 @@ public interface ShareRepository extends MongoRepository<Share, String> {
 
     long countByPhotoId(String photoId);
 
+    long countByUserId(String userId);
+
     boolean existsByPhotoIdAndUserId(String photoId, String userId);
 
-    Page<Share> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+    Slice<Share> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
 
     List<Share> findByPhotoIdOrderByCreatedAtDesc(String photoId);
 
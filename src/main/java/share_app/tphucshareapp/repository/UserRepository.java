@@ -1,7 +1,7 @@
 package share_app.tphucshareapp.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import share_app.tphucshareapp.model.User;
@@ -18,15 +18,8 @@ public interface UserRepository extends MongoRepository<User, String> {
     boolean existsByUsername(String username);
     boolean existsByPhoneNumber(String phoneNumber);
 
-    @Query("{ $or: [ " +
-            "{ 'username': { $regex: ?0, $options: 'i' } }, " +
-            "{ 'firstName': { $regex: ?0, $options: 'i' } }, " +
-            "{ 'lastName': { $regex: ?0, $options: 'i' } } " +
-            "] }")
-    Page<User> findByNameFields(String searchTerm, Pageable pageable);
-
     @Query("{ 'username': { $regex: ?0, $options: 'i' } }")
-    Page<User> findByUsernameRegex(String searchTerm, Pageable pageable);
+    Slice<User> findByUsernameRegex(String searchTerm, Pageable pageable);
 
     Optional<User> findByResetToken(String resetToken);
 
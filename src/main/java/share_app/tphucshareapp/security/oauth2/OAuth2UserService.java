@@ -14,6 +14,8 @@ import org.springframework.util.StringUtils;
 import share_app.tphucshareapp.enums.UserRole;
 import share_app.tphucshareapp.model.User;
 import share_app.tphucshareapp.repository.UserRepository;
+import share_app.tphucshareapp.service.search.SearchResultCache;
+import share_app.tphucshareapp.service.search.UserAutocompleteService;
 
 import java.time.Instant;
 import java.util.Map;
@@ -28,6 +30,8 @@ public class OAuth2UserService extends DefaultOAuth2UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserAutocompleteService userAutocompleteService;
+    private final SearchResultCache searchResultCache;
 
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
@@ -96,6 +100,9 @@ public class OAuth2UserService extends DefaultOAuth2UserService {
         user.setFollowerCount(0);
         user.setFollowingCount(0);
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userAutocompleteService.markChanged(saved.getId());
+        searchResultCache.invalidate(SearchResultCache.Type.USERS);
+        return saved;
     }
 }
@@ -1,24 +1,26 @@
 package share_app.tphucshareapp.service.ai;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import share_app.tphucshareapp.dto.request.ai.CaptionSuggestionRequest;
 import share_app.tphucshareapp.dto.response.ai.CaptionSuggestionResponse;
 import share_app.tphucshareapp.dto.response.ai.EngagementAnalysisResponse;
 import share_app.tphucshareapp.dto.response.ai.PostTimingSuggestionResponse;
-import share_app.tphucshareapp.model.Like;
 import share_app.tphucshareapp.model.Photo;
-import share_app.tphucshareapp.repository.LikeRepository;
-import share_app.tphucshareapp.repository.PhotoRepository;
+import share_app.tphucshareapp.model.UserEngagementRollup;
 
 import java.time.*;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,18 +33,40 @@ public class AIService implements IAIService {
     @Value("${ai.gemini.model:gemini-2.0-flash}")
     private String geminiModel;
 
-    private final PhotoRepository photoRepository;
-    private final LikeRepository likeRepository;
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    @Value("${ai.gemini.base-url:https://generativelanguage.googleapis.com}")
+    private String geminiBaseUrl;
 
-    public AIService(PhotoRepository photoRepository,
-                     LikeRepository likeRepository,
-                     ObjectMapper objectMapper) {
-        this.photoRepository = photoRepository;
-        this.likeRepository = likeRepository;
-        this.restTemplate = new RestTemplate();
+    private final EngagementRollupService engagementRollupService;
+    private final OutboundHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final GeminiResponseCache responseCache;
+
+    private final Timer upstreamTimer;
+    private final Counter promptTokens;
+    private final Counter outputTokens;
+
+    public AIService(EngagementRollupService engagementRollupService,
+                     OutboundHttpClient httpClient,
+                     ObjectMapper objectMapper,
+                     GeminiResponseCache responseCache,
+                     MeterRegistry meterRegistry) {
+        this.engagementRollupService = engagementRollupService;
+        this.httpClient = httpClient;
         this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.upstreamTimer = Timer.builder("ai.gemini.upstream.latency")
+                .description("Gemini generateContent round trips")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.promptTokens = tokenCounter(meterRegistry, "prompt");
+        this.outputTokens = tokenCounter(meterRegistry, "output");
+    }
+
+    private static Counter tokenCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("ai.gemini.tokens")
+                .description("Gemini tokens billed, from usageMetadata")
+                .tag("type", type)
+                .register(meterRegistry);
     }
 
     // ==================== CAPTION SUGGESTION ====================
@@ -102,19 +126,13 @@ public class AIService implements IAIService {
         String[] lines = aiResponse.split("\n");
         for (String line : lines) {
             line = line.trim();
-            if (line.startsWith("CAPTION_1:") || line.startsWith("CAPTION_2:") || line.startsWith("CAPTION_3:")) {
+            if (CaptionStreamParser.isCaptionLine(line)) {
                 String caption = line.substring(line.indexOf(":") + 1).trim();
                 if (!caption.isBlank()) {
                     captions.add(caption);
                 }
             } else if (line.startsWith("TAGS:")) {
-                String tagsStr = line.substring(5).trim()
-                        .replace("[", "").replace("]", "");
-                suggestedTags = Arrays.stream(tagsStr.split(","))
-                        .map(String::trim)
-                        .filter(t -> !t.isBlank())
-                        .map(t -> t.startsWith("#") ? t.substring(1) : t)
-                        .collect(Collectors.toList());
+                suggestedTags = CaptionStreamParser.parseTags(line);
             }
         }
 
@@ -142,15 +160,48 @@ public class AIService implements IAIService {
     public EngagementAnalysisResponse analyzeEngagement(String userId, int recentPostCount) {
         log.info("Analyzing engagement for user: {}, recentPostCount: {}", userId, recentPostCount);
 
-        int count = recentPostCount > 0 ? Math.min(recentPostCount, 50) : 20;
-        List<Photo> photos = photoRepository.findByUser_UserIdOrderByCreatedAtDesc(userId);
+        EngagementData data = computeEngagement(userId, recentPostCount);
+        if (data == null) {
+            return noEngagementData();
+        }
+
+        String aiSummary = buildEngagementSummary(data.avgLikes(), data.avgComments(), data.engagementRate(),
+                data.trend(), data.photos(), data.topPosts());
+        return data.toResponse(aiSummary);
+    }
 
-        // Take only recent posts
-        List<Photo> recentPhotos = photos.stream().limit(count).toList();
+    /**
+     * Engagement metrics without the AI summary, shared by the blocking and streaming endpoints.
+     */
+    private record EngagementData(List<Photo> photos, double avgLikes, double avgComments, double engagementRate,
+                                  String trend, List<EngagementAnalysisResponse.PostInsight> topPosts) {
+
+        EngagementAnalysisResponse toResponse(String aiSummary) {
+            return new EngagementAnalysisResponse(
+                    Math.round(avgLikes * 100.0) / 100.0,
+                    Math.round(avgComments * 100.0) / 100.0,
+                    Math.round(engagementRate * 100.0) / 100.0,
+                    trend,
+                    topPosts,
+                    aiSummary
+            );
+        }
+    }
+
+    private EngagementAnalysisResponse noEngagementData() {
+        return new EngagementAnalysisResponse(0, 0, 0, "no_data",
+                List.of(), "Chưa có bài đăng nào để phân tích.");
+    }
+
+    private EngagementData computeEngagement(String userId, int recentPostCount) {
+        int count = recentPostCount > 0 ? Math.min(recentPostCount, EngagementRollupService.RECENT_LIMIT) : 20;
+
+        // Only the recent window is needed, which the rollup keeps
+        UserEngagementRollup rollup = engagementRollupService.getRollup(userId);
+        List<Photo> recentPhotos = engagementRollupService.recentPhotos(rollup, count);
 
         if (recentPhotos.isEmpty()) {
-            return new EngagementAnalysisResponse(0, 0, 0, "no_data",
-                    List.of(), "Chưa có bài đăng nào để phân tích.");
+            return null;
         }
 
         // Calculate metrics
@@ -182,17 +233,7 @@ public class AIService implements IAIService {
                 ))
                 .toList();
 
-        // Build AI summary
-        String aiSummary = buildEngagementSummary(avgLikes, avgComments, engagementRate, trend, recentPhotos, topPosts);
-
-        return new EngagementAnalysisResponse(
-                Math.round(avgLikes * 100.0) / 100.0,
-                Math.round(avgComments * 100.0) / 100.0,
-                Math.round(engagementRate * 100.0) / 100.0,
-                trend,
-                topPosts,
-                aiSummary
-        );
+        return new EngagementData(recentPhotos, avgLikes, avgComments, engagementRate, trend, topPosts);
     }
 
     private String calculateTrend(List<Photo> photos) {
@@ -229,7 +270,11 @@ public class AIService implements IAIService {
             return aiResponse.trim();
         }
 
-        // Fallback to template-based summary
+        return templateEngagementSummary(avgLikes, avgComments, engagementRate, trend, photos);
+    }
+
+    private String templateEngagementSummary(double avgLikes, double avgComments, double engagementRate,
+                                             String trend, List<Photo> photos) {
         StringBuilder summary = new StringBuilder();
         summary.append(String.format("📊 Trong %d bài đăng gần đây:\n", photos.size()));
         summary.append(String.format("• Trung bình %.1f lượt thích và %.1f bình luận mỗi bài\n", avgLikes, avgComments));
@@ -298,26 +343,27 @@ public class AIService implements IAIService {
     public PostTimingSuggestionResponse suggestPostTiming(String userId) {
         log.info("Suggesting post timing for user: {}", userId);
 
-        List<Photo> photos = photoRepository.findByUser_UserIdOrderByCreatedAtDesc(userId);
+        UserEngagementRollup rollup = engagementRollupService.getRollup(userId);
+        long postCount = rollup.getPostCount();
 
-        if (photos.size() < 3) {
+        if (postCount < 3) {
             return getDefaultTimingSuggestion();
         }
 
-        // Analyze when the best engagement happens
-        Map<DayOfWeek, List<Double>> engagementByDay = new EnumMap<>(DayOfWeek.class);
-        Map<Integer, List<Double>> engagementByHour = new HashMap<>();
-
-        for (Photo photo : photos) {
-            if (photo.getCreatedAt() == null) continue;
-
-            ZonedDateTime postTime = photo.getCreatedAt().atZone(ZoneId.of("Asia/Ho_Chi_Minh"));
-            DayOfWeek day = postTime.getDayOfWeek();
-            int hour = postTime.getHour();
-            double engagement = photo.getLikeCount() + photo.getCommentCount() * 2.0;
-
-            engagementByDay.computeIfAbsent(day, k -> new ArrayList<>()).add(engagement);
-            engagementByHour.computeIfAbsent(hour, k -> new ArrayList<>()).add(engagement);
+        // Average engagement per post for each weekday / hour bucket, pre-aggregated in the rollup
+        Map<DayOfWeek, Double> engagementByDay = new EnumMap<>(DayOfWeek.class);
+        for (int d = 0; d < 7; d++) {
+            long posts = rollup.getDayPosts().get(d);
+            if (posts > 0) {
+                engagementByDay.put(DayOfWeek.of(d + 1), rollup.getDayEngagement().get(d) / posts);
+            }
+        }
+        Map<Integer, Double> engagementByHour = new HashMap<>();
+        for (int h = 0; h < 24; h++) {
+            long posts = rollup.getHourPosts().get(h);
+            if (posts > 0) {
+                engagementByHour.put(h, rollup.getHourEngagement().get(h) / posts);
+            }
         }
 
         // Find best days
@@ -325,14 +371,12 @@ public class AIService implements IAIService {
 
         // Top days with best average engagement
         List<Map.Entry<DayOfWeek, Double>> dayAvgs = engagementByDay.entrySet().stream()
-                .map(e -> Map.entry(e.getKey(), e.getValue().stream().mapToDouble(d -> d).average().orElse(0)))
                 .sorted(Map.Entry.<DayOfWeek, Double>comparingByValue().reversed())
                 .limit(3)
                 .toList();
 
         // Top hours with best average engagement
         List<Map.Entry<Integer, Double>> hourAvgs = engagementByHour.entrySet().stream()
-                .map(e -> Map.entry(e.getKey(), e.getValue().stream().mapToDouble(d -> d).average().orElse(0)))
                 .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
                 .limit(3)
                 .toList();
@@ -344,7 +388,7 @@ public class AIService implements IAIService {
                 int hour = hourEntry.getKey();
                 String timeRange = String.format("%02d:00 - %02d:00", hour, (hour + 1) % 24);
                 double score = (dayEntry.getValue() + hourEntry.getValue()) / 2.0;
-                String reason = String.format("Dựa trên phân tích %d bài đăng của bạn", photos.size());
+                String reason = String.format("Dựa trên phân tích %d bài đăng của bạn", postCount);
 
                 bestTimes.add(new PostTimingSuggestionResponse.TimingSlot(dayName, timeRange,
                         Math.round(score * 100.0) / 100.0, reason));
@@ -356,7 +400,7 @@ public class AIService implements IAIService {
         bestTimes = bestTimes.stream().limit(5).toList();
 
         // Build AI summary
-        String aiSummary = buildTimingSummary(userId, photos, dayAvgs, hourAvgs);
+        String aiSummary = buildTimingSummary(userId, postCount, dayAvgs, hourAvgs);
 
         return new PostTimingSuggestionResponse(bestTimes, aiSummary);
     }
@@ -381,10 +425,10 @@ public class AIService implements IAIService {
                         "Hãy đăng thêm bài để nhận phân tích chính xác hơn!");
     }
 
-    private String buildTimingSummary(String userId, List<Photo> photos,
+    private String buildTimingSummary(String userId, long postCount,
                                       List<Map.Entry<DayOfWeek, Double>> dayAvgs,
                                       List<Map.Entry<Integer, Double>> hourAvgs) {
-        String prompt = buildTimingPrompt(photos, dayAvgs, hourAvgs);
+        String prompt = buildTimingPrompt(postCount, dayAvgs, hourAvgs);
         String aiResponse = callGeminiApi(prompt);
 
         if (aiResponse != null && !aiResponse.isBlank()) {
@@ -393,7 +437,7 @@ public class AIService implements IAIService {
 
         // Fallback
         StringBuilder sb = new StringBuilder();
-        sb.append("⏰ Dựa trên phân tích ").append(photos.size()).append(" bài đăng:\n");
+        sb.append("⏰ Dựa trên phân tích ").append(postCount).append(" bài đăng:\n");
         if (!dayAvgs.isEmpty()) {
             sb.append("• Ngày tốt nhất: ");
             sb.append(dayAvgs.get(0).getKey().getDisplayName(TextStyle.FULL, Locale.forLanguageTag("vi")));
@@ -408,13 +452,13 @@ public class AIService implements IAIService {
         return sb.toString();
     }
 
-    private String buildTimingPrompt(List<Photo> photos,
+    private String buildTimingPrompt(long postCount,
                                      List<Map.Entry<DayOfWeek, Double>> dayAvgs,
                                      List<Map.Entry<Integer, Double>> hourAvgs) {
         StringBuilder sb = new StringBuilder();
         sb.append("You are a social media timing expert. Respond in Vietnamese.\n");
         sb.append("Based on this user's posting data, give personalized timing advice.\n\n");
-        sb.append(String.format("Total posts: %d\n", photos.size()));
+        sb.append(String.format("Total posts: %d\n", postCount));
 
         sb.append("Best days (avg engagement):\n");
         for (var e : dayAvgs) {
@@ -433,6 +477,77 @@ public class AIService implements IAIService {
         return sb.toString();
     }
 
+    // ==================== STREAMING ====================
+    /**
+     * Stream caption suggestions: each {@code caption} event is sent as soon as its line is complete,
+     * followed by {@code tags} and a final {@code done} event carrying the whole response. Falls back to
+     * the template captions if the model produced none.
+     */
+    @Override
+    @Async("streamExecutor")
+    public void streamCaptions(CaptionSuggestionRequest request, AIStreamListener listener) {
+        log.info("Streaming caption suggestions for: {}", request.getImageDescription());
+        try {
+            CaptionStreamParser parser = new CaptionStreamParser(listener);
+            streamGeminiApi(buildCaptionPrompt(request), parser::append);
+            parser.finish();
+
+            CaptionSuggestionResponse response = new CaptionSuggestionResponse(parser.getCaptions(), parser.getTags());
+            if (parser.getCaptions().isEmpty()) {
+                response = fallbackCaptionResponse(request);
+                for (int i = 0; i < response.getCaptions().size(); i++) {
+                    listener.send("caption", Map.of("index", i, "caption", response.getCaptions().get(i)));
+                }
+                listener.send("tags", response.getSuggestedTags());
+            }
+            listener.send("done", response);
+        } catch (Exception e) {
+            log.error("Caption stream failed: {}", e.getMessage(), e);
+            listener.send("error", "Caption suggestion failed");
+        } finally {
+            listener.complete();
+        }
+    }
+
+    /**
+     * Stream an engagement analysis: a {@code metrics} event with the computed numbers first, then the AI
+     * summary as {@code summary} text deltas, then {@code done}.
+     */
+    @Override
+    @Async("streamExecutor")
+    public void streamEngagementAnalysis(String userId, int recentPostCount, AIStreamListener listener) {
+        log.info("Streaming engagement analysis for user: {}, recentPostCount: {}", userId, recentPostCount);
+        try {
+            EngagementData data = computeEngagement(userId, recentPostCount);
+            if (data == null) {
+                EngagementAnalysisResponse empty = noEngagementData();
+                listener.send("metrics", empty);
+                listener.send("summary", empty.getAiSummary());
+                listener.send("done", "no_data");
+                return;
+            }
+            if (!listener.send("metrics", data.toResponse(null))) return;
+
+            boolean[] streamed = {false};
+            String prompt = buildEngagementAnalysisPrompt(data.avgLikes(), data.avgComments(), data.engagementRate(),
+                    data.trend(), data.photos(), data.topPosts());
+            streamGeminiApi(prompt, delta -> {
+                streamed[0] = true;
+                return listener.send("summary", delta);
+            });
+            if (!streamed[0]) {
+                listener.send("summary", templateEngagementSummary(data.avgLikes(), data.avgComments(),
+                        data.engagementRate(), data.trend(), data.photos()));
+            }
+            listener.send("done", data.trend());
+        } catch (Exception e) {
+            log.error("Engagement stream failed for user {}: {}", userId, e.getMessage(), e);
+            listener.send("error", "Engagement analysis failed");
+        } finally {
+            listener.complete();
+        }
+    }
+
     // ==================== GEMINI API INTEGRATION ====================
     private String callGeminiApi(String prompt) {
         if (geminiApiKey == null || geminiApiKey.isBlank()) {
@@ -440,44 +555,119 @@ public class AIService implements IAIService {
             return null;
         }
 
+        return responseCache.get(geminiModel, prompt, () -> requestGemini(prompt));
+    }
+
+    private String requestGemini(String prompt) {
+        Timer.Sample sample = Timer.start();
         try {
             String url = String.format(
-                    "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent?key=%s",
-                    geminiModel, geminiApiKey
-            );
-
-            Map<String, Object> requestBody = Map.of(
-                    "contents", List.of(
-                            Map.of("parts", List.of(
-                                    Map.of("text", prompt)
-                            ))
-                    ),
-                    "generationConfig", Map.of(
-                            "temperature", 0.8,
-                            "maxOutputTokens", 1024
-                    )
+                    "%s/v1beta/models/%s:generateContent?key=%s",
+                    geminiBaseUrl, geminiModel, geminiApiKey
             );
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+            // null when the call failed, timed out, or was shed by the bulkhead / circuit breaker
+            String body = httpClient.postJson(OutboundHttpClient.GENERATE, url,
+                    objectMapper.writeValueAsString(geminiRequestBody(prompt)));
 
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                JsonNode candidates = root.path("candidates");
-                if (candidates.isArray() && !candidates.isEmpty()) {
-                    JsonNode content = candidates.get(0).path("content").path("parts");
-                    if (content.isArray() && !content.isEmpty()) {
-                        return content.get(0).path("text").asText();
-                    }
-                }
+            if (body != null) {
+                JsonNode root = objectMapper.readTree(body);
+                recordUsage(root.path("usageMetadata"));
+                return candidateText(root);
             }
         } catch (Exception e) {
             log.error("Failed to call Gemini API: {}", e.getMessage());
+        } finally {
+            sample.stop(upstreamTimer);
+        }
+
+        return null;
+    }
+
+    /**
+     * Stream a completion, passing each text delta to {@code onText} until it returns {@code false}.
+     * Returns the full text of a completed stream (also cached), or {@code null} if it failed.
+     */
+    private String streamGeminiApi(String prompt, Predicate<String> onText) {
+        if (geminiApiKey == null || geminiApiKey.isBlank()) {
+            log.warn("Gemini API key not configured, using fallback responses");
+            return null;
         }
 
+        String cached = responseCache.getIfPresent(geminiModel, prompt);
+        if (cached != null) {
+            onText.test(cached);
+            return cached;
+        }
+
+        StringBuilder text = new StringBuilder();
+        boolean[] listening = {true};
+        JsonNode[] usage = {null};
+        Timer.Sample sample = Timer.start();
+        try {
+            String url = String.format(
+                    "%s/v1beta/models/%s:streamGenerateContent?alt=sse&key=%s",
+                    geminiBaseUrl, geminiModel, geminiApiKey
+            );
+
+            boolean completed = httpClient.streamLines(OutboundHttpClient.GENERATE, url,
+                    objectMapper.writeValueAsString(geminiRequestBody(prompt)), line -> {
+                        if (!line.startsWith("data:")) return true;
+                        try {
+                            JsonNode chunk = objectMapper.readTree(line.substring(5));
+                            // usage is cumulative, so only the last chunk's counts are recorded
+                            if (chunk.has("usageMetadata")) usage[0] = chunk.get("usageMetadata");
+                            String delta = candidateText(chunk);
+                            if (delta == null || delta.isEmpty()) return true;
+                            text.append(delta);
+                            listening[0] = onText.test(delta);
+                            return listening[0];
+                        } catch (JsonProcessingException e) {
+                            log.warn("Skipping malformed Gemini stream chunk: {}", e.getMessage());
+                            return true;
+                        }
+                    });
+
+            if (usage[0] != null) recordUsage(usage[0]);
+            if (!completed || text.isEmpty()) return null;
+            // a stream the client abandoned is incomplete and must not be served to others
+            if (listening[0]) responseCache.put(geminiModel, prompt, text.toString());
+            return text.toString();
+        } catch (Exception e) {
+            log.error("Failed to stream from Gemini API: {}", e.getMessage());
+            return null;
+        } finally {
+            sample.stop(upstreamTimer);
+        }
+    }
+
+    private Map<String, Object> geminiRequestBody(String prompt) {
+        return Map.of(
+                "contents", List.of(
+                        Map.of("parts", List.of(
+                                Map.of("text", prompt)
+                        ))
+                ),
+                "generationConfig", Map.of(
+                        "temperature", 0.8,
+                        "maxOutputTokens", 1024
+                )
+        );
+    }
+
+    private String candidateText(JsonNode root) {
+        JsonNode candidates = root.path("candidates");
+        if (candidates.isArray() && !candidates.isEmpty()) {
+            JsonNode content = candidates.get(0).path("content").path("parts");
+            if (content.isArray() && !content.isEmpty()) {
+                return content.get(0).path("text").asText();
+            }
+        }
         return null;
     }
+
+    private void recordUsage(JsonNode usage) {
+        promptTokens.increment(usage.path("promptTokenCount").asLong(0));
+        outputTokens.increment(usage.path("candidatesTokenCount").asLong(0));
+    }
 }
@@ -0,0 +1,17 @@
+package share_app.tphucshareapp.service.ai;
+
+/**
+ * Receiver of a streamed AI response, e.g. an SSE emitter.
+ */
+public interface AIStreamListener {
+
+    /**
+     * Deliver one named event; returns {@code false} once the receiver is gone, so the stream can stop early.
+     */
+    boolean send(String event, Object data);
+
+    /**
+     * Called exactly once when the stream ends, successfully or not.
+     */
+    void complete();
+}
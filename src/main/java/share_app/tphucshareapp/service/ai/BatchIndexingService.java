@@ -0,0 +1,381 @@
+package share_app.tphucshareapp.service.ai;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.dto.response.recommendation.IndexJobStatusResponse;
+import share_app.tphucshareapp.model.Photo;
+import share_app.tphucshareapp.model.User;
+import share_app.tphucshareapp.service.ai.RecommendationService.IndexOutcome;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Background job that (re)builds photo and user embeddings for the whole database.
+ * <p>
+ * Each collection is streamed in {@code _id} order, one chunk at a time; ids that already have a vector are
+ * filtered with a single pipelined EXISTS per chunk, and the rest are embedded in parallel under a
+ * requests-per-second budget. After every chunk the last {@code _id} and the counters are written to a Redis
+ * checkpoint, so a job interrupted by a crash or redeploy picks up where it stopped on the next start.
+ * <p>
+ * One node at a time owns the job through a Redis lock. The owner refreshes it with each checkpoint and
+ * releases it on shutdown; the lock of a node that crashed expires after {@link #LOCK_TTL}. Refresh and
+ * release only touch the lock while it still holds this node's token, and a node that finds its lock
+ * taken over stops without writing the checkpoint.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchIndexingService {
+
+    private static final String CHECKPOINT_KEY = "ai:index-job";
+    private static final String LOCK_KEY = "ai:index-job:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+
+    // KEYS[1] = lock, ARGV[1] = owner token as stored by the value serializer
+    private static final RedisScript<Long> REFRESH_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], " + LOCK_TTL.toMillis() + ") end return 0",
+            Long.class);
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    private enum Phase {PHOTOS, USERS}
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisVectorService redisVectorService;
+    private final RecommendationService recommendationService;
+
+    @Value("${ai.indexing.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${ai.indexing.parallelism:4}")
+    private int parallelism;
+
+    @Value("${ai.indexing.max-requests-per-second:10}")
+    private double maxRequestsPerSecond;
+
+    @Value("${ai.indexing.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("IndexJob-"));
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean cancelRequested = false;
+    private final String lockOwner = UUID.randomUUID().toString();
+
+    // throughput of the current run only, so a resumed job doesn't report the downtime as slowness
+    private volatile long runStartedNanos;
+    private volatile long runStartProcessed;
+
+    /**
+     * Resume a job that was still RUNNING when the previous instance went away.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJob() {
+        if (!resumeOnStartup) return;
+        try {
+            Map<String, Object> checkpoint = readCheckpoint();
+            // every node sees the same checkpoint; only the one that takes the lock resumes it
+            if ("RUNNING".equals(checkpoint.get("status")) && start(false)) {
+                log.info("Resuming interrupted indexing job at {} after {}", checkpoint.get("phase"), checkpoint.get("lastId"));
+            }
+        } catch (Exception e) {
+            log.warn("Could not check indexing checkpoint: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Start the job in the background, resuming from the checkpoint unless {@code restart} is set
+     * or the last run completed.
+     *
+     * @return false if a job is already running on this or another node
+     */
+    public boolean start(boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, lockOwner, LOCK_TTL))) {
+                running.set(false);
+                return false;
+            }
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        cancelRequested = false;
+
+        Map<String, Object> checkpoint = readCheckpoint();
+        Object status = checkpoint.get("status");
+        if (restart || checkpoint.isEmpty() || "COMPLETED".equals(status)) {
+            checkpoint = new HashMap<>();
+            checkpoint.put("phase", Phase.PHOTOS.name());
+            checkpoint.put("processed", 0L);
+            checkpoint.put("indexed", 0L);
+            checkpoint.put("skipped", 0L);
+            checkpoint.put("failed", 0L);
+            checkpoint.put("startedAt", Instant.now().toString());
+            redisTemplate.delete(CHECKPOINT_KEY);
+        }
+        checkpoint.put("status", "RUNNING");
+        checkpoint.put("total", mongoTemplate.estimatedCount(Photo.class) + mongoTemplate.estimatedCount(User.class));
+        checkpoint.remove("error");
+        writeCheckpoint(checkpoint);
+
+        runStartedNanos = System.nanoTime();
+        runStartProcessed = asLong(checkpoint.get("processed"));
+
+        Map<String, Object> initial = checkpoint;
+        coordinator.submit(() -> run(initial));
+        return true;
+    }
+
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    public IndexJobStatusResponse getStatus() {
+        Map<String, Object> checkpoint = readCheckpoint();
+        IndexJobStatusResponse response = new IndexJobStatusResponse();
+        if (checkpoint.isEmpty()) {
+            response.setStatus("IDLE");
+            return response;
+        }
+        response.setStatus((String) checkpoint.get("status"));
+        response.setPhase((String) checkpoint.get("phase"));
+        response.setLastId((String) checkpoint.get("lastId"));
+        response.setProcessed(asLong(checkpoint.get("processed")));
+        response.setIndexed(asLong(checkpoint.get("indexed")));
+        response.setSkipped(asLong(checkpoint.get("skipped")));
+        response.setFailed(asLong(checkpoint.get("failed")));
+        response.setTotal(asLong(checkpoint.get("total")));
+        response.setError((String) checkpoint.get("error"));
+        if (checkpoint.get("startedAt") != null) {
+            response.setStartedAt(Instant.parse((String) checkpoint.get("startedAt")));
+        }
+        if (checkpoint.get("updatedAt") != null) {
+            response.setUpdatedAt(Instant.parse((String) checkpoint.get("updatedAt")));
+        }
+
+        if (running.get()) {
+            double elapsedSeconds = (System.nanoTime() - runStartedNanos) / 1e9;
+            long doneThisRun = response.getProcessed() - runStartProcessed;
+            if (elapsedSeconds > 0 && doneThisRun > 0) {
+                double rate = doneThisRun / elapsedSeconds;
+                response.setItemsPerSecond(Math.round(rate * 100) / 100.0);
+                long remaining = Math.max(0, response.getTotal() - response.getProcessed());
+                response.setEtaSeconds((long) Math.ceil(remaining / rate));
+            }
+        }
+        return response;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // leave the checkpoint RUNNING so the next start resumes it
+        cancelRequested = true;
+        coordinator.shutdownNow();
+        if (running.get()) {
+            releaseLock();
+        }
+    }
+
+    // ─── JOB ───────────────────────────────────────────────────────
+
+    private void run(Map<String, Object> checkpoint) {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("Indexer-"));
+        RateBudget budget = new RateBudget(maxRequestsPerSecond);
+        try {
+            Phase phase = Phase.valueOf((String) checkpoint.get("phase"));
+            if (phase == Phase.PHOTOS) {
+                boolean finished = runPhase(checkpoint, Photo.class, RedisVectorService.PHOTO_PREFIX,
+                        Photo::getId, recommendationService::indexPhoto, workers, budget,
+                        "caption", "tags", "user", "createdAt");
+                if (!finished) return;
+                checkpoint.put("phase", Phase.USERS.name());
+                checkpoint.remove("lastId");
+                redisTemplate.opsForHash().delete(CHECKPOINT_KEY, "lastId");
+                if (!writeCheckpoint(checkpoint)) return;
+            }
+            boolean finished = runPhase(checkpoint, User.class, RedisVectorService.USER_PREFIX,
+                    User::getId, recommendationService::indexUser, workers, budget,
+                    "username", "bio");
+            if (!finished) return;
+
+            checkpoint.put("status", "COMPLETED");
+            writeCheckpoint(checkpoint);
+            log.info("Indexing job completed: {} indexed, {} skipped, {} failed",
+                    checkpoint.get("indexed"), checkpoint.get("skipped"), checkpoint.get("failed"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Indexing job interrupted at {} after {}", checkpoint.get("phase"), checkpoint.get("lastId"));
+        } catch (Exception e) {
+            log.error("Indexing job failed, will resume from checkpoint: {}", e.getMessage(), e);
+            checkpoint.put("status", "FAILED");
+            checkpoint.put("error", String.valueOf(e.getMessage()));
+            writeCheckpoint(checkpoint);
+        } finally {
+            workers.shutdownNow();
+            releaseLock();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Process one collection from the checkpointed {@code lastId} to the end.
+     *
+     * @return false if the job was cancelled or interrupted before the end
+     */
+    private <T> boolean runPhase(Map<String, Object> checkpoint, Class<T> type, String prefix,
+                                 Function<T, String> idOf, Function<T, IndexOutcome> indexer,
+                                 ExecutorService workers, RateBudget budget, String... fields)
+            throws InterruptedException {
+        while (true) {
+            if (cancelRequested || Thread.currentThread().isInterrupted()) {
+                if (cancelRequested && !coordinator.isShutdown()) {
+                    checkpoint.put("status", "CANCELLED");
+                    writeCheckpoint(checkpoint);
+                }
+                return false;
+            }
+
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id")).limit(chunkSize);
+            String lastId = (String) checkpoint.get("lastId");
+            if (lastId != null) {
+                query.addCriteria(Criteria.where("id").gt(lastId));
+            }
+            query.fields().include(fields);
+            List<T> chunk = mongoTemplate.find(query, type);
+            if (chunk.isEmpty()) {
+                return true;
+            }
+
+            List<String> ids = chunk.stream().map(idOf).toList();
+            Set<String> existing = redisVectorService.existingIds(prefix, ids);
+
+            AtomicInteger indexed = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger(existing.size());
+            AtomicInteger failed = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>(chunk.size() - existing.size());
+            for (T item : chunk) {
+                if (existing.contains(idOf.apply(item))) continue;
+                futures.add(workers.submit(() -> {
+                    try {
+                        budget.acquire();
+                        switch (indexer.apply(item)) {
+                            case INDEXED -> indexed.incrementAndGet();
+                            case SKIPPED -> skipped.incrementAndGet();
+                            case FAILED -> failed.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        log.warn("Failed to index {}: {}", idOf.apply(item), e.getMessage());
+                        failed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failed.incrementAndGet();
+                }
+            }
+
+            // only advance the checkpoint once the whole chunk is done
+            checkpoint.put("lastId", ids.get(ids.size() - 1));
+            checkpoint.put("processed", asLong(checkpoint.get("processed")) + chunk.size());
+            checkpoint.put("indexed", asLong(checkpoint.get("indexed")) + indexed.get());
+            checkpoint.put("skipped", asLong(checkpoint.get("skipped")) + skipped.get());
+            checkpoint.put("failed", asLong(checkpoint.get("failed")) + failed.get());
+            if (!writeCheckpoint(checkpoint)) {
+                return false;
+            }
+        }
+    }
+
+    // ─── CHECKPOINT ────────────────────────────────────────────────
+
+    private Map<String, Object> readCheckpoint() {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(CHECKPOINT_KEY);
+        Map<String, Object> checkpoint = new HashMap<>();
+        entries.forEach((k, v) -> checkpoint.put((String) k, v));
+        return checkpoint;
+    }
+
+    /**
+     * Refresh the lock and, if this node still owns it, write the checkpoint.
+     *
+     * @return false if another node has taken the lock over; the checkpoint is left to it
+     */
+    private boolean writeCheckpoint(Map<String, Object> checkpoint) {
+        Long refreshed = redisTemplate.execute(REFRESH_LOCK, List.of(LOCK_KEY), lockOwner);
+        if (refreshed == null || refreshed == 0) {
+            log.warn("Indexing lock is no longer held by this node, stopping at {} after {}",
+                    checkpoint.get("phase"), checkpoint.get("lastId"));
+            return false;
+        }
+        checkpoint.put("updatedAt", Instant.now().toString());
+        redisTemplate.opsForHash().putAll(CHECKPOINT_KEY, checkpoint);
+        return true;
+    }
+
+    private void releaseLock() {
+        try {
+            redisTemplate.execute(RELEASE_LOCK, List.of(LOCK_KEY), lockOwner);
+        } catch (Exception e) {
+            log.warn("Failed to release indexing lock, it expires in {}: {}", LOCK_TTL, e.getMessage());
+        }
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    /**
+     * Spaces calls evenly so that at most {@code permitsPerSecond} start per second across all workers.
+     */
+    private static final class RateBudget {
+        private final long intervalNanos;
+        private long nextFreeNanos = System.nanoTime();
+
+        RateBudget(double permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? (long) (1_000_000_000L / permitsPerSecond) : 0L;
+        }
+
+        void acquire() throws InterruptedException {
+            if (intervalNanos == 0) return;
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long slot = Math.max(now, nextFreeNanos);
+                nextFreeNanos = slot + intervalNanos;
+                waitNanos = slot - now;
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+}
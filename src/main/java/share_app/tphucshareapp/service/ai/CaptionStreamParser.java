@@ -0,0 +1,91 @@
+package share_app.tphucshareapp.service.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental parser for the {@code CAPTION_n:} / {@code TAGS:} format requested by the caption prompt.
+ * <p>
+ * Text deltas are appended as they arrive from the model; every completed line is parsed immediately and
+ * each caption is sent as a {@code caption} event, the tag line as a {@code tags} event.
+ */
+final class CaptionStreamParser {
+
+    private static final Pattern CAPTION_LINE = Pattern.compile("^CAPTION_[1-3]:");
+
+    private final AIStreamListener listener;
+    private final StringBuilder pending = new StringBuilder();
+    private final List<String> captions = new ArrayList<>();
+    private List<String> tags = List.of();
+    private boolean open = true;
+
+    CaptionStreamParser(AIStreamListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Feed the next chunk of model output; returns {@code false} once the listener is gone.
+     */
+    boolean append(String delta) {
+        pending.append(delta);
+        int newline;
+        while (open && (newline = pending.indexOf("\n")) >= 0) {
+            String line = pending.substring(0, newline);
+            pending.delete(0, newline + 1);
+            parseLine(line);
+        }
+        return open;
+    }
+
+    /**
+     * Parse the trailing line, which has no newline after it.
+     */
+    void finish() {
+        if (open && !pending.isEmpty()) {
+            parseLine(pending.toString());
+            pending.setLength(0);
+        }
+    }
+
+    List<String> getCaptions() {
+        return captions;
+    }
+
+    List<String> getTags() {
+        return tags;
+    }
+
+    static boolean isCaptionLine(String line) {
+        return CAPTION_LINE.matcher(line).find();
+    }
+
+    /**
+     * Tags from a {@code TAGS: [a, #b, c]} line, without brackets or leading {@code #}.
+     */
+    static List<String> parseTags(String line) {
+        String tagsStr = line.substring(5).trim()
+                .replace("[", "").replace("]", "");
+        return Arrays.stream(tagsStr.split(","))
+                .map(String::trim)
+                .filter(t -> !t.isBlank())
+                .map(t -> t.startsWith("#") ? t.substring(1) : t)
+                .toList();
+    }
+
+    private void parseLine(String raw) {
+        String line = raw.trim();
+        if (isCaptionLine(line)) {
+            String caption = line.substring(line.indexOf(":") + 1).trim();
+            if (!caption.isBlank()) {
+                captions.add(caption);
+                open = listener.send("caption", Map.of("index", captions.size() - 1, "caption", caption));
+            }
+        } else if (line.startsWith("TAGS:")) {
+            tags = parseTags(line);
+            open = listener.send("tags", tags);
+        }
+    }
+}
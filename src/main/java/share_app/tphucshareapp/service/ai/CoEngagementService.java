@@ -0,0 +1,344 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Favorite;
+import share_app.tphucshareapp.model.Like;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Offline item-to-item recommender: photos engaged with by the same users are neighbours.
+ * <p>
+ * The job streams {@code likes} and {@code favorites}, groups them per user into baskets of dense photo
+ * indices, and accumulates every co-engaged pair in a {@link PairCountMap}. Pair weights are normalized
+ * by cosine ({@code co(a,b) / sqrt(w(a)·w(b))}) and only the top {@code ai.co-engagement.neighbours}
+ * per photo are kept and written to {@code related:co:{photoId}} as a list of photo ids, so serving
+ * them is one key lookup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CoEngagementService {
+
+    private static final String NEIGHBOURS_KEY = "related:co:";
+    private static final String LOCK_KEY = "related:co:lock";
+    // the cron fires on every node at once; the first to take the lock rebuilds for all of them
+    private static final Duration LOCK_TTL = Duration.ofHours(1);
+    private static final float LIKE_WEIGHT = 1.0f;
+    private static final float FAVORITE_WEIGHT = 2.0f;
+    // engagement beyond this per user adds quadratic work and little signal (bots, power users)
+    private static final int MAX_BASKET = 300;
+    private static final int WRITE_BATCH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${ai.co-engagement.neighbours:20}")
+    private int neighbours;
+
+    @Value("${ai.co-engagement.min-support:2}")
+    private float minSupport;
+
+    @Value("${ai.co-engagement.ttl-hours:48}")
+    private long ttlHours;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Map<String, Object> lastRun = Map.of("status", "never run");
+
+    /**
+     * Precomputed co-engagement neighbours of a photo, best first; empty if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getNeighbours(String photoId) {
+        try {
+            Object cached = redisTemplate.opsForValue().get(NEIGHBOURS_KEY + photoId);
+            if (cached instanceof List<?> ids) {
+                return (List<String>) ids;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read co-engagement neighbours for {}: {}", photoId, e.getMessage());
+        }
+        return List.of();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    @Async("eventExecutor")
+    public void rebuildAsync() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "${ai.co-engagement.cron:0 0 4 * * *}")
+    public void scheduledRebuild() {
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, "1", LOCK_TTL);
+            if (!Boolean.TRUE.equals(acquired)) return;
+        } catch (Exception e) {
+            log.warn("Failed to take co-engagement lock, rebuilding locally: {}", e.getMessage());
+        }
+        rebuild();
+    }
+
+    /**
+     * Recompute every photo's neighbour list. No-op if a rebuild is already in progress.
+     */
+    public void rebuild() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Co-engagement rebuild already running");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            lastRun = Map.of("status", "running", "startedAt", Instant.ofEpochMilli(start).toString());
+            Map<String, Object> stats = computeAndStore();
+            stats.put("status", "completed");
+            stats.put("durationMs", System.currentTimeMillis() - start);
+            lastRun = stats;
+            log.info("Co-engagement rebuild finished: {}", stats);
+        } catch (Exception e) {
+            log.error("Co-engagement rebuild failed: {}", e.getMessage(), e);
+            lastRun = Map.of("status", "failed", "error", String.valueOf(e.getMessage()));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> computeAndStore() {
+        Map<String, Integer> photoIndex = new HashMap<>();
+        List<String> photoIds = new ArrayList<>();
+        Map<String, Integer> userIndex = new HashMap<>();
+        Engagements engagements = new Engagements();
+
+        Query likeQuery = new Query();
+        likeQuery.fields().include("userId", "photoId");
+        try (Stream<Like> likes = mongoTemplate.stream(likeQuery, Like.class)) {
+            likes.forEach(l -> engagements.add(
+                    intern(userIndex, null, l.getUserId()), intern(photoIndex, photoIds, l.getPhotoId()), LIKE_WEIGHT));
+        }
+        Query favoriteQuery = new Query();
+        favoriteQuery.fields().include("userId", "photoId");
+        try (Stream<Favorite> favorites = mongoTemplate.stream(favoriteQuery, Favorite.class)) {
+            favorites.forEach(f -> engagements.add(
+                    intern(userIndex, null, f.getUserId()), intern(photoIndex, photoIds, f.getPhotoId()), FAVORITE_WEIGHT));
+        }
+
+        int photoCount = photoIds.size();
+        float[] photoWeight = new float[photoCount];
+        PairCountMap pairs = new PairCountMap(engagements.size * 4);
+
+        // group engagements per user (counting sort) and accumulate pairs within each basket
+        int userCount = userIndex.size();
+        int[] offsets = new int[userCount + 1];
+        for (int i = 0; i < engagements.size; i++) offsets[engagements.users[i] + 1]++;
+        for (int u = 0; u < userCount; u++) offsets[u + 1] += offsets[u];
+        long[] basketItems = new long[engagements.size];
+        int[] fill = Arrays.copyOf(offsets, userCount);
+        for (int i = 0; i < engagements.size; i++) {
+            // photo in the high bits so sorting groups a photo's entries; weight in the low bits
+            basketItems[fill[engagements.users[i]]++] =
+                    ((long) engagements.photos[i] << 32) | Float.floatToIntBits(engagements.weights[i]);
+        }
+
+        int[] basketPhotos = new int[MAX_BASKET];
+        float[] basketWeights = new float[MAX_BASKET];
+        for (int u = 0; u < userCount; u++) {
+            int from = offsets[u];
+            int to = Math.min(offsets[u + 1], from + MAX_BASKET);
+            Arrays.sort(basketItems, from, to);
+
+            // a user may both like and favorite a photo; keep the strongest signal
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                int photo = (int) (basketItems[i] >>> 32);
+                float weight = Float.intBitsToFloat((int) basketItems[i]);
+                if (n > 0 && basketPhotos[n - 1] == photo) {
+                    basketWeights[n - 1] = Math.max(basketWeights[n - 1], weight);
+                } else {
+                    basketPhotos[n] = photo;
+                    basketWeights[n++] = weight;
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                photoWeight[basketPhotos[i]] += basketWeights[i];
+                for (int j = i + 1; j < n; j++) {
+                    pairs.add(basketPhotos[i], basketPhotos[j], Math.min(basketWeights[i], basketWeights[j]));
+                }
+            }
+        }
+
+        TopNeighbours top = new TopNeighbours(photoCount, neighbours);
+        pairs.forEach((a, b, co) -> {
+            if (co < minSupport) return;
+            float score = (float) (co / Math.sqrt((double) photoWeight[a] * photoWeight[b]));
+            top.offer(a, b, score);
+            top.offer(b, a, score);
+        });
+
+        int written = writeNeighbours(photoIds, top);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("engagements", engagements.size);
+        stats.put("users", userCount);
+        stats.put("photos", photoCount);
+        stats.put("pairs", pairs.size());
+        stats.put("photosWithNeighbours", written);
+        return stats;
+    }
+
+    private int writeNeighbours(List<String> photoIds, TopNeighbours top) {
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        long ttlSeconds = Duration.ofHours(ttlHours).getSeconds();
+        int written = 0;
+        List<Integer> batch = new ArrayList<>(WRITE_BATCH);
+        for (int photo = 0; photo < photoIds.size(); photo++) {
+            if (top.count(photo) == 0) continue;
+            batch.add(photo);
+            if (batch.size() == WRITE_BATCH) {
+                written += flush(batch, photoIds, top, serializer, ttlSeconds);
+            }
+        }
+        written += flush(batch, photoIds, top, serializer, ttlSeconds);
+        return written;
+    }
+
+    private int flush(List<Integer> batch, List<String> photoIds, TopNeighbours top,
+                      RedisSerializer<Object> serializer, long ttlSeconds) {
+        if (batch.isEmpty()) return 0;
+        redisTemplate.executePipelined((RedisConnection connection) -> {
+            for (int photo : batch) {
+                List<String> ids = new ArrayList<>();
+                for (int neighbour : top.sorted(photo)) {
+                    ids.add(photoIds.get(neighbour));
+                }
+                connection.stringCommands().setEx(
+                        (NEIGHBOURS_KEY + photoIds.get(photo)).getBytes(StandardCharsets.UTF_8),
+                        ttlSeconds, serializer.serialize(ids));
+            }
+            return null;
+        });
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private static int intern(Map<String, Integer> index, List<String> names, String id) {
+        Integer existing = index.get(id);
+        if (existing != null) return existing;
+        int next = index.size();
+        index.put(id, next);
+        if (names != null) names.add(id);
+        return next;
+    }
+
+    /**
+     * Growable parallel arrays of (user, photo, weight).
+     */
+    private static final class Engagements {
+        int[] users = new int[1024];
+        int[] photos = new int[1024];
+        float[] weights = new float[1024];
+        int size;
+
+        void add(int user, int photo, float weight) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size << 1);
+                photos = Arrays.copyOf(photos, size << 1);
+                weights = Arrays.copyOf(weights, size << 1);
+            }
+            users[size] = user;
+            photos[size] = photo;
+            weights[size++] = weight;
+        }
+    }
+
+    /**
+     * Per-photo bounded min-heaps of neighbours, stored in flat primitive arrays.
+     */
+    private static final class TopNeighbours {
+        private final int capacity;
+        private final int[] ids;
+        private final float[] scores;
+        private final int[] counts;
+
+        TopNeighbours(int photos, int capacity) {
+            this.capacity = capacity;
+            this.ids = new int[photos * capacity];
+            this.scores = new float[photos * capacity];
+            this.counts = new int[photos];
+        }
+
+        int count(int photo) {
+            return counts[photo];
+        }
+
+        void offer(int photo, int neighbour, float score) {
+            int base = photo * capacity;
+            int n = counts[photo];
+            if (n < capacity) {
+                // sift up
+                int i = n;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (scores[base + parent] <= score) break;
+                    ids[base + i] = ids[base + parent];
+                    scores[base + i] = scores[base + parent];
+                    i = parent;
+                }
+                ids[base + i] = neighbour;
+                scores[base + i] = score;
+                counts[photo] = n + 1;
+            } else if (score > scores[base]) {
+                // replace the weakest and sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= n) break;
+                    if (child + 1 < n && scores[base + child + 1] < scores[base + child]) child++;
+                    if (scores[base + child] >= score) break;
+                    ids[base + i] = ids[base + child];
+                    scores[base + i] = scores[base + child];
+                    i = child;
+                }
+                ids[base + i] = neighbour;
+                scores[base + i] = score;
+            }
+        }
+
+        /**
+         * Neighbours of {@code photo}, best first.
+         */
+        int[] sorted(int photo) {
+            int base = photo * capacity;
+            int n = counts[photo];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (x, y) -> Float.compare(scores[base + y], scores[base + x]));
+            int[] result = new int[n];
+            for (int i = 0; i < n; i++) result[i] = ids[base + order[i]];
+            return result;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package share_app.tphucshareapp.service.ai;
+
+/**
+ * Source of text embeddings used by {@link EmbeddingService}.
+ * <p>
+ * Implementations must return {@link EmbeddingService#EMBEDDING_DIMENSION}-dimensional vectors so they fit
+ * the vector indexes; vectors from different providers are not comparable, so switching
+ * {@code ai.embedding.provider} requires re-indexing.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Name matched against {@code ai.embedding.provider}.
+     */
+    String name();
+
+    /**
+     * Embed non-blank text.
+     *
+     * @return the embedding, or null on failure
+     */
+    float[] embed(String text);
+}
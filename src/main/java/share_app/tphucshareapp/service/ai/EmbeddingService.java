@@ -2,34 +2,38 @@ package share_app.tphucshareapp.service.ai;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
- * Service to generate text embeddings using Gemini text-embedding-004.
+ * Service to generate text embeddings through the configured {@link EmbeddingProvider}.
  * Returns 768-dimensional float vectors for cosine similarity search.
+ * <p>
+ * {@code ai.embedding.provider} selects {@code gemini} (text-embedding-004, default) or {@code local},
+ * a deterministic offline embedder for benchmarking and load tests.
  */
 @Service
 @Slf4j
 public class EmbeddingService {
 
-    private final RestTemplate restTemplate;
-
-    @Value("${ai.gemini.api-key}")
-    private String geminiApiKey;
+    public static final int EMBEDDING_DIMENSION = 768;
 
-    private static final String EMBEDDING_MODEL = "text-embedding-004";
-    private static final String EMBEDDING_URL =
-            "https://generativelanguage.googleapis.com/v1beta/models/%s:embedContent?key=%s";
+    private final EmbeddingProvider provider;
 
-    public static final int EMBEDDING_DIMENSION = 768;
+    public EmbeddingService(List<EmbeddingProvider> providers,
+                            @Value("${ai.embedding.provider:gemini}") String providerName) {
+        this.provider = providers.stream()
+                .filter(p -> p.name().equalsIgnoreCase(providerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown ai.embedding.provider '" + providerName
+                        + "', expected one of " + providers.stream().map(EmbeddingProvider::name).collect(Collectors.joining(", "))));
+        log.info("Using {} embedding provider", provider.name());
+    }
 
-    public EmbeddingService() {
-        this.restTemplate = new RestTemplate();
+    public String getProviderName() {
+        return provider.name();
     }
 
     /**
@@ -38,7 +42,6 @@ public class EmbeddingService {
      * @param text the text to embed
      * @return 768-dimensional float array, or null on failure
      */
-    @SuppressWarnings("unchecked")
     public float[] generateEmbedding(String text) {
         if (text == null || text.isBlank()) {
             log.warn("Empty text provided for embedding generation");
@@ -47,42 +50,7 @@ public class EmbeddingService {
 
         // Truncate to ~2000 chars to stay within token limits
         String truncated = text.length() > 2000 ? text.substring(0, 2000) : text;
-
-        try {
-            String url = String.format(EMBEDDING_URL, EMBEDDING_MODEL, geminiApiKey);
-
-            Map<String, Object> body = Map.of(
-                    "model", "models/" + EMBEDDING_MODEL,
-                    "content", Map.of("parts", List.of(Map.of("text", truncated)))
-            );
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, request, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> embeddingObj = (Map<String, Object>) response.getBody().get("embedding");
-                if (embeddingObj != null) {
-                    List<Number> values = (List<Number>) embeddingObj.get("values");
-                    if (values != null && values.size() == EMBEDDING_DIMENSION) {
-                        float[] result = new float[EMBEDDING_DIMENSION];
-                        for (int i = 0; i < EMBEDDING_DIMENSION; i++) {
-                            result[i] = values.get(i).floatValue();
-                        }
-                        return result;
-                    }
-                }
-            }
-
-            log.error("Unexpected Gemini embedding response: {}", response.getBody());
-            return null;
-
-        } catch (Exception e) {
-            log.error("Failed to generate embedding for text: {}", truncated.substring(0, Math.min(100, truncated.length())), e);
-            return null;
-        }
+        return provider.embed(truncated);
     }
 
     /**
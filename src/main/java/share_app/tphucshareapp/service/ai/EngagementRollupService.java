@@ -0,0 +1,366 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Photo;
+import share_app.tphucshareapp.model.UserEngagementRollup;
+import share_app.tphucshareapp.model.UserEngagementRollup.RecentPost;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Maintains {@link UserEngagementRollup} documents.
+ * <p>
+ * A rollup is built from the user's photos the first time it is read; after that photo creation/deletion
+ * and like/comment changes are applied as {@code $inc}/{@code $push} updates. Updates to users without a
+ * rollup are skipped, since the lazy build reads the current counts anyway.
+ * <p>
+ * While a build scans, a {@code building} placeholder holds the user's slot. Changes that arrive meanwhile
+ * add their photo to it, and the build recounts those photos before it swaps the placeholder for the
+ * rollup, only if nothing touched the placeholder since it last read it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EngagementRollupService {
+
+    public static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    public static final double COMMENT_WEIGHT = 2.0;
+    // covers the largest window analyzeEngagement accepts
+    public static final int RECENT_LIMIT = 50;
+    private static final int CAPTION_LIMIT = 200;
+    private static final int MAX_RECOUNTS = 5;
+    // a placeholder older than this belongs to a build that died and is discarded
+    private static final Duration BUILD_TIMEOUT = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * The user's rollup, built on first access.
+     */
+    public UserEngagementRollup getRollup(String userId) {
+        UserEngagementRollup rollup = mongoTemplate.findById(userId, UserEngagementRollup.class);
+        if (rollup != null && rollup.isBuilding() && rollup.getBuiltAt().isBefore(Instant.now().minus(BUILD_TIMEOUT))) {
+            removePlaceholder(userId);
+            rollup = null;
+        }
+        if (rollup == null || rollup.isBuilding()) {
+            return build(userId, rollup == null);
+        }
+        // deletions shrink the window; top it up from the (user.userId, createdAt) index
+        int expected = (int) Math.min(RECENT_LIMIT, rollup.getPostCount());
+        if (rollup.getRecentPosts() == null || rollup.getRecentPosts().size() < expected) {
+            List<RecentPost> recent = loadRecent(userId);
+            mongoTemplate.updateFirst(liveQuery(userId), new Update().set("recentPosts", recent), UserEngagementRollup.class);
+            rollup.setRecentPosts(recent);
+        }
+        return rollup;
+    }
+
+    /**
+     * The newest {@code count} posts of the rollup as lightweight photos (id, image, caption, tags, counts).
+     */
+    public List<Photo> recentPhotos(UserEngagementRollup rollup, int count) {
+        if (rollup.getRecentPosts() == null) return List.of();
+        return rollup.getRecentPosts().stream()
+                .limit(count)
+                .map(p -> {
+                    Photo photo = new Photo();
+                    photo.setId(p.getPhotoId());
+                    photo.setImageUrl(p.getImageUrl());
+                    photo.setCaption(p.getCaption());
+                    photo.setTags(p.getTags());
+                    photo.setCreatedAt(p.getCreatedAt());
+                    photo.setLikeCount(p.getLikeCount());
+                    photo.setCommentCount(p.getCommentCount());
+                    return photo;
+                })
+                .toList();
+    }
+
+    public void onPhotoCreated(Photo photo) {
+        String userId = authorOf(photo);
+        if (userId == null || photo.getCreatedAt() == null) return;
+        ZonedDateTime postTime = photo.getCreatedAt().atZone(ZONE);
+        try {
+            Update update = new Update()
+                    .inc("postCount", 1)
+                    .inc("dayPosts." + dayIndex(postTime), 1)
+                    .inc("hourPosts." + postTime.getHour(), 1);
+            update.push("recentPosts")
+                    .sort(Sort.by(Sort.Direction.DESC, "createdAt"))
+                    .slice(RECENT_LIMIT)
+                    .each(toRecentPost(photo));
+            apply(userId, photo.getId(), update);
+        } catch (Exception e) {
+            dropStale(userId, e);
+        }
+    }
+
+    /**
+     * Remove a photo and the engagement it had accumulated; {@code photo} must carry its final counts.
+     */
+    public void onPhotoDeleted(Photo photo) {
+        String userId = authorOf(photo);
+        if (userId == null || photo.getCreatedAt() == null) return;
+        ZonedDateTime postTime = photo.getCreatedAt().atZone(ZONE);
+        double engagement = engagement(photo.getLikeCount(), photo.getCommentCount());
+        try {
+            Update update = new Update()
+                    .inc("postCount", -1)
+                    .inc("dayPosts." + dayIndex(postTime), -1)
+                    .inc("hourPosts." + postTime.getHour(), -1)
+                    .inc("dayEngagement." + dayIndex(postTime), -engagement)
+                    .inc("hourEngagement." + postTime.getHour(), -engagement)
+                    .inc("totalLikes", -photo.getLikeCount())
+                    .inc("totalComments", -photo.getCommentCount())
+                    .pull("recentPosts", new Document("photoId", photo.getId()));
+            apply(userId, photo.getId(), update);
+        } catch (Exception e) {
+            dropStale(userId, e);
+        }
+    }
+
+    /**
+     * Apply a like/comment count change on {@code photoId} to its author's rollup.
+     */
+    public void recordEngagement(String photoId, int likeDelta, int commentDelta) {
+        Query query = idQuery(photoId);
+        query.fields().include("user.userId", "createdAt");
+        Photo photo = mongoTemplate.findOne(query, Photo.class);
+        if (photo != null) {
+            recordEngagement(photo, likeDelta, commentDelta);
+        }
+    }
+
+    public void recordEngagement(Photo photo, int likeDelta, int commentDelta) {
+        String userId = authorOf(photo);
+        if (userId == null || photo.getCreatedAt() == null) return;
+        ZonedDateTime postTime = photo.getCreatedAt().atZone(ZONE);
+        double delta = engagement(likeDelta, commentDelta);
+        try {
+            Update update = new Update()
+                    .inc("dayEngagement." + dayIndex(postTime), delta)
+                    .inc("hourEngagement." + postTime.getHour(), delta)
+                    .inc("totalLikes", likeDelta)
+                    .inc("totalComments", commentDelta)
+                    .inc("recentPosts.$[p].likeCount", likeDelta)
+                    .inc("recentPosts.$[p].commentCount", commentDelta)
+                    .filterArray(Criteria.where("p.photoId").is(photo.getId()));
+            apply(userId, photo.getId(), update);
+        } catch (Exception e) {
+            dropStale(userId, e);
+        }
+    }
+
+    public static double engagement(long likes, long comments) {
+        return likes + comments * COMMENT_WEIGHT;
+    }
+
+    public static int dayIndex(ZonedDateTime time) {
+        return time.getDayOfWeek().getValue() - 1;
+    }
+
+    /**
+     * Apply {@code update} to the user's rollup; while it is being built, list {@code photoId} for a recount.
+     */
+    private void apply(String userId, String photoId, Update update) {
+        if (mongoTemplate.updateFirst(liveQuery(userId), update, UserEngagementRollup.class).getMatchedCount() == 0) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(userId).and("building").is(true)),
+                    new Update().addToSet("touchedPhotoIds", photoId).inc("touchVersion", 1),
+                    UserEngagementRollup.class);
+        }
+    }
+
+    /**
+     * Build the rollup from the user's photos. With {@code store}, a placeholder is inserted first and
+     * replaced by the result; otherwise (another build holds the placeholder) the result is only returned.
+     */
+    private UserEngagementRollup build(String userId, boolean store) {
+        if (store) {
+            UserEngagementRollup placeholder = new UserEngagementRollup();
+            placeholder.setUserId(userId);
+            placeholder.setBuilding(true);
+            placeholder.setBuiltAt(Instant.now());
+            try {
+                mongoTemplate.insert(placeholder);
+            } catch (DuplicateKeyException e) {
+                // another request got there first; serve its rollup, or a fresh unsaved count while it builds
+                UserEngagementRollup existing = mongoTemplate.findById(userId, UserEngagementRollup.class);
+                if (existing != null && !existing.isBuilding()) return existing;
+                store = false;
+            }
+        }
+
+        try {
+            return scanAndStore(userId, store, new Tally());
+        } catch (RuntimeException e) {
+            if (store) removePlaceholder(userId);
+            throw e;
+        }
+    }
+
+    private UserEngagementRollup scanAndStore(String userId, boolean store, Tally tally) {
+        Map<String, Photo> counted = new HashMap<>();
+        Query query = new Query(Criteria.where("user.userId").is(userId));
+        query.fields().include("createdAt", "likeCount", "commentCount");
+        try (Stream<Photo> photos = mongoTemplate.stream(query, Photo.class)) {
+            photos.forEach(photo -> {
+                counted.put(photo.getId(), photo);
+                tally.add(photo, 1);
+            });
+        }
+        if (!store) {
+            return tally.toRollup(userId, loadRecent(userId));
+        }
+
+        for (int attempt = 0; attempt < MAX_RECOUNTS; attempt++) {
+            UserEngagementRollup placeholder = mongoTemplate.findById(userId, UserEngagementRollup.class);
+            if (placeholder == null || !placeholder.isBuilding()) {
+                // dropped as stale meanwhile; the next read builds again
+                return tally.toRollup(userId, loadRecent(userId));
+            }
+            if (placeholder.getTouchedPhotoIds() != null) {
+                recount(placeholder.getTouchedPhotoIds(), counted, tally);
+            }
+
+            UserEngagementRollup rollup = tally.toRollup(userId, loadRecent(userId));
+            Query unchanged = new Query(Criteria.where("_id").is(userId)
+                    .and("building").is(true)
+                    .and("touchVersion").is(placeholder.getTouchVersion()));
+            if (mongoTemplate.replace(unchanged, rollup).getMatchedCount() > 0) {
+                log.debug("Built engagement rollup for user {} ({} posts)", userId, rollup.getPostCount());
+                return rollup;
+            }
+        }
+
+        // photos keep changing under the build; let a later read try again
+        log.warn("Engagement rollup for {} kept changing while being built, not storing it", userId);
+        removePlaceholder(userId);
+        return tally.toRollup(userId, loadRecent(userId));
+    }
+
+    private void removePlaceholder(String userId) {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(userId).and("building").is(true)), UserEngagementRollup.class);
+    }
+
+    /**
+     * Replace what {@code tally} counted for {@code photoIds} with their current state.
+     */
+    private void recount(List<String> photoIds, Map<String, Photo> counted, Tally tally) {
+        Query query = new Query(Criteria.where("_id").in(photoIds));
+        query.fields().include("createdAt", "likeCount", "commentCount");
+        Map<String, Photo> current = new HashMap<>();
+        mongoTemplate.find(query, Photo.class).forEach(photo -> current.put(photo.getId(), photo));
+        for (String photoId : photoIds) {
+            Photo before = counted.remove(photoId);
+            if (before != null) tally.add(before, -1);
+            Photo after = current.get(photoId);
+            if (after != null) {
+                tally.add(after, 1);
+                counted.put(photoId, after);
+            }
+        }
+    }
+
+    private List<RecentPost> loadRecent(String userId) {
+        Query query = new Query(Criteria.where("user.userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .limit(RECENT_LIMIT);
+        query.fields().include("imageUrl", "caption", "tags", "createdAt", "likeCount", "commentCount");
+        return mongoTemplate.find(query, Photo.class).stream().map(this::toRecentPost).toList();
+    }
+
+    private RecentPost toRecentPost(Photo photo) {
+        String caption = photo.getCaption();
+        if (caption != null && caption.length() > CAPTION_LIMIT) {
+            caption = caption.substring(0, CAPTION_LIMIT);
+        }
+        return new RecentPost(photo.getId(), photo.getImageUrl(), caption, photo.getTags(),
+                photo.getCreatedAt(), photo.getLikeCount(), photo.getCommentCount());
+    }
+
+    private void dropStale(String userId, Exception e) {
+        // a rollup that missed an update is rebuilt on the next read rather than left drifting
+        log.warn("Failed to update engagement rollup for {}, dropping it: {}", userId, e.getMessage());
+        try {
+            mongoTemplate.remove(idQuery(userId), UserEngagementRollup.class);
+        } catch (Exception removeFailure) {
+            log.error("Failed to drop engagement rollup for {}: {}", userId, removeFailure.getMessage());
+        }
+    }
+
+    private static String authorOf(Photo photo) {
+        return photo.getUser() != null ? photo.getUser().getUserId() : null;
+    }
+
+    private static Query idQuery(String id) {
+        return new Query(Criteria.where("_id").is(id));
+    }
+
+    /**
+     * The user's rollup, excluding the placeholder of a build in progress.
+     */
+    private static Query liveQuery(String userId) {
+        return new Query(Criteria.where("_id").is(userId).and("building").ne(true));
+    }
+
+    /**
+     * Post and engagement counts of a set of photos, by weekday and hour posted.
+     */
+    private static final class Tally {
+        long postCount;
+        long totalLikes;
+        long totalComments;
+        final double[] dayEngagement = new double[7];
+        final long[] dayPosts = new long[7];
+        final double[] hourEngagement = new double[24];
+        final long[] hourPosts = new long[24];
+
+        void add(Photo photo, int sign) {
+            postCount += sign;
+            totalLikes += sign * photo.getLikeCount();
+            totalComments += sign * photo.getCommentCount();
+            if (photo.getCreatedAt() == null) return;
+            ZonedDateTime postTime = photo.getCreatedAt().atZone(ZONE);
+            double engagement = engagement(photo.getLikeCount(), photo.getCommentCount());
+            int day = dayIndex(postTime);
+            int hour = postTime.getHour();
+            dayEngagement[day] += sign * engagement;
+            dayPosts[day] += sign;
+            hourEngagement[hour] += sign * engagement;
+            hourPosts[hour] += sign;
+        }
+
+        UserEngagementRollup toRollup(String userId, List<RecentPost> recentPosts) {
+            UserEngagementRollup rollup = new UserEngagementRollup();
+            rollup.setUserId(userId);
+            rollup.setPostCount(postCount);
+            rollup.setTotalLikes(totalLikes);
+            rollup.setTotalComments(totalComments);
+            rollup.setDayEngagement(Arrays.stream(dayEngagement).boxed().toList());
+            rollup.setDayPosts(Arrays.stream(dayPosts).boxed().toList());
+            rollup.setHourEngagement(Arrays.stream(hourEngagement).boxed().toList());
+            rollup.setHourPosts(Arrays.stream(hourPosts).boxed().toList());
+            rollup.setRecentPosts(recentPosts);
+            rollup.setBuiltAt(Instant.now());
+            return rollup;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package share_app.tphucshareapp.service.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embeddings from Gemini text-embedding-004 (768 dimensions).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeminiEmbeddingProvider implements EmbeddingProvider {
+
+    private final OutboundHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ai.gemini.api-key}")
+    private String geminiApiKey;
+
+    @Value("${ai.gemini.base-url:https://generativelanguage.googleapis.com}")
+    private String geminiBaseUrl;
+
+    private static final String EMBEDDING_MODEL = "text-embedding-004";
+    private static final String EMBEDDING_URL = "%s/v1beta/models/%s:embedContent?key=%s";
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    @Override
+    public float[] embed(String text) {
+        try {
+            String url = String.format(EMBEDDING_URL, geminiBaseUrl, EMBEDDING_MODEL, geminiApiKey);
+
+            Map<String, Object> body = Map.of(
+                    "model", "models/" + EMBEDDING_MODEL,
+                    "content", Map.of("parts", List.of(Map.of("text", text)))
+            );
+
+            String response = httpClient.postJson(OutboundHttpClient.EMBED, url, objectMapper.writeValueAsString(body));
+            if (response == null) {
+                return null;
+            }
+
+            JsonNode values = objectMapper.readTree(response).path("embedding").path("values");
+            if (values.isArray() && values.size() == EmbeddingService.EMBEDDING_DIMENSION) {
+                float[] result = new float[EmbeddingService.EMBEDDING_DIMENSION];
+                for (int i = 0; i < EmbeddingService.EMBEDDING_DIMENSION; i++) {
+                    result[i] = (float) values.get(i).asDouble();
+                }
+                return result;
+            }
+
+            log.error("Unexpected Gemini embedding response: {}", response);
+            return null;
+
+        } catch (Exception e) {
+            log.error("Failed to generate embedding for text: {}", text.substring(0, Math.min(100, text.length())), e);
+            return null;
+        }
+    }
+}
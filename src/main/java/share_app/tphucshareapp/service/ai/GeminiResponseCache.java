@@ -0,0 +1,197 @@
+package share_app.tphucshareapp.service.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of Gemini text responses, keyed by a SHA-256 of the model and the
+ * whitespace-normalized prompt.
+ * <p>
+ * Entries expire after {@code ai.gemini.cache.ttl-minutes} and the least recently used are evicted beyond
+ * {@code ai.gemini.cache.max-entries}. Concurrent misses on the same key share one upstream call. Failed
+ * calls ({@code null}) are not cached, so the next request retries.
+ */
+@Component
+@Slf4j
+public class GeminiResponseCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final Map<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter shared;
+
+    // wall clock in millis; replaced in tests to expire entries without waiting
+    LongSupplier clock = System::currentTimeMillis;
+
+    private record Entry(String value, long expiresAt) {
+    }
+
+    public GeminiResponseCache(MeterRegistry meterRegistry,
+                               @Value("${ai.gemini.cache.max-entries:1000}") int maxEntries,
+                               @Value("${ai.gemini.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMinutes * 60_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > GeminiResponseCache.this.maxEntries;
+            }
+        };
+
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.shared = requests(meterRegistry, "shared");
+        Gauge.builder("ai.gemini.cache.size", this, GeminiResponseCache::size)
+                .description("Cached Gemini responses")
+                .register(meterRegistry);
+        Gauge.builder("ai.gemini.cache.hit.ratio", this, GeminiResponseCache::hitRatio)
+                .description("Share of Gemini calls answered without a new upstream request")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The cached response for {@code model} and {@code prompt}, or the result of {@code loader}, which runs
+     * at most once per key at a time.
+     */
+    public String get(String model, String prompt, Supplier<String> loader) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            misses.increment();
+            return loader.get();
+        }
+
+        String key = key(model, prompt);
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            shared.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                return null;
+            }
+        }
+
+        try {
+            // another caller may have stored the value between our lookup and taking the slot
+            String value = lookup(key);
+            if (value != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                value = loader.get();
+                if (value != null) {
+                    store(key, value);
+                }
+            }
+            call.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * The cached response, or {@code null}; counted as a hit or miss. Used by streaming calls, which
+     * {@link #put} the assembled text once the stream completes.
+     */
+    public String getIfPresent(String model, String prompt) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            misses.increment();
+            return null;
+        }
+        String cached = lookup(key(model, prompt));
+        (cached != null ? hits : misses).increment();
+        return cached;
+    }
+
+    public void put(String model, String prompt, String value) {
+        if (maxEntries > 0 && ttlMillis > 0 && value != null) {
+            store(key(model, prompt), value);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public double hitRatio() {
+        double served = hits.count() + shared.count();
+        double total = served + misses.count();
+        return total == 0 ? 0 : served / total;
+    }
+
+    private String lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (entry.expiresAt() < clock.getAsLong()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    private void store(String key, String value) {
+        synchronized (entries) {
+            entries.put(key, new Entry(value, clock.getAsLong() + ttlMillis));
+        }
+    }
+
+    static String key(String model, String prompt) {
+        String normalized = prompt.strip().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai.gemini.cache.requests")
+                .description("Gemini generateContent lookups by cache outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,71 @@
+package share_app.tphucshareapp.service.ai;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Deterministic offline embedder using the hashing trick, for load tests and benchmarks without network access.
+ * <p>
+ * Each word and each character trigram of {@code #word#} is hashed to a dimension and a sign, the
+ * weighted counts are summed and the result is L2-normalized. Texts sharing words or word fragments
+ * get similar vectors, and the same text always maps to the same vector on any machine.
+ */
+@Component
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private static final int DIM = EmbeddingService.EMBEDDING_DIMENSION;
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.5f;
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[DIM];
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .replace('đ', 'd');
+
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            add(vector, hash(word, 0, word.length(), 0x77L), WORD_WEIGHT);
+
+            String padded = "#" + word + "#";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, hash(padded, i, i + 3, 0x33L), TRIGRAM_WEIGHT);
+            }
+        }
+
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        if (norm == 0) return null;
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < DIM; i++) vector[i] *= inv;
+        return vector;
+    }
+
+    private static void add(float[] vector, long hash, float weight) {
+        int index = (int) Math.floorMod(hash >>> 1, (long) DIM);
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    /**
+     * FNV-1a over UTF-16 code units with a final avalanche, seeded so words and trigrams land independently.
+     */
+    private static long hash(String s, int from, int to, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = from; i < to; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,626 @@
+package share_app.tphucshareapp.service.ai;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.function.IntPredicate;
+
+/**
+ * In-process HNSW (Hierarchical Navigable Small World) graph for approximate cosine KNN.
+ * <p>
+ * Vectors are normalized on insert and kept off-heap in a {@link MappedVectorStore}; the graph links
+ * and the id mapping live on-heap and are persisted with {@link #writeSnapshot(Path)}.
+ * Each node also carries a single string attribute (e.g. the photo author) that search filters can read.
+ * Deletes are tombstones: the node keeps routing traffic but is never returned.
+ * <p>
+ * When the graph store is quantized, an optional full-precision store is written alongside it and the
+ * final candidate list of every search is re-ranked against it, so only {@code ef} exact reads happen per query.
+ */
+class HnswIndex implements Closeable {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+    // 3: photo attributes carry createdAt; older snapshots are rebuilt from Redis
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final int[] NO_LINKS = new int[0];
+
+    private final int dim;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final MappedVectorStore vectors;
+    private final MappedVectorStore fullPrecision;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Random random = new Random(42);
+
+    private volatile int efSearch;
+
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private String[] ids = new String[1024];
+    private String[] attributes = new String[1024];
+    private int[][][] links = new int[1024][][];
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> slotById = new HashMap<>();
+
+    HnswIndex(MappedVectorStore vectors, int m, int efConstruction, int efSearch) {
+        this(vectors, null, m, efConstruction, efSearch);
+    }
+
+    /**
+     * @param fullPrecision FLOAT32 store used to re-rank search results, or null when {@code vectors} is already exact
+     */
+    HnswIndex(MappedVectorStore vectors, MappedVectorStore fullPrecision, int m, int efConstruction, int efSearch) {
+        this.vectors = vectors;
+        this.fullPrecision = fullPrecision;
+        this.dim = vectors.dimension();
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    // ─── WRITES ────────────────────────────────────────────────────
+
+    /**
+     * Insert or replace the vector stored under {@code id}.
+     */
+    void add(String id, float[] vector, String attribute) {
+        if (vector.length != dim) {
+            throw new IllegalArgumentException("Expected vector of dimension " + dim + " but got " + vector.length);
+        }
+        float[] normalized = normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotById.remove(id);
+            if (existing != null) {
+                markDeleted(existing);
+            }
+
+            int slot = size++;
+            ensureCapacity(size);
+            vectors.put(slot, normalized);
+            if (fullPrecision != null) {
+                fullPrecision.put(slot, normalized);
+            }
+            ids[slot] = id;
+            attributes[slot] = attribute;
+            slotById.put(id, slot);
+
+            int level = randomLevel();
+            links[slot] = new int[level + 1][];
+            Arrays.fill(links[slot], NO_LINKS);
+
+            if (entryPoint < 0) {
+                entryPoint = slot;
+                maxLevel = level;
+                return;
+            }
+
+            int ep = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                ep = greedyClosest(normalized, ep, l);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(normalized, ep, efConstruction, l);
+                int[] neighbours = selectNeighbours(candidates, m);
+                links[slot][l] = neighbours;
+                int maxConnections = l == 0 ? maxM0 : m;
+                for (int neighbour : neighbours) {
+                    addLink(neighbour, slot, l, maxConnections);
+                }
+                ep = candidates.get(0).slot;
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Overwrite the vector of an existing node in place, keeping its slot and links, if its cosine similarity
+     * to the stored one is at least {@code minSimilarity}. A small drift barely changes which nodes should be
+     * its neighbours, whereas {@link #add} would leave a tombstone behind for every update.
+     *
+     * @return false if {@code id} is absent or moved further, in which case {@link #add} re-links it
+     */
+    boolean update(String id, float[] vector, double minSimilarity) {
+        if (vector.length != dim) {
+            throw new IllegalArgumentException("Expected vector of dimension " + dim + " but got " + vector.length);
+        }
+        float[] normalized = normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            if (slot == null) return false;
+            float[] current = fullPrecision != null ? fullPrecision.get(slot) : vectors.get(slot);
+            if (MappedVectorStore.dot(current, normalized, dim) < minSimilarity) return false;
+
+            vectors.put(slot, normalized);
+            if (fullPrecision != null) {
+                fullPrecision.put(slot, normalized);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.remove(id);
+            if (slot == null) return false;
+            markDeleted(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ─── READS ─────────────────────────────────────────────────────
+
+    boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return slotById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the {@code k} nearest live vectors. {@code filter} (may be null) receives each candidate's
+     * id and attribute and must return true to keep it; rejected nodes are still traversed, so a
+     * selective filter costs more hops instead of returning fewer than {@code k} results.
+     */
+    List<Result> search(float[] query, int k, int ef, BiPredicate<String, String> filter) {
+        float[] normalized = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedyClosest(normalized, ep, l);
+            }
+
+            IntPredicate keep = slot -> !deleted.get(slot)
+                    && (filter == null || filter.test(ids[slot], attributes[slot]));
+
+            List<Candidate> candidates = filter == null
+                    ? searchLayer(normalized, ep, Math.max(ef, k), 0)
+                    : searchLayerFiltered(normalized, ep, Math.max(ef, k), keep);
+            if (fullPrecision != null) {
+                candidates = rerank(normalized, candidates, keep);
+            }
+            List<Result> results = new ArrayList<>(k);
+            for (Candidate c : candidates) {
+                if (!keep.test(c.slot)) continue;
+                results.add(new Result(ids[c.slot], attributes[c.slot], c.distance));
+                if (results.size() >= k) break;
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Result> search(float[] query, int k) {
+        return search(query, k, efSearch, null);
+    }
+
+    /**
+     * Recompute the distances of the surviving candidates against the full-precision vectors and re-sort.
+     */
+    private List<Candidate> rerank(float[] query, List<Candidate> candidates, IntPredicate keep) {
+        List<Candidate> exact = new ArrayList<>(candidates.size());
+        for (Candidate c : candidates) {
+            if (!keep.test(c.slot)) continue;
+            exact.add(new Candidate(c.slot, 1.0 - fullPrecision.dot(c.slot, query)));
+        }
+        exact.sort(Comparator.comparingDouble(c -> c.distance));
+        return exact;
+    }
+
+    /**
+     * Exact scan over every live vector (full precision when available); used to measure recall of the graph search.
+     */
+    List<Result> bruteForce(float[] query, int k) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+            for (int slot = 0; slot < size; slot++) {
+                if (deleted.get(slot)) continue;
+                double d = fullPrecision != null ? 1.0 - fullPrecision.dot(slot, normalized) : distance(normalized, slot);
+                best.add(new Candidate(slot, d));
+                if (best.size() > k) best.poll();
+            }
+            List<Candidate> sorted = new ArrayList<>(best);
+            sorted.sort(Comparator.comparingDouble(c -> c.distance));
+            return sorted.stream().map(c -> new Result(ids[c.slot], attributes[c.slot], c.distance)).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    float[] vectorOf(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            if (slot == null) return null;
+            return fullPrecision != null ? fullPrecision.get(slot) : vectors.get(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int liveCount() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0.0 : (double) deletedCount / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate footprint: mapped graph-store bytes plus on-heap link arrays.
+     * The full-precision store is left out since only re-ranked candidates page it in.
+     */
+    long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long linkBytes = 0;
+            for (int slot = 0; slot < size; slot++) {
+                for (int[] level : links[slot]) {
+                    linkBytes += 16L + level.length * 4L;
+                }
+            }
+            return (long) size * vectors.encoding().bytesFor(dim) + linkBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    // ─── PERSISTENCE ───────────────────────────────────────────────
+
+    /**
+     * Flush mapped vectors and atomically write the graph next to them.
+     */
+    void writeSnapshot(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            vectors.force();
+            if (fullPrecision != null) {
+                fullPrecision.force();
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(dim);
+                out.writeInt(m);
+                out.writeUTF(vectors.encoding().name());
+                out.writeBoolean(fullPrecision != null);
+                out.writeInt(size);
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+                for (int slot = 0; slot < size; slot++) {
+                    out.writeBoolean(deleted.get(slot));
+                    out.writeUTF(ids[slot]);
+                    out.writeUTF(attributes[slot] != null ? attributes[slot] : "");
+                    out.writeByte(links[slot].length);
+                    for (int[] level : links[slot]) {
+                        out.writeShort(level.length);
+                        for (int neighbour : level) {
+                            out.writeInt(neighbour);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Restore the graph written by {@link #writeSnapshot(Path)}. The vector file must be the one the snapshot was taken with.
+     */
+    void readSnapshot(Path file) throws IOException {
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognized HNSW snapshot format: " + file);
+            }
+            if (in.readInt() != dim || in.readInt() != m) {
+                throw new IOException("HNSW snapshot was built with different dimension or M: " + file);
+            }
+            if (!in.readUTF().equals(vectors.encoding().name()) || in.readBoolean() != (fullPrecision != null)) {
+                throw new IOException("HNSW snapshot was built with a different vector encoding: " + file);
+            }
+            int count = in.readInt();
+            int ep = in.readInt();
+            int levelMax = in.readInt();
+
+            ensureCapacity(count);
+            slotById.clear();
+            deleted.clear();
+            deletedCount = 0;
+            for (int slot = 0; slot < count; slot++) {
+                boolean isDeleted = in.readBoolean();
+                ids[slot] = in.readUTF();
+                String attribute = in.readUTF();
+                attributes[slot] = attribute.isEmpty() ? null : attribute;
+                int levels = in.readByte();
+                links[slot] = new int[levels][];
+                for (int l = 0; l < levels; l++) {
+                    int[] level = new int[in.readShort()];
+                    for (int i = 0; i < level.length; i++) {
+                        level[i] = in.readInt();
+                    }
+                    links[slot][l] = level;
+                }
+                if (isDeleted) {
+                    deleted.set(slot);
+                    deletedCount++;
+                } else {
+                    slotById.put(ids[slot], slot);
+                }
+            }
+            size = count;
+            entryPoint = ep;
+            maxLevel = levelMax;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Set<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(slotById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            vectors.close();
+            if (fullPrecision != null) {
+                fullPrecision.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ─── GRAPH INTERNALS ───────────────────────────────────────────
+
+    private int greedyClosest(float[] query, int ep, int level) {
+        int current = ep;
+        double currentDistance = distance(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbour : links[current][level]) {
+                double d = distance(query, neighbour);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbour;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer. Returns up to {@code ef} candidates sorted by ascending distance.
+     */
+    private List<Candidate> searchLayer(float[] query, int ep, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble(c -> c.distance));
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+
+        Candidate start = new Candidate(ep, distance(query, ep));
+        visited.set(ep);
+        frontier.add(start);
+        best.add(start);
+
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (best.size() >= ef && current.distance > best.peek().distance) {
+                break;
+            }
+            for (int neighbour : links[current.slot][level]) {
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+                double d = distance(query, neighbour);
+                if (best.size() < ef || d < best.peek().distance) {
+                    Candidate next = new Candidate(neighbour, d);
+                    frontier.add(next);
+                    best.add(next);
+                    if (best.size() > ef) best.poll();
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(c -> c.distance));
+        return sorted;
+    }
+
+    /**
+     * Layer-0 beam search that walks through every node but only admits ones passing {@code keep}
+     * into the result set, stopping once {@code ef} matches are closer than anything left to expand.
+     */
+    private List<Candidate> searchLayerFiltered(float[] query, int ep, int ef, IntPredicate keep) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble(c -> c.distance));
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+
+        Candidate start = new Candidate(ep, distance(query, ep));
+        visited.set(ep);
+        frontier.add(start);
+        if (keep.test(ep)) best.add(start);
+
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (best.size() >= ef && current.distance > best.peek().distance) {
+                break;
+            }
+            for (int neighbour : links[current.slot][0]) {
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+                double d = distance(query, neighbour);
+                if (best.size() < ef || d < best.peek().distance) {
+                    Candidate next = new Candidate(neighbour, d);
+                    frontier.add(next);
+                    if (keep.test(neighbour)) {
+                        best.add(next);
+                        if (best.size() > ef) best.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(c -> c.distance));
+        return sorted;
+    }
+
+    /**
+     * HNSW neighbour-selection heuristic: keep a candidate only if it is closer to the base
+     * than to every neighbour already kept, then top up with the closest pruned ones.
+     */
+    private int[] selectNeighbours(List<Candidate> sortedCandidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (selected.size() >= max) break;
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (distance(candidate.slot, kept.slot) < candidate.distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+        int[] result = new int[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = selected.get(i).slot;
+        }
+        return result;
+    }
+
+    private void addLink(int from, int to, int level, int maxConnections) {
+        int[] current = links[from][level];
+        if (current.length < maxConnections) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = to;
+            links[from][level] = grown;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        for (int neighbour : current) {
+            candidates.add(new Candidate(neighbour, distance(from, neighbour)));
+        }
+        candidates.add(new Candidate(to, distance(from, to)));
+        candidates.sort(Comparator.comparingDouble(c -> c.distance));
+        links[from][level] = selectNeighbours(candidates, maxConnections);
+    }
+
+    private void markDeleted(int slot) {
+        if (!deleted.get(slot)) {
+            deleted.set(slot);
+            deletedCount++;
+        }
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) Math.floor(-Math.log(Math.max(r, Double.MIN_VALUE)) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) return;
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        attributes = Arrays.copyOf(attributes, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private double distance(float[] query, int slot) {
+        return 1.0 - vectors.dot(slot, query);
+    }
+
+    private double distance(int slotA, int slotB) {
+        return 1.0 - vectors.dot(slotA, slotB);
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) return normalized;
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private record Candidate(int slot, double distance) {
+    }
+
+    /**
+     * A search hit: entity id, its attribute, and cosine distance (lower = closer).
+     */
+    record Result(String id, String attribute, double distance) {
+    }
+}
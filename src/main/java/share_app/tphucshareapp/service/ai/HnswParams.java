@@ -0,0 +1,17 @@
+package share_app.tphucshareapp.service.ai;
+
+/**
+ * HNSW build and query parameters of one vector index. Zero leaves the engine default in place.
+ *
+ * @param m              max links per node and layer (layer 0 keeps twice as many)
+ * @param efConstruction candidate list size while inserting
+ * @param efRuntime      candidate list size while querying
+ * @param initialCap     vectors to pre-allocate for (RediSearch only)
+ */
+public record HnswParams(int m, int efConstruction, int efRuntime, int initialCap) {
+
+    @Override
+    public String toString() {
+        return "M=" + m + " EF_CONSTRUCTION=" + efConstruction + " EF_RUNTIME=" + efRuntime + " INITIAL_CAP=" + initialCap;
+    }
+}
@@ -9,4 +9,6 @@ public interface IAIService {
     CaptionSuggestionResponse suggestCaptions(CaptionSuggestionRequest request);
     EngagementAnalysisResponse analyzeEngagement(String userId, int recentPostCount);
     PostTimingSuggestionResponse suggestPostTiming(String userId);
+    void streamCaptions(CaptionSuggestionRequest request, AIStreamListener listener);
+    void streamEngagementAnalysis(String userId, int recentPostCount, AIStreamListener listener);
 }
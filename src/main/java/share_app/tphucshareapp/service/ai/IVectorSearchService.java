@@ -0,0 +1,61 @@
+package share_app.tphucshareapp.service.ai;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage and KNN search over photo and user embeddings.
+ * Search results are maps holding at least {@code entityId} and {@code score} (cosine distance, lower = closer).
+ */
+public interface IVectorSearchService {
+
+    void storePhotoEmbedding(String photoId, float[] embedding, String userId, List<String> tags, Instant createdAt);
+
+    void storeUserEmbedding(String userId, float[] embedding, String username, String bio);
+
+    /**
+     * KNN over photos; filters in the query are applied before ranking.
+     */
+    List<Map<String, Object>> searchPhotos(VectorQuery query);
+
+    /**
+     * KNN over user profiles; {@link VectorQuery#getExcludeIds()} are user ids.
+     */
+    List<Map<String, Object>> searchUsers(VectorQuery query);
+
+    default List<Map<String, Object>> searchSimilarPhotos(float[] queryEmbedding, int topK, String excludePhotoId) {
+        return searchPhotos(VectorQuery.builder()
+                .vector(queryEmbedding)
+                .topK(topK)
+                .excludeIds(excludePhotoId != null ? Set.of(excludePhotoId) : Set.of())
+                .build());
+    }
+
+    default List<Map<String, Object>> searchSimilarUsers(float[] queryEmbedding, int topK, String excludeUserId) {
+        return searchUsers(VectorQuery.builder()
+                .vector(queryEmbedding)
+                .topK(topK)
+                .excludeIds(excludeUserId != null ? Set.of(excludeUserId) : Set.of())
+                .build());
+    }
+
+    void deletePhotoEmbedding(String photoId);
+
+    void deleteUserEmbedding(String userId);
+
+    boolean hasPhotoEmbedding(String photoId);
+
+    boolean hasUserEmbedding(String userId);
+
+    /**
+     * Stored photo vector, or null if the photo is not indexed.
+     */
+    float[] getPhotoEmbedding(String photoId);
+
+    /**
+     * Stored user interest vector, or null if the user is not indexed.
+     */
+    float[] getUserEmbedding(String userId);
+}
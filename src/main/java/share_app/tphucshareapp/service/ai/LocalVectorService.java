@@ -0,0 +1,329 @@
+package share_app.tphucshareapp.service.ai;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Embedded HNSW vector engine used when Redis Stack is not available or when
+ * {@code ai.vector.engine=local} is set for low-latency KNN without a network hop.
+ * <p>
+ * Vectors live in memory-mapped files under {@code ai.vector.local.data-dir}; the graph is snapshotted
+ * periodically and on shutdown. At startup the snapshot is loaded and reconciled against the
+ * {@code photo_vec:*} / {@code user_vec:*} hashes in Redis, which remain the source of truth.
+ * <p>
+ * With {@code ai.vector.local.quantization=int8} the graph is walked over INT8 codes ({@code .q8} file) and
+ * only the final candidates are re-ranked against the FLOAT32 file, keeping the hot working set ~4x smaller.
+ */
+@Service
+@Slf4j
+public class LocalVectorService implements IVectorSearchService {
+
+    private static final String PHOTO_FILE = "photo";
+    private static final String USER_FILE = "user";
+    private static final double REBUILD_DELETED_RATIO = 0.25;
+    // cosine to the stored user vector above which an update keeps the node's slot and links
+    private static final double USER_UPDATE_IN_PLACE_SIMILARITY = 0.9;
+    private static final char SEP = RedisVectorService.ATTRIBUTE_SEPARATOR;
+
+    // photo node attribute: userId, createdAt epoch seconds, comma-joined tags (same order as the Redis hash read)
+    private static final List<String> PHOTO_ATTRIBUTES = List.of("userId", "createdAt", "tags");
+    private static final List<String> USER_ATTRIBUTES = List.of("userId");
+
+    private final RedisVectorService redisVectorService;
+
+    @Value("${ai.vector.engine:redis}")
+    private String engine;
+
+    @Value("${ai.vector.local.data-dir:./data/vector-index}")
+    private String dataDir;
+
+    @Value("${ai.vector.local.m:16}")
+    private int m;
+
+    @Value("${ai.vector.local.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${ai.vector.local.ef-search:64}")
+    private int efSearch;
+
+    @Value("${ai.vector.local.quantization:none}")
+    private String quantization;
+
+    private volatile HnswIndex photoIndex;
+    private volatile HnswIndex userIndex;
+    private volatile boolean ready = false;
+
+    public LocalVectorService(RedisVectorService redisVectorService) {
+        this.redisVectorService = redisVectorService;
+    }
+
+    public boolean isEnabled() {
+        return !"redis".equalsIgnoreCase(engine);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Open the indexes and bring them in sync with Redis once the app is up,
+     * so a large rebuild never delays startup. Until then {@link #isReady()} is false.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("eventExecutor")
+    public void loadIndexes() {
+        if (!isEnabled()) {
+            log.info("Local vector engine disabled (ai.vector.engine={})", engine);
+            return;
+        }
+        try {
+            Path dir = Paths.get(dataDir);
+            Files.createDirectories(dir);
+            // Publish the indexes before reconciling so writes arriving meanwhile are not lost
+            photoIndex = restoreIndex(dir, PHOTO_FILE);
+            userIndex = restoreIndex(dir, USER_FILE);
+            reconcile(photoIndex, PHOTO_FILE, RedisVectorService.PHOTO_PREFIX, PHOTO_ATTRIBUTES);
+            reconcile(userIndex, USER_FILE, RedisVectorService.USER_PREFIX, USER_ATTRIBUTES);
+            ready = true;
+            log.info("Local vector engine ready: {} photos, {} users", photoIndex.liveCount(), userIndex.liveCount());
+            snapshot();
+        } catch (Exception e) {
+            log.error("Failed to load local vector engine: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Candidates per query, which is also how many a quantized index re-ranks at full precision.
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    private boolean isQuantized() {
+        return "int8".equalsIgnoreCase(quantization);
+    }
+
+    private HnswIndex restoreIndex(Path dir, String name) throws IOException {
+        Path vectorFile = dir.resolve(name + ".vec");
+        Path codeFile = dir.resolve(name + ".q8");
+        Path graphFile = dir.resolve(name + ".hnsw");
+
+        HnswIndex index = null;
+        if (Files.exists(graphFile) && Files.exists(vectorFile) && (!isQuantized() || Files.exists(codeFile))) {
+            HnswIndex restored = newIndex(vectorFile, codeFile);
+            try {
+                restored.readSnapshot(graphFile);
+                if (restored.deletedRatio() <= REBUILD_DELETED_RATIO) {
+                    index = restored;
+                    log.info("Restored '{}' HNSW snapshot with {} vectors", name, index.liveCount());
+                } else {
+                    log.info("'{}' snapshot has {}% tombstones, rebuilding", name, Math.round(restored.deletedRatio() * 100));
+                    restored.close();
+                }
+            } catch (IOException e) {
+                log.warn("Discarding unreadable '{}' snapshot: {}", name, e.getMessage());
+                restored.close();
+            }
+        }
+        if (index == null) {
+            Files.deleteIfExists(graphFile);
+            Files.deleteIfExists(vectorFile);
+            Files.deleteIfExists(codeFile);
+            index = newIndex(vectorFile, codeFile);
+        }
+        return index;
+    }
+
+    /**
+     * Bring an index in line with Redis: add what the snapshot missed, drop what Redis no longer has.
+     */
+    private void reconcile(HnswIndex index, String name, String redisPrefix, List<String> attributeFields) {
+        Set<String> stale = index.ids();
+        int[] added = {0};
+        int seen = redisVectorService.forEachEmbedding(redisPrefix, attributeFields, (id, embedding, attribute) -> {
+            if (!stale.remove(id)) {
+                index.add(id, embedding, attribute);
+                added[0]++;
+            }
+        });
+        stale.forEach(index::remove);
+        log.info("Reconciled '{}' index with Redis: {} scanned, {} added, {} removed", name, seen, added[0], stale.size());
+    }
+
+    private HnswIndex newIndex(Path vectorFile, Path codeFile) throws IOException {
+        int dim = EmbeddingService.EMBEDDING_DIMENSION;
+        MappedVectorStore fullPrecision = new MappedVectorStore(vectorFile, dim);
+        if (!isQuantized()) {
+            return new HnswIndex(fullPrecision, m, efConstruction, efSearch);
+        }
+        return new HnswIndex(new MappedVectorStore(codeFile, dim, VectorEncoding.INT8), fullPrecision,
+                m, efConstruction, efSearch);
+    }
+
+    /**
+     * Size and graph-store encoding of both indexes, for the quantization report.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("encoding", isQuantized() ? VectorEncoding.INT8.name() : VectorEncoding.FLOAT32.name());
+        if (ready) {
+            stats.put("photoVectors", photoIndex.liveCount());
+            stats.put("photoGraphBytes", photoIndex.estimatedBytes());
+            stats.put("userVectors", userIndex.liveCount());
+            stats.put("userGraphBytes", userIndex.estimatedBytes());
+        }
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${ai.vector.local.snapshot-interval-ms:300000}",
+            initialDelayString = "${ai.vector.local.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!ready) return;
+        Path dir = Paths.get(dataDir);
+        try {
+            photoIndex.writeSnapshot(dir.resolve(PHOTO_FILE + ".hnsw"));
+            userIndex.writeSnapshot(dir.resolve(USER_FILE + ".hnsw"));
+            log.debug("Wrote local vector index snapshots to {}", dir);
+        } catch (IOException e) {
+            log.warn("Failed to snapshot local vector indexes: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!ready) return;
+        snapshot();
+        ready = false;
+        try {
+            photoIndex.close();
+            userIndex.close();
+        } catch (IOException e) {
+            log.warn("Failed to close local vector indexes: {}", e.getMessage());
+        }
+    }
+
+    // ─── IVectorSearchService ──────────────────────────────────────
+
+    @Override
+    public void storePhotoEmbedding(String photoId, float[] embedding, String userId, List<String> tags, Instant createdAt) {
+        if (photoIndex == null) return;
+        String attribute = (userId != null ? userId : "") + SEP
+                + (createdAt != null ? createdAt.getEpochSecond() : "") + SEP
+                + (tags != null ? String.join(",", tags) : "");
+        photoIndex.add(photoId, embedding, attribute);
+    }
+
+    @Override
+    public void storeUserEmbedding(String userId, float[] embedding, String username, String bio) {
+        if (userIndex == null) return;
+        // interest updates move a user a little at a time; only a profile rebuild that moves it far re-links it
+        if (!userIndex.update(userId, embedding, USER_UPDATE_IN_PLACE_SIMILARITY)) {
+            userIndex.add(userId, embedding, userId);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> searchPhotos(VectorQuery query) {
+        if (!ready) return Collections.emptyList();
+        BiPredicate<String, String> filter = query.hasFilters() ? photoFilter(query) : null;
+        return toResults(photoIndex.search(query.getVector(), query.getTopK(), efFor(query), filter), "photoId");
+    }
+
+    @Override
+    public List<Map<String, Object>> searchUsers(VectorQuery query) {
+        if (!ready) return Collections.emptyList();
+        Set<String> excluded = query.getExcludeIds();
+        BiPredicate<String, String> filter = excluded.isEmpty() ? null : (id, attribute) -> !excluded.contains(id);
+        return toResults(userIndex.search(query.getVector(), query.getTopK(), efFor(query), filter), "userId");
+    }
+
+    private int efFor(VectorQuery query) {
+        return query.getEfRuntime() != null ? query.getEfRuntime() : efSearch;
+    }
+
+    /**
+     * Same semantics as the RediSearch pre-filter in {@link RedisVectorService}, evaluated on the node attribute.
+     */
+    private BiPredicate<String, String> photoFilter(VectorQuery query) {
+        Set<String> excludeIds = query.getExcludeIds();
+        Set<String> excludeAuthors = query.getExcludeAuthors();
+        Set<String> requiredTags = query.getRequiredTags();
+        long createdAfter = query.getCreatedAfter() != null ? query.getCreatedAfter().getEpochSecond() : Long.MIN_VALUE;
+
+        return (id, attribute) -> {
+            if (excludeIds.contains(id)) return false;
+            String[] parts = attribute != null ? attribute.split(String.valueOf(SEP), -1) : new String[0];
+            String userId = parts.length > 0 ? parts[0] : "";
+            if (excludeAuthors.contains(userId)) return false;
+            if (createdAfter != Long.MIN_VALUE) {
+                if (parts.length < 2 || parts[1].isEmpty() || Long.parseLong(parts[1]) < createdAfter) return false;
+            }
+            if (!requiredTags.isEmpty()) {
+                if (parts.length < 3) return false;
+                List<String> tags = Arrays.asList(parts[2].split(","));
+                if (!tags.containsAll(requiredTags)) return false;
+            }
+            return true;
+        };
+    }
+
+    @Override
+    public void deletePhotoEmbedding(String photoId) {
+        if (photoIndex != null) photoIndex.remove(photoId);
+    }
+
+    @Override
+    public void deleteUserEmbedding(String userId) {
+        if (userIndex != null) userIndex.remove(userId);
+    }
+
+    @Override
+    public boolean hasPhotoEmbedding(String photoId) {
+        return photoIndex != null && photoIndex.contains(photoId);
+    }
+
+    @Override
+    public boolean hasUserEmbedding(String userId) {
+        return userIndex != null && userIndex.contains(userId);
+    }
+
+    @Override
+    public float[] getPhotoEmbedding(String photoId) {
+        return photoIndex != null ? photoIndex.vectorOf(photoId) : null;
+    }
+
+    @Override
+    public float[] getUserEmbedding(String userId) {
+        return userIndex != null ? userIndex.vectorOf(userId) : null;
+    }
+
+    /**
+     * Shape hits like {@link RedisVectorService} results so callers don't care which engine answered.
+     */
+    private List<Map<String, Object>> toResults(List<HnswIndex.Result> hits, String idField) {
+        List<Map<String, Object>> results = new ArrayList<>(hits.size());
+        for (HnswIndex.Result hit : hits) {
+            Map<String, Object> doc = new HashMap<>();
+            doc.put(idField, hit.id());
+            doc.put("entityId", hit.id());
+            doc.put("score", hit.distance());
+            results.add(doc);
+        }
+        return results;
+    }
+}
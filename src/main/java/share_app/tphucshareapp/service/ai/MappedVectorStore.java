@@ -0,0 +1,225 @@
+package share_app.tphucshareapp.service.ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap vector storage backed by a memory-mapped file.
+ * Vectors are addressed by a dense slot number and laid out back to back in fixed-size mapped segments,
+ * so the heap only holds the segment handles no matter how many vectors are stored.
+ * <p>
+ * {@link VectorEncoding#FLOAT32} keeps full precision; {@link VectorEncoding#INT8} stores a per-vector scale
+ * plus one byte per component, shrinking the pages touched by a graph walk about 4x.
+ * <p>
+ * Not thread-safe on its own: {@link HnswIndex} guards writes with its lock.
+ */
+class MappedVectorStore implements Closeable {
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final int dim;
+    private final VectorEncoding encoding;
+    private final int vectorBytes;
+    private final int vectorsPerSegment;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FloatBuffer> floatViews = new ArrayList<>();
+    private final ThreadLocal<float[]> scratch;
+    private final ThreadLocal<byte[]> byteScratch;
+
+    MappedVectorStore(Path file, int dim) throws IOException {
+        this(file, dim, VectorEncoding.FLOAT32);
+    }
+
+    MappedVectorStore(Path file, int dim, VectorEncoding encoding) throws IOException {
+        this.dim = dim;
+        this.encoding = encoding;
+        this.vectorBytes = encoding.bytesFor(dim);
+        this.vectorsPerSegment = (int) (SEGMENT_BYTES / vectorBytes);
+        this.scratch = ThreadLocal.withInitial(() -> new float[dim]);
+        this.byteScratch = ThreadLocal.withInitial(() -> new byte[vectorBytes]);
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long segmentSize = (long) vectorsPerSegment * vectorBytes;
+        long existing = (channel.size() + segmentSize - 1) / segmentSize;
+        for (int i = 0; i < existing; i++) {
+            mapSegment(i);
+        }
+    }
+
+    int dimension() {
+        return dim;
+    }
+
+    VectorEncoding encoding() {
+        return encoding;
+    }
+
+    void put(int slot, float[] vector) {
+        ensureMapped(slot);
+        if (encoding == VectorEncoding.FLOAT32) {
+            viewFor(slot).put(floatOffsetOf(slot), vector, 0, dim);
+        } else {
+            segmentFor(slot).put(byteOffsetOf(slot), encoding.encode(vector));
+        }
+    }
+
+    float[] get(int slot) {
+        if (encoding == VectorEncoding.FLOAT32) {
+            float[] vector = new float[dim];
+            viewFor(slot).get(floatOffsetOf(slot), vector, 0, dim);
+            return vector;
+        }
+        byte[] bytes = new byte[vectorBytes];
+        segmentFor(slot).get(byteOffsetOf(slot), bytes);
+        return encoding.decode(bytes);
+    }
+
+    /**
+     * Dot product between a stored vector and an on-heap query.
+     * The stored vector is bulk-copied into a per-thread scratch array so the loop runs on plain primitives.
+     */
+    float dot(int slot, float[] query) {
+        if (encoding == VectorEncoding.FLOAT32) {
+            float[] stored = scratch.get();
+            viewFor(slot).get(floatOffsetOf(slot), stored, 0, dim);
+            return dot(stored, query, dim);
+        }
+        if (encoding == VectorEncoding.INT8) {
+            MappedByteBuffer segment = segmentFor(slot);
+            int offset = byteOffsetOf(slot);
+            byte[] codes = byteScratch.get();
+            segment.get(offset + Float.BYTES, codes, 0, dim);
+            return segment.getFloat(offset) * dot(codes, query, dim);
+        }
+        return dot(get(slot), query, dim);
+    }
+
+    /**
+     * Dot product between two stored vectors.
+     */
+    float dot(int slotA, int slotB) {
+        if (encoding == VectorEncoding.INT8) {
+            MappedByteBuffer segmentA = segmentFor(slotA);
+            MappedByteBuffer segmentB = segmentFor(slotB);
+            int offsetA = byteOffsetOf(slotA);
+            int offsetB = byteOffsetOf(slotB);
+            byte[] a = new byte[dim];
+            byte[] b = byteScratch.get();
+            segmentA.get(offsetA + Float.BYTES, a, 0, dim);
+            segmentB.get(offsetB + Float.BYTES, b, 0, dim);
+            int sum = 0;
+            for (int i = 0; i < dim; i++) {
+                sum += a[i] * b[i];
+            }
+            return segmentA.getFloat(offsetA) * segmentB.getFloat(offsetB) * sum;
+        }
+        float[] a = get(slotA);
+        if (encoding != VectorEncoding.FLOAT32) {
+            return dot(a, get(slotB), dim);
+        }
+        float[] b = scratch.get();
+        viewFor(slotB).get(floatOffsetOf(slotB), b, 0, dim);
+        return dot(a, b, dim);
+    }
+
+    private static float dot(byte[] codes, float[] query, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += codes[i] * query[i];
+            s1 += codes[i + 1] * query[i + 1];
+            s2 += codes[i + 2] * query[i + 2];
+            s3 += codes[i + 3] * query[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += codes[i] * query[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    static float dot(float[] a, float[] b, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    long mappedBytes() {
+        return (long) segments.size() * vectorsPerSegment * vectorBytes;
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        segments.clear();
+        floatViews.clear();
+        channel.close();
+    }
+
+    private int floatOffsetOf(int slot) {
+        return (slot % vectorsPerSegment) * dim;
+    }
+
+    private int byteOffsetOf(int slot) {
+        return (slot % vectorsPerSegment) * vectorBytes;
+    }
+
+    private MappedByteBuffer segmentFor(int slot) {
+        int index = slot / vectorsPerSegment;
+        if (index >= segments.size()) {
+            throw new IndexOutOfBoundsException("Vector slot " + slot + " is not mapped");
+        }
+        return segments.get(index);
+    }
+
+    private FloatBuffer viewFor(int slot) {
+        int index = slot / vectorsPerSegment;
+        if (index >= floatViews.size()) {
+            throw new IndexOutOfBoundsException("Vector slot " + slot + " is not mapped");
+        }
+        return floatViews.get(index);
+    }
+
+    private void ensureMapped(int slot) {
+        int index = slot / vectorsPerSegment;
+        try {
+            while (segments.size() <= index) {
+                mapSegment(segments.size());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to grow mapped vector file", e);
+        }
+    }
+
+    private void mapSegment(int index) throws IOException {
+        long segmentSize = (long) vectorsPerSegment * vectorBytes;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, index * segmentSize, segmentSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        segments.add(buffer);
+        floatViews.add(buffer.asFloatBuffer());
+    }
+}
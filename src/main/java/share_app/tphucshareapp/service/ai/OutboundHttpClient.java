@@ -0,0 +1,365 @@
+package share_app.tphucshareapp.service.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Shared client for outbound AI HTTP calls.
+ * <p>
+ * One pooled keep-alive {@link HttpClient} serves every dependency. Each dependency ({@link #GENERATE},
+ * {@link #EMBED}) has its own timeout, a semaphore bulkhead that caps concurrent calls, a
+ * {@link CircuitBreaker}, and optionally a hedged second attempt when the first has not answered within
+ * {@code hedge-delay-ms}. A call that is rejected, short-circuited, times out or fails returns {@code null},
+ * so callers fall through to their existing fallbacks instead of holding request threads.
+ * <p>
+ * Streaming calls ({@link #streamLines}) share the same bulkhead and breaker; they are bounded by
+ * {@code ai.http.stream-timeout-ms} overall and should run on a virtual thread.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboundHttpClient {
+
+    public static final String GENERATE = "gemini-generate";
+    public static final String EMBED = "gemini-embed";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${ai.http.acquire-timeout-ms:100}")
+    private long acquireTimeoutMs;
+
+    @Value("${ai.http.stream-timeout-ms:60000}")
+    private long streamTimeoutMs;
+
+    @Value("${ai.http.breaker.window:20}")
+    private int breakerWindow;
+
+    @Value("${ai.http.breaker.minimum-calls:10}")
+    private int breakerMinimumCalls;
+
+    @Value("${ai.http.breaker.failure-rate:0.5}")
+    private double breakerFailureRate;
+
+    @Value("${ai.http.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    @Value("${ai.http.generate.max-concurrent:16}")
+    private int generateMaxConcurrent;
+
+    @Value("${ai.http.generate.timeout-ms:15000}")
+    private long generateTimeoutMs;
+
+    @Value("${ai.http.generate.hedge-delay-ms:0}")
+    private long generateHedgeDelayMs;
+
+    @Value("${ai.http.embed.max-concurrent:8}")
+    private int embedMaxConcurrent;
+
+    @Value("${ai.http.embed.timeout-ms:5000}")
+    private long embedTimeoutMs;
+
+    @Value("${ai.http.embed.hedge-delay-ms:0}")
+    private long embedHedgeDelayMs;
+
+    private ExecutorService executor;
+    private HttpClient httpClient;
+    private final Map<String, Dependency> dependencies = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+        register(GENERATE, generateMaxConcurrent, generateTimeoutMs, generateHedgeDelayMs);
+        register(EMBED, embedMaxConcurrent, embedTimeoutMs, embedHedgeDelayMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * POST a JSON body and return the response body of a 2xx answer, or {@code null} if the call was
+     * rejected by the bulkhead, short-circuited by the breaker, timed out or failed.
+     */
+    public String postJson(String dependency, String url, String json) {
+        Dependency d = dependency(dependency);
+        if (!permit(d)) return null;
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        CompletableFuture<HttpResponse<String>> call = null;
+        try {
+            call = send(d, jsonRequest(d, url, json));
+            HttpResponse<String> response = call.get(d.timeout.toMillis() + d.hedgeDelayMs, TimeUnit.MILLISECONDS);
+
+            outcome = onStatus(d, response.statusCode());
+            return "success".equals(outcome) ? response.body() : null;
+        } catch (TimeoutException e) {
+            d.breaker.onFailure();
+            outcome = "timeout";
+            log.warn("{} timed out after {} ms", d.name, d.timeout.toMillis());
+        } catch (ExecutionException e) {
+            d.breaker.onFailure();
+            outcome = e.getCause() instanceof HttpTimeoutException ? "timeout" : "error";
+            log.warn("{} call failed: {}", d.name, String.valueOf(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            d.breaker.release();
+            outcome = "interrupted";
+        } finally {
+            if (call != null) call.cancel(true);
+            d.bulkhead.release();
+            d.record(outcome, System.nanoTime() - start);
+        }
+        return null;
+    }
+
+    /**
+     * POST a JSON body and feed each line of a 2xx response body to {@code onLine} as it arrives, until the
+     * body ends or {@code onLine} returns {@code false}. Returns whether the response was read successfully;
+     * on {@code false} the caller falls back as for {@link #postJson}. {@code timeout-ms} bounds the wait for
+     * the response headers, {@code ai.http.stream-timeout-ms} the whole exchange.
+     */
+    public boolean streamLines(String dependency, String url, String json, Predicate<String> onLine) {
+        Dependency d = dependency(dependency);
+        if (!permit(d)) return false;
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        CompletableFuture<HttpResponse<Stream<String>>> call = null;
+        try {
+            call = httpClient.sendAsync(jsonRequest(d, url, json), HttpResponse.BodyHandlers.ofLines());
+            HttpResponse<Stream<String>> response = call.get(d.timeout.toMillis(), TimeUnit.MILLISECONDS);
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() / 100 != 2) {
+                    outcome = onStatus(d, response.statusCode());
+                    return false;
+                }
+
+                // closing the body aborts a read that is stuck past the deadline
+                CompletableFuture<Void> watchdog = CompletableFuture.runAsync(lines::close,
+                        CompletableFuture.delayedExecutor(streamTimeoutMs, TimeUnit.MILLISECONDS, executor));
+                try {
+                    Iterator<String> it = lines.iterator();
+                    while (it.hasNext()) {
+                        if (!onLine.test(it.next())) break;
+                    }
+                } finally {
+                    watchdog.cancel(false);
+                }
+                // a stream that breaks midway is a failure, so success is only recorded at the end
+                d.breaker.onSuccess();
+                outcome = "success";
+                return true;
+            }
+        } catch (TimeoutException e) {
+            d.breaker.onFailure();
+            outcome = "timeout";
+            log.warn("{} stream timed out waiting for headers after {} ms", d.name, d.timeout.toMillis());
+        } catch (ExecutionException | UncheckedIOException | IllegalStateException e) {
+            d.breaker.onFailure();
+            outcome = "error";
+            log.warn("{} stream failed: {}", d.name, String.valueOf(e.getCause() != null ? e.getCause() : e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            d.breaker.release();
+            outcome = "interrupted";
+        } finally {
+            if (call != null) call.cancel(true);
+            d.bulkhead.release();
+            d.record(outcome, System.nanoTime() - start);
+        }
+        return false;
+    }
+
+    /**
+     * Per-dependency breaker state and counters.
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        dependencies.forEach((name, d) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("breaker", d.breaker.state().name());
+            entry.put("failureRate", Math.round(d.breaker.failureRate() * 1000) / 1000.0);
+            entry.put("inFlight", d.maxConcurrent - d.bulkhead.availablePermits());
+            entry.put("maxConcurrent", d.maxConcurrent);
+            entry.put("timeoutMs", d.timeout.toMillis());
+            entry.put("hedgeDelayMs", d.hedgeDelayMs);
+            entry.put("hedges", (long) d.hedges.count());
+            entry.put("outcomes", d.outcomeCounts());
+            status.put(name, entry);
+        });
+        return status;
+    }
+
+    /**
+     * Send {@code request}; with hedging enabled, fire a second identical request if the first has not
+     * completed after the hedge delay and answer with whichever succeeds first.
+     */
+    private CompletableFuture<HttpResponse<String>> send(Dependency d, HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> primary = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        if (d.hedgeDelayMs <= 0) return primary;
+
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        List<CompletableFuture<HttpResponse<String>>> attempts = new CopyOnWriteArrayList<>(List.of(primary));
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<HttpResponse<String>, Throwable> settle = (response, error) -> {
+            boolean succeeded = error == null && response.statusCode() / 100 == 2;
+            // a failed attempt only decides the result once no other attempt is still running
+            if (succeeded || pending.decrementAndGet() == 0) {
+                if (error != null) result.completeExceptionally(error);
+                else result.complete(response);
+            }
+        };
+        primary.whenComplete(settle);
+
+        CompletableFuture.delayedExecutor(d.hedgeDelayMs, TimeUnit.MILLISECONDS, executor).execute(() -> {
+            if (result.isDone()) return;
+            pending.incrementAndGet();
+            d.hedges.increment();
+            CompletableFuture<HttpResponse<String>> hedge = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            attempts.add(hedge);
+            hedge.whenComplete(settle);
+            if (result.isDone()) hedge.cancel(true);
+        });
+        // abort the slower attempt as soon as the call is decided
+        result.whenComplete((response, error) -> attempts.forEach(a -> a.cancel(true)));
+        return result;
+    }
+
+    private Dependency dependency(String name) {
+        Dependency d = dependencies.get(name);
+        if (d == null) {
+            throw new IllegalArgumentException("Unknown outbound dependency: " + name);
+        }
+        return d;
+    }
+
+    /**
+     * Pass the breaker and take a bulkhead slot; on {@code true} the caller must release the slot.
+     */
+    private boolean permit(Dependency d) {
+        if (!d.breaker.tryAcquire()) {
+            d.record("short_circuited", 0);
+            return false;
+        }
+        if (!acquire(d.bulkhead)) {
+            d.breaker.release();
+            d.record("rejected", 0);
+            log.warn("{} bulkhead full ({} concurrent calls), using fallback", d.name, d.maxConcurrent);
+            return false;
+        }
+        return true;
+    }
+
+    private HttpRequest jsonRequest(Dependency d, String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(d.timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    /**
+     * Record a response status with the breaker and return the call outcome.
+     */
+    private String onStatus(Dependency d, int status) {
+        if (status / 100 == 2) {
+            d.breaker.onSuccess();
+            return "success";
+        }
+        // client errors say nothing about the dependency's health
+        if (status == 429 || status >= 500) d.breaker.onFailure();
+        else d.breaker.onSuccess();
+        log.warn("{} returned HTTP {}", d.name, status);
+        return "http_" + status / 100 + "xx";
+    }
+
+    private boolean acquire(Semaphore bulkhead) {
+        try {
+            return bulkhead.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void register(String name, int maxConcurrent, long timeoutMs, long hedgeDelayMs) {
+        Dependency d = new Dependency(name, maxConcurrent, Duration.ofMillis(timeoutMs), hedgeDelayMs,
+                new CircuitBreaker(breakerWindow, breakerMinimumCalls, breakerFailureRate, breakerOpenMs),
+                Counter.builder("ai.http.client.hedges").tag("dependency", name).register(meterRegistry));
+        Gauge.builder("ai.http.client.in.flight", d, x -> x.maxConcurrent - x.bulkhead.availablePermits())
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("ai.http.client.breaker.open", d, x -> x.breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("dependency", name)
+                .register(meterRegistry);
+        dependencies.put(name, d);
+    }
+
+    private final class Dependency {
+        final String name;
+        final int maxConcurrent;
+        final Duration timeout;
+        final long hedgeDelayMs;
+        final Semaphore bulkhead;
+        final CircuitBreaker breaker;
+        final Counter hedges;
+        final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+        Dependency(String name, int maxConcurrent, Duration timeout, long hedgeDelayMs,
+                   CircuitBreaker breaker, Counter hedges) {
+            this.name = name;
+            this.maxConcurrent = maxConcurrent;
+            this.timeout = timeout;
+            this.hedgeDelayMs = hedgeDelayMs;
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.breaker = breaker;
+            this.hedges = hedges;
+        }
+
+        void record(String outcome, long nanos) {
+            timers.computeIfAbsent(outcome, o -> Timer.builder("ai.http.client.requests")
+                            .tag("dependency", name)
+                            .tag("outcome", o)
+                            .register(meterRegistry))
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        Map<String, Long> outcomeCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            timers.forEach((outcome, timer) -> counts.put(outcome, timer.count()));
+            return counts;
+        }
+    }
+}
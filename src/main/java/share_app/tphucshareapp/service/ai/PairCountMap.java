@@ -0,0 +1,90 @@
+package share_app.tphucshareapp.service.ai;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing {@code (int, int) -> float} accumulator for sparse co-occurrence counts.
+ * <p>
+ * Pairs are unordered and packed into one {@code long} key, so an entry costs 12 bytes of array slots
+ * instead of a boxed {@code HashMap} node.
+ */
+final class PairCountMap {
+
+    private static final long EMPTY = -1L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private float[] values;
+    private int size;
+    private int mask;
+
+    PairCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Add {@code delta} to the count of the unordered pair {@code (a, b)}; both must be non-negative.
+     */
+    void add(int a, int b, float delta) {
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(PairConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key != EMPTY) {
+                consumer.accept((int) (key >>> 32), (int) key, values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface PairConsumer {
+        void accept(int a, int b, float value);
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new float[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        float[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slotOf(oldKeys[i]);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
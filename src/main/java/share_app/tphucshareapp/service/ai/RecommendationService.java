@@ -2,7 +2,12 @@ package share_app.tphucshareapp.service.ai;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.dto.response.recommendation.RecommendedUserResponse;
@@ -15,14 +20,19 @@ import share_app.tphucshareapp.repository.FollowRepository;
 import share_app.tphucshareapp.repository.PhotoRepository;
 import share_app.tphucshareapp.repository.UserRepository;
 import share_app.tphucshareapp.service.photo.PhotoConversionService;
+import share_app.tphucshareapp.service.photo.TrendingPoolService;
+import share_app.tphucshareapp.service.user.PopularUserService;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
- * AI Recommendation Service using Redis Vector Search with Gemini embeddings.
+ * AI Recommendation Service using vector search (Redis Stack or the embedded HNSW engine) with Gemini embeddings.
  * <p>
- * - Related Posts: given a photo, find the most similar photos by embedding cosine similarity.
+ * - Related Posts: given a photo, blend photos co-engaged by the same users with the most similar photos
+ *   by embedding cosine similarity.
  * - Suggested Users: given a user, find users with similar interest profiles.
  */
 @Service
@@ -30,174 +40,430 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RecommendationService {
 
+    // dropped by FollowService when the user follows or unfollows someone
+    public static final String SUGGESTIONS_CACHE_KEY = "suggested_users:";
+    // candidates ranked and cached per user; requests up to this size are served from the cache
+    private static final int SUGGESTION_POOL_SIZE = 30;
+
+    /**
+     * Result of indexing one photo or user: SKIPPED when there is no text to embed.
+     */
+    public enum IndexOutcome {INDEXED, SKIPPED, FAILED}
+
+    private static final String RELATED_CACHE_KEY = "related:photo:";
+    // related ids cached per photo; covers co-engagement neighbours being dropped at hydration
+    private static final int RELATED_POOL_SIZE = 30;
+
     private final EmbeddingService embeddingService;
-    private final RedisVectorService redisVectorService;
+    private final IVectorSearchService vectorSearchService;
     private final PhotoRepository photoRepository;
     private final UserRepository userRepository;
     private final FavoriteRepository favoriteRepository;
     private final FollowRepository followRepository;
     private final PhotoConversionService photoConversionService;
+    private final UserTagHistogramService tagHistogramService;
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PopularUserService popularUserService;
+    private final CoEngagementService coEngagementService;
+    private final TrendingPoolService trendingPoolService;
+
+    @Value("${ai.suggestions.cache-ttl-minutes:5}")
+    private long suggestionsCacheTtlMinutes;
+
+    @Value("${ai.related.cache-ttl-minutes:60}")
+    private long relatedCacheTtlMinutes;
+
+    @Value("${ai.related.viewer-cache-ttl-minutes:10}")
+    private long relatedViewerCacheTtlMinutes;
+
+    @Value("${ai.related.max-age-days:0}")
+    private long relatedMaxAgeDays;
+
+    @Value("${ai.related.precompute-count:200}")
+    private int relatedPrecomputeCount;
 
     // ─── RELATED POSTS ─────────────────────────────────────────────
 
     /**
-     * Get photos similar to the given photo using vector similarity.
-     * Falls back to tag-based matching if embedding is unavailable.
+     * Get photos related to the given photo by blending precomputed co-engagement neighbours
+     * ("people who liked this also liked") with vector similarity neighbours.
+     * Falls back to tag-based matching if neither source has results.
+     * <p>
+     * The KNN pre-filter leaves out photos older than {@code ai.related.max-age-days} (0 = no limit), photos
+     * without {@code tag} when one is given and, for a signed-in viewer, their own photos and those of the
+     * people they follow, which their feed already shows. Co-engagement neighbours come from outside the
+     * index and are checked against the same rules at hydration.
+     * <p>
+     * The anonymous list is cached per photo (and tag) for {@code ai.related.cache-ttl-minutes}, and trending
+     * photos have it precomputed by {@link #precomputeTrendingRelated()}. A viewer's list depends on who they
+     * follow, so it is cached per viewer for the shorter {@code ai.related.viewer-cache-ttl-minutes}.
      */
-    public List<PhotoResponse> getRelatedPhotos(String photoId, int limit, User currentUser) {
-        log.info("Getting related photos for photoId: {}, limit: {}", photoId, limit);
+    public List<PhotoResponse> getRelatedPhotos(String photoId, int limit, User currentUser, String tag) {
+        log.info("Getting related photos for photoId: {}, limit: {}, tag: {}", photoId, limit, tag);
+
+        RelatedFilter filter = relatedFilter(currentUser, tag);
+        String cacheKey = relatedCacheKey(photoId, currentUser, filter.tag());
+        List<String> photoIds = getCachedRelatedIds(cacheKey, limit);
+        Photo sourcePhoto = null;
+        if (photoIds == null) {
+            sourcePhoto = photoRepository.findById(photoId).orElse(null);
+            if (sourcePhoto == null) {
+                log.warn("Source photo not found: {}", photoId);
+                return Collections.emptyList();
+            }
+            photoIds = computeRelatedPhotoIds(sourcePhoto, Math.max(limit, RELATED_POOL_SIZE), filter);
+            cacheRelatedIds(cacheKey, photoIds, currentUser != null ? relatedViewerCacheTtlMinutes : relatedCacheTtlMinutes);
+        }
 
-        Photo sourcePhoto = photoRepository.findById(photoId).orElse(null);
+        if (!photoIds.isEmpty()) {
+            Map<String, Photo> photoMap = photoRepository.findAllById(photoIds).stream()
+                    .collect(Collectors.toMap(Photo::getId, p -> p));
+
+            // Maintain blended order; co-engagement neighbours have not been filtered yet
+            List<Photo> related = new ArrayList<>();
+            for (String pid : photoIds) {
+                Photo p = photoMap.get(pid);
+                if (p == null || !filter.accepts(p)) continue;
+                related.add(p);
+                if (related.size() >= limit) break;
+            }
+            if (!related.isEmpty()) {
+                log.info("Found {} related photos for {}", related.size(), photoId);
+                return photoConversionService.convertToPhotoResponses(related, currentUser);
+            }
+        }
+
+        // Fallback: tag-based matching
         if (sourcePhoto == null) {
-            log.warn("Source photo not found: {}", photoId);
-            return Collections.emptyList();
+            sourcePhoto = photoRepository.findById(photoId).orElse(null);
+            if (sourcePhoto == null) return Collections.emptyList();
         }
+        return getRelatedPhotosByTags(sourcePhoto, limit, currentUser, filter);
+    }
+
+    /**
+     * What related photos are restricted to: authors to leave out, a tag every photo must carry and the
+     * oldest creation time. Applied in the KNN pre-filter and again to photos from other sources.
+     */
+    private record RelatedFilter(Set<String> excludedAuthors, String tag, Instant createdAfter) {
+
+        boolean accepts(Photo photo) {
+            if (photo.getUser() != null && excludedAuthors.contains(photo.getUser().getUserId())) return false;
+            if (tag != null && (photo.getTags() == null || !photo.getTags().contains(tag))) return false;
+            return createdAfter == null || (photo.getCreatedAt() != null && !photo.getCreatedAt().isBefore(createdAfter));
+        }
+    }
+
+    private RelatedFilter relatedFilter(User viewer, String tag) {
+        Set<String> excludedAuthors = Set.of();
+        if (viewer != null) {
+            excludedAuthors = new HashSet<>(getFollowingIds(viewer.getId()));
+            excludedAuthors.add(viewer.getId());
+        }
+        String requiredTag = tag != null && !tag.isBlank() ? tag.trim() : null;
+        Instant createdAfter = relatedMaxAgeDays > 0 ? Instant.now().minus(Duration.ofDays(relatedMaxAgeDays)) : null;
+        return new RelatedFilter(excludedAuthors, requiredTag, createdAfter);
+    }
+
+    private static String relatedCacheKey(String photoId, User viewer, String tag) {
+        StringBuilder key = new StringBuilder(RELATED_CACHE_KEY).append(photoId);
+        if (viewer != null) key.append(":viewer:").append(viewer.getId());
+        if (tag != null) key.append(":tag:").append(tag);
+        return key.toString();
+    }
 
-        // Try vector similarity search first
+    /**
+     * Blend co-engagement and vector neighbours of a photo into one ranked id list of up to {@code size} ids.
+     * Only the vector neighbours are restricted by {@code filter}.
+     */
+    private List<String> computeRelatedPhotoIds(Photo sourcePhoto, int size, RelatedFilter filter) {
+        String photoId = sourcePhoto.getId();
+
+        // Co-engagement neighbours work for photos without captions and cost a single key lookup
+        List<String> coEngaged = coEngagementService.getNeighbours(photoId);
+
+        List<String> similar = Collections.emptyList();
         try {
             // Ensure source photo has an embedding
             ensurePhotoEmbedding(sourcePhoto);
 
-            // Build query embedding from this photo
-            String photoText = embeddingService.buildPhotoText(sourcePhoto.getCaption(), sourcePhoto.getTags());
-            float[] queryEmbedding = embeddingService.generateEmbedding(photoText);
+            // Query with the stored vector; only embed again if it could not be stored
+            float[] queryEmbedding = vectorSearchService.getPhotoEmbedding(photoId);
+            if (queryEmbedding == null) {
+                String photoText = embeddingService.buildPhotoText(sourcePhoto.getCaption(), sourcePhoto.getTags());
+                queryEmbedding = embeddingService.generateEmbedding(photoText);
+            }
 
             if (queryEmbedding != null) {
-                List<Map<String, Object>> results = redisVectorService.searchSimilarPhotos(queryEmbedding, limit, photoId);
+                VectorQuery query = VectorQuery.builder()
+                        .vector(queryEmbedding)
+                        .topK(size)
+                        .excludeIds(Set.of(photoId))
+                        .excludeAuthors(filter.excludedAuthors())
+                        .requiredTags(filter.tag() != null ? Set.of(filter.tag()) : Set.of())
+                        .createdAfter(filter.createdAfter())
+                        .build();
+                similar = vectorSearchService.searchPhotos(query).stream()
+                        .map(r -> (String) r.get("entityId"))
+                        .filter(Objects::nonNull)
+                        .toList();
+            }
+        } catch (Exception e) {
+            log.warn("Vector search failed for related photos: {}", e.getMessage());
+        }
 
-                if (!results.isEmpty()) {
-                    List<String> photoIds = results.stream()
-                            .map(r -> (String) r.get("entityId"))
-                            .filter(Objects::nonNull)
-                            .toList();
-
-                    List<Photo> photos = photoRepository.findAllById(photoIds);
-
-                    // Maintain order from vector search
-                    Map<String, Photo> photoMap = photos.stream().collect(Collectors.toMap(Photo::getId, p -> p));
-                    List<PhotoResponse> responses = new ArrayList<>();
-                    for (String pid : photoIds) {
-                        Photo p = photoMap.get(pid);
-                        if (p != null) {
-                            responses.add(photoConversionService.convertToPhotoResponse(p, currentUser));
-                        }
-                    }
-                    log.info("Found {} related photos via vector search for {}", responses.size(), photoId);
-                    return responses;
-                }
+        List<String> blended = interleave(coEngaged, similar, photoId);
+        return blended.size() > size ? new ArrayList<>(blended.subList(0, size)) : blended;
+    }
+
+    /**
+     * Cached related ids that can serve {@code limit}, or null on a miss.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> getCachedRelatedIds(String cacheKey, int limit) {
+        try {
+            List<String> cached = (List<String>) redisTemplate.opsForValue().get(cacheKey);
+            if (cached != null && (cached.size() >= limit || cached.size() < RELATED_POOL_SIZE)) {
+                return cached;
             }
         } catch (Exception e) {
-            log.warn("Vector search failed for related photos, falling back to tags: {}", e.getMessage());
+            log.warn("Failed to read related photos cache {}: {}", cacheKey, e.getMessage());
         }
+        return null;
+    }
 
-        // Fallback: tag-based matching
-        return getRelatedPhotosByTags(sourcePhoto, limit, currentUser);
+    private void cacheRelatedIds(String cacheKey, List<String> photoIds, long ttlMinutes) {
+        if (photoIds.isEmpty()) return;
+        try {
+            redisTemplate.opsForValue().set(cacheKey, photoIds, Duration.ofMinutes(ttlMinutes));
+        } catch (Exception e) {
+            log.warn("Failed to cache related photos {}: {}", cacheKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the cached anonymous related list of a photo, e.g. after it is deleted or re-embedded.
+     * Per-viewer and per-tag lists run out with their TTL.
+     */
+    public void invalidateRelatedPhotos(String photoId) {
+        try {
+            redisTemplate.delete(RELATED_CACHE_KEY + photoId);
+        } catch (Exception e) {
+            log.warn("Failed to invalidate related photos cache for {}: {}", photoId, e.getMessage());
+        }
+    }
+
+    /**
+     * Refresh related lists of the photos currently trending in Explore before their cache runs out,
+     * so the most viewed detail pages never trigger a KNN search.
+     */
+    @Scheduled(fixedDelayString = "${ai.related.precompute-interval-ms:600000}", initialDelayString = "${ai.related.precompute-initial-delay-ms:120000}")
+    public void precomputeTrendingRelated() {
+        List<String> trendingIds = trendingPoolService.getTopPhotoIds(relatedPrecomputeCount);
+
+        long refreshBelowSeconds = Duration.ofMinutes(relatedCacheTtlMinutes).getSeconds() / 2;
+        List<String> dueIds = new ArrayList<>();
+        for (String photoId : trendingIds) {
+            try {
+                Long ttl = redisTemplate.getExpire(RELATED_CACHE_KEY + photoId);
+                if (ttl != null && ttl > refreshBelowSeconds) continue;
+                dueIds.add(photoId);
+            } catch (Exception e) {
+                log.warn("Failed to read related photos TTL for {}: {}", photoId, e.getMessage());
+            }
+        }
+
+        RelatedFilter anonymous = relatedFilter(null, null);
+        int refreshed = 0;
+        for (Photo photo : photoRepository.findAllById(dueIds)) {
+            try {
+                cacheRelatedIds(relatedCacheKey(photo.getId(), null, null),
+                        computeRelatedPhotoIds(photo, RELATED_POOL_SIZE, anonymous), relatedCacheTtlMinutes);
+                refreshed++;
+            } catch (Exception e) {
+                log.warn("Failed to precompute related photos for {}: {}", photo.getId(), e.getMessage());
+            }
+        }
+        log.info("Precomputed related photos for {}/{} trending photos", refreshed, trendingIds.size());
+    }
+
+    /**
+     * Alternate between two ranked id lists, skipping duplicates and {@code excludedId}.
+     */
+    private List<String> interleave(List<String> first, List<String> second, String excludedId) {
+        Set<String> seen = new LinkedHashSet<>();
+        for (int i = 0; i < first.size() || i < second.size(); i++) {
+            if (i < first.size() && !first.get(i).equals(excludedId)) seen.add(first.get(i));
+            if (i < second.size() && !second.get(i).equals(excludedId)) seen.add(second.get(i));
+        }
+        return new ArrayList<>(seen);
     }
 
     /**
      * Fallback: find related photos by shared tags.
      */
-    private List<PhotoResponse> getRelatedPhotosByTags(Photo sourcePhoto, int limit, User currentUser) {
+    private List<PhotoResponse> getRelatedPhotosByTags(Photo sourcePhoto, int limit, User currentUser,
+                                                       RelatedFilter filter) {
         if (sourcePhoto.getTags() == null || sourcePhoto.getTags().isEmpty()) {
             return Collections.emptyList();
         }
 
         List<Photo> allByTags = photoRepository.findByTagsIn(
-                        sourcePhoto.getTags(),
-                        org.springframework.data.domain.PageRequest.of(0, limit + 1))
+                        filter.tag() != null ? List.of(filter.tag()) : sourcePhoto.getTags(),
+                        org.springframework.data.domain.PageRequest.of(0, limit + RELATED_POOL_SIZE))
                 .getContent();
 
-        return allByTags.stream()
+        List<Photo> related = allByTags.stream()
                 .filter(p -> !p.getId().equals(sourcePhoto.getId()))
+                .filter(filter::accepts)
                 .limit(limit)
-                .map(p -> photoConversionService.convertToPhotoResponse(p, currentUser))
                 .toList();
+        return photoConversionService.convertToPhotoResponses(related, currentUser);
     }
 
     // ─── SUGGESTED USERS ───────────────────────────────────────────
 
     /**
      * Get user suggestions based on interest similarity.
-     * Builds a user profile embedding from their content and engagement,
-     * then finds the closest users who the current user does NOT follow.
+     * Finds the users closest to the current user's profile embedding who the current user does NOT follow.
+     * <p>
+     * The ranked list is cached per user for {@code ai.suggestions.cache-ttl-minutes}; building it takes a
+     * fixed number of queries regardless of {@code limit}: the following set, one KNN search, one projected
+     * user lookup, one mutual-follow lookup and one batched tag histogram read.
      */
     public List<RecommendedUserResponse> getSuggestedUsers(String userId, int limit) {
         log.info("Getting suggested users for userId: {}, limit: {}", userId, limit);
 
+        String cacheKey = SUGGESTIONS_CACHE_KEY + userId;
+        try {
+            @SuppressWarnings("unchecked")
+            List<RecommendedUserResponse> cached = (List<RecommendedUserResponse>) redisTemplate.opsForValue().get(cacheKey);
+            if (cached != null && (cached.size() >= limit || cached.size() < SUGGESTION_POOL_SIZE)) {
+                return cached.subList(0, Math.min(limit, cached.size()));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read suggestion cache for {}: {}", userId, e.getMessage());
+        }
+
         User currentUser = userRepository.findById(userId).orElse(null);
         if (currentUser == null) {
             return Collections.emptyList();
         }
 
+        Set<String> followingIds = getFollowingIds(userId);
+        List<RecommendedUserResponse> suggestions = null;
+
         // Try vector similarity
         try {
-            // Ensure current user has an embedding
+            // Ensure current user has an embedding, then query with the stored vector
             ensureUserEmbedding(currentUser);
-
-            // Build current user's profile embedding
-            float[] userEmbedding = buildAndGetUserEmbedding(currentUser);
+            float[] userEmbedding = vectorSearchService.getUserEmbedding(userId);
+            if (userEmbedding == null) {
+                userEmbedding = buildAndGetUserEmbedding(currentUser);
+            }
 
             if (userEmbedding != null) {
-                // Search for similar users (fetch extra to filter out already-followed)
-                List<Map<String, Object>> results = redisVectorService.searchSimilarUsers(
-                        userEmbedding, limit + 20, userId);
+                // Already-followed users and self are excluded by the KNN pre-filter
+                Set<String> excludedIds = new HashSet<>(followingIds);
+                excludedIds.add(userId);
+                List<Map<String, Object>> results = vectorSearchService.searchUsers(VectorQuery.builder()
+                        .vector(userEmbedding)
+                        .topK(Math.max(limit, SUGGESTION_POOL_SIZE))
+                        .excludeIds(excludedIds)
+                        .build());
 
                 if (!results.isEmpty()) {
-                    // Get already-followed user IDs
-                    Set<String> followingIds = getFollowingIds(userId);
-
-                    List<RecommendedUserResponse> suggestions = new ArrayList<>();
-                    for (Map<String, Object> result : results) {
-                        String candidateId = (String) result.get("entityId");
-                        if (candidateId == null || followingIds.contains(candidateId)) {
-                            continue;
-                        }
-
-                        User candidate = userRepository.findById(candidateId).orElse(null);
-                        if (candidate == null) continue;
-
-                        double score = result.containsKey("score") ? ((Number) result.get("score")).doubleValue() : 0.0;
-
-                        RecommendedUserResponse resp = new RecommendedUserResponse();
-                        resp.setId(candidate.getId());
-                        resp.setUsername(candidate.getUsername());
-                        resp.setImageUrl(candidate.getImageUrl());
-                        resp.setBio(candidate.getBio());
-                        resp.setFollowerCount(candidate.getFollowerCount());
-                        resp.setPhotoCount(candidate.getPhotoCount());
-                        resp.setSimilarityScore(1.0 - score); // Convert distance to similarity
-                        resp.setReason(generateRecommendationReason(currentUser, candidate));
-
-                        suggestions.add(resp);
-                        if (suggestions.size() >= limit) break;
-                    }
-
+                    suggestions = hydrateSuggestions(currentUser, followingIds, results);
                     log.info("Found {} suggested users via vector search for {}", suggestions.size(), userId);
-                    return suggestions;
                 }
             }
         } catch (Exception e) {
             log.warn("Vector search failed for user suggestions, falling back: {}", e.getMessage());
         }
 
-        // Fallback: suggest popular users not followed
-        return getFallbackSuggestedUsers(currentUser, limit);
+        if (suggestions == null || suggestions.isEmpty()) {
+            // Fallback: suggest popular users not followed
+            return getFallbackSuggestedUsers(currentUser, followingIds, limit);
+        }
+
+        // Cold start: users with few similar profiles get the list topped up with popular users
+        int poolSize = Math.max(limit, SUGGESTION_POOL_SIZE);
+        if (suggestions.size() < poolSize) {
+            Set<String> excludedIds = new HashSet<>(followingIds);
+            suggestions.forEach(s -> excludedIds.add(s.getId()));
+            suggestions = new ArrayList<>(suggestions);
+            suggestions.addAll(getFallbackSuggestedUsers(currentUser, excludedIds, poolSize - suggestions.size()));
+        }
+
+        try {
+            redisTemplate.opsForValue().set(cacheKey, suggestions, Duration.ofMinutes(suggestionsCacheTtlMinutes));
+        } catch (Exception e) {
+            log.warn("Failed to cache suggestions for {}: {}", userId, e.getMessage());
+        }
+        return suggestions.subList(0, Math.min(limit, suggestions.size()));
     }
 
     /**
-     * Fallback: suggest popular users that the current user doesn't follow.
+     * Turn KNN hits into responses in search order, loading every candidate and its reason inputs in bulk.
      */
-    private List<RecommendedUserResponse> getFallbackSuggestedUsers(User currentUser, int limit) {
-        Set<String> followingIds = getFollowingIds(currentUser.getId());
-        followingIds.add(currentUser.getId());
+    private List<RecommendedUserResponse> hydrateSuggestions(User currentUser, Set<String> followingIds,
+                                                             List<Map<String, Object>> results) {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (Map<String, Object> result : results) {
+            String candidateId = (String) result.get("entityId");
+            if (candidateId == null || scores.containsKey(candidateId)) continue;
+            double score = result.get("score") instanceof Number n ? n.doubleValue() : 0.0;
+            scores.put(candidateId, score);
+        }
+        if (scores.isEmpty()) return Collections.emptyList();
+
+        Query userQuery = new Query(Criteria.where("_id").in(scores.keySet()));
+        userQuery.fields().include("username", "imageUrl", "bio", "followerCount", "photoCount");
+        Map<String, User> candidates = mongoTemplate.find(userQuery, User.class).stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+
+        // Candidates who follow someone the current user follows
+        Set<String> mutual = Collections.emptySet();
+        if (!followingIds.isEmpty()) {
+            Query mutualQuery = new Query(Criteria.where("followerId").in(candidates.keySet())
+                    .and("followingId").in(followingIds));
+            mutual = new HashSet<>(mongoTemplate.findDistinct(mutualQuery, "followerId", Follow.class, String.class));
+        }
 
-        // Get all users, sort by follower count, exclude followed
-        List<User> allUsers = userRepository.findAll();
+        List<String> histogramIds = new ArrayList<>(candidates.keySet());
+        histogramIds.add(currentUser.getId());
+        Map<String, Map<String, Long>> histograms = tagHistogramService.getHistograms(histogramIds);
+        Map<String, Long> userTags = histograms.getOrDefault(currentUser.getId(), Map.of());
+
+        List<RecommendedUserResponse> suggestions = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            User candidate = candidates.get(entry.getKey());
+            if (candidate == null) continue;
+
+            RecommendedUserResponse resp = new RecommendedUserResponse();
+            resp.setId(candidate.getId());
+            resp.setUsername(candidate.getUsername());
+            resp.setImageUrl(candidate.getImageUrl());
+            resp.setBio(candidate.getBio());
+            resp.setFollowerCount(candidate.getFollowerCount());
+            resp.setPhotoCount(candidate.getPhotoCount());
+            resp.setSimilarityScore(1.0 - entry.getValue()); // Convert distance to similarity
+            resp.setReason(generateRecommendationReason(mutual.contains(candidate.getId()),
+                    userTags, histograms.getOrDefault(candidate.getId(), Map.of())));
+            suggestions.add(resp);
+        }
+        return suggestions;
+    }
 
-        return allUsers.stream()
-                .filter(u -> !followingIds.contains(u.getId()))
-                .sorted(Comparator.comparingLong(User::getFollowerCount).reversed())
-                .limit(limit)
+    /**
+     * Fallback: suggest popular users that the current user doesn't follow, read from the follower leaderboard.
+     */
+    private List<RecommendedUserResponse> getFallbackSuggestedUsers(User currentUser, Set<String> followingIds, int limit) {
+        Set<String> excludedIds = new HashSet<>(followingIds);
+        excludedIds.add(currentUser.getId());
+
+        return popularUserService.getTopUsers(limit, excludedIds).stream()
                 .map(u -> {
                     RecommendedUserResponse resp = new RecommendedUserResponse();
                     resp.setId(u.getId());
@@ -215,35 +481,23 @@ public class RecommendationService {
 
     /**
      * Generate a human-readable reason for the recommendation.
+     * Shared tags are ordered by how often the candidate uses them.
      */
-    private String generateRecommendationReason(User currentUser, User candidate) {
-        // Check for mutual followers
-        Set<String> currentFollowing = getFollowingIds(currentUser.getId());
-        Set<String> candidateFollowing = getFollowingIds(candidate.getId());
-        if (!currentFollowing.isEmpty() && !candidateFollowing.isEmpty()) {
-            Set<String> commonFollowings = new HashSet<>(currentFollowing);
-            commonFollowings.retainAll(candidateFollowing);
-            if (!commonFollowings.isEmpty()) {
-                return "Followed by people you follow";
-            }
+    private String generateRecommendationReason(boolean mutualFollow, Map<String, Long> userTags,
+                                                Map<String, Long> candidateTags) {
+        if (mutualFollow) {
+            return "Followed by people you follow";
         }
 
-        // Check for similar content interests
-        List<Photo> candidatePhotos = photoRepository.findByUser_UserIdOrderByCreatedAtDesc(candidate.getId());
-        List<Photo> currentUserPhotos = photoRepository.findByUser_UserIdOrderByCreatedAtDesc(currentUser.getId());
-
-        if (!candidatePhotos.isEmpty() && !currentUserPhotos.isEmpty()) {
-            Set<String> candidateTags = candidatePhotos.stream()
-                    .filter(p -> p.getTags() != null)
-                    .flatMap(p -> p.getTags().stream())
-                    .collect(Collectors.toSet());
-            Set<String> userTags = currentUserPhotos.stream()
-                    .filter(p -> p.getTags() != null)
-                    .flatMap(p -> p.getTags().stream())
-                    .collect(Collectors.toSet());
-            candidateTags.retainAll(userTags);
-            if (!candidateTags.isEmpty()) {
-                return "Similar interests in " + candidateTags.stream().limit(2).collect(Collectors.joining(", "));
+        if (!userTags.isEmpty() && !candidateTags.isEmpty()) {
+            String shared = candidateTags.entrySet().stream()
+                    .filter(e -> userTags.containsKey(e.getKey()))
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(2)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.joining(", "));
+            if (!shared.isEmpty()) {
+                return "Similar interests in " + shared;
             }
         }
 
@@ -263,33 +517,51 @@ public class RecommendationService {
      * If not, generate and store it.
      */
     public void ensurePhotoEmbedding(Photo photo) {
-        if (redisVectorService.hasPhotoEmbedding(photo.getId())) {
+        if (vectorSearchService.hasPhotoEmbedding(photo.getId())) {
             return;
         }
+        indexPhoto(photo);
+    }
+
+    /**
+     * Generate and store a photo embedding unconditionally.
+     *
+     * @return SKIPPED if the photo has no caption or tags, FAILED if the embedding call failed
+     */
+    public IndexOutcome indexPhoto(Photo photo) {
         String text = embeddingService.buildPhotoText(photo.getCaption(), photo.getTags());
-        if (text.isBlank()) return;
+        if (text.isBlank()) return IndexOutcome.SKIPPED;
 
         float[] embedding = embeddingService.generateEmbedding(text);
-        if (embedding != null) {
-            String userId = photo.getUser() != null ? photo.getUser().getUserId() : "";
-            redisVectorService.storePhotoEmbedding(photo.getId(), embedding, photo.getCaption(), userId, photo.getTags());
-        }
+        if (embedding == null) return IndexOutcome.FAILED;
+
+        String userId = photo.getUser() != null ? photo.getUser().getUserId() : "";
+        vectorSearchService.storePhotoEmbedding(photo.getId(), embedding, userId, photo.getTags(), photo.getCreatedAt());
+        invalidateRelatedPhotos(photo.getId());
+        return IndexOutcome.INDEXED;
     }
 
     /**
      * Ensure a user has a profile embedding stored in Redis.
      */
     public void ensureUserEmbedding(User user) {
-        if (redisVectorService.hasUserEmbedding(user.getId())) {
+        if (vectorSearchService.hasUserEmbedding(user.getId())) {
             return;
         }
-        buildAndStoreUserEmbedding(user);
+        indexUser(user);
     }
 
     /**
-     * Build and store a user embedding from their profile + content + engagement.
+     * Build a user embedding from their profile + content + engagement.
      */
     private float[] buildAndGetUserEmbedding(User user) {
+        String profileText = buildUserProfileText(user);
+        if (profileText.isBlank()) return null;
+
+        return embeddingService.generateEmbedding(profileText);
+    }
+
+    private String buildUserProfileText(User user) {
         // Collect user's tags from their photos
         List<Photo> userPhotos = photoRepository.findByUser_UserIdOrderByCreatedAtDesc(user.getId());
         List<String> topTags = userPhotos.stream()
@@ -325,25 +597,29 @@ public class RecommendationService {
                 .collect(Collectors.toList());
         recentCaptions.addAll(favoriteCaptions);
 
-        String profileText = embeddingService.buildUserProfileText(user.getBio(), topTags, recentCaptions);
-        if (profileText.isBlank()) return null;
-
-        return embeddingService.generateEmbedding(profileText);
+        return embeddingService.buildUserProfileText(user.getBio(), topTags, recentCaptions);
     }
 
-    private void buildAndStoreUserEmbedding(User user) {
-        float[] embedding = buildAndGetUserEmbedding(user);
-        if (embedding != null) {
-            redisVectorService.storeUserEmbedding(user.getId(), embedding, user.getUsername(), user.getBio());
-        }
+    /**
+     * Build and store a user profile embedding unconditionally.
+     *
+     * @return SKIPPED if the user has no profile signal, FAILED if the embedding call failed
+     */
+    public IndexOutcome indexUser(User user) {
+        String profileText = buildUserProfileText(user);
+        if (profileText.isBlank()) return IndexOutcome.SKIPPED;
+
+        float[] embedding = embeddingService.generateEmbedding(profileText);
+        if (embedding == null) return IndexOutcome.FAILED;
+        vectorSearchService.storeUserEmbedding(user.getId(), embedding, user.getUsername(), user.getBio());
+        return IndexOutcome.INDEXED;
     }
 
     // ─── BATCH / EVENT-DRIVEN INDEXING ─────────────────────────────
 
     /**
-     * Index a newly created photo (called from PhotoCreatedEvent listener).
+     * Index a newly created photo (called from the async PhotoCreatedEvent listener).
      */
-    @Async
     public void indexNewPhoto(String photoId) {
         try {
             Photo photo = photoRepository.findById(photoId).orElse(null);
@@ -354,59 +630,4 @@ public class RecommendationService {
             log.error("Failed to index new photo {}: {}", photoId, e.getMessage());
         }
     }
-
-    /**
-     * Re-index a user's profile embedding (e.g., after they post, like, or update profile).
-     */
-    @Async
-    public void reindexUser(String userId) {
-        try {
-            User user = userRepository.findById(userId).orElse(null);
-            if (user == null) return;
-            // Force re-build by deleting existing
-            redisVectorService.deleteUserEmbedding(userId);
-            buildAndStoreUserEmbedding(user);
-            log.info("Re-indexed user embedding: {}", userId);
-        } catch (Exception e) {
-            log.error("Failed to re-index user {}: {}", userId, e.getMessage());
-        }
-    }
-
-    /**
-     * Batch index all existing photos (admin/init operation).
-     */
-    public int batchIndexAllPhotos() {
-        log.info("Starting batch indexing of all photos...");
-        List<Photo> allPhotos = photoRepository.findAll();
-        int indexed = 0;
-        for (Photo photo : allPhotos) {
-            try {
-                ensurePhotoEmbedding(photo);
-                indexed++;
-            } catch (Exception e) {
-                log.warn("Failed to index photo {}: {}", photo.getId(), e.getMessage());
-            }
-        }
-        log.info("Batch indexed {}/{} photos", indexed, allPhotos.size());
-        return indexed;
-    }
-
-    /**
-     * Batch index all existing users (admin/init operation).
-     */
-    public int batchIndexAllUsers() {
-        log.info("Starting batch indexing of all users...");
-        List<User> allUsers = userRepository.findAll();
-        int indexed = 0;
-        for (User user : allUsers) {
-            try {
-                ensureUserEmbedding(user);
-                indexed++;
-            } catch (Exception e) {
-                log.warn("Failed to index user {}: {}", user.getId(), e.getMessage());
-            }
-        }
-        log.info("Batch indexed {}/{} users", indexed, allUsers.size());
-        return indexed;
-    }
 }
@@ -3,21 +3,46 @@ package share_app.tphucshareapp.service.ai;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages Redis Search vector indexes for photo and user embeddings.
  * Uses Redis Stack RediSearch FT.CREATE with HNSW algorithm for fast ANN queries.
+ * <p>
+ * Embeddings are stored as {@code ai.vector.redis.type} (FLOAT32 or FLOAT16) and ranked as stored: no
+ * full-precision copy is kept in Redis, so there is nothing to re-rank against. The local engine is the one
+ * that re-ranks quantized candidates (see {@link LocalVectorService}).
+ * <p>
+ * {@link #PHOTO_INDEX} and {@link #USER_INDEX} are aliases of versioned physical indexes, each built with
+ * its own {@link HnswParams} ({@code ai.vector.redis.photo.*} / {@code ai.vector.redis.user.*}). Parameter
+ * changes ({@link #rebuildIndex(String)}) and encoding changes ({@link #migrateStorageEncoding()}) go through
+ * the same path: a new index is built next to the live one and the alias is swapped once it has caught up.
+ * Each encoding lives in its own hash field ({@code embedding_float32}, {@code embedding_float16}; plain
+ * {@code embedding} before the first migration), indexed {@code AS embedding}, so the old index keeps
+ * serving its field while the new one is built. Indexes created before aliases were introduced keep
+ * working under their plain name until the first rebuild.
+ * <p>
+ * Queries and writes follow the field and TYPE the live index actually serves, not the configured type,
+ * so the order for changing {@code ai.vector.redis.type} is: change it on every node and restart (indexes
+ * keep serving the old encoding, new writes go to both fields), then run the migration once. Other nodes
+ * pick up the swapped alias within {@code served-refresh-ms}, or at their next failed query.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class RedisVectorService {
+public class RedisVectorService implements IVectorSearchService {
 
     private final RedisTemplate<String, Object> redisTemplate;
 
@@ -30,48 +55,204 @@ public class RedisVectorService {
     public static final String USER_INDEX = "user_vec_idx";
 
     private static final int VECTOR_DIM = EmbeddingService.EMBEDDING_DIMENSION; // 768
+    private static final int SCAN_BATCH_SIZE = 500;
+    // hash field of indexes created before per-encoding fields; also the name every index queries it by
+    private static final String LEGACY_EMBEDDING_FIELD = "embedding";
+    private static final byte[] EMBEDDING_FIELD = LEGACY_EMBEDDING_FIELD.getBytes(StandardCharsets.UTF_8);
+
+    // Hash fields indexed next to the embedding for KNN pre-filters; free text (caption, bio) stays in Mongo only
+    private static final String[] PHOTO_SCHEMA = {"userId", "TAG", "tags", "TAG", "photoId", "TAG", "createdAt", "NUMERIC"};
+    private static final String[] USER_SCHEMA = {"username", "TAG", "userId", "TAG"};
+
+    // RediSearch vector TYPE; INT8 is not an index type in Redis Stack 7.x
+    @Value("${ai.vector.redis.type:FLOAT32}")
+    private VectorEncoding storageType;
+
+    // HNSW parameters per index; 0 keeps the RediSearch default. ef-runtime is applied per query
+    @Value("${ai.vector.redis.photo.m:0}")
+    private int photoM;
+
+    @Value("${ai.vector.redis.photo.ef-construction:0}")
+    private int photoEfConstruction;
+
+    @Value("${ai.vector.redis.photo.ef-runtime:${ai.vector.redis.ef-runtime:0}}")
+    private int photoEfRuntime;
+
+    @Value("${ai.vector.redis.photo.initial-cap:0}")
+    private int photoInitialCap;
+
+    @Value("${ai.vector.redis.user.m:0}")
+    private int userM;
+
+    @Value("${ai.vector.redis.user.ef-construction:0}")
+    private int userEfConstruction;
+
+    @Value("${ai.vector.redis.user.ef-runtime:${ai.vector.redis.ef-runtime:0}}")
+    private int userEfRuntime;
+
+    @Value("${ai.vector.redis.user.initial-cap:0}")
+    private int userInitialCap;
+
+    @Value("${ai.vector.redis.reindex-timeout-minutes:30}")
+    private long reindexTimeoutMinutes;
+
+    private HnswParams photoParams;
+    private HnswParams userParams;
+
+    // vector field each alias's index reads, so writes land where the live index looks
+    private final Map<String, VectorField> servedFields = new ConcurrentHashMap<>();
+
+    // false when Redis Stack (RediSearch) is missing; callers can route KNN elsewhere
+    private volatile boolean indexAvailable = false;
 
     @PostConstruct
     public void initializeIndexes() {
+        if (storageType == VectorEncoding.INT8) {
+            log.warn("RediSearch cannot index INT8 vectors, storing FLOAT16 instead");
+            storageType = VectorEncoding.FLOAT16;
+        }
+        photoParams = new HnswParams(photoM, photoEfConstruction, photoEfRuntime, photoInitialCap);
+        userParams = new HnswParams(userM, userEfConstruction, userEfRuntime, userInitialCap);
         try {
-            createIndexIfNotExists(PHOTO_INDEX, PHOTO_PREFIX,
-                    new String[]{"caption", "TAG", "userId", "TAG", "tags", "TAG"});
-            createIndexIfNotExists(USER_INDEX, USER_PREFIX,
-                    new String[]{"username", "TAG", "bio", "TEXT"});
-            log.info("Redis vector indexes initialized successfully");
+            boolean photoIndex = createIndexIfNotExists(PHOTO_INDEX, PHOTO_PREFIX, PHOTO_SCHEMA);
+            boolean userIndex = createIndexIfNotExists(USER_INDEX, USER_PREFIX, USER_SCHEMA);
+            indexAvailable = photoIndex && userIndex;
+            refreshServedFields();
+            if (indexAvailable) {
+                log.info("Redis vector indexes initialized successfully");
+            } else {
+                log.warn("Redis vector indexes unavailable, KNN search must use the local engine");
+            }
         } catch (Exception e) {
             log.warn("Could not initialize Redis vector indexes (Redis Stack may not be available): {}", e.getMessage());
         }
     }
 
+    public boolean isIndexAvailable() {
+        return indexAvailable;
+    }
+
+    public VectorEncoding getStorageType() {
+        return storageType;
+    }
+
+    public HnswParams getParams(String alias) {
+        return USER_INDEX.equals(alias) ? userParams : photoParams;
+    }
+
+    /**
+     * Vector field the index behind {@code alias} serves; the configured type's field if it is unknown.
+     */
+    VectorField servedField(String alias) {
+        VectorField field = servedFields.get(alias);
+        return field != null ? field : new VectorField(fieldFor(storageType), storageType);
+    }
+
+    /**
+     * Re-read which field each alias serves, so a swap made by another node is followed.
+     */
+    @Scheduled(fixedDelayString = "${ai.vector.redis.served-refresh-ms:30000}",
+            initialDelayString = "${ai.vector.redis.served-refresh-ms:30000}")
+    public void refreshServedFields() {
+        if (!indexAvailable) return;
+        try {
+            redisTemplate.execute((RedisConnection connection) -> {
+                for (String alias : List.of(PHOTO_INDEX, USER_INDEX)) {
+                    VectorField field = indexedField(connection, alias);
+                    if (field != null) {
+                        servedFields.put(alias, field);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to refresh served vector fields: {}", e.getMessage());
+        }
+    }
+
+    private String prefixOf(String alias) {
+        return USER_INDEX.equals(alias) ? USER_PREFIX : PHOTO_PREFIX;
+    }
+
+    private String[] schemaOf(String alias) {
+        return USER_INDEX.equals(alias) ? USER_SCHEMA : PHOTO_SCHEMA;
+    }
+
     /**
      * Create a vector search index if it doesn't exist.
+     *
+     * @return true if the index exists afterwards
      */
-    private void createIndexIfNotExists(String indexName, String prefix, String[] extraFields) {
+    private boolean createIndexIfNotExists(String indexName, String prefix, String[] extraFields) {
         try {
             // Check if index exists
             redisTemplate.execute((RedisConnection connection) -> {
+                boolean exists;
                 try {
                     connection.execute("FT.INFO", indexName.getBytes(StandardCharsets.UTF_8));
-                    log.info("Index '{}' already exists", indexName);
+                    exists = true;
                 } catch (Exception e) {
-                    // Index doesn't exist, create it
+                    exists = false;
+                }
+                if (exists) {
+                    log.info("Index '{}' already exists", indexName);
+                    addMissingFields(connection, indexName, extraFields);
+                } else {
+                    // Index doesn't exist, create it behind the alias
                     log.info("Creating index '{}'", indexName);
-                    createVectorIndex(connection, indexName, prefix, extraFields);
+                    String physical = versionedName(indexName);
+                    createVectorIndex(connection, physical, prefix, extraFields, getParams(indexName),
+                            new VectorField(fieldFor(storageType), storageType));
+                    pointAlias(connection, indexName, physical);
                 }
                 return null;
             });
+            return true;
         } catch (Exception e) {
             log.warn("Failed to check/create index '{}': {}", indexName, e.getMessage());
+            return false;
         }
     }
 
-    private void createVectorIndex(RedisConnection connection, String indexName, String prefix, String[] extraFields) {
+    /**
+     * Add schema fields introduced after the index was created; FT.ALTER rejects ones that already exist.
+     */
+    private void addMissingFields(RedisConnection connection, String indexName, String[] extraFields) {
+        for (int i = 0; i + 1 < extraFields.length; i += 2) {
+            try {
+                connection.execute("FT.ALTER",
+                        indexName.getBytes(StandardCharsets.UTF_8),
+                        "SCHEMA".getBytes(StandardCharsets.UTF_8),
+                        "ADD".getBytes(StandardCharsets.UTF_8),
+                        extraFields[i].getBytes(StandardCharsets.UTF_8),
+                        extraFields[i + 1].getBytes(StandardCharsets.UTF_8));
+                log.info("Added field '{}' to index '{}'", extraFields[i], indexName);
+            } catch (Exception e) {
+                log.debug("Field '{}' already in index '{}'", extraFields[i], indexName);
+            }
+        }
+    }
+
+    private void createVectorIndex(RedisConnection connection, String indexName, String prefix, String[] extraFields,
+                                   HnswParams params, VectorField field) {
         // Build FT.CREATE command
         // FT.CREATE {idx} ON HASH PREFIX 1 {prefix} SCHEMA
-        //   embedding VECTOR HNSW 6 TYPE FLOAT32 DIM 768 DISTANCE_METRIC COSINE
+        //   {field} [AS embedding] VECTOR HNSW {n} TYPE {FLOAT32|FLOAT16} DIM 768 DISTANCE_METRIC COSINE
+        //   [M {m}] [EF_CONSTRUCTION {ef}] [EF_RUNTIME {ef}] [INITIAL_CAP {cap}]
         //   {extra fields...}
 
+        List<byte[]> hnswArgs = new ArrayList<>();
+        hnswArgs.add("TYPE".getBytes(StandardCharsets.UTF_8));
+        hnswArgs.add(field.type().name().getBytes(StandardCharsets.UTF_8));
+        hnswArgs.add("DIM".getBytes(StandardCharsets.UTF_8));
+        hnswArgs.add(String.valueOf(VECTOR_DIM).getBytes(StandardCharsets.UTF_8));
+        hnswArgs.add("DISTANCE_METRIC".getBytes(StandardCharsets.UTF_8));
+        hnswArgs.add("COSINE".getBytes(StandardCharsets.UTF_8));
+        addPositive(hnswArgs, "M", params.m());
+        addPositive(hnswArgs, "EF_CONSTRUCTION", params.efConstruction());
+        addPositive(hnswArgs, "EF_RUNTIME", params.efRuntime());
+        addPositive(hnswArgs, "INITIAL_CAP", params.initialCap());
+
         List<byte[]> args = new ArrayList<>();
         args.add(indexName.getBytes(StandardCharsets.UTF_8));
         args.add("ON".getBytes(StandardCharsets.UTF_8));
@@ -81,43 +262,298 @@ public class RedisVectorService {
         args.add(prefix.getBytes(StandardCharsets.UTF_8));
         args.add("SCHEMA".getBytes(StandardCharsets.UTF_8));
 
-        // Embedding vector field
-        args.add("embedding".getBytes(StandardCharsets.UTF_8));
+        // Embedding vector field, always queried as @embedding
+        args.add(field.source().getBytes(StandardCharsets.UTF_8));
+        if (!LEGACY_EMBEDDING_FIELD.equals(field.source())) {
+            args.add("AS".getBytes(StandardCharsets.UTF_8));
+            args.add(EMBEDDING_FIELD);
+        }
         args.add("VECTOR".getBytes(StandardCharsets.UTF_8));
         args.add("HNSW".getBytes(StandardCharsets.UTF_8));
-        args.add("6".getBytes(StandardCharsets.UTF_8)); // 6 args follow
-        args.add("TYPE".getBytes(StandardCharsets.UTF_8));
-        args.add("FLOAT32".getBytes(StandardCharsets.UTF_8));
-        args.add("DIM".getBytes(StandardCharsets.UTF_8));
-        args.add(String.valueOf(VECTOR_DIM).getBytes(StandardCharsets.UTF_8));
-        args.add("DISTANCE_METRIC".getBytes(StandardCharsets.UTF_8));
-        args.add("COSINE".getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(hnswArgs.size()).getBytes(StandardCharsets.UTF_8));
+        args.addAll(hnswArgs);
 
-        // Extra fields (e.g., caption, userId, tags)
-        for (String field : extraFields) {
-            args.add(field.getBytes(StandardCharsets.UTF_8));
+        // Extra fields (e.g., userId, tags)
+        for (String extra : extraFields) {
+            args.add(extra.getBytes(StandardCharsets.UTF_8));
         }
 
         connection.execute("FT.CREATE", args.toArray(new byte[0][]));
-        log.info("Created vector index: {}", indexName);
+        log.info("Created vector index {} over {} ({})", indexName, field, params);
+    }
+
+    private static void addPositive(List<byte[]> args, String name, int value) {
+        if (value > 0) {
+            args.add(name.getBytes(StandardCharsets.UTF_8));
+            args.add(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // ─── INDEX VERSIONS AND ALIASES ────────────────────────────────
+
+    /**
+     * Hash field an index reads its vectors from, and their TYPE.
+     */
+    record VectorField(String source, VectorEncoding type) {
+
+        @Override
+        public String toString() {
+            return source + " " + type;
+        }
+    }
+
+    /**
+     * Hash field new indexes store {@code type} in. Never the legacy {@code embedding}, so a migration never
+     * writes the field the live index is reading.
+     */
+    private static String fieldFor(VectorEncoding type) {
+        return "embedding_" + type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String versionedName(String alias) {
+        return alias + "_" + System.currentTimeMillis();
+    }
+
+    /**
+     * Point {@code alias} at {@code physical}. A pre-alias index that still holds the alias name is dropped
+     * first (documents kept), since an alias cannot shadow an index.
+     */
+    private void pointAlias(RedisConnection connection, String alias, String physical) {
+        String current = physicalIndexName(connection, alias);
+        if (alias.equals(current)) {
+            connection.execute("FT.DROPINDEX", alias.getBytes(StandardCharsets.UTF_8));
+        }
+        connection.execute("FT.ALIASUPDATE", alias.getBytes(StandardCharsets.UTF_8), physical.getBytes(StandardCharsets.UTF_8));
+        log.info("Alias '{}' now points to '{}'", alias, physical);
+    }
+
+    /**
+     * Name of the index an alias resolves to (the name itself for a plain index), or null if neither exists.
+     */
+    private String physicalIndexName(RedisConnection connection, String name) {
+        Object indexName = ftInfo(connection, name).get("index_name");
+        return indexName != null ? indexName.toString() : null;
+    }
+
+    /**
+     * Vector field of the index {@code name} resolves to, or null if there is no such index. The TYPE comes
+     * from {@code FT.INFO} attributes; servers that do not report it are probed with one stored blob.
+     */
+    private VectorField indexedField(RedisConnection connection, String name) {
+        Object reply;
+        try {
+            reply = connection.execute("FT.INFO", name.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return null;
+        }
+        if (!(reply instanceof List<?> info)) return null;
+
+        String source = LEGACY_EMBEDDING_FIELD;
+        VectorEncoding type = null;
+        for (int i = 0; i + 1 < info.size(); i += 2) {
+            if (!"attributes".equals(parseRedisValue(info.get(i))) || !(info.get(i + 1) instanceof List<?> attributes)) {
+                continue;
+            }
+            for (Object attribute : attributes) {
+                if (!(attribute instanceof List<?> pairs)) continue;
+                Map<String, String> values = new HashMap<>();
+                for (int j = 0; j + 1 < pairs.size(); j += 2) {
+                    values.put(parseRedisValue(pairs.get(j)).toLowerCase(Locale.ROOT), parseRedisValue(pairs.get(j + 1)));
+                }
+                if ("VECTOR".equalsIgnoreCase(values.get("type"))) {
+                    source = values.getOrDefault("identifier", LEGACY_EMBEDDING_FIELD);
+                    type = parseEncoding(values.get("data_type"));
+                }
+            }
+        }
+        if (type == null) {
+            type = probeEncoding(connection, prefixOf(name), source);
+        }
+        return new VectorField(source, type);
+    }
+
+    private static VectorEncoding parseEncoding(String name) {
+        try {
+            return name != null ? VectorEncoding.valueOf(name.toUpperCase(Locale.ROOT)) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Encoding of the first stored blob found in {@code field} among the first few hundred keys, or the
+     * configured type if there is none.
+     */
+    private VectorEncoding probeEncoding(RedisConnection connection, String prefix, String field) {
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            for (int probed = 0; probed < SCAN_BATCH_SIZE && cursor.hasNext(); probed++) {
+                byte[] blob = connection.hashCommands().hGet(cursor.next(), field.getBytes(StandardCharsets.UTF_8));
+                VectorEncoding encoding = blob != null ? VectorEncoding.detect(blob.length, VECTOR_DIM) : null;
+                if (encoding != null) {
+                    return encoding;
+                }
+            }
+        }
+        return storageType;
+    }
+
+    /**
+     * Top-level scalar fields of {@code FT.INFO}; empty if the index does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> ftInfo(RedisConnection connection, String name) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        try {
+            Object reply = connection.execute("FT.INFO", name.getBytes(StandardCharsets.UTF_8));
+            if (reply instanceof List<?> fields) {
+                for (int i = 0; i + 1 < fields.size(); i += 2) {
+                    Object value = fields.get(i + 1);
+                    if (!(value instanceof List)) {
+                        info.put(parseRedisValue(fields.get(i)), parseRedisValue(value));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debug("FT.INFO {} failed: {}", name, e.getMessage());
+        }
+        return info;
+    }
+
+    public Map<String, Object> indexInfo(String name) {
+        Map<String, Object> info = redisTemplate.execute((RedisConnection connection) -> ftInfo(connection, name));
+        return info != null ? info : Map.of();
+    }
+
+    /**
+     * Block until the background scan of a freshly created index has covered every existing document.
+     */
+    public void waitForIndexing(String name, Duration timeout) {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        while (true) {
+            Map<String, Object> info = indexInfo(name);
+            if (info.isEmpty()) {
+                throw new RuntimeException("Index " + name + " does not exist");
+            }
+            if ("0".equals(String.valueOf(info.get("indexing")))) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new RuntimeException("Timed out waiting for index " + name + " to finish indexing");
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for index " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index behind {@code alias} ({@link #PHOTO_INDEX} or {@link #USER_INDEX}) with the configured
+     * {@link HnswParams}, over the same vector field and TYPE it serves now.
+     */
+    public Map<String, Object> rebuildIndex(String alias) {
+        VectorField current = redisTemplate.execute((RedisConnection connection) -> indexedField(connection, alias));
+        return swapIndex(alias, current != null ? current : new VectorField(fieldFor(storageType), storageType));
+    }
+
+    /**
+     * Build a new physical index for {@code alias} over {@code field} with the configured {@link HnswParams}.
+     * The new index is filled from the existing hashes while the old one keeps serving, then the alias is
+     * swapped and the old index dropped (documents kept).
+     */
+    private Map<String, Object> swapIndex(String alias, VectorField field) {
+        long start = System.currentTimeMillis();
+        HnswParams params = getParams(alias);
+        String physical = versionedName(alias);
+        String previous = redisTemplate.execute((RedisConnection connection) -> {
+            String current = physicalIndexName(connection, alias);
+            createVectorIndex(connection, physical, prefixOf(alias), schemaOf(alias), params, field);
+            return current;
+        });
+
+        try {
+            waitForIndexing(physical, Duration.ofMinutes(reindexTimeoutMinutes));
+        } catch (RuntimeException e) {
+            dropIndex(physical, false);
+            throw e;
+        }
+
+        redisTemplate.execute((RedisConnection connection) -> {
+            pointAlias(connection, alias, physical);
+            if (previous != null && !previous.equals(alias)) {
+                connection.execute("FT.DROPINDEX", previous.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        servedFields.put(alias, field);
+
+        Map<String, Object> info = indexInfo(alias);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("alias", alias);
+        report.put("previousIndex", previous);
+        report.put("currentIndex", physical);
+        report.put("field", field.toString());
+        report.put("params", params.toString());
+        report.put("numDocs", info.get("num_docs"));
+        report.put("vectorIndexSizeMb", info.get("vector_index_sz_mb"));
+        report.put("durationMs", System.currentTimeMillis() - start);
+        log.info("Rebuilt vector index: {}", report);
+        return report;
+    }
+
+    // ─── BENCHMARK SUPPORT ─────────────────────────────────────────
+
+    /**
+     * Create a bare vector index (no attribute fields) over the {@code embedding} field of {@code prefix},
+     * stored as {@link #getStorageType()}, e.g. for benchmarking.
+     */
+    public void createIndex(String name, String prefix, HnswParams params) {
+        redisTemplate.execute((RedisConnection connection) -> {
+            createVectorIndex(connection, name, prefix, new String[0], params,
+                    new VectorField(LEGACY_EMBEDDING_FIELD, storageType));
+            return null;
+        });
+    }
+
+    public void dropIndex(String name, boolean deleteDocuments) {
+        try {
+            redisTemplate.execute((RedisConnection connection) -> deleteDocuments
+                    ? connection.execute("FT.DROPINDEX", name.getBytes(StandardCharsets.UTF_8), "DD".getBytes(StandardCharsets.UTF_8))
+                    : connection.execute("FT.DROPINDEX", name.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            log.warn("Failed to drop index {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Unfiltered KNN over any index whose document keys end in the entity id.
+     */
+    public List<Map<String, Object>> search(String indexName, VectorQuery query) {
+        return knnSearch(indexName, "id", query, "*");
     }
 
     /**
      * Store a photo embedding in Redis.
      */
-    public void storePhotoEmbedding(String photoId, float[] embedding, String caption, String userId, List<String> tags) {
+    @Override
+    public void storePhotoEmbedding(String photoId, float[] embedding, String userId, List<String> tags, Instant createdAt) {
         String key = PHOTO_PREFIX + photoId;
         try {
             Map<byte[], byte[]> hash = new HashMap<>();
-            hash.put("embedding".getBytes(StandardCharsets.UTF_8), EmbeddingService.floatArrayToBytes(embedding));
-            hash.put("caption".getBytes(StandardCharsets.UTF_8),
-                    (caption != null ? caption : "").getBytes(StandardCharsets.UTF_8));
+            putEmbedding(hash, PHOTO_INDEX, embedding);
             hash.put("userId".getBytes(StandardCharsets.UTF_8),
                     (userId != null ? userId : "").getBytes(StandardCharsets.UTF_8));
             hash.put("tags".getBytes(StandardCharsets.UTF_8),
                     (tags != null ? String.join(",", tags) : "").getBytes(StandardCharsets.UTF_8));
             hash.put("photoId".getBytes(StandardCharsets.UTF_8),
                     photoId.getBytes(StandardCharsets.UTF_8));
+            if (createdAt != null) {
+                hash.put("createdAt".getBytes(StandardCharsets.UTF_8),
+                        String.valueOf(createdAt.getEpochSecond()).getBytes(StandardCharsets.UTF_8));
+            }
 
             redisTemplate.execute((RedisConnection connection) -> {
                 connection.hashCommands().hMSet(key.getBytes(StandardCharsets.UTF_8), hash);
@@ -130,17 +566,17 @@ public class RedisVectorService {
     }
 
     /**
-     * Store a user profile embedding in Redis.
+     * Store a user profile embedding in Redis. A null username leaves the stored one untouched.
      */
+    @Override
     public void storeUserEmbedding(String visitorUserId, float[] embedding, String username, String bio) {
         String key = USER_PREFIX + visitorUserId;
         try {
             Map<byte[], byte[]> hash = new HashMap<>();
-            hash.put("embedding".getBytes(StandardCharsets.UTF_8), EmbeddingService.floatArrayToBytes(embedding));
-            hash.put("username".getBytes(StandardCharsets.UTF_8),
-                    (username != null ? username : "").getBytes(StandardCharsets.UTF_8));
-            hash.put("bio".getBytes(StandardCharsets.UTF_8),
-                    (bio != null ? bio : "").getBytes(StandardCharsets.UTF_8));
+            putEmbedding(hash, USER_INDEX, embedding);
+            if (username != null) {
+                hash.put("username".getBytes(StandardCharsets.UTF_8), username.getBytes(StandardCharsets.UTF_8));
+            }
             hash.put("userId".getBytes(StandardCharsets.UTF_8),
                     visitorUserId.getBytes(StandardCharsets.UTF_8));
 
@@ -155,40 +591,26 @@ public class RedisVectorService {
     }
 
     /**
-     * Search for similar photos using KNN vector search.
+     * Put the vector in the field the live index serves and, while a migration to the configured type is
+     * pending, in that type's field too, so hashes written mid-migration are in both indexes.
+     */
+    private void putEmbedding(Map<byte[], byte[]> hash, String alias, float[] embedding) {
+        VectorField served = servedField(alias);
+        hash.put(served.source().getBytes(StandardCharsets.UTF_8), served.type().encode(embedding));
+        if (served.type() != storageType) {
+            hash.put(fieldFor(storageType).getBytes(StandardCharsets.UTF_8), storageType.encode(embedding));
+        }
+    }
+
+    /**
+     * KNN over photos with the query's filters applied as a pre-filter.
      *
-     * @param queryEmbedding the query vector
-     * @param topK           number of results
-     * @param excludePhotoId photo ID to exclude from results (e.g., the source photo)
-     * @return list of {photoId, score} maps ordered by similarity
+     * @return list of {photoId, entityId, score} maps ordered by similarity
      */
-    @SuppressWarnings("unchecked")
-    public List<Map<String, Object>> searchSimilarPhotos(float[] queryEmbedding, int topK, String excludePhotoId) {
+    @Override
+    public List<Map<String, Object>> searchPhotos(VectorQuery query) {
         try {
-            // FT.SEARCH photo_vec_idx "*=>[KNN {topK} @embedding $query_vec AS score]"
-            //   PARAMS 2 query_vec {blob} SORTBY score DIALECT 2
-
-            byte[] vectorBytes = EmbeddingService.floatArrayToBytes(queryEmbedding);
-            int searchK = topK + 5; // fetch extra to account for exclusions
-
-            String queryStr = String.format("*=>[KNN %d @embedding $query_vec AS score]", searchK);
-
-            List<byte[]> args = new ArrayList<>();
-            args.add(PHOTO_INDEX.getBytes(StandardCharsets.UTF_8));
-            args.add(queryStr.getBytes(StandardCharsets.UTF_8));
-            args.add("PARAMS".getBytes(StandardCharsets.UTF_8));
-            args.add("2".getBytes(StandardCharsets.UTF_8));
-            args.add("query_vec".getBytes(StandardCharsets.UTF_8));
-            args.add(vectorBytes);
-            args.add("SORTBY".getBytes(StandardCharsets.UTF_8));
-            args.add("score".getBytes(StandardCharsets.UTF_8));
-            args.add("DIALECT".getBytes(StandardCharsets.UTF_8));
-            args.add("2".getBytes(StandardCharsets.UTF_8));
-
-            List<Object> rawResult = (List<Object>) redisTemplate.execute((RedisConnection connection) ->
-                    connection.execute("FT.SEARCH", args.toArray(new byte[0][])));
-
-            return parseSearchResults(rawResult, "photoId", excludePhotoId, topK);
+            return knnSearchFollowingSwaps(PHOTO_INDEX, "photoId", query, buildPhotoFilter(query));
         } catch (Exception e) {
             log.error("Failed to search similar photos: {}", e.getMessage());
             return Collections.emptyList();
@@ -196,46 +618,132 @@ public class RedisVectorService {
     }
 
     /**
-     * Search for similar users using KNN vector search.
+     * KNN over user profiles, excluding {@link VectorQuery#getExcludeIds()}.
      *
-     * @param queryEmbedding the query vector
-     * @param topK           number of results
-     * @param excludeUserId  user ID to exclude (the current user)
-     * @return list of {userId, score} maps ordered by similarity
+     * @return list of {userId, entityId, score} maps ordered by similarity
      */
-    @SuppressWarnings("unchecked")
-    public List<Map<String, Object>> searchSimilarUsers(float[] queryEmbedding, int topK, String excludeUserId) {
+    @Override
+    public List<Map<String, Object>> searchUsers(VectorQuery query) {
         try {
-            byte[] vectorBytes = EmbeddingService.floatArrayToBytes(queryEmbedding);
-            int searchK = topK + 5;
-
-            String queryStr = String.format("*=>[KNN %d @embedding $query_vec AS score]", searchK);
-
-            List<byte[]> args = new ArrayList<>();
-            args.add(USER_INDEX.getBytes(StandardCharsets.UTF_8));
-            args.add(queryStr.getBytes(StandardCharsets.UTF_8));
-            args.add("PARAMS".getBytes(StandardCharsets.UTF_8));
-            args.add("2".getBytes(StandardCharsets.UTF_8));
-            args.add("query_vec".getBytes(StandardCharsets.UTF_8));
-            args.add(vectorBytes);
-            args.add("SORTBY".getBytes(StandardCharsets.UTF_8));
-            args.add("score".getBytes(StandardCharsets.UTF_8));
-            args.add("DIALECT".getBytes(StandardCharsets.UTF_8));
-            args.add("2".getBytes(StandardCharsets.UTF_8));
-
-            List<Object> rawResult = (List<Object>) redisTemplate.execute((RedisConnection connection) ->
-                    connection.execute("FT.SEARCH", args.toArray(new byte[0][])));
-
-            return parseSearchResults(rawResult, "userId", excludeUserId, topK);
+            String filter = query.getExcludeIds().isEmpty() ? "*" : "-@userId:{" + tagUnion(query.getExcludeIds()) + "}";
+            return knnSearchFollowingSwaps(USER_INDEX, "userId", query, filter);
         } catch (Exception e) {
             log.error("Failed to search similar users: {}", e.getMessage());
             return Collections.emptyList();
         }
     }
 
+    /**
+     * Pre-filter expression for the photo index, e.g.
+     * {@code (-@photoId:{a} -@userId:{b | c} @tags:{travel} @createdAt:[1700000000 +inf])}.
+     */
+    private String buildPhotoFilter(VectorQuery query) {
+        List<String> clauses = new ArrayList<>();
+        if (!query.getExcludeIds().isEmpty()) {
+            clauses.add("-@photoId:{" + tagUnion(query.getExcludeIds()) + "}");
+        }
+        if (!query.getExcludeAuthors().isEmpty()) {
+            clauses.add("-@userId:{" + tagUnion(query.getExcludeAuthors()) + "}");
+        }
+        for (String tag : query.getRequiredTags()) {
+            clauses.add("@tags:{" + escapeTag(tag) + "}");
+        }
+        if (query.getCreatedAfter() != null) {
+            clauses.add("@createdAt:[" + query.getCreatedAfter().getEpochSecond() + " +inf]");
+        }
+        return clauses.isEmpty() ? "*" : "(" + String.join(" ", clauses) + ")";
+    }
+
+    private String tagUnion(Collection<String> values) {
+        StringJoiner joiner = new StringJoiner(" | ");
+        for (String value : values) {
+            joiner.add(escapeTag(value));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Backslash-escape everything but letters and digits, as TAG query syntax requires.
+     */
+    private static String escapeTag(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * KNN that retries once if the alias was swapped to another TYPE since {@link #servedFields} was read,
+     * which fails the query with a blob size mismatch.
+     */
+    private List<Map<String, Object>> knnSearchFollowingSwaps(String alias, String idField, VectorQuery query,
+                                                              String filter) {
+        VectorField before = servedField(alias);
+        try {
+            return knnSearch(alias, idField, query, filter);
+        } catch (RuntimeException e) {
+            refreshServedFields();
+            if (servedField(alias).equals(before)) {
+                throw e;
+            }
+            log.info("Index '{}' now serves {}, retrying query", alias, servedField(alias));
+            return knnSearch(alias, idField, query, filter);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> knnSearch(String indexName, String idField, VectorQuery query, String filter) {
+        // FT.SEARCH {idx} "{filter}=>[KNN {k} @embedding $query_vec [EF_RUNTIME $ef] AS score]"
+        //   PARAMS n query_vec {blob} [ef {ef}] RETURN 2 {idField} score
+        //   SORTBY score LIMIT 0 {k} DIALECT 2
+
+        int topK = query.getTopK();
+        int efRuntime = query.getEfRuntime() != null ? query.getEfRuntime() : getParams(indexName).efRuntime();
+
+        String knn = efRuntime > 0
+                ? "KNN %d @embedding $query_vec EF_RUNTIME $ef AS score"
+                : "KNN %d @embedding $query_vec AS score";
+        String queryStr = filter + "=>[" + String.format(knn, topK) + "]";
+
+        List<byte[]> args = new ArrayList<>();
+        args.add(indexName.getBytes(StandardCharsets.UTF_8));
+        args.add(queryStr.getBytes(StandardCharsets.UTF_8));
+        args.add("PARAMS".getBytes(StandardCharsets.UTF_8));
+        args.add((efRuntime > 0 ? "4" : "2").getBytes(StandardCharsets.UTF_8));
+        args.add("query_vec".getBytes(StandardCharsets.UTF_8));
+        // the blob must match the TYPE the index serves, which differs from the configured one until migrated
+        args.add(servedField(indexName).type().encode(query.getVector()));
+        if (efRuntime > 0) {
+            args.add("ef".getBytes(StandardCharsets.UTF_8));
+            args.add(String.valueOf(efRuntime).getBytes(StandardCharsets.UTF_8));
+        }
+        args.add("RETURN".getBytes(StandardCharsets.UTF_8));
+        args.add("2".getBytes(StandardCharsets.UTF_8));
+        args.add(idField.getBytes(StandardCharsets.UTF_8));
+        args.add("score".getBytes(StandardCharsets.UTF_8));
+        args.add("SORTBY".getBytes(StandardCharsets.UTF_8));
+        args.add("score".getBytes(StandardCharsets.UTF_8));
+        args.add("LIMIT".getBytes(StandardCharsets.UTF_8));
+        args.add("0".getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(topK).getBytes(StandardCharsets.UTF_8));
+        args.add("DIALECT".getBytes(StandardCharsets.UTF_8));
+        args.add("2".getBytes(StandardCharsets.UTF_8));
+
+        List<Object> rawResult = (List<Object>) redisTemplate.execute((RedisConnection connection) ->
+                connection.execute("FT.SEARCH", args.toArray(new byte[0][])));
+
+        return parseSearchResults(rawResult, idField, topK);
+    }
+
     /**
      * Delete a photo embedding from Redis.
      */
+    @Override
     public void deletePhotoEmbedding(String photoId) {
         try {
             redisTemplate.delete(PHOTO_PREFIX + photoId);
@@ -247,6 +755,7 @@ public class RedisVectorService {
     /**
      * Delete a user embedding from Redis.
      */
+    @Override
     public void deleteUserEmbedding(String userId) {
         try {
             redisTemplate.delete(USER_PREFIX + userId);
@@ -258,6 +767,7 @@ public class RedisVectorService {
     /**
      * Check if a photo embedding exists.
      */
+    @Override
     public boolean hasPhotoEmbedding(String photoId) {
         Boolean exists = redisTemplate.hasKey(PHOTO_PREFIX + photoId);
         return Boolean.TRUE.equals(exists);
@@ -266,18 +776,349 @@ public class RedisVectorService {
     /**
      * Check if a user embedding exists.
      */
+    @Override
     public boolean hasUserEmbedding(String userId) {
         Boolean exists = redisTemplate.hasKey(USER_PREFIX + userId);
         return Boolean.TRUE.equals(exists);
     }
 
+    @Override
+    public float[] getPhotoEmbedding(String photoId) {
+        return readEmbedding(PHOTO_PREFIX + photoId);
+    }
+
+    @Override
+    public float[] getUserEmbedding(String userId) {
+        return readEmbedding(USER_PREFIX + userId);
+    }
+
+    private float[] readEmbedding(String key) {
+        try {
+            List<byte[]> blobs = redisTemplate.execute((RedisConnection connection) ->
+                    connection.hashCommands().hMGet(key.getBytes(StandardCharsets.UTF_8), embeddingFields(key)));
+            return blobs != null ? firstEmbedding(blobs) : null;
+        } catch (Exception e) {
+            log.warn("Failed to read embedding {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Every hash field a vector can be stored in under the prefix of {@code key} (a key or the prefix
+     * itself), the served one first.
+     * Hashes not yet rewritten by a migration only have the older field.
+     */
+    private byte[][] embeddingFields(String key) {
+        String alias = key.startsWith(USER_PREFIX) ? USER_INDEX : PHOTO_INDEX;
+        Set<String> fields = new LinkedHashSet<>();
+        fields.add(servedField(alias).source());
+        fields.add(fieldFor(storageType));
+        fields.add(LEGACY_EMBEDDING_FIELD);
+        for (VectorEncoding encoding : VectorEncoding.values()) {
+            fields.add(fieldFor(encoding));
+        }
+        return fields.stream().map(field -> field.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    }
+
+    private static float[] firstEmbedding(List<?> blobs) {
+        for (Object value : blobs) {
+            if (value instanceof byte[] blob) {
+                VectorEncoding encoding = VectorEncoding.detect(blob.length, VECTOR_DIM);
+                if (encoding != null) {
+                    return encoding.decode(blob);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Which of the given entity ids already have an embedding, using one pipelined round trip of EXISTS.
+     */
+    public Set<String> existingIds(String prefix, List<String> ids) {
+        if (ids.isEmpty()) return Collections.emptySet();
+        List<Object> replies = redisTemplate.executePipelined((RedisConnection connection) -> {
+            for (String id : ids) {
+                connection.keyCommands().exists((prefix + id).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        Set<String> existing = new HashSet<>();
+        for (int i = 0; i < ids.size() && i < replies.size(); i++) {
+            if (Boolean.TRUE.equals(replies.get(i))) {
+                existing.add(ids.get(i));
+            }
+        }
+        return existing;
+    }
+
+    public static final char ATTRIBUTE_SEPARATOR = '\u001F';
+
+    /**
+     * Callback for {@link #forEachEmbedding}: entity id, decoded vector and the requested attribute fields
+     * joined by {@link #ATTRIBUTE_SEPARATOR}.
+     */
+    @FunctionalInterface
+    public interface EmbeddingVisitor {
+        void visit(String entityId, float[] embedding, String attribute);
+    }
+
+    /**
+     * Walk every stored embedding under a key prefix with SCAN and pipelined HMGET,
+     * so in-process indexes can be rebuilt without the RediSearch module.
+     *
+     * @param prefix         {@link #PHOTO_PREFIX} or {@link #USER_PREFIX}
+     * @param attributeFields extra hash fields passed to the visitor (e.g. "userId")
+     * @return number of embeddings visited
+     */
+    public int forEachEmbedding(String prefix, List<String> attributeFields, EmbeddingVisitor visitor) {
+        return forEachEmbedding(prefix, attributeFields, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Same as {@link #forEachEmbedding(String, List, EmbeddingVisitor)} but stops after {@code limit} embeddings.
+     */
+    public int forEachEmbedding(String prefix, List<String> attributeFields, int limit, EmbeddingVisitor visitor) {
+        byte[][] embeddingFields = embeddingFields(prefix);
+        int vectorFields = embeddingFields.length;
+        byte[][] fields = Arrays.copyOf(embeddingFields, vectorFields + attributeFields.size());
+        for (int i = 0; i < attributeFields.size(); i++) {
+            fields[vectorFields + i] = attributeFields.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+
+        Integer visited = redisTemplate.execute((RedisConnection connection) -> {
+            int count = 0;
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                List<byte[]> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                while (cursor.hasNext() && count < limit) {
+                    batch.add(cursor.next());
+                    if (batch.size() >= SCAN_BATCH_SIZE) {
+                        count += visitBatch(connection, batch, prefix, fields, vectorFields, limit - count, visitor);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty() && count < limit) {
+                    count += visitBatch(connection, batch, prefix, fields, vectorFields, limit - count, visitor);
+                }
+            }
+            return count;
+        });
+        return visited != null ? visited : 0;
+    }
+
+    private int visitBatch(RedisConnection connection, List<byte[]> keys, String prefix,
+                           byte[][] fields, int vectorFields, int max, EmbeddingVisitor visitor) {
+        connection.openPipeline();
+        for (byte[] key : keys) {
+            connection.hashCommands().hMGet(key, fields);
+        }
+        List<Object> replies = connection.closePipeline();
+
+        int count = 0;
+        for (int i = 0; i < keys.size() && i < replies.size() && count < max; i++) {
+            if (!(replies.get(i) instanceof List<?> values) || values.size() < vectorFields) {
+                continue;
+            }
+            float[] embedding = firstEmbedding(values.subList(0, vectorFields));
+            if (embedding == null) {
+                continue;
+            }
+            String entityId = new String(keys.get(i), StandardCharsets.UTF_8).substring(prefix.length());
+            StringBuilder attribute = new StringBuilder();
+            for (int f = vectorFields; f < values.size(); f++) {
+                if (f > vectorFields) attribute.append(ATTRIBUTE_SEPARATOR);
+                attribute.append(parseRedisValue(values.get(f)));
+            }
+            visitor.visit(entityId, embedding, attribute.toString());
+            count++;
+        }
+        return count;
+    }
+
+    // ─── STORAGE MIGRATION ─────────────────────────────────────────
+
+    /**
+     * Move every stored embedding to the configured {@code ai.vector.redis.type}. Each hash gets the vector
+     * re-encoded into the new type's own field while the live index keeps serving the old one; a new index
+     * is then built over that field and swapped in exactly like {@link #rebuildIndex(String)}. A final pass
+     * removes the fields no index reads any more: the old vector field and the free-text {@code caption} /
+     * {@code bio} copies written before those moved to Mongo only. Safe to re-run: an alias that already
+     * serves the configured type only gets the cleanup pass.
+     *
+     * @return number of hashes rewritten per prefix
+     */
+    public Map<String, Integer> migrateStorageEncoding() {
+        Map<String, Integer> migrated = new LinkedHashMap<>();
+        migrated.put(PHOTO_PREFIX, migrateStorage(PHOTO_INDEX, "caption"));
+        migrated.put(USER_PREFIX, migrateStorage(USER_INDEX, "bio"));
+        return migrated;
+    }
+
+    private int migrateStorage(String alias, String droppedField) {
+        VectorField current = redisTemplate.execute((RedisConnection connection) -> indexedField(connection, alias));
+        String prefix = prefixOf(alias);
+        int rewritten = 0;
+        if (current != null && current.type() == storageType) {
+            log.info("Index '{}' already serves {}, nothing to re-encode", alias, current);
+        } else {
+            byte[] source = (current != null ? current.source() : LEGACY_EMBEDDING_FIELD).getBytes(StandardCharsets.UTF_8);
+            VectorField target = new VectorField(fieldFor(storageType), storageType);
+            byte[] targetField = target.source().getBytes(StandardCharsets.UTF_8);
+            rewritten = forEachKeyBatch(prefix, (connection, batch) -> reencodeBatch(connection, batch, source, targetField));
+            log.info("Re-encoded {} '{}' embeddings into {}", rewritten, prefix, target);
+            swapIndex(alias, target);
+        }
+
+        // only once the alias has moved: until then the old index reads the old field
+        List<byte[]> unused = new ArrayList<>();
+        for (byte[] field : embeddingFields(prefix)) {
+            if (!servedField(alias).source().equals(new String(field, StandardCharsets.UTF_8))) {
+                unused.add(field);
+            }
+        }
+        unused.add(droppedField.getBytes(StandardCharsets.UTF_8));
+        byte[][] fields = unused.toArray(byte[][]::new);
+        forEachKeyBatch(prefix, (connection, batch) -> {
+            connection.openPipeline();
+            for (byte[] key : batch) {
+                connection.hashCommands().hDel(key, fields);
+            }
+            connection.closePipeline();
+            return batch.size();
+        });
+        log.info("Removed unused fields {} from '{}' hashes", unused.stream()
+                .map(field -> new String(field, StandardCharsets.UTF_8)).toList(), prefix);
+        return rewritten;
+    }
+
+    @FunctionalInterface
+    private interface KeyBatchHandler {
+        int handle(RedisConnection connection, List<byte[]> keys);
+    }
+
+    /**
+     * SCAN every key under {@code prefix} and hand them to {@code handler} in batches.
+     *
+     * @return sum of what the handler returned
+     */
+    private int forEachKeyBatch(String prefix, KeyBatchHandler handler) {
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+        Integer total = redisTemplate.execute((RedisConnection connection) -> {
+            int count = 0;
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                List<byte[]> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() >= SCAN_BATCH_SIZE) {
+                        count += handler.handle(connection, batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    count += handler.handle(connection, batch);
+                }
+            }
+            return count;
+        });
+        return total != null ? total : 0;
+    }
+
+    private int reencodeBatch(RedisConnection connection, List<byte[]> keys, byte[] sourceField, byte[] targetField) {
+        connection.openPipeline();
+        for (byte[] key : keys) {
+            connection.hashCommands().hGet(key, sourceField);
+        }
+        List<Object> blobs = connection.closePipeline();
+
+        int count = 0;
+        connection.openPipeline();
+        for (int i = 0; i < keys.size() && i < blobs.size(); i++) {
+            if (!(blobs.get(i) instanceof byte[] blob)) continue;
+            VectorEncoding current = VectorEncoding.detect(blob.length, VECTOR_DIM);
+            if (current == null) continue;
+            connection.hashCommands().hSet(keys.get(i), targetField, storageType.encode(current.decode(blob)));
+            count++;
+        }
+        connection.closePipeline();
+        return count;
+    }
+
+    /**
+     * Count keys under a prefix with SCAN (keys only, no values are read).
+     */
+    public long countKeys(String prefix) {
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+        Long total = redisTemplate.execute((RedisConnection connection) -> {
+            long count = 0;
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext()) {
+                    cursor.next();
+                    count++;
+                }
+            }
+            return count;
+        });
+        return total != null ? total : 0;
+    }
+
+    /**
+     * Delete every key under a prefix, found with SCAN and removed in batches.
+     *
+     * @return number of keys deleted
+     */
+    public long deleteKeys(String prefix) {
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+        Long total = redisTemplate.execute((RedisConnection connection) -> {
+            long count = 0;
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                List<byte[]> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() >= SCAN_BATCH_SIZE) {
+                        Long deleted = connection.keyCommands().del(batch.toArray(byte[][]::new));
+                        count += deleted != null ? deleted : 0;
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    Long deleted = connection.keyCommands().del(batch.toArray(byte[][]::new));
+                    count += deleted != null ? deleted : 0;
+                }
+            }
+            return count;
+        });
+        return total != null ? total : 0;
+    }
+
+    /**
+     * Average {@code MEMORY USAGE} of up to {@code sampleKeys} hashes under a prefix, in bytes.
+     */
+    public long averageMemoryUsage(String prefix, int sampleKeys) {
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+        Long average = redisTemplate.execute((RedisConnection connection) -> {
+            long bytes = 0;
+            int sampled = 0;
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext() && sampled < sampleKeys) {
+                    Object usage = connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8), cursor.next());
+                    if (usage instanceof Number n) {
+                        bytes += n.longValue();
+                        sampled++;
+                    }
+                }
+            }
+            return sampled == 0 ? 0L : bytes / sampled;
+        });
+        return average != null ? average : 0;
+    }
+
     /**
      * Parse FT.SEARCH result into a clean list of maps.
      * Redis FT.SEARCH returns: [totalCount, key1, [field1, val1, ...], key2, [field2, val2, ...], ...]
      */
     @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> parseSearchResults(List<Object> rawResult, String idField,
-                                                           String excludeId, int topK) {
+    private List<Map<String, Object>> parseSearchResults(List<Object> rawResult, String idField, int topK) {
         if (rawResult == null || rawResult.size() < 2) {
             return Collections.emptyList();
         }
@@ -295,8 +1136,7 @@ public class RedisVectorService {
             Map<String, Object> doc = new HashMap<>();
             for (int j = 0; j < fields.size() - 1; j += 2) {
                 String fieldName = parseRedisValue(fields.get(j));
-                String fieldValue = parseRedisValue(fields.get(j + 1));
-                doc.put(fieldName, fieldValue);
+                doc.put(fieldName, parseRedisValue(fields.get(j + 1)));
             }
 
             // Extract the entity ID
@@ -308,11 +1148,6 @@ public class RedisVectorService {
                 }
             }
 
-            // Skip excluded ID
-            if (excludeId != null && excludeId.equals(entityId)) {
-                continue;
-            }
-
             doc.put("entityId", entityId);
 
             // Parse score (lower = more similar for COSINE distance)
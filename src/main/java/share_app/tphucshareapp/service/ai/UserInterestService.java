@@ -0,0 +1,192 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.enums.InteractionType;
+import share_app.tphucshareapp.model.User;
+import share_app.tphucshareapp.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps user interest vectors current from engagement without calling the embedding API.
+ * <p>
+ * Each post, like or favorite folds the photo's stored vector into the user's vector as a time-decayed
+ * weighted average: {@code u' = (d·M·u + w·p) / (d·M + w)} where {@code d = 0.5^(Δt / half-life)} and
+ * {@code M} is the accumulated weight. That is O(dim) and touches only Redis. Users updated this way are
+ * marked dirty and get a full profile rebuild (text embedding) on the periodic schedule.
+ * <p>
+ * Unlike and unsave take the photo back out with the inverse step, {@code u' = (d·M·u − w·p) / (d·M − w)}.
+ * That is approximate: the photo's contribution has decayed since it was folded in and {@code u} is
+ * renormalized between steps, so the rebuild is what makes the profile exact again. When too little weight
+ * would remain for the inverse to be stable, the vector is left alone until the rebuild.
+ * <p>
+ * The read-modify-write of one user is serialized across nodes by a short Redis lock per user. An update
+ * that finds the lock taken is not folded in; the user is marked dirty and the rebuild picks it up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserInterestService {
+
+    private static final String STATE_PREFIX = "user_interest:";
+    private static final String DIRTY_KEY = "user_interest:dirty";
+    private static final String LOCK_PREFIX = "user_interest:lock:";
+    private static final Duration LOCK_TTL = Duration.ofSeconds(10);
+
+    // KEYS[1] = lock, ARGV[1] = owner token as stored by the value serializer
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    // weight of a freshly rebuilt profile vector relative to a single post
+    private static final double BASE_WEIGHT = 2.0;
+
+    private final IVectorSearchService vectorSearchService;
+    private final RecommendationService recommendationService;
+    private final UserRepository userRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${ai.interest.half-life-days:30}")
+    private double halfLifeDays;
+
+    @Value("${ai.interest.max-rebuilds-per-run:1000}")
+    private int maxRebuildsPerRun;
+
+    /**
+     * Fold a photo into the user's interest vector.
+     */
+    public void recordInteraction(String userId, String photoId, InteractionType type) {
+        update(userId, photoId, type, false);
+    }
+
+    /**
+     * Take a photo back out of the user's interest vector after an unlike or unsave.
+     */
+    public void removeInteraction(String userId, String photoId, InteractionType type) {
+        update(userId, photoId, type, true);
+    }
+
+    private void update(String userId, String photoId, InteractionType type, boolean remove) {
+        float[] photoVector = vectorSearchService.getPhotoEmbedding(photoId);
+        if (photoVector == null) {
+            // nothing to fold in yet; the periodic rebuild will pick the interaction up
+            redisTemplate.opsForSet().add(DIRTY_KEY, userId);
+            return;
+        }
+
+        String lockKey = LOCK_PREFIX + userId;
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, LOCK_TTL))) {
+            log.debug("Interest vector of user {} is being updated elsewhere, leaving {} to the rebuild", userId, type);
+            redisTemplate.opsForSet().add(DIRTY_KEY, userId);
+            return;
+        }
+        try {
+            String stateKey = STATE_PREFIX + userId;
+            Map<Object, Object> state = redisTemplate.opsForHash().entries(stateKey);
+            long now = System.currentTimeMillis();
+            double w = weightOf(type);
+            float[] p = HnswIndex.normalize(photoVector);
+
+            float[] current = vectorSearchService.getUserEmbedding(userId);
+            float[] updated;
+            double mass;
+            if (current == null || current.length != p.length) {
+                if (remove) {
+                    redisTemplate.opsForSet().add(DIRTY_KEY, userId);
+                    return;
+                }
+                updated = p;
+                mass = w;
+            } else {
+                double previousMass = state.get("weight") instanceof Number n ? n.doubleValue() : BASE_WEIGHT;
+                long updatedAt = state.get("updatedAt") instanceof Number n ? n.longValue() : now;
+                double decay = Math.pow(0.5, (now - updatedAt) / (halfLifeDays * 86_400_000d));
+                double keep = decay * previousMass;
+                double signed = remove ? -w : w;
+                mass = keep + signed;
+                if (mass < w) {
+                    // removing would leave the vector dominated by rounding; let the rebuild redo it
+                    redisTemplate.opsForSet().add(DIRTY_KEY, userId);
+                    return;
+                }
+
+                float[] u = HnswIndex.normalize(current);
+                updated = new float[u.length];
+                for (int i = 0; i < u.length; i++) {
+                    updated[i] = (float) ((keep * u[i] + signed * p[i]) / mass);
+                }
+            }
+
+            vectorSearchService.storeUserEmbedding(userId, updated, null, null);
+            redisTemplate.opsForHash().putAll(stateKey, Map.of("weight", mass, "updatedAt", now));
+            redisTemplate.opsForSet().add(DIRTY_KEY, userId);
+            log.debug("Updated interest vector for user {} from {}{} of photo {}", userId, remove ? "removed " : "",
+                    type, photoId);
+        } finally {
+            try {
+                redisTemplate.execute(RELEASE_LOCK, List.of(lockKey), token);
+            } catch (Exception e) {
+                log.warn("Failed to release interest lock of user {}, it expires in {}: {}", userId, LOCK_TTL,
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rebuild the profile embedding of users whose vectors drifted through incremental updates,
+     * resetting their running average to the fresh profile.
+     */
+    @Scheduled(cron = "${ai.interest.rebuild-cron:0 30 3 * * *}")
+    public void rebuildDirtyProfiles() {
+        List<Object> dirty = redisTemplate.opsForSet().pop(DIRTY_KEY, maxRebuildsPerRun);
+        if (dirty == null || dirty.isEmpty()) return;
+
+        int rebuilt = 0;
+        List<Object> failed = new ArrayList<>();
+        for (Object id : dirty) {
+            String userId = (String) id;
+            try {
+                User user = userRepository.findById(userId).orElse(null);
+                if (user == null) continue;
+                if (recommendationService.indexUser(user) == RecommendationService.IndexOutcome.INDEXED) {
+                    redisTemplate.delete(STATE_PREFIX + userId);
+                    rebuilt++;
+                } else {
+                    failed.add(id);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to rebuild interest profile for {}: {}", userId, e.getMessage());
+                failed.add(id);
+            }
+        }
+        // popped ids are gone from the set; put back the ones to retry on the next run
+        if (!failed.isEmpty()) {
+            try {
+                redisTemplate.opsForSet().add(DIRTY_KEY, failed.toArray());
+            } catch (Exception e) {
+                log.warn("Failed to re-queue {} interest profiles: {}", failed.size(), e.getMessage());
+            }
+        }
+        log.info("Rebuilt {}/{} user interest profiles", rebuilt, dirty.size());
+    }
+
+    private double weightOf(InteractionType type) {
+        return switch (type) {
+            case POST -> 1.0;
+            case FAVORITE -> 0.8;
+            case LIKE -> 0.5;
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Photo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Per-user tag counts over the user's own photos, kept in Redis hashes ({@code user_tags:{userId}}).
+ * <p>
+ * Histograms are built lazily with one aggregation for every user missing from the cache and then
+ * maintained incrementally as photos are created or deleted, so reading them for a batch of users is
+ * a single pipelined round trip.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserTagHistogramService {
+
+    private static final String KEY_PREFIX = "user_tags:";
+    // present on every built histogram so users without tags are not rebuilt on each read
+    private static final String BUILT_FIELD = "__built";
+    private static final Duration HISTOGRAM_TTL = Duration.ofDays(7);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Add {@code delta} to each tag of a photo in the author's histogram. Histograms that were never
+     * built are left alone; the next read builds them from Mongo including this photo.
+     */
+    public void record(String userId, List<String> tags, int delta) {
+        if (userId == null || tags == null || tags.isEmpty()) return;
+        String key = KEY_PREFIX + userId;
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) return;
+            for (String tag : tags) {
+                Long count = redisTemplate.opsForHash().increment(key, tag, delta);
+                if (count != null && count <= 0) {
+                    redisTemplate.opsForHash().delete(key, tag);
+                }
+            }
+        } catch (Exception e) {
+            // a stale histogram only affects recommendation reasons; drop it so it is rebuilt
+            log.warn("Failed to update tag histogram for {}: {}", userId, e.getMessage());
+            redisTemplate.delete(key);
+        }
+    }
+
+    /**
+     * Tag histograms for the given users, keyed by user id. Users without photos map to an empty histogram.
+     */
+    public Map<String, Map<String, Long>> getHistograms(Collection<String> userIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<String, Map<String, Long>> histograms = new HashMap<>();
+        if (ids.isEmpty()) return histograms;
+
+        List<Object> replies = redisTemplate.executePipelined((RedisConnection connection) -> {
+            for (String id : ids) {
+                connection.hashCommands().hGetAll((KEY_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object reply = i < replies.size() ? replies.get(i) : null;
+            if (reply instanceof Map<?, ?> hash && hash.containsKey(BUILT_FIELD)) {
+                Map<String, Long> counts = new HashMap<>();
+                hash.forEach((tag, count) -> {
+                    if (!BUILT_FIELD.equals(tag) && count instanceof Number n) {
+                        counts.put((String) tag, n.longValue());
+                    }
+                });
+                histograms.put(ids.get(i), counts);
+            } else {
+                missing.add(ids.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            histograms.putAll(buildHistograms(missing));
+        }
+        return histograms;
+    }
+
+    private Map<String, Map<String, Long>> buildHistograms(List<String> userIds) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("user.userId").in(userIds).and("tags.0").exists(true)),
+                Aggregation.project("tags").and("user.userId").as("uid"),
+                Aggregation.unwind("tags"),
+                Aggregation.group("uid", "tags").count().as("count")
+        );
+        List<Document> rows = mongoTemplate.aggregate(aggregation, Photo.class, Document.class).getMappedResults();
+
+        Map<String, Map<String, Long>> histograms = new HashMap<>();
+        for (String userId : userIds) {
+            histograms.put(userId, new HashMap<>());
+        }
+        for (Document row : rows) {
+            Document id = row.get("_id", Document.class);
+            Map<String, Long> counts = id != null ? histograms.get(id.getString("uid")) : null;
+            if (counts != null && id.getString("tags") != null) {
+                counts.put(id.getString("tags"), ((Number) row.get("count")).longValue());
+            }
+        }
+
+        redisTemplate.executePipelined((RedisConnection connection) -> {
+            for (Map.Entry<String, Map<String, Long>> entry : histograms.entrySet()) {
+                byte[] key = (KEY_PREFIX + entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                Map<byte[], byte[]> fields = new HashMap<>();
+                fields.put(BUILT_FIELD.getBytes(StandardCharsets.UTF_8), "1".getBytes(StandardCharsets.UTF_8));
+                entry.getValue().forEach((tag, count) -> fields.put(
+                        tag.getBytes(StandardCharsets.UTF_8), String.valueOf(count).getBytes(StandardCharsets.UTF_8)));
+                connection.hashCommands().hMSet(key, fields);
+                connection.keyCommands().expire(key, HISTOGRAM_TTL.getSeconds());
+            }
+            return null;
+        });
+        log.debug("Built tag histograms for {} users", userIds.size());
+        return histograms;
+    }
+}
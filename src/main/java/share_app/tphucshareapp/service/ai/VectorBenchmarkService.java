@@ -0,0 +1,280 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ANN benchmark harness: loads synthetic clustered vectors into a throwaway index per HNSW parameter set
+ * and reports build time, recall@k against brute force, p50/p99 query latency and index memory.
+ * <p>
+ * The embedded engine is benchmarked in a temporary directory; RediSearch on a {@code bench_vec_*} prefix
+ * that is dropped together with its documents afterwards. Runs are seeded, so repeated runs with the same
+ * request see the same data and queries.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VectorBenchmarkService {
+
+    private static final int DIM = EmbeddingService.EMBEDDING_DIMENSION;
+    private static final int CLUSTERS = 64;
+    private static final float CLUSTER_SPREAD = 0.6f;
+    private static final int WARMUP_QUERIES = 10;
+    private static final int WRITE_BATCH = 500;
+    private static final Duration INDEXING_TIMEOUT = Duration.ofMinutes(30);
+
+    private final RedisVectorService redisVectorService;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Map<String, Object> lastReport = Map.of("status", "never run");
+
+    /**
+     * One benchmark run: every {@code m × efConstruction} combination is built once per engine and
+     * queried with every {@code efRuntime}.
+     */
+    public record Request(List<String> engines, int vectors, int queries, int k,
+                          List<Integer> m, List<Integer> efConstruction, List<Integer> efRuntime, long seed) {
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    @Async("eventExecutor")
+    public void runAsync(Request request) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Vector benchmark already running");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            lastReport = Map.of("status", "running", "request", request, "startedAt", Instant.ofEpochMilli(start).toString());
+            Map<String, Object> report = run(request);
+            report.put("status", "completed");
+            report.put("durationMs", System.currentTimeMillis() - start);
+            lastReport = report;
+        } catch (Exception e) {
+            log.error("Vector benchmark failed: {}", e.getMessage(), e);
+            lastReport = Map.of("status", "failed", "error", String.valueOf(e.getMessage()));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> run(Request request) throws IOException {
+        Random random = new Random(request.seed());
+        float[][] centers = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers[c] = gaussian(random, 1.0f, null);
+        }
+        float[][] data = new float[request.vectors()][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = HnswIndex.normalize(gaussian(random, CLUSTER_SPREAD, centers[random.nextInt(CLUSTERS)]));
+        }
+        float[][] queries = new float[request.queries()][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = HnswIndex.normalize(gaussian(random, CLUSTER_SPREAD, centers[random.nextInt(CLUSTERS)]));
+        }
+
+        long truthStart = System.nanoTime();
+        List<Set<String>> truth = new ArrayList<>(queries.length);
+        for (float[] query : queries) {
+            truth.add(bruteForce(query, data, request.k()));
+        }
+        double bruteForceMs = (System.nanoTime() - truthStart) / 1e6 / Math.max(1, queries.length);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String engine : request.engines()) {
+            for (int m : request.m()) {
+                for (int efConstruction : request.efConstruction()) {
+                    log.info("Benchmarking {} M={} EF_CONSTRUCTION={} on {} vectors", engine, m, efConstruction, data.length);
+                    rows.addAll("redis".equalsIgnoreCase(engine)
+                            ? benchmarkRedis(request, m, efConstruction, data, queries, truth)
+                            : benchmarkLocal(request, m, efConstruction, data, queries, truth));
+                }
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("vectors", data.length);
+        report.put("dim", DIM);
+        report.put("queries", queries.length);
+        report.put("k", request.k());
+        report.put("seed", request.seed());
+        report.put("bruteForceMsPerQuery", round(bruteForceMs));
+        report.put("results", rows);
+        return report;
+    }
+
+    // ─── ENGINES ───────────────────────────────────────────────────
+
+    private List<Map<String, Object>> benchmarkLocal(Request request, int m, int efConstruction,
+                                                     float[][] data, float[][] queries, List<Set<String>> truth) throws IOException {
+        Path dir = Files.createTempDirectory("hnsw-bench");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (HnswIndex index = new HnswIndex(new MappedVectorStore(dir.resolve("bench.vec"), DIM), m, efConstruction,
+                request.efRuntime().get(0))) {
+            long buildStart = System.nanoTime();
+            for (int i = 0; i < data.length; i++) {
+                index.add(String.valueOf(i), data[i], null);
+            }
+            long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+
+            for (int ef : request.efRuntime()) {
+                QueryStats stats = measure(queries, truth, request.k(),
+                        query -> index.search(query, request.k(), ef, null).stream().map(HnswIndex.Result::id).toList());
+                rows.add(row("local", m, efConstruction, ef, buildMs, stats, index.estimatedBytes()));
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+        return rows;
+    }
+
+    private List<Map<String, Object>> benchmarkRedis(Request request, int m, int efConstruction,
+                                                     float[][] data, float[][] queries, List<Set<String>> truth) {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        String indexName = "bench_vec_idx_" + run;
+        String prefix = "bench_vec_" + run + ":";
+        VectorEncoding encoding = redisVectorService.getStorageType();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try {
+            for (int from = 0; from < data.length; from += WRITE_BATCH) {
+                int to = Math.min(data.length, from + WRITE_BATCH);
+                int batchStart = from;
+                redisTemplate.executePipelined((RedisConnection connection) -> {
+                    for (int i = batchStart; i < to; i++) {
+                        connection.hashCommands().hSet((prefix + i).getBytes(StandardCharsets.UTF_8),
+                                "embedding".getBytes(StandardCharsets.UTF_8), encoding.encode(data[i]));
+                    }
+                    return null;
+                });
+            }
+
+            // index existing documents in one background scan, as a production rebuild does
+            long buildStart = System.nanoTime();
+            redisVectorService.createIndex(indexName, prefix, new HnswParams(m, efConstruction, 0, data.length));
+            redisVectorService.waitForIndexing(indexName, INDEXING_TIMEOUT);
+            long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+            Object sizeMb = redisVectorService.indexInfo(indexName).get("vector_index_sz_mb");
+            long memoryBytes = sizeMb != null ? (long) (Double.parseDouble(sizeMb.toString()) * 1024 * 1024) : -1;
+
+            for (int ef : request.efRuntime()) {
+                QueryStats stats = measure(queries, truth, request.k(), query -> redisVectorService.search(indexName,
+                                VectorQuery.builder().vector(query).topK(request.k()).efRuntime(ef).build()).stream()
+                        .map(r -> (String) r.get("entityId"))
+                        .toList());
+                rows.add(row("redis", m, efConstruction, ef, buildMs, stats, memoryBytes));
+            }
+        } finally {
+            redisVectorService.dropIndex(indexName, true);
+            // documents written before the index existed, or left by a failed write, are not covered by DD
+            try {
+                redisVectorService.deleteKeys(prefix);
+            } catch (Exception e) {
+                log.warn("Failed to delete benchmark documents under {}: {}", prefix, e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    // ─── MEASUREMENT ───────────────────────────────────────────────
+
+    @FunctionalInterface
+    private interface Searcher {
+        List<String> search(float[] query);
+    }
+
+    private record QueryStats(double recall, double p50Micros, double p99Micros, double qps) {
+    }
+
+    private QueryStats measure(float[][] queries, List<Set<String>> truth, int k, Searcher searcher) {
+        for (int i = 0; i < Math.min(WARMUP_QUERIES, queries.length); i++) {
+            searcher.search(queries[i]);
+        }
+
+        long[] latencies = new long[queries.length];
+        long hits = 0;
+        long total = 0;
+        for (int i = 0; i < queries.length; i++) {
+            long start = System.nanoTime();
+            List<String> found = searcher.search(queries[i]);
+            latencies[i] = System.nanoTime() - start;
+            total += latencies[i];
+            for (String id : found) {
+                if (truth.get(i).contains(id)) hits++;
+            }
+        }
+        Arrays.sort(latencies);
+        double recall = queries.length == 0 ? 0 : (double) hits / ((long) queries.length * k);
+        double qps = total == 0 ? 0 : queries.length / (total / 1e9);
+        return new QueryStats(recall, percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3, qps);
+    }
+
+    private Map<String, Object> row(String engine, int m, int efConstruction, int efRuntime, long buildMs,
+                                    QueryStats stats, long memoryBytes) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("engine", engine);
+        row.put("m", m);
+        row.put("efConstruction", efConstruction);
+        row.put("efRuntime", efRuntime);
+        row.put("buildMs", buildMs);
+        row.put("recallAtK", round(stats.recall()));
+        row.put("p50Micros", round(stats.p50Micros()));
+        row.put("p99Micros", round(stats.p99Micros()));
+        row.put("qps", round(stats.qps()));
+        row.put("memoryBytes", memoryBytes);
+        return row;
+    }
+
+    private Set<String> bruteForce(float[] query, float[][] data, int k) {
+        PriorityQueue<double[]> best = new PriorityQueue<>(Comparator.comparingDouble(e -> e[1]));
+        for (int i = 0; i < data.length; i++) {
+            best.add(new double[]{i, MappedVectorStore.dot(query, data[i], DIM)});
+            if (best.size() > k) best.poll();
+        }
+        Set<String> ids = new HashSet<>();
+        for (double[] entry : best) {
+            ids.add(String.valueOf((int) entry[0]));
+        }
+        return ids;
+    }
+
+    private static float[] gaussian(Random random, float sigma, float[] mean) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) (random.nextGaussian() * sigma) + (mean != null ? mean[i] : 0f);
+        }
+        return vector;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,109 @@
+package share_app.tphucshareapp.service.ai;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary layouts for stored embeddings (all little-endian).
+ * <ul>
+ *   <li>{@code FLOAT32} – 4 bytes per component, full precision</li>
+ *   <li>{@code FLOAT16} – IEEE half precision, 2 bytes per component</li>
+ *   <li>{@code INT8} – 4-byte float scale followed by one signed byte per component ({@code v ≈ code * scale})</li>
+ * </ul>
+ */
+public enum VectorEncoding {
+
+    FLOAT32 {
+        @Override
+        public int bytesFor(int dim) {
+            return dim * 4;
+        }
+
+        @Override
+        public byte[] encode(float[] vector) {
+            return EmbeddingService.floatArrayToBytes(vector);
+        }
+
+        @Override
+        public float[] decode(byte[] bytes) {
+            return EmbeddingService.bytesToFloatArray(bytes);
+        }
+    },
+
+    FLOAT16 {
+        @Override
+        public int bytesFor(int dim) {
+            return dim * 2;
+        }
+
+        @Override
+        public byte[] encode(float[] vector) {
+            ByteBuffer buffer = ByteBuffer.allocate(vector.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+            for (float v : vector) {
+                buffer.putShort(Float.floatToFloat16(v));
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public float[] decode(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            float[] vector = new float[bytes.length / 2];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = Float.float16ToFloat(buffer.getShort());
+            }
+            return vector;
+        }
+    },
+
+    INT8 {
+        @Override
+        public int bytesFor(int dim) {
+            return 4 + dim;
+        }
+
+        @Override
+        public byte[] encode(float[] vector) {
+            float maxAbs = 0f;
+            for (float v : vector) {
+                maxAbs = Math.max(maxAbs, Math.abs(v));
+            }
+            float scale = maxAbs == 0f ? 1f : maxAbs / 127f;
+            ByteBuffer buffer = ByteBuffer.allocate(4 + vector.length).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putFloat(scale);
+            for (float v : vector) {
+                buffer.put((byte) Math.max(-127, Math.min(127, Math.round(v / scale))));
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public float[] decode(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            float scale = buffer.getFloat();
+            float[] vector = new float[bytes.length - 4];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = buffer.get() * scale;
+            }
+            return vector;
+        }
+    };
+
+    public abstract int bytesFor(int dim);
+
+    public abstract byte[] encode(float[] vector);
+
+    public abstract float[] decode(byte[] bytes);
+
+    /**
+     * Identify the encoding of a stored blob from its length, or null if it matches none.
+     */
+    public static VectorEncoding detect(int blobLength, int dim) {
+        for (VectorEncoding encoding : values()) {
+            if (encoding.bytesFor(dim) == blobLength) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
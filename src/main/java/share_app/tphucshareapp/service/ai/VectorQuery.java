@@ -0,0 +1,41 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * A KNN request plus the attribute filters applied before ranking, so the engine returns
+ * {@code topK} hits that already satisfy them.
+ * <p>
+ * For photos {@code excludeIds} are photo ids and {@code excludeAuthors}, {@code requiredTags} and
+ * {@code createdAfter} restrict by author, tags (all must match) and creation time. For users only
+ * {@code excludeIds} (user ids) applies.
+ */
+@Getter
+@Builder
+public class VectorQuery {
+
+    private final float[] vector;
+    private final int topK;
+
+    @Builder.Default
+    private final Set<String> excludeIds = Set.of();
+
+    @Builder.Default
+    private final Set<String> excludeAuthors = Set.of();
+
+    @Builder.Default
+    private final Set<String> requiredTags = Set.of();
+
+    private final Instant createdAfter;
+
+    // HNSW search breadth for this query; null uses the engine default
+    private final Integer efRuntime;
+
+    public boolean hasFilters() {
+        return !excludeIds.isEmpty() || !excludeAuthors.isEmpty() || !requiredTags.isEmpty() || createdAfter != null;
+    }
+}
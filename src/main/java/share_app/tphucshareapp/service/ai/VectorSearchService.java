@@ -0,0 +1,119 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes vector reads and writes between Redis Stack and the embedded HNSW engine.
+ * <p>
+ * {@code ai.vector.engine}:
+ * <ul>
+ *   <li>{@code redis} (default) – RediSearch only, local engine off</li>
+ *   <li>{@code local} – KNN served in-process; Redis hashes are still written as the source of truth</li>
+ *   <li>{@code auto} – RediSearch when its index exists, otherwise the local engine</li>
+ * </ul>
+ */
+@Service
+@Primary
+@Slf4j
+public class VectorSearchService implements IVectorSearchService {
+
+    private final RedisVectorService redisVectorService;
+    private final LocalVectorService localVectorService;
+
+    @Value("${ai.vector.engine:redis}")
+    private String engine;
+
+    public VectorSearchService(RedisVectorService redisVectorService, LocalVectorService localVectorService) {
+        this.redisVectorService = redisVectorService;
+        this.localVectorService = localVectorService;
+    }
+
+    private boolean useLocal() {
+        if (!localVectorService.isReady()) return false;
+        return "local".equalsIgnoreCase(engine)
+                || ("auto".equalsIgnoreCase(engine) && !redisVectorService.isIndexAvailable());
+    }
+
+    @Override
+    public void storePhotoEmbedding(String photoId, float[] embedding, String userId, List<String> tags, Instant createdAt) {
+        redisVectorService.storePhotoEmbedding(photoId, embedding, userId, tags, createdAt);
+        if (localVectorService.isEnabled()) {
+            localVectorService.storePhotoEmbedding(photoId, embedding, userId, tags, createdAt);
+        }
+    }
+
+    @Override
+    public void storeUserEmbedding(String userId, float[] embedding, String username, String bio) {
+        redisVectorService.storeUserEmbedding(userId, embedding, username, bio);
+        if (localVectorService.isEnabled()) {
+            localVectorService.storeUserEmbedding(userId, embedding, username, bio);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> searchPhotos(VectorQuery query) {
+        if (useLocal()) {
+            return localVectorService.searchPhotos(query);
+        }
+        return redisVectorService.searchPhotos(query);
+    }
+
+    @Override
+    public List<Map<String, Object>> searchUsers(VectorQuery query) {
+        if (useLocal()) {
+            return localVectorService.searchUsers(query);
+        }
+        return redisVectorService.searchUsers(query);
+    }
+
+    @Override
+    public void deletePhotoEmbedding(String photoId) {
+        redisVectorService.deletePhotoEmbedding(photoId);
+        localVectorService.deletePhotoEmbedding(photoId);
+    }
+
+    @Override
+    public void deleteUserEmbedding(String userId) {
+        redisVectorService.deleteUserEmbedding(userId);
+        localVectorService.deleteUserEmbedding(userId);
+    }
+
+    @Override
+    public boolean hasPhotoEmbedding(String photoId) {
+        if (useLocal()) {
+            return localVectorService.hasPhotoEmbedding(photoId);
+        }
+        return redisVectorService.hasPhotoEmbedding(photoId);
+    }
+
+    @Override
+    public boolean hasUserEmbedding(String userId) {
+        if (useLocal()) {
+            return localVectorService.hasUserEmbedding(userId);
+        }
+        return redisVectorService.hasUserEmbedding(userId);
+    }
+
+    @Override
+    public float[] getPhotoEmbedding(String photoId) {
+        if (useLocal()) {
+            return localVectorService.getPhotoEmbedding(photoId);
+        }
+        return redisVectorService.getPhotoEmbedding(photoId);
+    }
+
+    /**
+     * Always read from Redis, the source of truth, since interest updates read-modify-write this vector.
+     */
+    @Override
+    public float[] getUserEmbedding(String userId) {
+        return redisVectorService.getUserEmbedding(userId);
+    }
+}
@@ -0,0 +1,208 @@
+package share_app.tphucshareapp.service.ai;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintenance around the on-disk vector format: migrating stored embeddings to the configured
+ * encoding, rebuilding RediSearch indexes with new HNSW parameters and measuring what each encoding
+ * costs in recall versus memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VectorStorageService {
+
+    private static final int DIM = EmbeddingService.EMBEDDING_DIMENSION;
+    private static final int MAX_QUERIES = 100;
+    private static final int MEMORY_SAMPLE_KEYS = 50;
+
+    private final RedisVectorService redisVectorService;
+    private final LocalVectorService localVectorService;
+
+    private final AtomicBoolean migrationRunning = new AtomicBoolean(false);
+    private volatile Map<String, Object> lastMigration = Map.of("status", "never run");
+    private final AtomicBoolean reindexRunning = new AtomicBoolean(false);
+    private volatile Map<String, Object> lastReindex = Map.of("status", "never run");
+
+    // ─── MIGRATION ─────────────────────────────────────────────────
+
+    public boolean isMigrationRunning() {
+        return migrationRunning.get();
+    }
+
+    public Map<String, Object> getLastMigration() {
+        return lastMigration;
+    }
+
+    /**
+     * Re-encode every {@code photo_vec:*} / {@code user_vec:*} hash to {@code ai.vector.redis.type} and swap
+     * in indexes over the new encoding. No-op if a migration or reindex is already in progress, since both
+     * swap the same aliases.
+     */
+    @Async("eventExecutor")
+    public void migrateAsync() {
+        if (reindexRunning.get() || !migrationRunning.compareAndSet(false, true)) {
+            log.info("Vector storage migration or reindex already running");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            lastMigration = Map.of("status", "running", "startedAt", Instant.ofEpochMilli(start).toString());
+            Map<String, Integer> rewritten = redisVectorService.migrateStorageEncoding();
+            lastMigration = Map.of(
+                    "status", "completed",
+                    "encoding", redisVectorService.getStorageType().name(),
+                    "rewritten", rewritten,
+                    "durationMs", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Vector storage migration failed: {}", e.getMessage(), e);
+            lastMigration = Map.of("status", "failed", "error", String.valueOf(e.getMessage()));
+        } finally {
+            migrationRunning.set(false);
+        }
+    }
+
+    // ─── HNSW REINDEX ──────────────────────────────────────────────
+
+    public boolean isReindexRunning() {
+        return reindexRunning.get();
+    }
+
+    public Map<String, Object> getLastReindex() {
+        return lastReindex;
+    }
+
+    /**
+     * Rebuild the given RediSearch indexes with the configured HNSW parameters, swapping each alias once
+     * its new index has caught up. No-op if a reindex or migration is already in progress.
+     */
+    @Async("eventExecutor")
+    public void reindexAsync(List<String> aliases) {
+        if (migrationRunning.get() || !reindexRunning.compareAndSet(false, true)) {
+            log.info("Vector reindex or storage migration already running");
+            return;
+        }
+        try {
+            lastReindex = Map.of("status", "running", "indexes", aliases, "startedAt", Instant.now().toString());
+            List<Map<String, Object>> rebuilt = new ArrayList<>();
+            for (String alias : aliases) {
+                rebuilt.add(redisVectorService.rebuildIndex(alias));
+            }
+            lastReindex = Map.of("status", "completed", "indexes", rebuilt);
+        } catch (Exception e) {
+            log.error("Vector reindex failed: {}", e.getMessage(), e);
+            lastReindex = Map.of("status", "failed", "error", String.valueOf(e.getMessage()));
+        } finally {
+            reindexRunning.set(false);
+        }
+    }
+
+    // ─── RECALL VS MEMORY REPORT ───────────────────────────────────
+
+    /**
+     * Compare every {@link VectorEncoding} against a sample of stored photo vectors, decoded from their
+     * current Redis encoding, as ground truth. For each encoding reports recall@k of ranking by the encoded
+     * vectors, which is what Redis serves since it keeps no full-precision copy, alongside bytes per vector
+     * and the projected size of the whole photo set. INT8 also reports the local engine's recall after it
+     * re-ranks its {@code ef} candidates against its FLOAT32 file.
+     */
+    public Map<String, Object> buildReport(int sampleSize, int k) {
+        List<float[]> sample = new ArrayList<>(sampleSize);
+        redisVectorService.forEachEmbedding(RedisVectorService.PHOTO_PREFIX, List.of(), sampleSize,
+                (id, embedding, attribute) -> sample.add(HnswIndex.normalize(embedding)));
+
+        int localCandidates = Math.max(k, localVectorService.getEfSearch());
+        long totalVectors = redisVectorService.countKeys(RedisVectorService.PHOTO_PREFIX);
+        int queries = Math.min(MAX_QUERIES, sample.size());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("sampleSize", sample.size());
+        report.put("queries", queries);
+        report.put("k", k);
+        report.put("totalPhotoVectors", totalVectors);
+        report.put("groundTruth", "stored vectors decoded from " + redisVectorService.getStorageType().name());
+        report.put("redisStorageType", redisVectorService.getStorageType().name());
+        report.put("localRerankCandidates", localCandidates);
+        report.put("redisAvgHashBytes", redisVectorService.averageMemoryUsage(RedisVectorService.PHOTO_PREFIX, MEMORY_SAMPLE_KEYS));
+        report.put("localEngine", localVectorService.stats());
+
+        if (queries == 0 || sample.size() <= k) {
+            report.put("encodings", List.of());
+            return report;
+        }
+
+        List<Map<String, Object>> encodings = new ArrayList<>();
+        for (VectorEncoding encoding : VectorEncoding.values()) {
+            List<float[]> decoded = new ArrayList<>(sample.size());
+            for (float[] vector : sample) {
+                decoded.add(encoding.decode(encoding.encode(vector)));
+            }
+
+            // only the local engine keeps a full-precision copy to re-rank against, and only for INT8
+            boolean localRerank = encoding == VectorEncoding.INT8;
+            double rawRecall = 0;
+            double rerankedRecall = 0;
+            for (int q = 0; q < queries; q++) {
+                float[] query = sample.get(q);
+                Set<Integer> truth = new HashSet<>(topK(query, sample, q, k));
+                List<Integer> approximate = topK(query, decoded, q, localRerank ? localCandidates : k);
+
+                rawRecall += overlap(truth, approximate.subList(0, Math.min(k, approximate.size())));
+                if (localRerank) {
+                    approximate.sort(Comparator.comparingDouble(i -> -MappedVectorStore.dot(query, sample.get(i), DIM)));
+                    rerankedRecall += overlap(truth, approximate.subList(0, Math.min(k, approximate.size())));
+                }
+            }
+
+            int bytesPerVector = encoding.bytesFor(DIM);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("encoding", encoding.name());
+            row.put("bytesPerVector", bytesPerVector);
+            row.put("projectedBytes", totalVectors * bytesPerVector);
+            row.put("recallAtK", round(rawRecall / queries / k));
+            if (localRerank) {
+                row.put("localRecallAtKReranked", round(rerankedRecall / queries / k));
+            }
+            encodings.add(row);
+        }
+        report.put("encodings", encodings);
+        return report;
+    }
+
+    /**
+     * Indices of the {@code k} vectors with the highest dot product to {@code query}, best first, skipping {@code self}.
+     */
+    private List<Integer> topK(float[] query, List<float[]> vectors, int self, int k) {
+        PriorityQueue<double[]> best = new PriorityQueue<>(Comparator.comparingDouble(e -> e[1]));
+        for (int i = 0; i < vectors.size(); i++) {
+            if (i == self) continue;
+            best.add(new double[]{i, MappedVectorStore.dot(query, vectors.get(i), DIM)});
+            if (best.size() > k) best.poll();
+        }
+        List<Integer> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add((int) best.poll()[0]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private int overlap(Set<Integer> truth, List<Integer> found) {
+        int hits = 0;
+        for (Integer i : found) {
+            if (truth.contains(i)) hits++;
+        }
+        return hits;
+    }
+
+    private double round(double value) {
+        return Math.round(value * 10000) / 10000.0;
+    }
+}
@@ -22,6 +22,8 @@ import share_app.tphucshareapp.repository.UserRepository;
 import share_app.tphucshareapp.security.jwt.JwtUtils;
 import share_app.tphucshareapp.security.userdetails.AppUserDetails;
 import share_app.tphucshareapp.service.email.EmailService;
+import share_app.tphucshareapp.service.search.SearchResultCache;
+import share_app.tphucshareapp.service.search.UserAutocompleteService;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -36,6 +38,8 @@ public class AuthService implements IAuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final UserAutocompleteService userAutocompleteService;
+    private final SearchResultCache searchResultCache;
 
     private static final int RESET_TOKEN_EXPIRY_MINUTES = 30;
 
@@ -80,7 +84,9 @@ public class AuthService implements IAuthService {
         user.setRole(UserRole.ROLE_USER);
         user.setCreatedAt(Instant.now());
 
-        userRepository.save(user);
+        User saved = userRepository.save(user);
+        userAutocompleteService.markChanged(saved.getId());
+        searchResultCache.invalidate(SearchResultCache.Type.USERS);
         log.info("User registered successfully: {}", request.getEmail());
     }
 
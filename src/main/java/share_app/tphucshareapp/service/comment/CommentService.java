@@ -19,7 +19,9 @@ import share_app.tphucshareapp.repository.CommentLikeRepository;
 import share_app.tphucshareapp.repository.CommentRepository;
 import share_app.tphucshareapp.repository.PhotoRepository;
 import share_app.tphucshareapp.repository.UserRepository;
+import share_app.tphucshareapp.service.ai.EngagementRollupService;
 import share_app.tphucshareapp.service.notification.INotificationService;
+import share_app.tphucshareapp.service.photo.TagRankingService;
 import share_app.tphucshareapp.service.user.UserAvatarCacheService;
 import share_app.tphucshareapp.service.user.UserService;
 
@@ -44,6 +46,7 @@ public class CommentService implements ICommentService {
     private final ModelMapper modelMapper;
     private final INotificationService notificationService;
     private final UserAvatarCacheService userAvatarCacheService;
+    private final EngagementRollupService engagementRollupService;
     
     // Pattern to match @username mentions
     private static final Pattern MENTION_PATTERN = Pattern.compile("@(\\w+)");
@@ -102,8 +105,10 @@ public class CommentService implements ICommentService {
         } else {
             // Only increment photo comment count for top-level comments
             Query query = new Query(Criteria.where("_id").is(photoId));
-            Update update = new Update().inc("commentCount", 1);
+            Update update = new Update().inc("commentCount", 1)
+                    .inc(TagRankingService.RANK_FIELD, TagRankingService.COMMENT_POINTS);
             mongoTemplate.updateFirst(query, update, Photo.class);
+            engagementRollupService.recordEngagement(photo, 0, 1);
         }
         
         // Send notification to photo owner for new comment (only for top-level comments)
@@ -188,8 +193,10 @@ public class CommentService implements ICommentService {
         } else {
             // This is a top-level comment, decrement photo's comment count
             Query query = new Query(Criteria.where("_id").is(comment.getPhotoId()));
-            Update update = new Update().inc("commentCount", -1);
+            Update update = new Update().inc("commentCount", -1)
+                    .inc(TagRankingService.RANK_FIELD, -TagRankingService.COMMENT_POINTS);
             mongoTemplate.updateFirst(query, update, Photo.class);
+            engagementRollupService.recordEngagement(comment.getPhotoId(), 0, -1);
         }
         
         log.info("Comment {} deleted successfully by user {}", commentId, currentUser.getId());
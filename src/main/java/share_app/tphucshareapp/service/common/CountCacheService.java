@@ -0,0 +1,55 @@
+package share_app.tphucshareapp.service.common;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived totals for list endpoints. A count is computed at most once per
+ * {@code pagination.count-cache-ttl-seconds} per key, so paging through a list no longer repeats it;
+ * writers that change a total may {@link #evict} it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CountCacheService {
+
+    private static final String COUNT_CACHE_KEY = "count:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${pagination.count-cache-ttl-seconds:60}")
+    private long ttlSeconds;
+
+    public long get(String key, LongSupplier counter) {
+        try {
+            Object cached = redisTemplate.opsForValue().get(COUNT_CACHE_KEY + key);
+            if (cached instanceof Number count) {
+                return count.longValue();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read cached count {}: {}", key, e.getMessage());
+        }
+
+        long count = counter.getAsLong();
+        try {
+            redisTemplate.opsForValue().set(COUNT_CACHE_KEY + key, count, Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            log.warn("Failed to cache count {}: {}", key, e.getMessage());
+        }
+        return count;
+    }
+
+    public void evict(String key) {
+        try {
+            redisTemplate.delete(COUNT_CACHE_KEY + key);
+        } catch (Exception e) {
+            log.warn("Failed to evict cached count {}: {}", key, e.getMessage());
+        }
+    }
+}
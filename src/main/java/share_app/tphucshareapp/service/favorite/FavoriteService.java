@@ -2,11 +2,14 @@ package share_app.tphucshareapp.service.favorite;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
+import share_app.tphucshareapp.enums.InteractionType;
+import share_app.tphucshareapp.event.PhotoEngagementEvent;
 import share_app.tphucshareapp.model.Favorite;
 import share_app.tphucshareapp.model.Photo;
 import share_app.tphucshareapp.model.User;
@@ -29,6 +32,7 @@ public class FavoriteService implements IFavoriteService {
     private final PhotoRepository photoRepository;
     private final UserService userService;
     private final PhotoConversionService photoConversionService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public PhotoResponse toggleFavorite(String photoId) {
@@ -41,6 +45,7 @@ public class FavoriteService implements IFavoriteService {
         if (existingFavorite.isPresent()) {
             // Unsave
             favoriteRepository.delete(existingFavorite.get());
+            eventPublisher.publishEvent(new PhotoEngagementEvent(this, currentUser.getId(), photoId, InteractionType.FAVORITE, true));
             log.info("User {} unsaved photo {}", currentUser.getId(), photoId);
         } else {
             // Save
@@ -49,6 +54,7 @@ public class FavoriteService implements IFavoriteService {
             favorite.setPhotoId(photoId);
             favorite.setCreatedAt(Instant.now());
             favoriteRepository.save(favorite);
+            eventPublisher.publishEvent(new PhotoEngagementEvent(this, currentUser.getId(), photoId, InteractionType.FAVORITE));
             log.info("User {} saved photo {}", currentUser.getId(), photoId);
         }
 
@@ -59,7 +65,7 @@ public class FavoriteService implements IFavoriteService {
     public List<PhotoResponse> getFavorites(int page, int size) {
         User currentUser = userService.getCurrentUser();
         Pageable pageable = PageRequest.of(page, size);
-        Page<Favorite> favorites = favoriteRepository.findByUserIdOrderByCreatedAtDesc(currentUser.getId(), pageable);
+        Slice<Favorite> favorites = favoriteRepository.findByUserIdOrderByCreatedAtDesc(currentUser.getId(), pageable);
 
         return favorites.getContent().stream()
                 .map(favorite -> {
@@ -3,13 +3,15 @@ package share_app.tphucshareapp.service.follow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -20,7 +22,10 @@ import share_app.tphucshareapp.model.User;
 import share_app.tphucshareapp.repository.FollowRepository;
 import share_app.tphucshareapp.repository.UserRepository;
 import share_app.tphucshareapp.security.userdetails.AppUserDetails;
+import share_app.tphucshareapp.service.ai.RecommendationService;
 import share_app.tphucshareapp.service.notification.INotificationService;
+import share_app.tphucshareapp.service.search.UserAutocompleteService;
+import share_app.tphucshareapp.service.user.PopularUserService;
 import share_app.tphucshareapp.service.user.UserAvatarCacheService;
 
 import java.time.Instant;
@@ -40,6 +45,9 @@ public class FollowService implements IFollowService {
     private final MongoTemplate mongoTemplate;
     private final INotificationService notificationService;
     private final UserAvatarCacheService userAvatarCacheService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PopularUserService popularUserService;
+    private final UserAutocompleteService userAutocompleteService;
 
     @Override
     public void follow(String targetUserId) {
@@ -66,11 +74,18 @@ public class FollowService implements IFollowService {
         // increase follower of person who have new follower
         Query followingQuery = new Query(Criteria.where("_id").is(targetUserId));
         Update followingUpdate = new Update().inc("followerCount", 1);
-        mongoTemplate.updateFirst(followingQuery, followingUpdate, User.class);
+        User followed = mongoTemplate.findAndModify(followingQuery, followingUpdate,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (followed != null) {
+            popularUserService.updateFollowerCount(targetUserId, followed.getFollowerCount());
+            userAutocompleteService.markChanged(targetUserId);
+        }
         
         // Send notification to the user being followed
         notificationService.sendNewFollowerNotification(targetUserId, currentUser);
 
+        evictSuggestions(currentUser.getId());
+
         log.info("User {} followed user {}", currentUser.getId(), targetUserId);
 
 //        try {
@@ -99,7 +114,14 @@ public class FollowService implements IFollowService {
 
         Query followingQuery = new Query(Criteria.where("_id").is(targetUserId));
         Update followingUpdate = new Update().inc("followerCount", -1);
-        mongoTemplate.updateFirst(followingQuery, followingUpdate, User.class);
+        User followed = mongoTemplate.findAndModify(followingQuery, followingUpdate,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (followed != null) {
+            popularUserService.updateFollowerCount(targetUserId, followed.getFollowerCount());
+            userAutocompleteService.markChanged(targetUserId);
+        }
+
+        evictSuggestions(currentUser.getId());
 
 //        try {
 //            newsfeedService.generateNewsfeedCache(currentUser.getId());
@@ -117,7 +139,7 @@ public class FollowService implements IFollowService {
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<Follow> follows = followRepository.findByFollowingIdOrderByCreatedAtDesc(userId, pageable);
+        Slice<Follow> follows = followRepository.findByFollowingIdOrderByCreatedAtDesc(userId, pageable);
 
         List<String> followerIds = follows.getContent().stream()
                 .map(Follow::getFollowerId)
@@ -133,7 +155,7 @@ public class FollowService implements IFollowService {
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<Follow> follows = followRepository.findByFollowerIdOrderByCreatedAtDesc(userId, pageable);
+        Slice<Follow> follows = followRepository.findByFollowerIdOrderByCreatedAtDesc(userId, pageable);
 
         List<String> followingIds = follows.getContent().stream()
                 .map(Follow::getFollowingId)
@@ -203,6 +225,14 @@ public class FollowService implements IFollowService {
     }
 
     // helper methods
+    private void evictSuggestions(String userId) {
+        try {
+            redisTemplate.delete(RecommendationService.SUGGESTIONS_CACHE_KEY + userId);
+        } catch (Exception e) {
+            log.warn("Failed to evict suggested users cache for {}: {}", userId, e.getMessage());
+        }
+    }
+
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -3,6 +3,7 @@ package share_app.tphucshareapp.service.like;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -10,14 +11,18 @@ import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.dto.response.like.LikeResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
+import share_app.tphucshareapp.enums.InteractionType;
+import share_app.tphucshareapp.event.PhotoEngagementEvent;
 import share_app.tphucshareapp.model.Like;
 import share_app.tphucshareapp.model.Photo;
 import share_app.tphucshareapp.model.User;
 import share_app.tphucshareapp.repository.LikeRepository;
 import share_app.tphucshareapp.repository.PhotoRepository;
 import share_app.tphucshareapp.repository.UserRepository;
+import share_app.tphucshareapp.service.ai.EngagementRollupService;
 import share_app.tphucshareapp.service.notification.INotificationService;
 import share_app.tphucshareapp.service.photo.PhotoConversionService;
+import share_app.tphucshareapp.service.photo.TagRankingService;
 import share_app.tphucshareapp.service.user.UserAvatarCacheService;
 import share_app.tphucshareapp.service.user.UserService;
 
@@ -39,6 +44,8 @@ public class LikeService implements ILikeService {
     private final PhotoConversionService photoConversionService;
     private final INotificationService notificationService;
     private final UserAvatarCacheService userAvatarCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EngagementRollupService engagementRollupService;
 
     @Override
     public PhotoResponse toggleLike(String photoId) {
@@ -55,9 +62,12 @@ public class LikeService implements ILikeService {
             likeRepository.delete(like);
             
             Query query = new Query(Criteria.where("_id").is(photoId));
-            Update update = new Update().inc("likeCount", -1);
+            Update update = new Update().inc("likeCount", -1)
+                    .inc(TagRankingService.RANK_FIELD, -TagRankingService.LIKE_POINTS);
             mongoTemplate.updateFirst(query, update, Photo.class);
             photo.setLikeCount(Math.max(0, photo.getLikeCount() - 1));
+            engagementRollupService.recordEngagement(photo, -1, 0);
+            eventPublisher.publishEvent(new PhotoEngagementEvent(this, currentUser.getId(), photoId, InteractionType.LIKE, true));
             
             log.info("User {} unliked photo {}", currentUser.getId(), photoId);
         } else {
@@ -69,9 +79,12 @@ public class LikeService implements ILikeService {
             likeRepository.save(like);
             
             Query query = new Query(Criteria.where("_id").is(photoId));
-            Update update = new Update().inc("likeCount", 1);
+            Update update = new Update().inc("likeCount", 1)
+                    .inc(TagRankingService.RANK_FIELD, TagRankingService.LIKE_POINTS);
             mongoTemplate.updateFirst(query, update, Photo.class);
             photo.setLikeCount(photo.getLikeCount() + 1);
+            engagementRollupService.recordEngagement(photo, 1, 0);
+            eventPublisher.publishEvent(new PhotoEngagementEvent(this, currentUser.getId(), photoId, InteractionType.LIKE));
             
             // Send notification to photo owner
             if (photo.getUser() != null) {
@@ -111,8 +124,11 @@ public class LikeService implements ILikeService {
         likeRepository.save(like);
 
         Query query = new Query(Criteria.where("_id").is(photoId));
-        Update update = new Update().inc("likeCount", 1);
+        Update update = new Update().inc("likeCount", 1)
+                .inc(TagRankingService.RANK_FIELD, TagRankingService.LIKE_POINTS);
         mongoTemplate.updateFirst(query, update, Photo.class);
+        engagementRollupService.recordEngagement(photo, 1, 0);
+        eventPublisher.publishEvent(new PhotoEngagementEvent(this, currentUser.getId(), photoId, InteractionType.LIKE));
         
         // Send notification
         if (photo.getUser() != null) {
@@ -136,8 +152,11 @@ public class LikeService implements ILikeService {
         likeRepository.delete(like);
 
         Query query = new Query(Criteria.where("_id").is(photoId));
-        Update update = new Update().inc("likeCount", -1);
+        Update update = new Update().inc("likeCount", -1)
+                .inc(TagRankingService.RANK_FIELD, -TagRankingService.LIKE_POINTS);
         mongoTemplate.updateFirst(query, update, Photo.class);
+        engagementRollupService.recordEngagement(photoId, -1, 0);
+        eventPublisher.publishEvent(new PhotoEngagementEvent(this, currentUser.getId(), photoId, InteractionType.LIKE, true));
 
         log.info("User {} unliked photo {}", currentUser.getId(), photoId);
     }
@@ -5,9 +5,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.config.RabbitMQConfig;
 import share_app.tphucshareapp.dto.response.notification.NotificationResponse;
@@ -161,7 +161,7 @@ public class NotificationService implements INotificationService {
     @Override
     public List<NotificationResponse> getNotifications(String userId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Notification> notifications = notificationRepository.findByRecipientIdOrderByCreatedAtDesc(userId, pageable);
+        Slice<Notification> notifications = notificationRepository.findByRecipientIdOrderByCreatedAtDesc(userId, pageable);
         
         return notifications.getContent().stream()
                 .map(this::convertToResponse)
@@ -6,102 +6,113 @@ import org.springframework.data.domain.*;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.model.Follow;
 import share_app.tphucshareapp.model.Photo;
 import share_app.tphucshareapp.model.User;
-import share_app.tphucshareapp.repository.FollowRepository;
 import share_app.tphucshareapp.repository.PhotoRepository;
+import share_app.tphucshareapp.service.common.CountCacheService;
+import share_app.tphucshareapp.service.search.TrendingTagService;
 import share_app.tphucshareapp.service.user.UserService;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ExploreService implements IExploreService {
 
+    private static final String TAG_COUNT_KEY = "photos:tag:";
+
     private final PhotoRepository photoRepository;
     private final MongoTemplate mongoTemplate;
     private final PhotoConversionService photoConversionService;
     private final UserService userService;
-    private final FollowRepository followRepository;
+    private final TrendingPoolService trendingPoolService;
+    private final CountCacheService countCacheService;
+    private final TrendingTagService trendingTagService;
+    private final TagRankingService tagRankingService;
 
     @Override
-    public Page<PhotoResponse> getExploreFeed(String userId, int page, int size) {
+    public SliceResponse<PhotoResponse> getExploreFeed(String userId, String cursor, int page, int size) {
         log.info("Fetching explore feed for user: {}, page: {}, size: {}", userId, page, size);
 
         User currentUser = userService.findUserById(userId);
 
-        // Get user's following list to exclude from explore
-        List<String> excludeUserIds = new ArrayList<>();
-        excludeUserIds.add(userId); // Exclude own photos
-        List<String> followingUserIds = followRepository.findByFollowerId(userId).stream()
-                .map(Follow::getFollowingId)
-                .toList();
-        excludeUserIds.addAll(followingUserIds);
-
-        // Use MongoDB aggregation to get trending photos from non-followed users
-        Pageable pageable = PageRequest.of(page, size);
-
-        // Build aggregation pipeline
-        Criteria criteria = Criteria.where("user.userId").nin(excludeUserIds);
-
-        // Photos from last 30 days for freshness
-        Instant cutoff = Instant.now().minus(Duration.ofDays(30));
-        Criteria recentCriteria = criteria.and("createdAt").gte(cutoff);
-
-        AggregationOperation match = Aggregation.match(recentCriteria);
-
-        // Add a computed engagement score field: likeCount * 2 + commentCount * 3
-        AggregationOperation addScore = Aggregation.addFields()
-                .addFieldWithValue("engagementScore",
-                        new org.bson.Document("$add", List.of(
-                                new org.bson.Document("$multiply", List.of("$likeCount", 2)),
-                                new org.bson.Document("$multiply", List.of("$commentCount", 3))
-                        ))
-                ).build();
-
-        AggregationOperation sortByScore = Aggregation.sort(Sort.by(Sort.Direction.DESC, "engagementScore", "createdAt"));
-        AggregationOperation skip = Aggregation.skip((long) page * size);
-        AggregationOperation limit = Aggregation.limit(size);
-
-        Aggregation aggregation = Aggregation.newAggregation(match, addScore, sortByScore, skip, limit);
-
-        List<Photo> photos = mongoTemplate.aggregate(aggregation, "photos", Photo.class).getMappedResults();
+        // Exclude own photos and photos from followed users: one projected lookup, then a bitmap over the
+        // pool's authors, so neither the query nor the filter grows with the following count
+        TrendingPoolService.TrendingPool pool = trendingPoolService.getPool();
+        List<String> excludeUserIds = new ArrayList<>(mongoTemplate.findDistinct(
+                new Query(Criteria.where("followerId").is(userId)), "followingId", Follow.class, String.class));
+        excludeUserIds.add(userId);
+        BitSet excluded = pool.authorMask(excludeUserIds);
+
+        // Total is the number of pool entries left after filtering. The page starts at the cursor's pool
+        // position; without one, after `offset` of the remaining entries
+        long offset = (long) page * size;
+        long total = 0;
+        int next = pool.size();
+        for (int i = 0; i < pool.size(); i++) {
+            if (pool.isAuthoredBy(i, excluded)) continue;
+            if (total == offset) next = i;
+            total++;
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            next = resumePosition(pool, cursor);
+        }
 
-        // If not enough recent photos, fallback to all-time popular
-        if (photos.isEmpty() && page == 0) {
+        // If no recent photos are trending, fallback to all-time popular
+        if (total == 0 && page == 0) {
             log.info("No recent explore photos found, falling back to all-time popular");
             return getPopularPhotos(page, size);
         }
 
-        // Count total matching documents
-        Aggregation countAgg = Aggregation.newAggregation(
-                Aggregation.match(recentCriteria),
-                Aggregation.count().as("total")
-        );
-        org.bson.Document countResult = mongoTemplate.aggregate(countAgg, "photos", org.bson.Document.class)
-                .getUniqueMappedResult();
-        long total = countResult != null ? countResult.getInteger("total", 0) : 0;
-
-        List<PhotoResponse> responses = photos.stream()
-                .map(photo -> photoConversionService.convertToPhotoResponse(photo, currentUser))
-                .toList();
+        // Hydrate in pool order; photos deleted since the last refresh drop out, so keep fetching
+        // (twice as many each round) until the page is full or the pool runs out
+        List<Photo> photos = new ArrayList<>(size);
+        int multiplier = 1;
+        while (photos.size() < size && next < pool.size()) {
+            int want = (size - photos.size()) * multiplier;
+            List<Integer> positions = new ArrayList<>(want);
+            for (int i = next; i < pool.size() && positions.size() < want; i++) {
+                if (!pool.isAuthoredBy(i, excluded)) positions.add(i);
+            }
+            Map<String, Photo> byId = new HashMap<>();
+            photoRepository.findAllById(positions.stream().map(pool.photoIds()::get).toList())
+                    .forEach(photo -> byId.put(photo.getId(), photo));
+            // the next page starts at the first entry this one did not use; deleted photos are skipped for good
+            next = positions.isEmpty() ? pool.size() : positions.get(positions.size() - 1) + 1;
+            for (int position : positions) {
+                if (photos.size() == size) {
+                    next = position;
+                    break;
+                }
+                Photo photo = byId.get(pool.photoIds().get(position));
+                if (photo != null) photos.add(photo);
+            }
+            multiplier *= 2;
+        }
 
-        return new PageImpl<>(responses, pageable, total);
+        boolean hasNext = false;
+        for (int i = next; i < pool.size() && !hasNext; i++) {
+            hasNext = !pool.isAuthoredBy(i, excluded);
+        }
+        SliceResponse<PhotoResponse> response = new SliceResponse<>(
+                photoConversionService.convertToPhotoResponses(photos, currentUser), page, size, hasNext, total);
+        if (hasNext && !photos.isEmpty()) {
+            response.setNextCursor(encodeCursor(pool, next, photos.get(photos.size() - 1).getId()));
+        }
+        return response;
     }
 
     @Override
-    public Page<PhotoResponse> getPopularPhotos(int page, int size) {
+    public SliceResponse<PhotoResponse> getPopularPhotos(int page, int size) {
         log.info("Fetching popular photos, page: {}, size: {}", page, size);
 
-        Pageable pageable = PageRequest.of(page, size);
-
         AggregationOperation addScore = Aggregation.addFields()
                 .addFieldWithValue("engagementScore",
                         new org.bson.Document("$add", List.of(
@@ -112,12 +123,18 @@ public class ExploreService implements IExploreService {
 
         AggregationOperation sortByScore = Aggregation.sort(Sort.by(Sort.Direction.DESC, "engagementScore", "createdAt"));
         AggregationOperation skip = Aggregation.skip((long) page * size);
-        AggregationOperation limit = Aggregation.limit(size);
+        // One row past the page tells whether there is a next one
+        AggregationOperation limit = Aggregation.limit(size + 1);
 
         Aggregation aggregation = Aggregation.newAggregation(addScore, sortByScore, skip, limit);
 
         List<Photo> photos = mongoTemplate.aggregate(aggregation, "photos", Photo.class).getMappedResults();
-        long total = photoRepository.count();
+        boolean hasNext = photos.size() > size;
+        if (hasNext) {
+            photos = photos.subList(0, size);
+        }
+        // Collection metadata count: approximate, but needs no scan
+        long total = mongoTemplate.estimatedCount(Photo.class);
 
         User currentUser = null;
         try {
@@ -131,15 +148,16 @@ public class ExploreService implements IExploreService {
                 .map(photo -> photoConversionService.convertToPhotoResponse(photo, finalCurrentUser))
                 .toList();
 
-        return new PageImpl<>(responses, pageable, total);
+        return new SliceResponse<>(responses, page, size, hasNext, total);
     }
 
     @Override
-    public Page<PhotoResponse> getPhotosByTag(String tag, int page, int size) {
-        log.info("Fetching photos by tag: {}, page: {}, size: {}", tag, page, size);
+    public SliceResponse<PhotoResponse> getPhotosByTag(String tag, String sort, String cursor, int page, int size) {
+        log.info("Fetching photos by tag: {}, sort: {}, page: {}, size: {}", tag, sort, page, size);
 
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Photo> photos = photoRepository.findByTagsIn(List.of(tag.toLowerCase()), pageable);
+        String normalizedTag = tag.toLowerCase();
+        TagRankingService.Order order = TagRankingService.Order.from(sort);
+        TagRankingService.TagPage tagPage = tagRankingService.getPage(normalizedTag, order, cursor, page, size);
 
         User currentUser = null;
         try {
@@ -148,11 +166,54 @@ public class ExploreService implements IExploreService {
             log.debug("No authenticated user for tag photos");
         }
 
-        User finalCurrentUser = currentUser;
-        List<PhotoResponse> responses = photos.getContent().stream()
-                .map(photo -> photoConversionService.convertToPhotoResponse(photo, finalCurrentUser))
-                .toList();
+        List<Photo> photos = tagPage.photos();
+        if (order == TagRankingService.Order.TOP) {
+            // Within the page, photos that also carry currently trending tags come first
+            Map<String, Double> coTagTrend = new HashMap<>();
+            for (Photo photo : photos) {
+                List<String> otherTags = photo.getTags() == null ? List.of() : photo.getTags().stream()
+                        .filter(t -> !t.equals(normalizedTag))
+                        .toList();
+                coTagTrend.put(photo.getId(), trendingTagService.trendScore(otherTags));
+            }
+            photos = new ArrayList<>(photos);
+            photos.sort(Comparator.comparingDouble((Photo photo) -> coTagTrend.get(photo.getId())).reversed());
+        }
+
+        long total = countCacheService.get(TAG_COUNT_KEY + normalizedTag, () -> mongoTemplate.count(
+                new Query(Criteria.where("tags").is(normalizedTag)), Photo.class));
+        SliceResponse<PhotoResponse> response = new SliceResponse<>(
+                photoConversionService.convertToPhotoResponses(photos, currentUser), page, size, tagPage.hasNext(), total);
+        response.setNextCursor(tagPage.nextCursor());
+        return response;
+    }
+
+    /**
+     * Cursor of the pool entry at {@code position}, following the last photo served.
+     */
+    private static String encodeCursor(TrendingPoolService.TrendingPool pool, int position, String lastPhotoId) {
+        String value = pool.version() + "|" + position + "|" + lastPhotoId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
 
-        return new PageImpl<>(responses, pageable, photos.getTotalElements());
+    /**
+     * Pool position to continue from. A cursor from an earlier pool resumes after its last photo when that
+     * is still in the pool, and at its position otherwise.
+     */
+    private static int resumePosition(TrendingPoolService.TrendingPool pool, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            int position = Math.max(0, Integer.parseInt(parts[1]));
+            if (Long.parseLong(parts[0]) == pool.version()) {
+                return Math.min(position, pool.size());
+            }
+            int last = pool.photoIds().indexOf(parts[2]);
+            return last >= 0 ? last + 1 : Math.min(position, pool.size());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
     }
 }
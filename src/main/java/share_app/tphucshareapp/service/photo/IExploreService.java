@@ -1,21 +1,22 @@
 package share_app.tphucshareapp.service.photo;
 
-import org.springframework.data.domain.Page;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 
 public interface IExploreService {
     /**
-     * Get explore feed - trending/popular photos from users you don't follow
+     * Get explore feed - trending/popular photos from users you don't follow; pass the previous page's
+     * nextCursor to continue
      */
-    Page<PhotoResponse> getExploreFeed(String userId, int page, int size);
+    SliceResponse<PhotoResponse> getExploreFeed(String userId, String cursor, int page, int size);
 
     /**
      * Get popular photos overall (sorted by engagement)
      */
-    Page<PhotoResponse> getPopularPhotos(int page, int size);
+    SliceResponse<PhotoResponse> getPopularPhotos(int page, int size);
 
     /**
-     * Get photos by tag for explore
+     * Get photos by tag for explore, "top" or "recent"; pass the previous page's nextCursor to continue
      */
-    Page<PhotoResponse> getPhotosByTag(String tag, int page, int size);
+    SliceResponse<PhotoResponse> getPhotosByTag(String tag, String sort, String cursor, int page, int size);
 }
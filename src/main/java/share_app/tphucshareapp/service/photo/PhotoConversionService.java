@@ -6,12 +6,17 @@ import org.modelmapper.ModelMapper;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
+import share_app.tphucshareapp.model.Favorite;
+import share_app.tphucshareapp.model.Like;
 import share_app.tphucshareapp.model.Photo;
 import share_app.tphucshareapp.model.User;
 import share_app.tphucshareapp.repository.FavoriteRepository;
 import share_app.tphucshareapp.repository.LikeRepository;
 import share_app.tphucshareapp.service.user.UserAvatarCacheService;
 
+import java.util.*;
+import java.util.stream.Collectors;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -45,4 +50,47 @@ public class PhotoConversionService {
 
         return response;
     }
+
+    /**
+     * Convert a list of photos, loading avatars and the viewer's likes and saves for all of them at once.
+     */
+    public List<PhotoResponse> convertToPhotoResponses(List<Photo> photos, @Nullable User currentUser) {
+        if (photos.isEmpty()) return List.of();
+
+        List<String> photoIds = photos.stream().map(Photo::getId).toList();
+        List<String> authorIds = photos.stream()
+                .filter(p -> p.getUser() != null)
+                .map(p -> p.getUser().getUserId())
+                .distinct()
+                .toList();
+        Map<String, String> avatars = userAvatarCacheService.getAvatars(authorIds);
+
+        Set<String> liked = Collections.emptySet();
+        Set<String> saved = Collections.emptySet();
+        if (currentUser != null) {
+            liked = likeRepository.findByUserIdAndPhotoIdIn(currentUser.getId(), photoIds).stream()
+                    .map(Like::getPhotoId)
+                    .collect(Collectors.toSet());
+            saved = favoriteRepository.findByUserIdAndPhotoIdIn(currentUser.getId(), photoIds).stream()
+                    .map(Favorite::getPhotoId)
+                    .collect(Collectors.toSet());
+        }
+
+        List<PhotoResponse> responses = new ArrayList<>(photos.size());
+        for (Photo photo : photos) {
+            PhotoResponse response = modelMapper.map(photo, PhotoResponse.class);
+            if (photo.getUser() != null) {
+                response.setUsername(photo.getUser().getUsername());
+                response.setUserImageUrl(avatars.get(photo.getUser().getUserId()));
+            }
+            response.setLikeCount((int) photo.getLikeCount());
+            response.setCommentCount((int) photo.getCommentCount());
+            response.setShareCount((int) photo.getShareCount());
+            response.setTags(photo.getTags());
+            response.setLikedByCurrentUser(liked.contains(photo.getId()));
+            response.setSavedByCurrentUser(saved.contains(photo.getId()));
+            responses.add(response);
+        }
+        return responses;
+    }
 }
@@ -18,7 +18,9 @@
     import share_app.tphucshareapp.dto.response.like.LikeResponse;
     import share_app.tphucshareapp.dto.response.photo.PhotoDetailResponse;
     import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
+    import share_app.tphucshareapp.enums.InteractionType;
     import share_app.tphucshareapp.event.PhotoCreatedEvent;
+    import share_app.tphucshareapp.event.PhotoDeletedEvent;
     import share_app.tphucshareapp.model.Comment;
     import share_app.tphucshareapp.model.Like;
     import share_app.tphucshareapp.model.Photo;
@@ -29,6 +31,13 @@
     import share_app.tphucshareapp.repository.LikeRepository;
     import share_app.tphucshareapp.repository.PhotoRepository;
     import share_app.tphucshareapp.repository.ShareRepository;
+    import share_app.tphucshareapp.service.ai.EngagementRollupService;
+    import share_app.tphucshareapp.service.ai.UserTagHistogramService;
+    import share_app.tphucshareapp.service.search.SearchTextNormalizer;
+    import share_app.tphucshareapp.service.search.TagCatalogService;
+    import share_app.tphucshareapp.service.search.SearchResultCache;
+    import share_app.tphucshareapp.service.search.TagPostingService;
+    import share_app.tphucshareapp.service.search.TrendingTagService;
     import share_app.tphucshareapp.service.user.UserAvatarCacheService;
     import share_app.tphucshareapp.service.user.UserService;
 
@@ -53,6 +62,12 @@
         private final ApplicationEventPublisher eventPublisher;
         private final MongoTemplate mongoTemplate;
         private final UserAvatarCacheService userAvatarCacheService;
+        private final UserTagHistogramService tagHistogramService;
+        private final EngagementRollupService engagementRollupService;
+        private final TrendingTagService trendingTagService;
+        private final TagCatalogService tagCatalogService;
+        private final TagPostingService tagPostingService;
+        private final SearchResultCache searchResultCache;
 
         @Override
         public PhotoResponse createPhoto(CreatePhotoRequest request) {
@@ -73,6 +88,7 @@
             photo.setImageUrl(imageUrl);
             photo.setCaption(request.getCaption());
             photo.setCreatedAt(Instant.now());
+            photo.setRankScore(TagRankingService.initialRankScore(photo.getCreatedAt()));
 
             // Handle tags
             if (request.getTags() != null && !request.getTags().isEmpty()) {
@@ -83,12 +99,19 @@
                         .toList();
                 photo.setTags(tagNames);
             }
+            photo.setSearchText(SearchTextNormalizer.indexText(photo.getCaption(), photo.getTags()));
 
             Photo savedPhoto = photoRepository.save(photo);
 
             Query query = new Query(Criteria.where("_id").is(currentUser.getId()));
             Update update = new Update().inc("photoCount", 1);
             mongoTemplate.updateFirst(query, update, User.class);
+            tagHistogramService.record(currentUser.getId(), savedPhoto.getTags(), 1);
+            engagementRollupService.onPhotoCreated(savedPhoto);
+            trendingTagService.record(savedPhoto.getTags(), InteractionType.POST);
+            tagCatalogService.recordPhotoCreated(savedPhoto.getTags());
+            // tag search pages are dropped once the tag posting lists pick the photo up
+            searchResultCache.invalidate(SearchResultCache.Type.PHOTOS);
 
             // Publish event to update followers' feeds asynchronously
             eventPublisher.publishEvent(new PhotoCreatedEvent(this, savedPhoto.getId(), currentUser.getId()));
@@ -184,6 +207,14 @@
                 Query query = new Query(Criteria.where("_id").is(photo.getUser().getUserId()));
                 Update update = new Update().inc("photoCount", -1);
                 mongoTemplate.updateFirst(query, update, User.class);
+                tagHistogramService.record(photo.getUser().getUserId(), photo.getTags(), -1);
+                engagementRollupService.onPhotoDeleted(photo);
+                tagCatalogService.recordPhotoDeleted(photo.getTags());
+                tagPostingService.markDeleted(photoId);
+                searchResultCache.invalidate(SearchResultCache.Type.PHOTOS, SearchResultCache.Type.TAGS);
+
+                // Drop the embedding and cached recommendations asynchronously
+                eventPublisher.publishEvent(new PhotoDeletedEvent(this, photoId, photo.getUser().getUserId()));
 
                 log.info("Photo deleted successfully with ID: {}", photoId);
 
@@ -0,0 +1,140 @@
+package share_app.tphucshareapp.service.photo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Photo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Per-tag photo lists for hashtag pages, ordered by {@code rankScore} ("top") or {@code createdAt}
+ * ("recent") and paged by keyset over the {@code (tags, rankScore, _id)} and {@code (tags, createdAt, _id)}
+ * indexes, so a deep page on a popular tag costs the same index seek as the first one.
+ * <p>
+ * {@code rankScore} is additive: {@link #LIKE_POINTS} per like, {@link #COMMENT_POINTS} per comment, plus
+ * {@link #RECENCY_POINTS_PER_HOUR} per hour of creation time. Likes and comments {@code $inc} it next to
+ * their counters, so it never has to be re-decayed, and newer photos start ahead of older ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TagRankingService {
+
+    public static final String RANK_FIELD = "rankScore";
+    public static final int LIKE_POINTS = 2;
+    public static final int COMMENT_POINTS = 3;
+    private static final double RECENCY_POINTS_PER_HOUR = 0.5;
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    private final MongoTemplate mongoTemplate;
+
+    public enum Order {
+        TOP, RECENT;
+
+        public static Order from(String value) {
+            return "recent".equalsIgnoreCase(value) ? RECENT : TOP;
+        }
+    }
+
+    /**
+     * One page of a tag, best first, with the cursor of its last photo when more follow.
+     */
+    public record TagPage(List<Photo> photos, boolean hasNext, String nextCursor) {
+    }
+
+    private record Position(Object value, ObjectId id) {
+    }
+
+    public static double initialRankScore(Instant createdAt) {
+        return createdAt.toEpochMilli() / MILLIS_PER_HOUR * RECENCY_POINTS_PER_HOUR;
+    }
+
+    /**
+     * Photos tagged {@code tag} after {@code cursor}; without a cursor, page {@code page} by offset for
+     * clients that still page by number.
+     */
+    public TagPage getPage(String tag, Order order, String cursor, int page, int size) {
+        String sortField = order == Order.TOP ? RANK_FIELD : "createdAt";
+        Query query = new Query(Criteria.where("tags").is(tag))
+                .with(Sort.by(Sort.Direction.DESC, sortField, "_id"))
+                .limit(size + 1);
+
+        if (cursor != null && !cursor.isBlank()) {
+            Position after = decodeCursor(order, cursor);
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where(sortField).lt(after.value()),
+                    new Criteria().andOperator(
+                            Criteria.where(sortField).is(after.value()), Criteria.where("_id").lt(after.id()))));
+        } else if (page > 0) {
+            query.skip((long) page * size);
+        }
+
+        List<Photo> photos = mongoTemplate.find(query, Photo.class);
+        boolean hasNext = photos.size() > size;
+        if (hasNext) {
+            photos = photos.subList(0, size);
+        }
+        String nextCursor = hasNext ? encodeCursor(order, photos.get(photos.size() - 1)) : null;
+        return new TagPage(photos, hasNext, nextCursor);
+    }
+
+    /**
+     * Give photos stored before {@code rankScore} existed their score. Only touches documents without one.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRankScores() {
+        try {
+            Document filter = new Document(RANK_FIELD, new Document("$exists", false));
+            Document score = new Document("$add", List.of(
+                    new Document("$multiply", List.of(new Document("$ifNull", List.of("$likeCount", 0)), LIKE_POINTS)),
+                    new Document("$multiply", List.of(new Document("$ifNull", List.of("$commentCount", 0)), COMMENT_POINTS)),
+                    new Document("$multiply", List.of(
+                            new Document("$divide", List.of(new Document("$toLong", "$createdAt"), MILLIS_PER_HOUR)),
+                            RECENCY_POINTS_PER_HOUR))
+            ));
+            long updated = mongoTemplate.getCollection("photos")
+                    .updateMany(filter, List.of(new Document("$set", new Document(RANK_FIELD, score))))
+                    .getModifiedCount();
+            if (updated > 0) {
+                log.info("Backfilled rank scores for {} photos", updated);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to backfill photo rank scores: {}", e.getMessage());
+        }
+    }
+
+    private static String encodeCursor(Order order, Photo last) {
+        String value = order == Order.TOP
+                ? Double.toString(last.getRankScore())
+                : Long.toString(last.getCreatedAt().toEpochMilli());
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((value + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decodeCursor(Order order, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2 || !ObjectId.isValid(parts[1])) {
+                throw new IllegalArgumentException();
+            }
+            Object value = order == Order.TOP
+                    ? Double.valueOf(parts[0])
+                    : Instant.ofEpochMilli(Long.parseLong(parts[0]));
+            return new Position(value, new ObjectId(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+}
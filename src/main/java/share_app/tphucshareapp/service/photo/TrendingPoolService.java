@@ -0,0 +1,219 @@
+package share_app.tphucshareapp.service.photo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Photo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Materialized Explore candidates: the top {@code explore.trending.pool-size} photos of the last
+ * {@code explore.trending.window-days}, ranked by engagement decayed with a half-life of
+ * {@code explore.trending.half-life-hours}.
+ * <p>
+ * One instance recomputes the pool per interval (guarded by a Redis lock) and publishes it under
+ * {@code trending:pool} with a version stamp; every instance keeps the decoded pool in memory and only
+ * reloads it when the version changes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingPoolService {
+
+    private static final String POOL_KEY = "trending:pool";
+    private static final String VERSION_KEY = "trending:pool:version";
+    private static final String LOCK_KEY = "trending:pool:lock";
+    // how often a request may look at the published version
+    private static final long VERSION_CHECK_MS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${explore.trending.pool-size:3000}")
+    private int poolSize;
+
+    @Value("${explore.trending.window-days:30}")
+    private int windowDays;
+
+    @Value("${explore.trending.half-life-hours:48}")
+    private double halfLifeHours;
+
+    @Value("${explore.trending.refresh-interval-ms:300000}")
+    private long refreshIntervalMs;
+
+    private volatile TrendingPool pool;
+    private volatile long lastVersionCheck;
+
+    /**
+     * Trending photo ids, best first, with the author of each at the same index. Authors are also numbered
+     * densely ({@code authorOrdinals[i]}) so per-viewer exclusions fit in a {@link BitSet} over the pool's
+     * distinct authors.
+     */
+    public record TrendingPool(long version, List<String> photoIds, List<String> authorIds,
+                               int[] authorOrdinals, Map<String, Integer> ordinalByAuthor) {
+
+        static TrendingPool of(long version, List<String> photoIds, List<String> authorIds) {
+            int[] ordinals = new int[authorIds.size()];
+            Map<String, Integer> ordinalByAuthor = new HashMap<>();
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = ordinalByAuthor.computeIfAbsent(authorIds.get(i), id -> ordinalByAuthor.size());
+            }
+            return new TrendingPool(version, photoIds, authorIds, ordinals, ordinalByAuthor);
+        }
+
+        public int size() {
+            return photoIds.size();
+        }
+
+        /**
+         * Bits set for those of {@code userIds} that author at least one pool entry; users outside the pool
+         * cost nothing.
+         */
+        public BitSet authorMask(Collection<String> userIds) {
+            BitSet mask = new BitSet(ordinalByAuthor.size());
+            for (String userId : userIds) {
+                Integer ordinal = ordinalByAuthor.get(userId);
+                if (ordinal != null) mask.set(ordinal);
+            }
+            return mask;
+        }
+
+        public boolean isAuthoredBy(int index, BitSet authorMask) {
+            return authorMask.get(authorOrdinals[index]);
+        }
+    }
+
+    private record Candidate(String photoId, String authorId, double score) {
+    }
+
+    /**
+     * The current pool; built on first use if no instance has published one yet.
+     */
+    public TrendingPool getPool() {
+        TrendingPool local = pool;
+        long now = System.currentTimeMillis();
+        if (local != null && now - lastVersionCheck < VERSION_CHECK_MS) {
+            return local;
+        }
+        lastVersionCheck = now;
+
+        try {
+            Object version = redisTemplate.opsForValue().get(VERSION_KEY);
+            if (version instanceof Number v) {
+                if (local != null && local.version() == v.longValue()) {
+                    return local;
+                }
+                TrendingPool loaded = decode(redisTemplate.opsForValue().get(POOL_KEY));
+                if (loaded != null) {
+                    pool = loaded;
+                    return loaded;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read trending pool: {}", e.getMessage());
+        }
+        return local != null ? local : buildIfMissing();
+    }
+
+    /**
+     * The first {@code limit} trending photo ids.
+     */
+    public List<String> getTopPhotoIds(int limit) {
+        List<String> ids = getPool().photoIds();
+        return ids.subList(0, Math.min(limit, ids.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${explore.trending.refresh-interval-ms:300000}", initialDelayString = "${explore.trending.initial-delay-ms:30000}")
+    public void scheduledRefresh() {
+        try {
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY, "1", Duration.ofMillis(Math.max(1000, refreshIntervalMs / 2)));
+            if (!Boolean.TRUE.equals(acquired)) return;
+        } catch (Exception e) {
+            log.warn("Failed to take trending pool lock, refreshing locally: {}", e.getMessage());
+        }
+        refresh();
+    }
+
+    /**
+     * Recompute the pool from the recent window and publish it.
+     */
+    public TrendingPool refresh() {
+        long start = System.currentTimeMillis();
+        Instant now = Instant.ofEpochMilli(start);
+        Query query = new Query(Criteria.where("createdAt").gte(now.minus(Duration.ofDays(windowDays))));
+        query.fields().include("user.userId", "createdAt", "likeCount", "commentCount");
+
+        // min-heap of the best candidates so far; the weakest is evicted first
+        PriorityQueue<Candidate> top = new PriorityQueue<>(poolSize + 1, Comparator.comparingDouble(Candidate::score));
+        int scanned = 0;
+        try (Stream<Photo> photos = mongoTemplate.stream(query, Photo.class)) {
+            for (Photo photo : (Iterable<Photo>) photos::iterator) {
+                scanned++;
+                if (photo.getUser() == null || photo.getCreatedAt() == null) continue;
+                double score = score(photo, now);
+                if (top.size() < poolSize) {
+                    top.add(new Candidate(photo.getId(), photo.getUser().getUserId(), score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new Candidate(photo.getId(), photo.getUser().getUserId(), score));
+                }
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        List<String> photoIds = new ArrayList<>(ranked.size());
+        List<String> authorIds = new ArrayList<>(ranked.size());
+        for (Candidate candidate : ranked) {
+            photoIds.add(candidate.photoId());
+            authorIds.add(candidate.authorId());
+        }
+
+        TrendingPool refreshed = TrendingPool.of(start, photoIds, authorIds);
+        pool = refreshed;
+        try {
+            // pool first: a reader that sees the new version always finds the matching pool
+            redisTemplate.opsForValue().set(POOL_KEY, Map.of("version", start, "photoIds", photoIds, "authorIds", authorIds));
+            redisTemplate.opsForValue().set(VERSION_KEY, start);
+        } catch (Exception e) {
+            log.warn("Failed to publish trending pool: {}", e.getMessage());
+        }
+        log.info("Trending pool refreshed: {} of {} recent photos in {}ms",
+                photoIds.size(), scanned, System.currentTimeMillis() - start);
+        return refreshed;
+    }
+
+    private synchronized TrendingPool buildIfMissing() {
+        TrendingPool local = pool;
+        return local != null ? local : refresh();
+    }
+
+    private double score(Photo photo, Instant now) {
+        double engagement = photo.getLikeCount() * 2 + photo.getCommentCount() * 3 + 1;
+        double ageHours = Math.max(0, Duration.between(photo.getCreatedAt(), now).toMillis() / 3_600_000.0);
+        return engagement * Math.pow(0.5, ageHours / halfLifeHours);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TrendingPool decode(Object stored) {
+        if (!(stored instanceof Map<?, ?> map)
+                || !(map.get("version") instanceof Number version)
+                || !(map.get("photoIds") instanceof List<?> photoIds)
+                || !(map.get("authorIds") instanceof List<?> authorIds)
+                || photoIds.size() != authorIds.size()) {
+            return null;
+        }
+        return TrendingPool.of(version.longValue(), (List<String>) photoIds, (List<String>) authorIds);
+    }
+}
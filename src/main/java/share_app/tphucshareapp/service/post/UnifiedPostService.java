@@ -6,6 +6,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.dto.response.post.UnifiedPostResponse;
 import share_app.tphucshareapp.model.Photo;
@@ -48,7 +49,7 @@ public class UnifiedPostService {
         List<Photo> photos = photosPage.getContent();
 
         // Fetch shares
-        Page<Share> sharesPage = shareRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        Slice<Share> sharesPage = shareRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
         List<Share> shares = sharesPage.getContent();
 
         // Convert to unified posts
@@ -0,0 +1,65 @@
+package share_app.tphucshareapp.service.search;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Count-min sketch over strings: {@code depth} rows of {@code width} counters in one flat array.
+ * <p>
+ * Estimates never undercount and overcount by at most {@code 2·total/width} with probability
+ * {@code 1 - 2^-depth}. Sketches of the same shape merge by adding cells, which is how node-local deltas are
+ * folded into the shared sketch in Redis.
+ */
+final class CountMinSketch {
+
+    @FunctionalInterface
+    interface CellConsumer {
+        void accept(int cell, long count);
+    }
+
+    private final int depth;
+    private final int width;
+    private final long[] counts;
+
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counts = new long[depth * width];
+    }
+
+    /**
+     * Add {@code n} occurrences of {@code item} and return its new estimate.
+     */
+    long add(String item, long n) {
+        long estimate = Long.MAX_VALUE;
+        for (int cell : cells(item)) {
+            counts[cell] += n;
+            estimate = Math.min(estimate, counts[cell]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Flat indices of {@code item}'s counter in each row; stable across nodes for the same shape.
+     */
+    int[] cells(String item) {
+        // FNV-1a 64, split into two 32-bit hashes for double hashing
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : item.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int[] cells = new int[depth];
+        for (int row = 0; row < depth; row++) {
+            cells[row] = row * width + Math.floorMod(h1 + row * h2, width);
+        }
+        return cells;
+    }
+
+    void forEachNonZero(CellConsumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) consumer.accept(i, counts[i]);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package share_app.tphucshareapp.service.search;
+
+import java.util.*;
+
+/**
+ * Streaming top-k: a {@link CountMinSketch} counts every item and a min-heap keeps the {@code k} items
+ * with the highest estimates seen so far. Memory is fixed by the sketch shape and {@code k}, however many
+ * distinct items arrive. Not thread-safe.
+ */
+final class HeavyHitters {
+
+    private static final class Entry {
+        final String item;
+        long estimate;
+
+        Entry(String item, long estimate) {
+            this.item = item;
+            this.estimate = estimate;
+        }
+    }
+
+    private final CountMinSketch sketch;
+    private final int k;
+    private final PriorityQueue<Entry> heap;
+    private final Map<String, Entry> tracked;
+
+    HeavyHitters(int depth, int width, int k) {
+        this.sketch = new CountMinSketch(depth, width);
+        this.k = k;
+        this.heap = new PriorityQueue<>(k + 1, Comparator.comparingLong(e -> e.estimate));
+        this.tracked = new HashMap<>(k * 2);
+    }
+
+    void add(String item, long n) {
+        long estimate = sketch.add(item, n);
+        Entry entry = tracked.get(item);
+        if (entry != null) {
+            // re-position: the heap does not notice key changes
+            heap.remove(entry);
+            entry.estimate = estimate;
+            heap.add(entry);
+        } else if (heap.size() < k) {
+            entry = new Entry(item, estimate);
+            heap.add(entry);
+            tracked.put(item, entry);
+        } else if (estimate > heap.peek().estimate) {
+            tracked.remove(heap.poll().item);
+            entry = new Entry(item, estimate);
+            heap.add(entry);
+            tracked.put(item, entry);
+        }
+    }
+
+    boolean isEmpty() {
+        return tracked.isEmpty();
+    }
+
+    /**
+     * Tracked items, in no particular order.
+     */
+    Set<String> items() {
+        return tracked.keySet();
+    }
+
+    CountMinSketch sketch() {
+        return sketch;
+    }
+}
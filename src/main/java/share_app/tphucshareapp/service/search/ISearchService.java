@@ -1,6 +1,6 @@
 package share_app.tphucshareapp.service.search;
 
-import org.springframework.data.domain.Page;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.dto.response.search.UserSearchResponseSimple;
 
@@ -8,11 +8,11 @@ import java.util.List;
 
 public interface ISearchService {
 
-    Page<UserSearchResponseSimple> searchUsers(String query, int page, int size);
+    SliceResponse<UserSearchResponseSimple> searchUsers(String query, int page, int size);
 
-    Page<PhotoResponse> searchPhotos(String query, int page, int size);
+    SliceResponse<PhotoResponse> searchPhotos(String query, int page, int size);
 
-    Page<PhotoResponse> searchPhotosByTags(String query, int page, int size);
+    SliceResponse<PhotoResponse> searchPhotosByTags(String query, String match, String cursor, int page, int size);
 
     List<String> getSearchSuggestions(String query, int limit);
 }
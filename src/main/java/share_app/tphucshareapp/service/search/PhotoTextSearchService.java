@@ -0,0 +1,104 @@
+package share_app.tphucshareapp.service.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Photo;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Caption and tag search over the {@code photos} text index.
+ * <p>
+ * Each photo stores {@link SearchTextNormalizer#indexText folded terms} of its caption and tags in
+ * {@link #FIELD}, which carries the collection's text index with language {@value #LANGUAGE} (no stemming
+ * or stop words, which are English-only and would mangle Vietnamese syllables). Queries are folded the same
+ * way, so matching ignores case and diacritics, and results come back by text score, newest first on ties.
+ * Mongo maintains the index on insert and delete.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PhotoTextSearchService {
+
+    public static final String FIELD = "searchText";
+    public static final String LANGUAGE = "none";
+    private static final int BACKFILL_BATCH = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Ids of one page of photos matching {@code query}, best first.
+     */
+    public Slice<String> searchIds(String query, int page, int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        List<String> terms = SearchTextNormalizer.terms(query);
+        if (terms.isEmpty()) {
+            return new SliceImpl<>(List.of(), pageable, false);
+        }
+
+        Query textQuery = textQuery(terms)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .skip((long) page * size)
+                .limit(size + 1);
+        textQuery.fields().include("_id");
+        List<String> ids = mongoTemplate.find(textQuery, Photo.class).stream().map(Photo::getId).toList();
+        boolean hasNext = ids.size() > size;
+        return new SliceImpl<>(hasNext ? ids.subList(0, size) : ids, pageable, hasNext);
+    }
+
+    /**
+     * Text query matching any of {@code terms}, ordered by text score.
+     */
+    public static TextQuery textQuery(List<String> terms) {
+        return TextQuery.queryText(TextCriteria.forLanguage(LANGUAGE).matchingAny(terms.toArray(String[]::new)))
+                .sortByScore();
+    }
+
+    /**
+     * Index text for photos stored before {@link #FIELD} existed. Only touches documents without one.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("eventExecutor")
+    public void backfillSearchText() {
+        Query query = new Query(Criteria.where(FIELD).exists(false));
+        query.fields().include("caption").include("tags");
+        long updated = 0;
+        try (Stream<Photo> photos = mongoTemplate.stream(query, Photo.class)) {
+            Iterator<Photo> iterator = photos.iterator();
+            while (iterator.hasNext()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Photo.class);
+                int batch = 0;
+                while (batch < BACKFILL_BATCH && iterator.hasNext()) {
+                    Photo photo = iterator.next();
+                    bulk.updateOne(new Query(Criteria.where("_id").is(photo.getId())),
+                            new Update().set(FIELD, SearchTextNormalizer.indexText(photo.getCaption(), photo.getTags())));
+                    batch++;
+                }
+                bulk.execute();
+                updated += batch;
+            }
+            if (updated > 0) {
+                log.info("Backfilled search text for {} photos", updated);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to backfill photo search text after {} photos: {}", updated, e.getMessage());
+        }
+    }
+}
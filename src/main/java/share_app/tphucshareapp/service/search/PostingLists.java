@@ -0,0 +1,143 @@
+package share_app.tphucshareapp.service.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Set operations over posting lists: ascending, duplicate-free arrays of document ordinals.
+ * <p>
+ * Both operations gallop: the cursor in the longer list advances by exponential then binary search to the
+ * next element of the shorter one, so a selective list costs {@code O(m log(n/m))} against a popular one
+ * rather than {@code O(n + m)}. Unions copy the skipped runs in bulk.
+ * <p>
+ * Input lists are never written, and a result may be one of them, so callers can pass shared arrays.
+ */
+final class PostingLists {
+
+    private PostingLists() {
+    }
+
+    /**
+     * Ordinals present in every list; shortest lists are intersected first.
+     */
+    static int[] intersect(List<int[]> lists) {
+        if (lists.isEmpty()) return new int[0];
+        int[][] ordered = lists.toArray(int[][]::new);
+        Arrays.sort(ordered, Comparator.comparingInt(list -> list.length));
+        int[] result = ordered[0];
+        for (int i = 1; i < ordered.length && result.length > 0; i++) {
+            result = intersect(result, ordered[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Ordinals present in any list.
+     */
+    static int[] union(List<int[]> lists) {
+        int[] result = new int[0];
+        for (int[] list : lists) {
+            result = merge(result, null, list).ordinals;
+        }
+        return result;
+    }
+
+    /**
+     * Union of {@code lists} together with how many of them contain each ordinal.
+     */
+    static Counted countedUnion(List<int[]> lists) {
+        Counted result = new Counted(new int[0], new int[0]);
+        for (int[] list : lists) {
+            result = merge(result.ordinals, result.counts, list);
+        }
+        return result;
+    }
+
+    /**
+     * Parallel arrays: {@code ordinals[i]} occurs in {@code counts[i]} of the merged lists.
+     */
+    record Counted(int[] ordinals, int[] counts) {
+    }
+
+    private static int[] intersect(int[] small, int[] large) {
+        int[] out = new int[small.length];
+        int n = 0;
+        int from = 0;
+        for (int value : small) {
+            from = gallop(large, from, value);
+            if (from == large.length) break;
+            if (large[from] == value) {
+                out[n++] = value;
+                from++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Merge {@code list} into {@code base}; with {@code counts}, also count occurrences per ordinal.
+     */
+    private static Counted merge(int[] base, int[] counts, int[] list) {
+        int[] small = base.length <= list.length ? base : list;
+        int[] large = small == base ? list : base;
+        // counts belong to base; the new list contributes one to each of its ordinals
+        int[] smallCounts = small == base ? counts : null;
+        int[] largeCounts = large == base ? counts : null;
+
+        int[] out = new int[base.length + list.length];
+        int[] outCounts = new int[out.length];
+        int n = 0;
+        int from = 0;
+        for (int i = 0; i < small.length; i++) {
+            int value = small[i];
+            int to = gallop(large, from, value);
+            System.arraycopy(large, from, out, n, to - from);
+            fillCounts(outCounts, n, largeCounts, from, to - from);
+            n += to - from;
+            int count = smallCounts != null ? smallCounts[i] : 1;
+            if (to < large.length && large[to] == value) {
+                count += largeCounts != null ? largeCounts[to] : 1;
+                to++;
+            }
+            out[n] = value;
+            outCounts[n++] = count;
+            from = to;
+        }
+        System.arraycopy(large, from, out, n, large.length - from);
+        fillCounts(outCounts, n, largeCounts, from, large.length - from);
+        n += large.length - from;
+        return new Counted(Arrays.copyOf(out, n), Arrays.copyOf(outCounts, n));
+    }
+
+    private static void fillCounts(int[] outCounts, int at, int[] counts, int from, int length) {
+        if (counts != null) {
+            System.arraycopy(counts, from, outCounts, at, length);
+        } else {
+            Arrays.fill(outCounts, at, at + length, 1);
+        }
+    }
+
+    /**
+     * First index {@code >= from} whose value is {@code >= target}, or {@code list.length}.
+     */
+    private static int gallop(int[] list, int from, int target) {
+        if (from >= list.length || list[from] >= target) return from;
+        int step = 1;
+        int low = from;
+        int high = from + step;
+        while (high < list.length && list[high] < target) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, list.length);
+        // list[low] < target, and list[high] >= target or high == length
+        while (low + 1 < high) {
+            int mid = (low + high) >>> 1;
+            if (list[mid] < target) low = mid;
+            else high = mid;
+        }
+        return high;
+    }
+}
@@ -0,0 +1,258 @@
+package share_app.tphucshareapp.service.search;
+
+import java.util.*;
+
+/**
+ * Compressed (radix) trie from terms to ids, where every node keeps the best {@code k} ids of its subtree
+ * in {@code order}. A prefix lookup is a walk of at most {@code prefix.length()} characters followed by a
+ * copy of that node's list, however many ids share the prefix.
+ * <p>
+ * The lists are maintained on insert. Removing or re-ranking an id recomputes the lists along its path,
+ * bottom up, from each node's own ids and its children's lists. Not thread-safe.
+ */
+final class PrefixTrie {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final String[] NO_IDS = new String[0];
+
+    private static final class Node {
+        String edge;
+        Node[] children = NO_CHILDREN;
+        // ids with a term ending exactly here
+        String[] ids = NO_IDS;
+        // best ids in this subtree, best first, at most k
+        String[] top = NO_IDS;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+    }
+
+    private final int k;
+    private final Comparator<String> order;
+    private final Node root = new Node("");
+
+    PrefixTrie(int k, Comparator<String> order) {
+        this.k = k;
+        this.order = order;
+    }
+
+    void add(String id, String term) {
+        if (term.isEmpty()) return;
+        List<Node> path = insertPath(term);
+        Node terminal = path.get(path.size() - 1);
+        if (indexOf(terminal.ids, id) < 0) {
+            terminal.ids = append(terminal.ids, id);
+        }
+        for (Node node : path) {
+            offer(node, id);
+        }
+    }
+
+    /**
+     * Re-rank {@code id} under {@code term} after its position in {@code order} changed.
+     */
+    void rescore(String id, String term) {
+        List<Node> path = findPath(term);
+        if (path == null) return;
+        // a demoted id may now rank below one its lists left out, so they are rebuilt rather than re-sorted
+        recompute(path);
+    }
+
+    void remove(String id, String term) {
+        List<Node> path = findPath(term);
+        if (path == null) return;
+        Node terminal = path.get(path.size() - 1);
+        int index = indexOf(terminal.ids, id);
+        if (index < 0) return;
+        terminal.ids = without(terminal.ids, index);
+        recompute(path);
+    }
+
+    /**
+     * Best {@code limit} (at most {@code k}) ids with a term starting with {@code prefix}, best first.
+     */
+    List<String> top(String prefix, int limit) {
+        Node node = locate(prefix);
+        if (node == null) return List.of();
+        return List.of(Arrays.copyOf(node.top, Math.min(limit, node.top.length)));
+    }
+
+    // ─── STRUCTURE ─────────────────────────────────────────────────
+
+    /**
+     * Nodes from just below the root down to the one {@code term} ends at, splitting edges as needed.
+     */
+    private List<Node> insertPath(String term) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (i < term.length()) {
+            int slot = childSlot(node, term.charAt(i));
+            if (slot < 0) {
+                Node leaf = new Node(term.substring(i));
+                node.children = insertChild(node.children, -slot - 1, leaf);
+                path.add(leaf);
+                return path;
+            }
+            Node child = node.children[slot];
+            int common = commonPrefix(child.edge, term, i);
+            if (common < child.edge.length()) {
+                Node middle = new Node(child.edge.substring(0, common));
+                child.edge = child.edge.substring(common);
+                middle.children = new Node[]{child};
+                middle.top = child.top.clone();
+                node.children[slot] = middle;
+                child = middle;
+            }
+            path.add(child);
+            i += common;
+            node = child;
+        }
+        return path;
+    }
+
+    /**
+     * Nodes down to the one {@code term} ends at exactly, or null if no term ends there.
+     */
+    private List<Node> findPath(String term) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (i < term.length()) {
+            int slot = childSlot(node, term.charAt(i));
+            if (slot < 0) return null;
+            Node child = node.children[slot];
+            if (!term.startsWith(child.edge, i)) return null;
+            path.add(child);
+            i += child.edge.length();
+            node = child;
+        }
+        return path.isEmpty() ? null : path;
+    }
+
+    /**
+     * Highest node whose subtree holds exactly the terms starting with {@code prefix}.
+     */
+    private Node locate(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int slot = childSlot(node, prefix.charAt(i));
+            if (slot < 0) return null;
+            Node child = node.children[slot];
+            int common = commonPrefix(child.edge, prefix, i);
+            if (i + common == prefix.length()) return child;
+            if (common < child.edge.length()) return null;
+            i += common;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Index of the child whose edge starts with {@code c}, or {@code -(insertion point) - 1}.
+     */
+    private static int childSlot(Node node, char c) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char m = node.children[mid].edge.charAt(0);
+            if (m < c) low = mid + 1;
+            else if (m > c) high = mid - 1;
+            else return mid;
+        }
+        return -low - 1;
+    }
+
+    private static Node[] insertChild(Node[] children, int at, Node child) {
+        Node[] grown = new Node[children.length + 1];
+        System.arraycopy(children, 0, grown, 0, at);
+        grown[at] = child;
+        System.arraycopy(children, at, grown, at + 1, children.length - at);
+        return grown;
+    }
+
+    private static int commonPrefix(String edge, String term, int from) {
+        int max = Math.min(edge.length(), term.length() - from);
+        int n = 0;
+        while (n < max && edge.charAt(n) == term.charAt(from + n)) n++;
+        return n;
+    }
+
+    // ─── RANKING ───────────────────────────────────────────────────
+
+    private void offer(Node node, String id) {
+        String[] top = node.top;
+        int existing = indexOf(top, id);
+        String[] others = existing >= 0 ? without(top, existing) : top;
+        int at = 0;
+        while (at < others.length && order.compare(others[at], id) < 0) at++;
+        if (at >= k) {
+            node.top = others;
+            return;
+        }
+        int size = Math.min(k, others.length + 1);
+        String[] ranked = new String[size];
+        System.arraycopy(others, 0, ranked, 0, at);
+        ranked[at] = id;
+        System.arraycopy(others, at, ranked, at + 1, size - at - 1);
+        node.top = ranked;
+    }
+
+    /**
+     * Rebuild the lists of {@code path}, deepest first, so each node merges already correct children.
+     */
+    private void recompute(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            node.top = best(node);
+        }
+    }
+
+    /**
+     * Best {@code k} ids under {@code node}: the best of its own ids and its children's lists, best first.
+     */
+    private String[] best(Node node) {
+        PriorityQueue<String> worstFirst = new PriorityQueue<>(k + 1, order.reversed());
+        Set<String> seen = new HashSet<>();
+        offerAll(worstFirst, seen, node.ids);
+        for (Node child : node.children) {
+            offerAll(worstFirst, seen, child.top);
+        }
+        String[] ranked = new String[worstFirst.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = worstFirst.poll();
+        }
+        return ranked;
+    }
+
+    private void offerAll(PriorityQueue<String> worstFirst, Set<String> seen, String[] ids) {
+        for (String id : ids) {
+            if (!seen.add(id)) continue;
+            worstFirst.add(id);
+            if (worstFirst.size() > k) worstFirst.poll();
+        }
+    }
+
+    private static int indexOf(String[] ids, String id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i].equals(id)) return i;
+        }
+        return -1;
+    }
+
+    private static String[] append(String[] ids, String id) {
+        String[] grown = Arrays.copyOf(ids, ids.length + 1);
+        grown[ids.length] = id;
+        return grown;
+    }
+
+    private static String[] without(String[] ids, int index) {
+        String[] shrunk = new String[ids.length - 1];
+        System.arraycopy(ids, 0, shrunk, 0, index);
+        System.arraycopy(ids, index + 1, shrunk, index, ids.length - index - 1);
+        return shrunk;
+    }
+}
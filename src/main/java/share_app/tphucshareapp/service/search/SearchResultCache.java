@@ -0,0 +1,176 @@
+package share_app.tphucshareapp.service.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of search result pages, so the few queries that make up most search traffic
+ * are answered from memory.
+ * <p>
+ * Entries hold only ids (plus paging state); viewer-specific fields such as "liked by me" are hydrated
+ * per request. Keys are the normalized query with its paging parameters, one LRU map per {@link Type}.
+ * Entries expire after {@code search.cache.ttl-seconds}, and the least recently used are evicted beyond
+ * {@code search.cache.max-entries} per type.
+ * <p>
+ * Invalidation is coarse: a write {@link #invalidate}s whole types by bumping a Redis generation
+ * ({@code search:results:gen:{type}}). Every node compares generations at most once per second and drops
+ * entries stored under an older one.
+ */
+@Component
+@Slf4j
+public class SearchResultCache {
+
+    private static final String GENERATION_KEY = "search:results:gen:";
+    private static final long GENERATION_CHECK_MS = 1000;
+
+    public enum Type {
+        USERS, PHOTOS, TAGS
+    }
+
+    /**
+     * One cached page: the ids in result order, and the paging state to return with them.
+     */
+    public record CachedPage(List<String> ids, boolean hasNext, String nextCursor, Long total) {
+    }
+
+    private record Entry(CachedPage page, long generation, long expiresAt) {
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final Map<Type, Map<String, Entry>> entries = new EnumMap<>(Type.class);
+    private final Map<Type, Counter> hits = new EnumMap<>(Type.class);
+    private final Map<Type, Counter> misses = new EnumMap<>(Type.class);
+
+    private final long[] generations = new long[Type.values().length];
+    private volatile long lastGenerationCheck;
+
+    public SearchResultCache(RedisTemplate<String, Object> redisTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${search.cache.max-entries:2000}") int maxEntries,
+                             @Value("${search.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        for (Type type : Type.values()) {
+            entries.put(type, new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > SearchResultCache.this.maxEntries;
+                }
+            });
+            hits.put(type, requests(meterRegistry, type, "hit"));
+            misses.put(type, requests(meterRegistry, type, "miss"));
+            Gauge.builder("search.cache.hit.ratio", this, cache -> cache.hitRatio(type))
+                    .description("Share of search requests answered from the result cache")
+                    .tag("type", type.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * The cached page for {@code key}, or the result of {@code loader}, which is then cached.
+     */
+    public CachedPage get(Type type, String key, Supplier<CachedPage> loader) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            misses.get(type).increment();
+            return loader.get();
+        }
+
+        long generation = generation(type);
+        Map<String, Entry> cache = entries.get(type);
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && entry.generation() == generation && entry.expiresAt() >= System.currentTimeMillis()) {
+                hits.get(type).increment();
+                return entry.page();
+            }
+            if (entry != null) {
+                cache.remove(key);
+            }
+        }
+
+        misses.get(type).increment();
+        CachedPage page = loader.get();
+        synchronized (cache) {
+            cache.put(key, new Entry(page, generation, System.currentTimeMillis() + ttlMillis));
+        }
+        return page;
+    }
+
+    /**
+     * Drop every cached page of {@code types} on all nodes, after a write that may change their results.
+     */
+    public void invalidate(Type... types) {
+        for (Type type : types) {
+            try {
+                Long generation = redisTemplate.opsForValue().increment(GENERATION_KEY + type.name().toLowerCase());
+                if (generation != null) {
+                    synchronized (generations) {
+                        generations[type.ordinal()] = Math.max(generations[type.ordinal()], generation);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to invalidate {} search results: {}", type, e.getMessage());
+            }
+            Map<String, Entry> cache = entries.get(type);
+            synchronized (cache) {
+                cache.clear();
+            }
+        }
+    }
+
+    public double hitRatio(Type type) {
+        double hit = hits.get(type).count();
+        double total = hit + misses.get(type).count();
+        return total == 0 ? 0 : hit / total;
+    }
+
+    /**
+     * Current generation of {@code type}, re-read from Redis at most once per {@link #GENERATION_CHECK_MS}.
+     */
+    private long generation(Type type) {
+        long now = System.currentTimeMillis();
+        if (now - lastGenerationCheck >= GENERATION_CHECK_MS) {
+            lastGenerationCheck = now;
+            try {
+                List<String> keys = Arrays.stream(Type.values())
+                        .map(t -> GENERATION_KEY + t.name().toLowerCase())
+                        .toList();
+                List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+                if (values != null) {
+                    synchronized (generations) {
+                        for (int i = 0; i < values.size(); i++) {
+                            if (values.get(i) instanceof Number n) {
+                                generations[i] = Math.max(generations[i], n.longValue());
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to read search result generations: {}", e.getMessage());
+            }
+        }
+        synchronized (generations) {
+            return generations[type.ordinal()];
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, Type type, String result) {
+        return Counter.builder("search.cache.requests")
+                .description("Search requests by type and result cache outcome")
+                .tag("type", type.name().toLowerCase())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -3,12 +3,14 @@ package share_app.tphucshareapp.service.search;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import share_app.tphucshareapp.dto.request.search.SearchRequest;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.dto.response.search.SearchResultResponse;
 import share_app.tphucshareapp.dto.response.search.UserSearchResponse;
@@ -22,8 +24,9 @@ import share_app.tphucshareapp.service.follow.FollowService;
 import share_app.tphucshareapp.service.photo.PhotoConversionService;
 import share_app.tphucshareapp.service.user.UserService;
 
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -36,37 +39,71 @@ public class SearchService implements ISearchService {
     private final PhotoConversionService photoConversionService;
     private final UserService userService;
     private final FollowService followService;
+    private final PhotoTextSearchService photoTextSearchService;
+    private final UserAutocompleteService userAutocompleteService;
+    private final TagCatalogService tagCatalogService;
+    private final TagPostingService tagPostingService;
+    private final SearchResultCache searchResultCache;
+
+    @Value("${search.tags.expansions:3}")
+    private int tagExpansions;
 
     @Override
-    public Page<UserSearchResponseSimple> searchUsers(String query, int page, int size) {
+    public SliceResponse<UserSearchResponseSimple> searchUsers(String query, int page, int size) {
         log.info("Searching users for: {}", query);
 
         String sanitizedQuery = sanitizeSearchQuery(query);
         if (sanitizedQuery.isEmpty()) {
-            return Page.empty();
+            return SliceResponse.empty(page, size);
         }
 
-        Pageable pageable = PageRequest.of(page, size);
+        // Served from the in-memory prefix index, most followed first. Results stop at its depth, so every
+        // page follows the same matching rule and order
+        if (userAutocompleteService.isReady()) {
+            long start = (long) page * size;
+            long end = start + size;
+            int depth = userAutocompleteService.maxResults();
+            if (start >= depth) {
+                return SliceResponse.empty(page, size);
+            }
+            List<User> matches = userAutocompleteService.complete(sanitizedQuery, (int) Math.min(end + 1, depth));
+            List<UserSearchResponseSimple> content = matches.stream()
+                    .skip(start)
+                    .limit(size)
+                    .map(user -> modelMapper.map(user, UserSearchResponseSimple.class))
+                    .toList();
+            return new SliceResponse<>(content, page, size, matches.size() > end, null);
+        }
 
-        // Search by username, firstName, or lastName
-        Page<User> users = userRepository.findByNameFields(sanitizedQuery, pageable);
-        log.info("Found {} users matching query: {}", users.getTotalElements(), query);
+        // Until the index has loaded: escaped username match, most followed first
+        String key = sanitizedQuery.toLowerCase() + "|" + page + "|" + size;
+        SearchResultCache.CachedPage result = searchResultCache.get(SearchResultCache.Type.USERS, key, () -> {
+            Pageable pageable = PageRequest.of(page, size, Sort.by("followerCount").descending());
+            Slice<User> users = userRepository.findByUsernameRegex(Pattern.quote(sanitizedQuery), pageable);
+            return new SearchResultCache.CachedPage(users.map(User::getId).getContent(), users.hasNext(), null, null);
+        });
+
+        Map<String, User> byId = new HashMap<>();
+        userRepository.findAllById(result.ids()).forEach(user -> byId.put(user.getId(), user));
+        List<UserSearchResponseSimple> content = result.ids().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(user -> modelMapper.map(user, UserSearchResponseSimple.class))
+                .toList();
+        log.info("Found {} users matching query: {}", content.size(), query);
 
-        return users.map(user -> modelMapper.map(user, UserSearchResponseSimple.class));
+        return new SliceResponse<>(content, page, size, result.hasNext(), null);
     }
 
     @Override
-    public Page<PhotoResponse> searchPhotos(String query, int page, int size) {
+    public SliceResponse<PhotoResponse> searchPhotos(String query, int page, int size) {
         log.info("Searching photos for: {}", query);
 
         String sanitizedQuery = sanitizeSearchQuery(query);
         if (sanitizedQuery.isEmpty()) {
-            return Page.empty();
+            return SliceResponse.empty(page, size);
         }
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-
-        // Try text search first
         User currentUser = null;
         try {
             currentUser = userService.getCurrentUser();
@@ -75,53 +112,62 @@ public class SearchService implements ISearchService {
         }
         final User finalCurrentUser = currentUser;
 
-        // Try text search first
-        try {
-            Page<Photo> photos = photoRepository.findByTextSearch(sanitizedQuery, pageable);
-            if (!photos.isEmpty()) {
-                // FIX: Pass the current user to the conversion method.
-                return photos.map(photo -> photoConversionService.convertToPhotoResponse(photo, finalCurrentUser));
-            }
-        } catch (Exception e) {
-            log.warn("Photo text search failed, falling back to regex search: {}", e.getMessage());
-        }
+        // Caption and tag text index, diacritic-insensitive
+        String key = String.join(" ", SearchTextNormalizer.tokens(sanitizedQuery)) + "|" + page + "|" + size;
+        SearchResultCache.CachedPage result = searchResultCache.get(SearchResultCache.Type.PHOTOS, key, () -> {
+            Slice<String> ids = photoTextSearchService.searchIds(sanitizedQuery, page, size);
+            return new SearchResultCache.CachedPage(ids.getContent(), ids.hasNext(), null, null);
+        });
 
-        // Fallback to caption search
-        Page<Photo> photos = photoRepository.findByCaptionContainingIgnoreCase(sanitizedQuery, pageable);
-        return photos.map(photo -> photoConversionService.convertToPhotoResponse(photo, finalCurrentUser));
+        return new SliceResponse<>(photoConversionService.convertToPhotoResponses(findPhotosInOrder(result.ids()), finalCurrentUser),
+                page, size, result.hasNext(), null);
     }
 
     @Override
-    public Page<PhotoResponse> searchPhotosByTags(String query, int page, int size) {
+    public SliceResponse<PhotoResponse> searchPhotosByTags(String query, String match, String cursor, int page, int size) {
         log.info("Searching photos by tags for: {}", query);
 
         String sanitizedQuery = sanitizeSearchQuery(query);
         if (sanitizedQuery.isEmpty()) {
-            return Page.empty();
+            return SliceResponse.empty(page, size);
         }
 
-        // 1. Find tags that match the query
-        // Assuming the query is a space-separated string of tags, e.g., "nature sky"
-        List<String> tagNames = List.of(sanitizedQuery.split("\\s+"));
+        TagPostingService.Match tagMatch = TagPostingService.Match.from(match);
+        List<String> terms = tagTerms(sanitizedQuery);
+        String key = terms.stream().sorted().collect(Collectors.joining(" "))
+                + "|" + tagMatch + "|" + Objects.requireNonNullElse(cursor, "") + "|" + page + "|" + size;
+        SearchResultCache.CachedPage result = searchResultCache.get(SearchResultCache.Type.TAGS, key, () -> {
+            // 1. Resolve the query terms, e.g. "beach #sunset fil", against the tag catalog
+            List<List<String>> tagGroups = terms.stream()
+                    .map(term -> tagCatalogService.expand(term, tagExpansions))
+                    .toList();
+
+            // Nothing in use matches: no need to touch photos
+            if (tagGroups.stream().allMatch(List::isEmpty)) {
+                return new SearchResultCache.CachedPage(List.of(), false, null, 0L);
+            }
 
-        if (tagNames.isEmpty()) {
-            return Page.empty();
+            // 2. Rank photo ids over the per-tag posting lists
+            TagPostingService.TagSearchPage ranked = tagPostingService.search(tagGroups, tagMatch, cursor, page, size);
+            return new SearchResultCache.CachedPage(ranked.photoIds(), ranked.hasNext(), ranked.nextCursor(), ranked.total());
+        });
+        if (result.ids().isEmpty() && !result.hasNext()) {
+            return SliceResponse.empty(page, size);
         }
 
-        // 2. Find Photos that contain these tags directly
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-
         User currentUser = null;
         try {
             currentUser = userService.getCurrentUser();
         } catch (Exception e) {
             log.trace("No authenticated user found for photo search by tags.");
         }
-        final User finalCurrentUser = currentUser;
-
-        Page<Photo> photos = photoRepository.findByTagsIn(tagNames, pageable);
 
-        return photos.map(photo -> photoConversionService.convertToPhotoResponse(photo, finalCurrentUser));
+        // 3. Load just that page
+        SliceResponse<PhotoResponse> response = new SliceResponse<>(
+                photoConversionService.convertToPhotoResponses(findPhotosInOrder(result.ids()), currentUser),
+                page, size, result.hasNext(), result.total());
+        response.setNextCursor(result.nextCursor());
+        return response;
     }
 
     @Override
@@ -133,12 +179,14 @@ public class SearchService implements ISearchService {
             return List.of();
         }
 
-        Set<String> suggestions = new java.util.HashSet<>();
+        Set<String> suggestions = new LinkedHashSet<>();
 
-        // Get user suggestions
+        // Get user suggestions, most followed first
         try {
-            List<User> users = userRepository.findByNameFields(sanitizedQuery,
-                    PageRequest.of(0, limit)).getContent();
+            List<User> users = userAutocompleteService.isReady()
+                    ? userAutocompleteService.complete(sanitizedQuery, limit)
+                    : userRepository.findByUsernameRegex(Pattern.quote(sanitizedQuery),
+                    PageRequest.of(0, limit, Sort.by("followerCount").descending())).getContent();
             users.forEach(user -> {
                 suggestions.add(user.getUsername());
             });
@@ -148,11 +196,35 @@ public class SearchService implements ISearchService {
 
         return suggestions.stream()
                 .limit(limit)
-                .sorted()
                 .toList();
     }
 
     // Helper methods
+    /**
+     * Distinct whitespace-separated terms of a tag query, lowercased and without leading {@code #}. Each is
+     * expanded to the catalog tags it stands for: the tag itself when it is in use, otherwise the most used
+     * tags it is a prefix of.
+     */
+    private List<String> tagTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : query.split("\\s+")) {
+            String tag = term.replaceFirst("^#+", "").toLowerCase();
+            if (!tag.isEmpty()) {
+                terms.add(tag);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * Photos with {@code ids}, in that order; ids deleted since they were ranked are skipped.
+     */
+    private List<Photo> findPhotosInOrder(List<String> ids) {
+        Map<String, Photo> byId = new HashMap<>();
+        photoRepository.findAllById(ids).forEach(photo -> byId.put(photo.getId(), photo));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
     private String sanitizeSearchQuery(String query) {
         if (query == null) return "";
 
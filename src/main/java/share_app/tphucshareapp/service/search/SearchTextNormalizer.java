@@ -0,0 +1,64 @@
+package share_app.tphucshareapp.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folds free text into the form that is indexed and queried: lower case, Vietnamese (and other) diacritics
+ * stripped, {@code đ} mapped to {@code d}, and everything that is not a letter or digit treated as a
+ * separator. "Hà Nội", "ha noi" and "HA-NOI" all fold to {@code ha noi}.
+ * <p>
+ * Vietnamese writes one syllable per space-separated token, so a word like "Hà Nội" is two tokens.
+ * {@link #terms(String)} therefore also emits each adjacent pair joined ({@code hanoi}), which lets the
+ * unspaced spelling match and ranks documents containing the whole word above ones with either syllable.
+ */
+public final class SearchTextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTextNormalizer() {
+    }
+
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) return "";
+        String lower = text.toLowerCase(Locale.ROOT).replace('đ', 'd');
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    public static List<String> tokens(String text) {
+        String folded = fold(text);
+        return folded.isEmpty() ? List.of() : List.of(folded.split(" "));
+    }
+
+    /**
+     * Folded tokens of {@code text} followed by every adjacent token pair joined.
+     */
+    public static List<String> terms(String text) {
+        List<String> tokens = tokens(text);
+        List<String> terms = new ArrayList<>(tokens.size() * 2);
+        terms.addAll(tokens);
+        for (int i = 1; i < tokens.size(); i++) {
+            terms.add(tokens.get(i - 1) + tokens.get(i));
+        }
+        return terms;
+    }
+
+    /**
+     * Text stored in a document's indexed field: terms of the caption, then the folded tags.
+     */
+    public static String indexText(String caption, Collection<String> tags) {
+        List<String> terms = new ArrayList<>(terms(caption));
+        if (tags != null) {
+            for (String tag : tags) {
+                terms.addAll(terms(tag));
+            }
+        }
+        return String.join(" ", terms);
+    }
+}
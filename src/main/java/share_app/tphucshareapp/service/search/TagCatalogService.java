@@ -0,0 +1,353 @@
+package share_app.tphucshareapp.service.search;
+
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.dto.response.search.TagSuggestionResponse;
+import share_app.tphucshareapp.model.Tag;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Catalog of hashtags in use, with photo counts and last-used times.
+ * <p>
+ * The {@code tags} collection is the source of truth: photo create and delete {@code $inc} each tag's
+ * {@code photoCount} and stamp {@code updatedAt}. Every node mirrors the tags in use into a
+ * {@link PrefixTrie} keyed by the {@link SearchTextNormalizer#fold folded} tag and ranked by photo count.
+ * The mirror is loaded once the app is ready and every {@code search.tags.reload-interval-ms}. In between,
+ * it pulls tags whose {@code updatedAt} moved every {@code search.tags.sync-interval-ms}.
+ * <p>
+ * Catalog updates run after the photo write and a failed one is only logged, so counts are recounted from
+ * {@code photos} every {@code search.tags.recount-interval-ms}, and on startup when the catalog is empty.
+ * One node recounts at a time, and only tags untouched since the scan began are corrected.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TagCatalogService {
+
+    // re-read window covering writes stamped by nodes with slightly late clocks
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    private static final String RECOUNT_LOCK_KEY = "tags:recount:lock";
+    private static final int RECOUNT_BATCH = 500;
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SearchResultCache searchResultCache;
+
+    @Value("${search.tags.top-k:20}")
+    private int topK;
+
+    @Value("${search.tags.recount-interval-ms:21600000}")
+    private long recountIntervalMs;
+
+    private record Entry(String name, long photoCount, Instant lastUsedAt) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // guarded by lock
+    private Map<String, Entry> entries = new HashMap<>();
+    private PrefixTrie trie;
+    // guarded by this
+    private Instant syncedUpTo = Instant.EPOCH;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void recordPhotoCreated(Collection<String> tags) {
+        update(tags, 1);
+    }
+
+    public void recordPhotoDeleted(Collection<String> tags) {
+        update(tags, -1);
+    }
+
+    /**
+     * Tags in use starting with {@code prefix}, ignoring case and diacritics, most used first.
+     */
+    public List<TagSuggestionResponse> complete(String prefix, int limit) {
+        String key = key(prefix);
+        if (!ready || key.isEmpty() || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            List<TagSuggestionResponse> suggestions = new ArrayList<>();
+            for (String name : trie.top(key, Math.min(limit, topK))) {
+                Entry entry = entries.get(name);
+                suggestions.add(new TagSuggestionResponse(entry.name(), entry.photoCount(), entry.lastUsedAt()));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tags a query term stands for: the term itself when it is in use, otherwise up to {@code limit} of
+     * the most used tags starting with it. Empty when no tag matches.
+     */
+    public List<String> expand(String term, int limit) {
+        if (!ready) return List.of(term);
+        lock.readLock().lock();
+        try {
+            if (entries.containsKey(term)) return List.of(term);
+            String key = key(term);
+            return key.isEmpty() ? List.of() : trie.top(key, Math.min(limit, topK));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("eventExecutor")
+    public void loadOnStartup() {
+        try {
+            if (mongoTemplate.estimatedCount(Tag.class) == 0 && acquireRecountLock()) {
+                recount();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to backfill tag catalog: {}", e.getMessage());
+        }
+        reload();
+    }
+
+    @Scheduled(initialDelayString = "${search.tags.recount-interval-ms:21600000}",
+            fixedDelayString = "${search.tags.recount-interval-ms:21600000}")
+    @Async("eventExecutor")
+    public void scheduledRecount() {
+        try {
+            if (acquireRecountLock()) {
+                recount();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to recount tag catalog: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${search.tags.reload-interval-ms:3600000}",
+            fixedDelayString = "${search.tags.reload-interval-ms:3600000}")
+    @Async("eventExecutor")
+    public void scheduledReload() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${search.tags.sync-interval-ms:5000}")
+    public synchronized void sync() {
+        if (!ready) return;
+        try {
+            Query query = new Query(Criteria.where("updatedAt").gt(syncedUpTo.minus(SYNC_OVERLAP)))
+                    .with(Sort.by(Sort.Direction.ASC, "updatedAt"));
+            List<Tag> changed = mongoTemplate.find(query, Tag.class);
+            if (changed.isEmpty()) return;
+
+            boolean namesChanged = false;
+            lock.writeLock().lock();
+            try {
+                for (Tag tag : changed) {
+                    namesChanged |= apply(tag);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (namesChanged) {
+                // a query term may now expand to a tag that was not there when its page was cached
+                searchResultCache.invalidate(SearchResultCache.Type.TAGS);
+            }
+            Instant latest = changed.get(changed.size() - 1).getUpdatedAt();
+            if (latest.isAfter(syncedUpTo)) {
+                syncedUpTo = latest;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sync tag catalog: {}", e.getMessage());
+        }
+    }
+
+    private void update(Collection<String> tags, int delta) {
+        if (tags == null || tags.isEmpty()) return;
+        try {
+            Instant now = Instant.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Tag.class);
+            for (String tag : new LinkedHashSet<>(tags)) {
+                Query query = new Query(Criteria.where("_id").is(tag));
+                Update update = new Update().inc("photoCount", delta).set("updatedAt", now);
+                if (delta > 0) {
+                    bulk.upsert(query, update.set("lastUsedAt", now));
+                } else {
+                    bulk.updateOne(query, update);
+                }
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            log.warn("Failed to update tag catalog for {}: {}", tags, e.getMessage());
+        }
+    }
+
+    private void reload() {
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, Entry> freshEntries = new HashMap<>();
+            PrefixTrie freshTrie = newTrie(freshEntries);
+            try (Stream<Tag> tags = mongoTemplate.stream(new Query(Criteria.where("photoCount").gt(0)), Tag.class)) {
+                tags.forEach(tag -> {
+                    freshEntries.put(tag.getName(), new Entry(tag.getName(), tag.getPhotoCount(), tag.getLastUsedAt()));
+                    freshTrie.add(tag.getName(), key(tag.getName()));
+                });
+            }
+
+            synchronized (this) {
+                lock.writeLock().lock();
+                try {
+                    entries = freshEntries;
+                    trie = freshTrie;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                // writes that landed during the scan are re-read by the next sync
+                syncedUpTo = Instant.ofEpochMilli(start);
+                ready = true;
+            }
+            log.info("Loaded tag catalog with {} tags in {} ms", freshEntries.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Failed to load tag catalog: {}", e.getMessage());
+        }
+    }
+
+    private boolean acquireRecountLock() {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(RECOUNT_LOCK_KEY, "1", Duration.ofMillis(Math.max(60_000, recountIntervalMs / 2))));
+        } catch (Exception e) {
+            // recounting is safe to run twice, only wasteful
+            log.warn("Failed to take tag recount lock, recounting locally: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Set every tag's count and last use from {@code photos}, and zero tags no photo carries any more.
+     * Writes are conditioned on {@code updatedAt} predating the scan, so a count {@code $inc}ed meanwhile is
+     * left alone (an upsert then hits the existing id and is rejected) until the next recount.
+     */
+    private void recount() {
+        long start = System.currentTimeMillis();
+        Instant cutoff = Instant.ofEpochMilli(start).minus(SYNC_OVERLAP);
+
+        Map<String, Long> stored = new HashMap<>();
+        Query inUse = new Query(Criteria.where("photoCount").gt(0));
+        inUse.fields().include("photoCount");
+        try (Stream<Tag> tags = mongoTemplate.stream(inUse, Tag.class)) {
+            tags.forEach(tag -> stored.put(tag.getName(), tag.getPhotoCount()));
+        }
+
+        List<Document> pipeline = List.of(
+                new Document("$unwind", "$tags"),
+                new Document("$group", new Document("_id", "$tags")
+                        .append("photoCount", new Document("$sum", 1))
+                        .append("lastUsedAt", new Document("$max", "$createdAt"))));
+        Instant now = Instant.now();
+        int corrected = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Tag.class);
+        int batch = 0;
+        for (Document row : mongoTemplate.getCollection("photos").aggregate(pipeline).allowDiskUse(true)) {
+            if (!(row.get("_id") instanceof String name)) continue;
+            long count = ((Number) row.get("photoCount")).longValue();
+            if (Objects.equals(stored.remove(name), count)) continue;
+            bulk.upsert(new Query(Criteria.where("_id").is(name).and("updatedAt").lt(cutoff)),
+                    new Update().set("photoCount", count).set("lastUsedAt", row.get("lastUsedAt")).set("updatedAt", now));
+            if (++batch == RECOUNT_BATCH) {
+                corrected += execute(bulk);
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Tag.class);
+                batch = 0;
+            }
+        }
+        // left in stored: tags counted in use that no photo carries
+        for (String name : stored.keySet()) {
+            bulk.updateOne(new Query(Criteria.where("_id").is(name).and("updatedAt").lt(cutoff)),
+                    new Update().set("photoCount", 0).set("updatedAt", now));
+            if (++batch == RECOUNT_BATCH) {
+                corrected += execute(bulk);
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Tag.class);
+                batch = 0;
+            }
+        }
+        if (batch > 0) {
+            corrected += execute(bulk);
+        }
+        log.info("Recounted tag catalog: {} tags corrected in {} ms", corrected, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Run a recount batch; upserts rejected as duplicates are tags changed since the scan and are skipped.
+     */
+    private static int execute(BulkOperations bulk) {
+        try {
+            BulkWriteResult result = bulk.execute();
+            return result.getModifiedCount() + result.getUpserts().size();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+            return e.getResult().getModifiedCount() + e.getResult().getUpserts().size();
+        }
+    }
+
+    /**
+     * Bring one tag up to date; tags no longer on any photo are dropped. Caller holds the write lock.
+     */
+    private boolean apply(Tag tag) {
+        String name = tag.getName();
+        Entry old = entries.get(name);
+        if (tag.getPhotoCount() <= 0) {
+            if (old != null) {
+                trie.remove(name, key(name));
+                entries.remove(name);
+                return true;
+            }
+            return false;
+        }
+        Entry fresh = new Entry(name, tag.getPhotoCount(), tag.getLastUsedAt());
+        entries.put(name, fresh);
+        if (old == null) {
+            trie.add(name, key(name));
+            return true;
+        } else if (old.photoCount() != fresh.photoCount()) {
+            trie.rescore(name, key(name));
+        }
+        return false;
+    }
+
+    /**
+     * Trie ranked by the photo counts in {@code byName}, which {@link #apply} keeps current.
+     */
+    private PrefixTrie newTrie(Map<String, Entry> byName) {
+        return new PrefixTrie(topK, Comparator.comparingLong((String name) -> byName.get(name).photoCount())
+                .reversed()
+                .thenComparing(Comparator.naturalOrder()));
+    }
+
+    private static String key(String tag) {
+        return SearchTextNormalizer.fold(tag).replace(" ", "");
+    }
+}
@@ -0,0 +1,334 @@
+package share_app.tphucshareapp.service.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.Photo;
+import share_app.tphucshareapp.service.photo.TagRankingService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Multi-tag photo search over per-tag posting lists held in memory on every node.
+ * <p>
+ * Every photo gets a dense ordinal in creation order, and each tag maps to the ascending ordinals of its
+ * photos, next to a snapshot of each photo's {@code rankScore}. A query is a list of groups, one per query
+ * term, each holding the catalog tags the term stands for. Each group is the union of its tags' lists.
+ * {@link Match#ALL} intersects the groups and {@link Match#ANY} unions them, counting how many groups each
+ * photo matches. Both operations gallop ({@link PostingLists}), so a selective tag stays cheap next to a
+ * popular one. Hits are ranked by match count, then score, then newest, and paged by a cursor over that
+ * ranking.
+ * <p>
+ * The lists are loaded once the app is ready and every {@code search.tag-postings.reload-interval-ms},
+ * which also refreshes scores and drops photos deleted elsewhere. In between, new photos are pulled every
+ * {@code search.tag-postings.sync-interval-ms}. Until the first load, queries run against {@code photos}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TagPostingService {
+
+    // re-read window covering photos stamped by nodes with slightly late clocks
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::matches).reversed()
+            .thenComparing(Comparator.comparingDouble(Hit::score).reversed())
+            .thenComparing(Hit::photoId, Comparator.reverseOrder());
+
+    private final MongoTemplate mongoTemplate;
+    private final SearchResultCache searchResultCache;
+
+    public enum Match {
+        ANY, ALL;
+
+        public static Match from(String value) {
+            return "all".equalsIgnoreCase(value) ? ALL : ANY;
+        }
+    }
+
+    /**
+     * One page of photo ids, best first, with the number of photos matching (null when unknown) and the
+     * cursor of the last one when more follow.
+     */
+    public record TagSearchPage(List<String> photoIds, boolean hasNext, String nextCursor, Long total) {
+
+        static TagSearchPage empty() {
+            return new TagSearchPage(List.of(), false, null, 0L);
+        }
+    }
+
+    private record Hit(int matches, double score, String photoId) {
+    }
+
+    private static final class Postings {
+        // exactly sized outside the write lock, so searches read it in place
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size == ordinals.length) ordinals = Arrays.copyOf(ordinals, Math.max(size * 2, 4));
+            ordinals[size++] = ordinal;
+        }
+
+        void trim() {
+            if (size < ordinals.length) ordinals = Arrays.copyOf(ordinals, size);
+        }
+    }
+
+    private static final class Index {
+        final Map<String, Postings> postings = new HashMap<>();
+        final Map<String, Integer> ordinals = new HashMap<>();
+        final List<String> photoIds = new ArrayList<>();
+        final BitSet deleted = new BitSet();
+        // lists added to since the last freeze
+        final Set<Postings> growing = Collections.newSetFromMap(new IdentityHashMap<>());
+        double[] scores = new double[1024];
+
+        boolean add(Photo photo) {
+            if (ordinals.containsKey(photo.getId())) return false;
+            int ordinal = photoIds.size();
+            photoIds.add(photo.getId());
+            ordinals.put(photo.getId(), ordinal);
+            if (ordinal == scores.length) scores = Arrays.copyOf(scores, ordinal * 2);
+            scores[ordinal] = photo.getRankScore();
+            if (photo.getTags() != null) {
+                for (String tag : new LinkedHashSet<>(photo.getTags())) {
+                    Postings list = postings.computeIfAbsent(tag, t -> new Postings());
+                    list.add(ordinal);
+                    growing.add(list);
+                }
+            }
+            return true;
+        }
+
+        void freeze() {
+            growing.forEach(Postings::trim);
+            growing.clear();
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+    // guarded by lock
+    private Index index = new Index();
+    // guarded by this
+    private Instant syncedUpTo = Instant.EPOCH;
+    private volatile boolean ready;
+
+    /**
+     * Photos matching {@code groups} after {@code cursor}; without a cursor, page {@code page} by offset.
+     */
+    public TagSearchPage search(List<List<String>> groups, Match match, String cursor, int page, int size) {
+        if (!ready) {
+            return searchPhotos(groups, match, page, size);
+        }
+        Hit after = cursor != null && !cursor.isBlank() ? decodeCursor(cursor) : null;
+        long skip = after == null ? (long) page * size : 0;
+
+        lock.readLock().lock();
+        try {
+            List<int[]> groupLists = new ArrayList<>(groups.size());
+            for (List<String> group : groups) {
+                List<int[]> lists = new ArrayList<>(group.size());
+                for (String tag : group) {
+                    Postings postings = index.postings.get(tag);
+                    if (postings != null) lists.add(postings.ordinals);
+                }
+                int[] merged = lists.size() == 1 ? lists.get(0) : PostingLists.union(lists);
+                if (merged.length > 0) {
+                    groupLists.add(merged);
+                } else if (match == Match.ALL) {
+                    return TagSearchPage.empty();
+                }
+            }
+            if (groupLists.isEmpty()) return TagSearchPage.empty();
+
+            int[] ordinals;
+            int[] counts = null;
+            if (match == Match.ALL) {
+                ordinals = PostingLists.intersect(groupLists);
+            } else {
+                PostingLists.Counted union = PostingLists.countedUnion(groupLists);
+                ordinals = union.ordinals();
+                counts = union.counts();
+            }
+
+            // best skip + size + 1 hits after the cursor, worst on top
+            long keep = skip + size + 1;
+            PriorityQueue<Hit> best = new PriorityQueue<>((int) Math.min(keep, ordinals.length) + 1, RANKING.reversed());
+            long total = 0;
+            for (int i = 0; i < ordinals.length; i++) {
+                int ordinal = ordinals[i];
+                if (index.deleted.get(ordinal)) continue;
+                total++;
+                Hit hit = new Hit(counts != null ? counts[i] : groupLists.size(), index.scores[ordinal],
+                        index.photoIds.get(ordinal));
+                if (after != null && RANKING.compare(hit, after) <= 0) continue;
+                if (best.size() < keep) {
+                    best.add(hit);
+                } else if (RANKING.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+
+            List<Hit> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING);
+            boolean hasNext = ranked.size() > skip + size;
+            List<Hit> pageHits = ranked.subList((int) Math.min(skip, ranked.size()),
+                    (int) Math.min(skip + size, ranked.size()));
+            String nextCursor = hasNext && !pageHits.isEmpty() ? encodeCursor(pageHits.get(pageHits.size() - 1)) : null;
+            return new TagSearchPage(pageHits.stream().map(Hit::photoId).toList(), hasNext, nextCursor, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a photo deleted on this node right away; other nodes drop it on their next reload.
+     */
+    public void markDeleted(String photoId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = index.ordinals.get(photoId);
+            if (ordinal != null) index.deleted.set(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("eventExecutor")
+    public void loadOnStartup() {
+        reload();
+    }
+
+    @Scheduled(initialDelayString = "${search.tag-postings.reload-interval-ms:600000}",
+            fixedDelayString = "${search.tag-postings.reload-interval-ms:600000}")
+    @Async("eventExecutor")
+    public void scheduledReload() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${search.tag-postings.sync-interval-ms:5000}")
+    public synchronized void sync() {
+        if (!ready) return;
+        try {
+            List<Photo> created = mongoTemplate.find(projected(new Query(
+                    Criteria.where("createdAt").gt(syncedUpTo.minus(SYNC_OVERLAP)))), Photo.class);
+            if (created.isEmpty()) return;
+
+            boolean added = false;
+            lock.writeLock().lock();
+            try {
+                for (Photo photo : created) {
+                    added |= index.add(photo);
+                }
+                index.freeze();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (added) {
+                // pages cached before the new photos reached this node's lists
+                searchResultCache.invalidate(SearchResultCache.Type.TAGS);
+            }
+            Instant latest = created.get(created.size() - 1).getCreatedAt();
+            if (latest.isAfter(syncedUpTo)) {
+                syncedUpTo = latest;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sync tag posting lists: {}", e.getMessage());
+        }
+    }
+
+    private void reload() {
+        if (!reloading.compareAndSet(false, true)) return;
+        try {
+            long start = System.currentTimeMillis();
+            Index fresh = new Index();
+            try (Stream<Photo> photos = mongoTemplate.stream(projected(new Query()), Photo.class)) {
+                photos.forEach(fresh::add);
+            }
+            fresh.freeze();
+
+            synchronized (this) {
+                lock.writeLock().lock();
+                try {
+                    index = fresh;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                // photos created during the scan are picked up by the next sync
+                syncedUpTo = Instant.ofEpochMilli(start);
+                ready = true;
+            }
+            log.info("Loaded tag posting lists for {} photos and {} tags in {} ms",
+                    fresh.photoIds.size(), fresh.postings.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Failed to load tag posting lists: {}", e.getMessage());
+        } finally {
+            reloading.set(false);
+        }
+    }
+
+    /**
+     * Fallback before the first load: same filter against {@code photos}, ranked by score only.
+     */
+    private TagSearchPage searchPhotos(List<List<String>> groups, Match match, int page, int size) {
+        List<Criteria> perGroup = groups.stream()
+                .filter(group -> !group.isEmpty())
+                .map(group -> Criteria.where("tags").in(group))
+                .toList();
+        if (perGroup.isEmpty() || (match == Match.ALL && perGroup.size() < groups.size())) {
+            return TagSearchPage.empty();
+        }
+        Criteria criteria = match == Match.ALL
+                ? new Criteria().andOperator(perGroup)
+                : Criteria.where("tags").in(groups.stream().flatMap(List::stream).distinct().toList());
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, TagRankingService.RANK_FIELD, "_id"))
+                .skip((long) page * size)
+                .limit(size + 1);
+        query.fields().include("_id");
+        List<String> ids = mongoTemplate.find(query, Photo.class).stream().map(Photo::getId).toList();
+        boolean hasNext = ids.size() > size;
+        return new TagSearchPage(hasNext ? ids.subList(0, size) : ids, hasNext, null, null);
+    }
+
+    private static Query projected(Query query) {
+        query.with(Sort.by(Sort.Direction.ASC, "createdAt", "_id"));
+        query.fields().include("tags", TagRankingService.RANK_FIELD, "createdAt");
+        return query;
+    }
+
+    private static String encodeCursor(Hit last) {
+        String value = last.matches() + "|" + last.score() + "|" + last.photoId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Hit decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            return new Hit(Integer.parseInt(parts[0]), Double.parseDouble(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package share_app.tphucshareapp.service.search;
+
+import com.mongodb.client.MongoCollection;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Photo search benchmark: loads synthetic Vietnamese/English captions into a throwaway
+ * {@code bench_photos_*} collection and reports p50/p99 latency of one result page for the old
+ * case-insensitive caption regex against the folded text index, plus how many queries each answers.
+ * <p>
+ * Words are drawn with a skewed distribution, so queries cover both very common and rare terms, and half
+ * of the queries are typed without diacritics the way people search on a phone. Runs are seeded.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TextSearchBenchmarkService {
+
+    private static final String[] SYLLABLES = {
+            "hà", "nội", "sài", "gòn", "đà", "nẵng", "huế", "hội", "an", "phố", "cổ", "biển", "núi", "sông",
+            "hồ", "cà", "phê", "phở", "bún", "chả", "bánh", "mì", "trà", "sữa", "hoàng", "hôn", "bình", "minh",
+            "mùa", "thu", "đông", "xuân", "hạ", "mưa", "nắng", "gió", "đêm", "ngày", "bạn", "bè", "gia", "đình",
+            "yêu", "thương", "đẹp", "vui", "buồn", "nhớ", "chợ", "đường", "thành", "quê", "hương", "cánh", "đồng",
+            "lúa", "hoa", "sen", "đào", "mai", "tết", "du", "lịch", "ảnh", "chụp", "kỷ", "niệm", "trường", "học"
+    };
+    private static final String[] WORDS = {
+            "sunset", "beach", "coffee", "travel", "friends", "night", "city", "street", "food", "love",
+            "weekend", "mountain", "river", "photo", "vibes", "summer", "rain", "morning", "home", "happy"
+    };
+    private static final String[] TAGS = {
+            "travel", "food", "hanoi", "saigon", "danang", "coffee", "sunset", "street", "nature", "tet",
+            "dulich", "cafe", "phongcanh", "amthuc", "selfie", "family", "beach", "night", "art", "life"
+    };
+    private static final int WARMUP_QUERIES = 10;
+    private static final int WRITE_BATCH = 1_000;
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Map<String, Object> lastReport = Map.of("status", "never run");
+
+    public record Request(int photos, int queries, int pageSize, long seed) {
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    @Async("eventExecutor")
+    public void runAsync(Request request) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Text search benchmark already running");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            lastReport = Map.of("status", "running", "request", request, "startedAt", Instant.ofEpochMilli(start).toString());
+            Map<String, Object> report = run(request);
+            report.put("status", "completed");
+            report.put("durationMs", System.currentTimeMillis() - start);
+            lastReport = report;
+        } catch (Exception e) {
+            log.error("Text search benchmark failed: {}", e.getMessage(), e);
+            lastReport = Map.of("status", "failed", "error", String.valueOf(e.getMessage()));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> run(Request request) {
+        Random random = new Random(request.seed());
+        String collection = "bench_photos_" + Long.toString(System.currentTimeMillis(), 36);
+        try {
+            long loadMs = load(collection, request.photos(), random);
+
+            long indexStart = System.nanoTime();
+            mongoTemplate.indexOps(collection).ensureIndex(new Index().on("createdAt", Sort.Direction.DESC));
+            mongoTemplate.indexOps(collection).ensureIndex(TextIndexDefinition.builder()
+                    .onField(PhotoTextSearchService.FIELD)
+                    .withDefaultLanguage(PhotoTextSearchService.LANGUAGE)
+                    .build());
+            long indexMs = (System.nanoTime() - indexStart) / 1_000_000;
+
+            List<String> queries = new ArrayList<>(request.queries());
+            for (int i = 0; i < request.queries(); i++) {
+                String query = randomQuery(random);
+                queries.add(i % 2 == 0 ? query : SearchTextNormalizer.fold(query));
+            }
+
+            int limit = request.pageSize() + 1;
+            List<Map<String, Object>> rows = new ArrayList<>();
+            rows.add(row("regex", measure(queries, query -> mongoTemplate.find(
+                    new Query(Criteria.where("caption").regex(Pattern.quote(query), "i"))
+                            .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                            .limit(limit),
+                    Document.class, collection).size())));
+            rows.add(row("text", measure(queries, query -> mongoTemplate.find(
+                    PhotoTextSearchService.textQuery(SearchTextNormalizer.terms(query))
+                            .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                            .limit(limit),
+                    Document.class, collection).size())));
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("photos", request.photos());
+            report.put("queries", queries.size());
+            report.put("pageSize", request.pageSize());
+            report.put("seed", request.seed());
+            report.put("loadMs", loadMs);
+            report.put("textIndexBuildMs", indexMs);
+            report.put("results", rows);
+            return report;
+        } finally {
+            mongoTemplate.dropCollection(collection);
+        }
+    }
+
+    private long load(String collection, int photos, Random random) {
+        MongoCollection<Document> target = mongoTemplate.getCollection(collection);
+        long now = System.currentTimeMillis();
+        long start = System.nanoTime();
+        List<Document> batch = new ArrayList<>(WRITE_BATCH);
+        for (int i = 0; i < photos; i++) {
+            String caption = randomCaption(random);
+            List<String> tags = new ArrayList<>();
+            for (int t = random.nextInt(4); t > 0; t--) {
+                tags.add(TAGS[skewed(random, TAGS.length)]);
+            }
+            batch.add(new Document("caption", caption)
+                    .append("tags", tags)
+                    .append("createdAt", new Date(now - random.nextLong(365 * 24 * HOUR_MILLIS)))
+                    .append(PhotoTextSearchService.FIELD, SearchTextNormalizer.indexText(caption, tags)));
+            if (batch.size() == WRITE_BATCH || i == photos - 1) {
+                target.insertMany(batch);
+                batch.clear();
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // ─── DATA ──────────────────────────────────────────────────────
+
+    private static String randomCaption(Random random) {
+        int words = 5 + random.nextInt(11);
+        StringBuilder caption = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) caption.append(' ');
+            caption.append(random.nextInt(4) == 0
+                    ? WORDS[skewed(random, WORDS.length)]
+                    : SYLLABLES[skewed(random, SYLLABLES.length)]);
+        }
+        if (random.nextInt(3) == 0) {
+            caption.append(" #").append(TAGS[skewed(random, TAGS.length)]);
+        }
+        return caption.toString();
+    }
+
+    /**
+     * One English word, one syllable, or a two-syllable Vietnamese word.
+     */
+    private static String randomQuery(Random random) {
+        return switch (random.nextInt(3)) {
+            case 0 -> WORDS[skewed(random, WORDS.length)];
+            case 1 -> SYLLABLES[random.nextInt(SYLLABLES.length)];
+            default -> {
+                int first = random.nextInt(SYLLABLES.length - 1);
+                yield SYLLABLES[first] + " " + SYLLABLES[first + 1];
+            }
+        };
+    }
+
+    /**
+     * Index in {@code [0, n)} biased towards 0, so a few words are very common and most are rare.
+     */
+    private static int skewed(Random random, int n) {
+        double r = random.nextDouble();
+        return (int) (n * r * r * r);
+    }
+
+    // ─── MEASUREMENT ───────────────────────────────────────────────
+
+    private record QueryStats(double p50Millis, double p99Millis, double qps, double answeredRatio, double avgResults) {
+    }
+
+    private QueryStats measure(List<String> queries, Function<String, Integer> searcher) {
+        for (int i = 0; i < Math.min(WARMUP_QUERIES, queries.size()); i++) {
+            searcher.apply(queries.get(i));
+        }
+
+        long[] latencies = new long[queries.size()];
+        long total = 0;
+        long answered = 0;
+        long results = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            int found = searcher.apply(queries.get(i));
+            latencies[i] = System.nanoTime() - start;
+            total += latencies[i];
+            if (found > 0) answered++;
+            results += found;
+        }
+        Arrays.sort(latencies);
+        int n = Math.max(1, queries.size());
+        double qps = total == 0 ? 0 : queries.size() / (total / 1e9);
+        return new QueryStats(percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, qps,
+                (double) answered / n, (double) results / n);
+    }
+
+    private Map<String, Object> row(String engine, QueryStats stats) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("engine", engine);
+        row.put("p50Millis", round(stats.p50Millis()));
+        row.put("p99Millis", round(stats.p99Millis()));
+        row.put("qps", round(stats.qps()));
+        row.put("answeredRatio", round(stats.answeredRatio()));
+        row.put("avgResults", round(stats.avgResults()));
+        return row;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
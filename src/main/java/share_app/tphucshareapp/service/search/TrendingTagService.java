@@ -0,0 +1,208 @@
+package share_app.tphucshareapp.service.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.dto.response.search.TrendingTagResponse;
+import share_app.tphucshareapp.enums.InteractionType;
+import share_app.tphucshareapp.model.Photo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Trending hashtags from the stream of posts, likes and saves.
+ * <p>
+ * Each node counts tag activity in a local {@link HeavyHitters} and every
+ * {@code explore.trending-tags.flush-interval-ms} adds its sketch into the shared per-bucket sketch
+ * ({@code trending:tags:cms:{bucket}}, one hash field per cell). Its local top tags are then re-estimated
+ * against the merged sketch and written to the bucket's top set ({@code trending:tags:top:{bucket}}),
+ * trimmed to {@code top-k}. Trending scores sum the last {@code buckets} top sets, each weighted by
+ * {@code 0.5^(age / half-life)}. Memory is fixed by the sketch shape and {@code top-k} on every node and
+ * per bucket in Redis.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingTagService {
+
+    private static final String SKETCH_KEY = "trending:tags:cms:";
+    private static final String TOP_KEY = "trending:tags:top:";
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${explore.trending-tags.top-k:100}")
+    private int topK;
+
+    @Value("${explore.trending-tags.bucket-minutes:60}")
+    private long bucketMinutes;
+
+    @Value("${explore.trending-tags.buckets:24}")
+    private int buckets;
+
+    @Value("${explore.trending-tags.half-life-hours:6}")
+    private double halfLifeHours;
+
+    @Value("${explore.trending-tags.flush-interval-ms:15000}")
+    private long flushIntervalMs;
+
+    // guarded by this; swapped for a fresh one on every flush
+    private HeavyHitters pending;
+
+    private volatile Map<String, Double> trending = Map.of();
+    private volatile long trendingAt;
+
+    /**
+     * Count one post or engagement towards each tag.
+     */
+    public void record(Collection<String> tags, InteractionType type) {
+        if (tags == null || tags.isEmpty()) return;
+        long weight = weight(type);
+        synchronized (this) {
+            if (pending == null) pending = new HeavyHitters(SKETCH_DEPTH, SKETCH_WIDTH, topK);
+            for (String tag : tags) {
+                pending.add(tag, weight);
+            }
+        }
+    }
+
+    /**
+     * Count an engagement on a photo towards each of its tags.
+     */
+    public void recordEngagement(String photoId, InteractionType type) {
+        Query query = new Query(Criteria.where("_id").is(photoId));
+        query.fields().include("tags");
+        Photo photo = mongoTemplate.findOne(query, Photo.class);
+        if (photo != null) {
+            record(photo.getTags(), type);
+        }
+    }
+
+    /**
+     * Currently trending tags, hottest first.
+     */
+    public List<TrendingTagResponse> getTrendingTags(int limit) {
+        return scores().entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(limit)
+                .map(e -> new TrendingTagResponse(e.getKey(), Math.round(e.getValue() * 100) / 100.0))
+                .toList();
+    }
+
+    /**
+     * Sum of the trending scores of {@code tags}; 0 for tags that are not trending.
+     */
+    public double trendScore(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) return 0;
+        Map<String, Double> scores = scores();
+        double score = 0;
+        for (String tag : tags) {
+            score += scores.getOrDefault(tag, 0.0);
+        }
+        return score;
+    }
+
+    @Scheduled(fixedDelayString = "${explore.trending-tags.flush-interval-ms:15000}")
+    public void flush() {
+        HeavyHitters batch;
+        synchronized (this) {
+            batch = pending;
+            pending = null;
+        }
+        if (batch == null || batch.isEmpty()) return;
+
+        long bucket = currentBucket();
+        String sketchKey = SKETCH_KEY + bucket;
+        String topKey = TOP_KEY + bucket;
+        long ttlSeconds = Duration.ofMinutes(bucketMinutes * (buckets + 1L)).getSeconds();
+        try {
+            byte[] rawSketchKey = sketchKey.getBytes(StandardCharsets.UTF_8);
+            redisTemplate.executePipelined((RedisConnection connection) -> {
+                batch.sketch().forEachNonZero((cell, count) -> connection.hashCommands()
+                        .hIncrBy(rawSketchKey, Integer.toString(cell).getBytes(StandardCharsets.UTF_8), count));
+                connection.keyCommands().expire(rawSketchKey, ttlSeconds);
+                return null;
+            });
+
+            // re-estimate local candidates against the merged sketch, so every node writes global counts
+            List<String> tags = new ArrayList<>(batch.items());
+            List<Object> fields = new ArrayList<>(tags.size() * SKETCH_DEPTH);
+            for (String tag : tags) {
+                for (int cell : batch.sketch().cells(tag)) {
+                    fields.add(Integer.toString(cell));
+                }
+            }
+            List<Object> merged = redisTemplate.opsForHash().multiGet(sketchKey, fields);
+            Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+            for (int i = 0; i < tags.size(); i++) {
+                long estimate = Long.MAX_VALUE;
+                for (int row = 0; row < SKETCH_DEPTH; row++) {
+                    Object value = merged.get(i * SKETCH_DEPTH + row);
+                    estimate = Math.min(estimate, value instanceof Number n ? n.longValue() : 0);
+                }
+                tuples.add(ZSetOperations.TypedTuple.of(tags.get(i), (double) estimate));
+            }
+            redisTemplate.opsForZSet().add(topKey, tuples);
+            redisTemplate.opsForZSet().removeRange(topKey, 0, -(topK + 1));
+            redisTemplate.expire(topKey, Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            log.warn("Failed to flush trending tag counts: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Decayed scores of the tags in the recent top sets, recomputed at most once per flush interval.
+     */
+    private Map<String, Double> scores() {
+        long now = System.currentTimeMillis();
+        if (now - trendingAt < flushIntervalMs) {
+            return trending;
+        }
+        trendingAt = now;
+
+        Map<String, Double> scores = new HashMap<>();
+        try {
+            long bucket = currentBucket();
+            for (int age = 0; age < buckets; age++) {
+                Set<ZSetOperations.TypedTuple<Object>> top =
+                        redisTemplate.opsForZSet().reverseRangeWithScores(TOP_KEY + (bucket - age), 0, topK - 1);
+                if (top == null) continue;
+                double decay = Math.pow(0.5, age * bucketMinutes / 60.0 / halfLifeHours);
+                for (ZSetOperations.TypedTuple<Object> tuple : top) {
+                    if (tuple.getValue() instanceof String tag && tuple.getScore() != null) {
+                        scores.merge(tag, tuple.getScore() * decay, Double::sum);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read trending tags: {}", e.getMessage());
+            return trending;
+        }
+        trending = scores;
+        return scores;
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / Duration.ofMinutes(bucketMinutes).toMillis();
+    }
+
+    private static long weight(InteractionType type) {
+        return switch (type) {
+            case POST -> 3;
+            case FAVORITE -> 2;
+            case LIKE -> 1;
+        };
+    }
+}
@@ -0,0 +1,280 @@
+package share_app.tphucshareapp.service.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.User;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Username autocomplete from an in-memory {@link PrefixTrie}, most followed first.
+ * <p>
+ * Every node holds the trie for all users, built from one projected scan once the app is ready and again
+ * every {@code search.autocomplete.rebuild-interval-ms}. Registrations, profile edits and follower counts
+ * are published with {@link #markChanged}: the user id goes into a Redis sorted set scored by a global
+ * sequence ({@code autocomplete:users:changes}), and every node pulls the ids past its last sequence each
+ * {@code search.autocomplete.sync-interval-ms} and re-reads those users. A node that fell further behind
+ * than the retained changes rebuilds instead.
+ * <p>
+ * Usernames are indexed {@link SearchTextNormalizer#fold folded}, whole, without separators and per
+ * token, so "phuc", "nguyen", "phuc ng" and "phucng" all reach {@code Phuc_Nguyen}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserAutocompleteService {
+
+    private static final String SEQUENCE_KEY = "autocomplete:users:seq";
+    private static final String CHANGES_KEY = "autocomplete:users:changes";
+    private static final long CHANGE_RETENTION = 100_000;
+    private static final long TRIM_EVERY = 1_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${search.autocomplete.top-k:50}")
+    private int topK;
+
+    private record Entry(String id, String username, String imageUrl, long followerCount) {
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setImageUrl(imageUrl);
+            user.setFollowerCount(followerCount);
+            return user;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    // guarded by lock
+    private Map<String, Entry> entries = new HashMap<>();
+    private PrefixTrie trie;
+    // guarded by this
+    private long lastSequence;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Most matches a single lookup returns, which is also as deep as user search pages go.
+     */
+    public int maxResults() {
+        return topK;
+    }
+
+    /**
+     * Users with a username term starting with {@code query}, most followed first. Only id, username,
+     * image and follower count are set.
+     */
+    public List<User> complete(String query, int limit) {
+        String prefix = SearchTextNormalizer.fold(query);
+        if (!ready || prefix.isEmpty() || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            List<String> ids = trie.top(prefix, Math.min(limit, topK));
+            List<User> users = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                users.add(entries.get(id).toUser());
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Publish that a user's username, image or follower count changed, or that the user is new.
+     */
+    public void markChanged(String userId) {
+        try {
+            Long sequence = redisTemplate.opsForValue().increment(SEQUENCE_KEY);
+            if (sequence == null) return;
+            redisTemplate.opsForZSet().add(CHANGES_KEY, userId, sequence);
+            if (sequence % TRIM_EVERY == 0) {
+                redisTemplate.opsForZSet().removeRangeByScore(CHANGES_KEY, 0, sequence - CHANGE_RETENTION);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to publish autocomplete change for {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Async("eventExecutor")
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${search.autocomplete.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${search.autocomplete.rebuild-interval-ms:3600000}")
+    @Async("eventExecutor")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${search.autocomplete.sync-interval-ms:1000}")
+    public synchronized void sync() {
+        if (!ready) return;
+        try {
+            long sequence = currentSequence();
+            if (sequence <= lastSequence) return;
+            if (sequence - lastSequence > CHANGE_RETENTION) {
+                log.info("User autocomplete is {} changes behind, rebuilding", sequence - lastSequence);
+                rebuild();
+                return;
+            }
+
+            Set<ZSetOperations.TypedTuple<Object>> changes =
+                    redisTemplate.opsForZSet().rangeByScoreWithScores(CHANGES_KEY, lastSequence + 1, sequence);
+            if (changes == null || changes.isEmpty()) {
+                lastSequence = sequence;
+                return;
+            }
+            Set<String> ids = new HashSet<>();
+            for (ZSetOperations.TypedTuple<Object> change : changes) {
+                if (change.getValue() instanceof String id) ids.add(id);
+            }
+            Map<String, User> users = new HashMap<>();
+            for (User user : mongoTemplate.find(projected(new Query(Criteria.where("_id").in(ids))), User.class)) {
+                users.put(user.getId(), user);
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (String id : ids) {
+                    apply(id, users.get(id));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            lastSequence = sequence;
+        } catch (Exception e) {
+            log.warn("Failed to sync user autocomplete: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return;
+        try {
+            long start = System.currentTimeMillis();
+            // changes published from here on are replayed onto the new trie by the next sync
+            long sequence = currentSequence();
+            Map<String, Entry> freshEntries = new HashMap<>();
+            PrefixTrie freshTrie = newTrie(freshEntries);
+            try (Stream<User> users = mongoTemplate.stream(projected(new Query()), User.class)) {
+                users.forEach(user -> {
+                    Entry entry = entry(user);
+                    freshEntries.put(entry.id(), entry);
+                    for (String term : terms(entry.username())) {
+                        freshTrie.add(entry.id(), term);
+                    }
+                });
+            }
+
+            synchronized (this) {
+                lock.writeLock().lock();
+                try {
+                    entries = freshEntries;
+                    trie = freshTrie;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastSequence = sequence;
+                ready = true;
+            }
+            log.info("Built user autocomplete for {} users in {} ms", freshEntries.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Failed to build user autocomplete: {}", e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Bring one user's terms and rank up to date; null removes the user. Caller holds the write lock.
+     */
+    private void apply(String id, User user) {
+        Entry old = entries.get(id);
+        if (user == null) {
+            if (old == null) return;
+            for (String term : terms(old.username())) {
+                trie.remove(id, term);
+            }
+            entries.remove(id);
+            return;
+        }
+
+        Entry fresh = entry(user);
+        if (old != null && Objects.equals(old.username(), fresh.username())) {
+            entries.put(id, fresh);
+            if (old.followerCount() != fresh.followerCount()) {
+                for (String term : terms(fresh.username())) {
+                    trie.rescore(id, term);
+                }
+            }
+            return;
+        }
+        if (old != null) {
+            for (String term : terms(old.username())) {
+                trie.remove(id, term);
+            }
+        }
+        entries.put(id, fresh);
+        for (String term : terms(fresh.username())) {
+            trie.add(id, term);
+        }
+    }
+
+    /**
+     * Trie ranked by the follower counts in {@code byId}, which {@link #apply} keeps current.
+     */
+    private PrefixTrie newTrie(Map<String, Entry> byId) {
+        return new PrefixTrie(topK, Comparator.comparingLong((String id) -> byId.get(id).followerCount())
+                .reversed()
+                .thenComparing(Comparator.naturalOrder()));
+    }
+
+    private long currentSequence() {
+        Object value = redisTemplate.opsForValue().get(SEQUENCE_KEY);
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+
+    private static Query projected(Query query) {
+        query.fields().include("username", "imageUrl", "followerCount");
+        return query;
+    }
+
+    private static Entry entry(User user) {
+        return new Entry(user.getId(), user.getUsername(), user.getImageUrl(), user.getFollowerCount());
+    }
+
+    /**
+     * Folded username whole, without separators, and each of its tokens.
+     */
+    static List<String> terms(String username) {
+        List<String> tokens = SearchTextNormalizer.tokens(username);
+        if (tokens.isEmpty()) return List.of();
+        Set<String> terms = new LinkedHashSet<>();
+        terms.add(String.join(" ", tokens));
+        terms.add(String.join("", tokens));
+        terms.addAll(tokens);
+        return List.copyOf(terms);
+    }
+}
@@ -1,6 +1,6 @@
 package share_app.tphucshareapp.service.share;
 
-import org.springframework.data.domain.Page;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.dto.response.share.ShareResponse;
 import share_app.tphucshareapp.dto.response.share.ShareWithPhotoResponse;
@@ -17,5 +17,5 @@ public interface IShareService {
 
     boolean hasShared(String photoId);
 
-    Page<ShareWithPhotoResponse> getSharesByUserId(String userId, int page, int size);
+    SliceResponse<ShareWithPhotoResponse> getSharesByUserId(String userId, int page, int size);
 }
@@ -2,14 +2,15 @@ package share_app.tphucshareapp.service.share;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.dto.response.SliceResponse;
 import share_app.tphucshareapp.dto.response.photo.PhotoResponse;
 import share_app.tphucshareapp.dto.response.share.ShareResponse;
 import share_app.tphucshareapp.dto.response.share.ShareWithPhotoResponse;
@@ -19,6 +20,7 @@ import share_app.tphucshareapp.model.User;
 import share_app.tphucshareapp.repository.PhotoRepository;
 import share_app.tphucshareapp.repository.ShareRepository;
 import share_app.tphucshareapp.repository.UserRepository;
+import share_app.tphucshareapp.service.common.CountCacheService;
 import share_app.tphucshareapp.service.photo.PhotoConversionService;
 import share_app.tphucshareapp.service.user.UserAvatarCacheService;
 import share_app.tphucshareapp.service.user.UserService;
@@ -33,6 +35,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ShareService implements IShareService {
 
+    private static final String SHARE_COUNT_KEY = "shares:user:";
+
     private final ShareRepository shareRepository;
     private final PhotoRepository photoRepository;
     private final UserRepository userRepository;
@@ -40,6 +44,7 @@ public class ShareService implements IShareService {
     private final MongoTemplate mongoTemplate;
     private final PhotoConversionService photoConversionService;
     private final UserAvatarCacheService userAvatarCacheService;
+    private final CountCacheService countCacheService;
 
     @Override
     public PhotoResponse sharePhoto(String photoId, String caption) {
@@ -60,6 +65,7 @@ public class ShareService implements IShareService {
         Update update = new Update().inc("shareCount", 1);
         mongoTemplate.updateFirst(query, update, Photo.class);
         photo.setShareCount(photo.getShareCount() + 1);
+        countCacheService.evict(SHARE_COUNT_KEY + currentUser.getId());
 
         log.info("User {} shared photo {} to their profile", currentUser.getId(), photoId);
 
@@ -97,7 +103,11 @@ public class ShareService implements IShareService {
 
     @Override
     public long getShareCount(String photoId) {
-        return shareRepository.countByPhotoId(photoId);
+        // maintained by sharePhoto, no need to count the shares collection
+        Query query = new Query(Criteria.where("_id").is(photoId));
+        query.fields().include("shareCount");
+        Photo photo = mongoTemplate.findOne(query, Photo.class);
+        return photo != null ? photo.getShareCount() : 0;
     }
 
     @Override
@@ -107,9 +117,9 @@ public class ShareService implements IShareService {
     }
 
     @Override
-    public Page<ShareWithPhotoResponse> getSharesByUserId(String userId, int page, int size) {
+    public SliceResponse<ShareWithPhotoResponse> getSharesByUserId(String userId, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Share> shares = shareRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        Slice<Share> shares = shareRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
 
         // Get all photo IDs from shares
         List<String> photoIds = shares.getContent().stream()
@@ -134,7 +144,7 @@ public class ShareService implements IShareService {
         // Get current sharer user info
         User sharerUser = userRepository.findById(userId).orElse(null);
 
-        return shares.map(share -> {
+        Slice<ShareWithPhotoResponse> responses = shares.map(share -> {
             ShareWithPhotoResponse response = new ShareWithPhotoResponse();
             response.setId(share.getId());
             response.setPhotoId(share.getPhotoId());
@@ -170,6 +180,9 @@ public class ShareService implements IShareService {
 
             return response;
         });
+
+        long total = countCacheService.get(SHARE_COUNT_KEY + userId, () -> shareRepository.countByUserId(userId));
+        return SliceResponse.of(responses, total);
     }
 
     /**
@@ -0,0 +1,107 @@
+package share_app.tphucshareapp.service.user;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import share_app.tphucshareapp.model.User;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Leaderboard of the most followed users, kept in a Redis sorted set scored by {@code followerCount}.
+ * <p>
+ * FollowService writes the absolute follower count after every follow/unfollow, so the set is exact for
+ * everyone it holds. It is seeded from the indexed {@code followerCount} query when missing and trimmed to
+ * {@link #LEADERBOARD_SIZE} members.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PopularUserService {
+
+    private static final String LEADERBOARD_KEY = "leaderboard:followers";
+    private static final int LEADERBOARD_SIZE = 1000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Record a user's current follower count.
+     */
+    public void updateFollowerCount(String userId, long followerCount) {
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(LEADERBOARD_KEY))) {
+                // seeded from Mongo on the next read, which already includes this count
+                return;
+            }
+            redisTemplate.opsForZSet().add(LEADERBOARD_KEY, userId, followerCount);
+            redisTemplate.opsForZSet().removeRange(LEADERBOARD_KEY, 0, -(LEADERBOARD_SIZE + 1));
+        } catch (Exception e) {
+            log.warn("Failed to update follower leaderboard for {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Ids of the most followed users, best first.
+     */
+    public List<String> getTopUserIds(int count) {
+        int n = Math.min(count, LEADERBOARD_SIZE);
+        if (n <= 0) return List.of();
+        try {
+            Set<Object> ids = redisTemplate.opsForZSet().reverseRange(LEADERBOARD_KEY, 0, n - 1);
+            if (ids != null && !ids.isEmpty()) {
+                return ids.stream().map(String.class::cast).toList();
+            }
+            return seed().stream().limit(n).toList();
+        } catch (Exception e) {
+            log.warn("Follower leaderboard unavailable, querying Mongo: {}", e.getMessage());
+            return topFromMongo(n).stream().map(User::getId).toList();
+        }
+    }
+
+    /**
+     * The most followed users not in {@code excludedIds}, best first. Loaded with one projected query.
+     */
+    public List<User> getTopUsers(int limit, Set<String> excludedIds) {
+        if (limit <= 0) return List.of();
+        List<String> ids = getTopUserIds(limit + excludedIds.size()).stream()
+                .filter(id -> !excludedIds.contains(id))
+                .limit(limit)
+                .toList();
+        if (ids.isEmpty()) return List.of();
+
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("username", "imageUrl", "bio", "followerCount", "photoCount");
+        Map<String, User> users = mongoTemplate.find(query, User.class).stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+        return ids.stream().map(users::get).filter(Objects::nonNull).toList();
+    }
+
+    private List<String> seed() {
+        List<User> top = topFromMongo(LEADERBOARD_SIZE);
+        if (top.isEmpty()) return List.of();
+
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        for (User user : top) {
+            tuples.add(ZSetOperations.TypedTuple.of(user.getId(), (double) user.getFollowerCount()));
+        }
+        redisTemplate.opsForZSet().add(LEADERBOARD_KEY, tuples);
+        log.info("Seeded follower leaderboard with {} users", top.size());
+        return top.stream().map(User::getId).toList();
+    }
+
+    private List<User> topFromMongo(int n) {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "followerCount"))
+                .limit(n);
+        query.fields().include("followerCount");
+        return mongoTemplate.find(query, User.class);
+    }
+}
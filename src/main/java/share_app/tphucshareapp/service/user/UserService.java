@@ -16,6 +16,8 @@ import share_app.tphucshareapp.repository.UserRepository;
 import share_app.tphucshareapp.security.userdetails.AppUserDetails;
 import share_app.tphucshareapp.service.follow.FollowService;
 import share_app.tphucshareapp.service.photo.CloudinaryService;
+import share_app.tphucshareapp.service.search.SearchResultCache;
+import share_app.tphucshareapp.service.search.UserAutocompleteService;
 
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +33,8 @@ public class UserService implements IUserService {
     private final CloudinaryService cloudinaryService;
     private final FollowService followService;
     private final UserAvatarCacheService userAvatarCacheService;
+    private final UserAutocompleteService userAutocompleteService;
+    private final SearchResultCache searchResultCache;
 
     @Override
     public UserProfileResponse getUserProfileById(String targetUserId) {
@@ -95,6 +99,8 @@ public class UserService implements IUserService {
         }
 
         User updatedUser = userRepository.save(user);
+        userAutocompleteService.markChanged(updatedUser.getId());
+        searchResultCache.invalidate(SearchResultCache.Type.USERS);
 
         // Update avatar cache if image changed
         if (updatedUser.getImageUrl() != null && !updatedUser.getImageUrl().equals(oldImageUrl)) {
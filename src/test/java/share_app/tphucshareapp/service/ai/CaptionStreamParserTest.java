@@ -0,0 +1,100 @@
+package share_app.tphucshareapp.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptionStreamParserTest {
+
+    private static final String RESPONSE = """
+            CAPTION_1: Golden hour at the pier
+            CAPTION_2: Waves and warm light
+            CAPTION_3: Where the day ends
+            TAGS: [#sunset, beach, #ocean]""";
+
+    @Test
+    void emitsEachLineAsItCompletes() {
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        CaptionStreamParser parser = new CaptionStreamParser(listener);
+
+        assertTrue(parser.append("CAPTION_1: Golden hour"));
+        assertTrue(listener.events.isEmpty());
+        assertTrue(parser.append(" at the pier\nCAPTION_2: Wa"));
+        assertEquals(List.of("caption"), listener.names());
+        assertEquals(Map.of("index", 0, "caption", "Golden hour at the pier"), listener.events.get(0).data());
+    }
+
+    @Test
+    void parsesAResponseSplitAtEveryCharacter() {
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        CaptionStreamParser parser = new CaptionStreamParser(listener);
+        for (char c : RESPONSE.toCharArray()) {
+            parser.append(String.valueOf(c));
+        }
+        assertEquals(3, parser.getCaptions().size());
+        assertEquals(List.of("caption", "caption", "caption"), listener.names());
+
+        parser.finish();
+        assertEquals(List.of("Golden hour at the pier", "Waves and warm light", "Where the day ends"),
+                parser.getCaptions());
+        assertEquals(List.of("sunset", "beach", "ocean"), parser.getTags());
+        assertEquals(List.of("sunset", "beach", "ocean"), listener.events.get(3).data());
+    }
+
+    @Test
+    void ignoresOtherLinesAndBlankCaptions() {
+        RecordingListener listener = new RecordingListener(Integer.MAX_VALUE);
+        CaptionStreamParser parser = new CaptionStreamParser(listener);
+        parser.append("Here are some captions:\nCAPTION_1:   \nCAPTION_4: not requested\n  CAPTION_2: Indented\n");
+        parser.finish();
+        assertEquals(List.of("Indented"), parser.getCaptions());
+        assertEquals(Map.of("index", 0, "caption", "Indented"), listener.events.get(0).data());
+    }
+
+    @Test
+    void stopsOnceTheListenerIsGone() {
+        RecordingListener listener = new RecordingListener(1);
+        CaptionStreamParser parser = new CaptionStreamParser(listener);
+        assertFalse(parser.append(RESPONSE));
+        parser.finish();
+        assertEquals(1, listener.events.size());
+        assertEquals(List.of(), parser.getTags());
+    }
+
+    @Test
+    void parseTagsStripsBracketsAndHashes() {
+        assertEquals(List.of("a", "b", "c d"), CaptionStreamParser.parseTags("TAGS: [#a,  b , , #c d]"));
+        assertEquals(List.of("solo"), CaptionStreamParser.parseTags("TAGS: solo"));
+        assertEquals(List.of(), CaptionStreamParser.parseTags("TAGS: []"));
+    }
+
+    private record Event(String name, Object data) {
+    }
+
+    private static final class RecordingListener implements AIStreamListener {
+        private final List<Event> events = new ArrayList<>();
+        private final int accepted;
+
+        RecordingListener(int accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public boolean send(String event, Object data) {
+            events.add(new Event(event, data));
+            return events.size() < accepted;
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        List<String> names() {
+            return events.stream().map(Event::name).toList();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package share_app.tphucshareapp.service.ai;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiResponseCacheTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void concurrentMissesShareOneLoaderCall() throws Exception {
+        GeminiResponseCache cache = new GeminiResponseCache(registry, 100, 60);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> cache.get("model", "same prompt", () -> {
+                    calls.incrementAndGet();
+                    entered.countDown();
+                    await(release);
+                    return "caption";
+                })));
+            }
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            // give the other callers time to find the call in flight before it completes
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("caption", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(callers - 1, (long) (count("shared") + count("hit")));
+        assertEquals(1, (long) count("miss"));
+        assertEquals("caption", cache.get("model", "same prompt", () -> "reloaded"));
+    }
+
+    @Test
+    void failedCallsAreNotCached() {
+        GeminiResponseCache cache = new GeminiResponseCache(registry, 100, 60);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertNull(cache.get("model", "prompt", () -> {
+            calls.incrementAndGet();
+            return null;
+        }));
+        assertThrows(IllegalStateException.class, () -> cache.get("model", "prompt", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("upstream down");
+        }));
+        assertEquals(0, cache.size());
+
+        assertEquals("ok", cache.get("model", "prompt", () -> {
+            calls.incrementAndGet();
+            return "ok";
+        }));
+        assertEquals(3, calls.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void callersSharingAFailedCallGetNull() throws Exception {
+        GeminiResponseCache cache = new GeminiResponseCache(registry, 100, 60);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> owner = pool.submit(() -> cache.get("model", "prompt", () -> {
+                entered.countDown();
+                await(release);
+                throw new IllegalStateException("upstream down");
+            }));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            Future<String> waiter = pool.submit(() -> cache.get("model", "prompt", () -> "second call"));
+            Thread.sleep(200);
+            release.countDown();
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> owner.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+            assertNull(waiter.get(5, TimeUnit.SECONDS));
+            assertEquals(0, cache.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() {
+        GeminiResponseCache cache = new GeminiResponseCache(registry, 100, 1);
+        AtomicLong now = new AtomicLong(1_000_000);
+        cache.clock = now::get;
+
+        cache.put("model", "prompt", "caption");
+        now.addAndGet(59_000);
+        assertEquals("caption", cache.getIfPresent("model", "prompt"));
+
+        now.addAndGet(2_000);
+        assertNull(cache.getIfPresent("model", "prompt"));
+        assertEquals(0, cache.size());
+        assertEquals("fresh", cache.get("model", "prompt", () -> "fresh"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedBeyondMaxEntries() {
+        GeminiResponseCache cache = new GeminiResponseCache(registry, 2, 60);
+        cache.put("model", "a", "A");
+        cache.put("model", "b", "B");
+        assertEquals("A", cache.getIfPresent("model", "a"));
+
+        cache.put("model", "c", "C");
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.getIfPresent("model", "a"));
+        assertNull(cache.getIfPresent("model", "b"));
+        assertEquals("C", cache.getIfPresent("model", "c"));
+    }
+
+    @Test
+    void keysIgnoreWhitespaceButNotTheModel() {
+        assertEquals(GeminiResponseCache.key("m", "a  photo\n of  the sea "), GeminiResponseCache.key("m", "a photo of the sea"));
+        assertNotEquals(GeminiResponseCache.key("m1", "prompt"), GeminiResponseCache.key("m2", "prompt"));
+    }
+
+    @Test
+    void disabledCacheAlwaysCallsTheLoader() {
+        GeminiResponseCache cache = new GeminiResponseCache(registry, 0, 60);
+        AtomicInteger calls = new AtomicInteger();
+        cache.get("model", "prompt", () -> "x" + calls.incrementAndGet());
+        assertEquals("x2", cache.get("model", "prompt", () -> "x" + calls.incrementAndGet()));
+        assertEquals(0, cache.size());
+    }
+
+    private double count(String result) {
+        return registry.get("ai.gemini.cache.requests").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package share_app.tphucshareapp.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswIndexTest {
+
+    private static final int DIM = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void searchFindsMostOfTheExactNeighbours() throws IOException {
+        Random random = new Random(7);
+        try (HnswIndex index = newIndex("recall")) {
+            for (int i = 0; i < 1000; i++) {
+                index.add("v" + i, randomVector(random), null);
+            }
+            int found = 0;
+            int expected = 0;
+            for (int q = 0; q < 50; q++) {
+                float[] query = randomVector(random);
+                Set<String> exact = ids(index.bruteForce(query, 10));
+                for (HnswIndex.Result result : index.search(query, 10)) {
+                    if (exact.contains(result.id())) found++;
+                }
+                expected += exact.size();
+            }
+            assertTrue(found >= expected * 0.9, "recall@10 was " + (double) found / expected);
+        }
+    }
+
+    @Test
+    void nearestVectorToAStoredOneIsItself() throws IOException {
+        Random random = new Random(11);
+        try (HnswIndex index = newIndex("self")) {
+            float[][] vectors = new float[200][];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomVector(random);
+                index.add("v" + i, vectors[i], null);
+            }
+            HnswIndex.Result top = index.search(vectors[42], 1).get(0);
+            assertEquals("v42", top.id());
+            assertEquals(0.0, top.distance(), 1e-5);
+        }
+    }
+
+    @Test
+    void replacedAndRemovedVectorsAreNotReturned() throws IOException {
+        try (HnswIndex index = newIndex("deletes")) {
+            index.add("a", unit(0), null);
+            index.add("b", unit(1), null);
+            index.add("c", unit(2), null);
+
+            index.add("a", unit(3), null);
+            assertEquals(3, index.liveCount());
+            assertEquals("a", index.search(unit(3), 1).get(0).id());
+            assertNotEquals("a", index.search(unit(0), 1).get(0).id());
+
+            assertTrue(index.remove("b"));
+            assertFalse(index.remove("b"));
+            assertFalse(index.contains("b"));
+            assertEquals(2, index.liveCount());
+            assertFalse(ids(index.search(unit(1), 3)).contains("b"));
+        }
+    }
+
+    @Test
+    void smallUpdatesKeepTheSlotAndLargeOnesAreRefused() throws IOException {
+        try (HnswIndex index = newIndex("updates")) {
+            index.add("a", unit(0), "x");
+            index.add("b", unit(1), null);
+
+            float[] nudged = unit(0);
+            nudged[2] = 0.2f;
+            assertTrue(index.update("a", nudged, 0.9));
+            assertEquals(0.0, index.deletedRatio());
+            assertEquals(2, index.liveCount());
+            HnswIndex.Result top = index.search(nudged, 1).get(0);
+            assertEquals("a", top.id());
+            assertEquals("x", top.attribute());
+            assertEquals(0.0, top.distance(), 1e-5);
+
+            assertFalse(index.update("a", unit(3), 0.9));
+            assertFalse(index.update("missing", unit(3), 0.9));
+            assertEquals(0.0, index.deletedRatio());
+        }
+    }
+
+    @Test
+    void filterKeepsOnlyMatchingAttributes() throws IOException {
+        Random random = new Random(3);
+        try (HnswIndex index = newIndex("filter")) {
+            for (int i = 0; i < 300; i++) {
+                index.add("v" + i, randomVector(random), i % 10 == 0 ? "alice" : "bob");
+            }
+            List<HnswIndex.Result> results = index.search(randomVector(random), 10, 50,
+                    (id, attribute) -> "alice".equals(attribute));
+            assertEquals(10, results.size());
+            for (HnswIndex.Result result : results) {
+                assertEquals("alice", result.attribute());
+            }
+        }
+    }
+
+    @Test
+    void snapshotRestoresTheGraph() throws IOException {
+        Random random = new Random(5);
+        Path snapshot = dir.resolve("graph.snapshot");
+        float[] query = randomVector(random);
+        List<HnswIndex.Result> before;
+        try (HnswIndex index = newIndex("snapshot")) {
+            for (int i = 0; i < 300; i++) {
+                index.add("v" + i, randomVector(random), "u" + (i % 3));
+            }
+            index.remove("v7");
+            before = index.search(query, 10);
+            index.writeSnapshot(snapshot);
+        }
+        try (HnswIndex restored = newIndex("snapshot")) {
+            restored.readSnapshot(snapshot);
+            assertEquals(299, restored.liveCount());
+            assertFalse(restored.contains("v7"));
+            assertEquals(before, restored.search(query, 10));
+        }
+    }
+
+    @Test
+    void rejectsVectorsOfTheWrongDimension() throws IOException {
+        try (HnswIndex index = newIndex("dimension")) {
+            assertThrows(IllegalArgumentException.class, () -> index.add("x", new float[DIM + 1], null));
+        }
+    }
+
+    private HnswIndex newIndex(String name) throws IOException {
+        return new HnswIndex(new MappedVectorStore(dir.resolve(name + ".vec"), DIM), 8, 64, 64);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] unit(int axis) {
+        float[] vector = new float[DIM];
+        vector[axis] = 1f;
+        return vector;
+    }
+
+    private static Set<String> ids(List<HnswIndex.Result> results) {
+        Set<String> ids = new HashSet<>();
+        results.forEach(result -> ids.add(result.id()));
+        return ids;
+    }
+}
@@ -0,0 +1,61 @@
+package share_app.tphucshareapp.service.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairCountMapTest {
+
+    @Test
+    void pairsAreUnordered() {
+        PairCountMap counts = new PairCountMap(4);
+        counts.add(3, 7, 1f);
+        counts.add(7, 3, 2f);
+        counts.add(0, 0, 0.5f);
+
+        Map<Long, Float> seen = collect(counts);
+        assertEquals(2, counts.size());
+        assertEquals(3f, seen.get(pair(3, 7)));
+        assertEquals(0.5f, seen.get(pair(0, 0)));
+    }
+
+    @Test
+    void reportsTheSmallerIdFirst() {
+        PairCountMap counts = new PairCountMap(4);
+        counts.add(Integer.MAX_VALUE, 1, 1f);
+        counts.forEach((a, b, value) -> {
+            assertEquals(1, a);
+            assertEquals(Integer.MAX_VALUE, b);
+        });
+    }
+
+    @Test
+    void matchesAHashMapThroughRehashes() {
+        Random random = new Random(9);
+        PairCountMap counts = new PairCountMap(0);
+        Map<Long, Float> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            int a = random.nextInt(2_000);
+            int b = random.nextInt(2_000);
+            float delta = random.nextInt(4) + 1;
+            counts.add(a, b, delta);
+            expected.merge(pair(a, b), delta, Float::sum);
+        }
+        assertEquals(expected.size(), counts.size());
+        assertEquals(expected, collect(counts));
+    }
+
+    private static Map<Long, Float> collect(PairCountMap counts) {
+        Map<Long, Float> seen = new HashMap<>();
+        counts.forEach((a, b, value) -> assertNull(seen.put(pair(a, b), value)));
+        return seen;
+    }
+
+    private static long pair(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+}
@@ -0,0 +1,116 @@
+package share_app.tphucshareapp.service.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorEncodingTest {
+
+    private static final int DIM = 64;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void float32RoundTripsExactly() {
+        float[] vector = randomVector(new Random(1));
+        byte[] bytes = VectorEncoding.FLOAT32.encode(vector);
+        assertEquals(VectorEncoding.FLOAT32.bytesFor(DIM), bytes.length);
+        assertArrayEquals(vector, VectorEncoding.FLOAT32.decode(bytes), 0f);
+    }
+
+    @Test
+    void float16KeepsAboutThreeDigits() {
+        float[] vector = randomVector(new Random(2));
+        byte[] bytes = VectorEncoding.FLOAT16.encode(vector);
+        assertEquals(VectorEncoding.FLOAT16.bytesFor(DIM), bytes.length);
+        float[] decoded = VectorEncoding.FLOAT16.decode(bytes);
+        for (int i = 0; i < DIM; i++) {
+            assertEquals(vector[i], decoded[i], Math.abs(vector[i]) * 1e-3 + 1e-4);
+        }
+    }
+
+    @Test
+    void int8ErrorIsBoundedByHalfAStep() {
+        float[] vector = randomVector(new Random(3));
+        byte[] bytes = VectorEncoding.INT8.encode(vector);
+        assertEquals(VectorEncoding.INT8.bytesFor(DIM), bytes.length);
+        float maxAbs = 0f;
+        for (float v : vector) maxAbs = Math.max(maxAbs, Math.abs(v));
+        float[] decoded = VectorEncoding.INT8.decode(bytes);
+        for (int i = 0; i < DIM; i++) {
+            assertEquals(vector[i], decoded[i], maxAbs / 127f / 2 + 1e-6);
+        }
+    }
+
+    @Test
+    void int8EncodesTheZeroVector() {
+        float[] decoded = VectorEncoding.INT8.decode(VectorEncoding.INT8.encode(new float[DIM]));
+        assertArrayEquals(new float[DIM], decoded, 0f);
+    }
+
+    @Test
+    void detectsEncodingFromBlobLength() {
+        for (VectorEncoding encoding : VectorEncoding.values()) {
+            assertEquals(encoding, VectorEncoding.detect(encoding.bytesFor(DIM), DIM));
+        }
+        assertNull(VectorEncoding.detect(7, DIM));
+    }
+
+    @Test
+    void quantizedStoreDotProductsStayClose() throws IOException {
+        Random random = new Random(4);
+        try (MappedVectorStore exact = new MappedVectorStore(dir.resolve("exact.vec"), DIM);
+             MappedVectorStore int8 = new MappedVectorStore(dir.resolve("int8.vec"), DIM, VectorEncoding.INT8);
+             MappedVectorStore half = new MappedVectorStore(dir.resolve("half.vec"), DIM, VectorEncoding.FLOAT16)) {
+            for (int slot = 0; slot < 100; slot++) {
+                float[] vector = HnswIndex.normalize(randomVector(random));
+                exact.put(slot, vector);
+                int8.put(slot, vector);
+                half.put(slot, vector);
+            }
+            float[] query = HnswIndex.normalize(randomVector(random));
+            for (int slot = 0; slot < 100; slot++) {
+                assertEquals(exact.dot(slot, query), int8.dot(slot, query), 0.02);
+                assertEquals(exact.dot(slot, query), half.dot(slot, query), 0.002);
+                assertEquals(exact.dot(slot, 0), int8.dot(slot, 0), 0.02);
+            }
+        }
+    }
+
+    @Test
+    void quantizedIndexReranksToExactDistances() throws IOException {
+        Random random = new Random(5);
+        try (HnswIndex index = new HnswIndex(
+                new MappedVectorStore(dir.resolve("graph.vec"), DIM, VectorEncoding.INT8),
+                new MappedVectorStore(dir.resolve("full.vec"), DIM), 8, 64, 64)) {
+            for (int i = 0; i < 500; i++) {
+                index.add("v" + i, randomVector(random), null);
+            }
+            float[] query = randomVector(random);
+            List<HnswIndex.Result> exact = index.bruteForce(query, 5);
+            List<HnswIndex.Result> results = index.search(query, 5);
+            assertEquals(exact.get(0).id(), results.get(0).id());
+            for (int i = 1; i < results.size(); i++) {
+                assertTrue(results.get(i - 1).distance() <= results.get(i).distance());
+            }
+            float[] stored = index.vectorOf(results.get(0).id());
+            double distance = 1.0 - MappedVectorStore.dot(stored, HnswIndex.normalize(query), DIM);
+            assertEquals(distance, results.get(0).distance(), 1e-5);
+        }
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
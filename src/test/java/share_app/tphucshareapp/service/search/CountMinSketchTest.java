@@ -0,0 +1,89 @@
+package share_app.tphucshareapp.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void neverUndercountsAndStaysWithinTheErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(4, 2048);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(1);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            String item = "tag" + skewed(random, 5_000);
+            long n = random.nextInt(3) + 1;
+            exact.merge(item, n, Long::sum);
+            sketch.add(item, n);
+            total += n;
+        }
+        long bound = 2 * total / 2048;
+        int over = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.add(entry.getKey(), 0);
+            assertTrue(estimate >= entry.getValue(), "undercounted " + entry.getKey());
+            if (estimate - entry.getValue() > bound) over++;
+        }
+        // 1 - 2^-4 of the items are expected within the bound
+        assertTrue(over <= exact.size() / 16, over + " items over the bound");
+    }
+
+    @Test
+    void cellsAreOnePerRowAndStable() {
+        CountMinSketch sketch = new CountMinSketch(5, 100);
+        int[] cells = sketch.cells("sunset");
+        assertEquals(5, cells.length);
+        for (int row = 0; row < cells.length; row++) {
+            assertTrue(cells[row] >= row * 100 && cells[row] < (row + 1) * 100);
+        }
+        assertArrayEquals(cells, new CountMinSketch(5, 100).cells("sunset"));
+    }
+
+    @Test
+    void forEachNonZeroVisitsEveryTouchedCell() {
+        CountMinSketch sketch = new CountMinSketch(3, 64);
+        sketch.add("a", 2);
+        sketch.add("b", 5);
+        long[] sum = new long[1];
+        sketch.forEachNonZero((cell, count) -> sum[0] += count);
+        assertEquals(3 * 7, sum[0]);
+    }
+
+    @Test
+    void heavyHittersKeepTheMostFrequentItems() {
+        HeavyHitters hitters = new HeavyHitters(4, 1024, 10);
+        assertTrue(hitters.isEmpty());
+        Random random = new Random(2);
+        for (int i = 0; i < 50_000; i++) {
+            hitters.add("tag" + skewed(random, 10_000), 1);
+        }
+        Set<String> items = hitters.items();
+        assertEquals(10, items.size());
+        for (int rank = 0; rank < 5; rank++) {
+            assertTrue(items.contains("tag" + rank), "missing tag" + rank + " in " + items);
+        }
+    }
+
+    @Test
+    void heavyHittersReplaceTheSmallestOnlyWhenOvertaken() {
+        HeavyHitters hitters = new HeavyHitters(4, 1024, 2);
+        hitters.add("a", 5);
+        hitters.add("b", 3);
+        hitters.add("c", 2);
+        assertEquals(Set.of("a", "b"), hitters.items());
+        hitters.add("c", 2);
+        assertEquals(Set.of("a", "c"), hitters.items());
+    }
+
+    // roughly Zipf: item r drawn with probability proportional to 1 / (r + 1)
+    private static int skewed(Random random, int items) {
+        return (int) Math.floor(Math.pow(items + 1, random.nextDouble())) - 1;
+    }
+}
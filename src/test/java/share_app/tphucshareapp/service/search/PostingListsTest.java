@@ -0,0 +1,67 @@
+package share_app.tphucshareapp.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingListsTest {
+
+    @Test
+    void intersectsAndUnionsSmallLists() {
+        List<int[]> lists = List.of(new int[]{1, 3, 5, 7, 9}, new int[]{3, 4, 5, 9, 12}, new int[]{0, 5, 9});
+        assertArrayEquals(new int[]{5, 9}, PostingLists.intersect(lists));
+        assertArrayEquals(new int[]{0, 1, 3, 4, 5, 7, 9, 12}, PostingLists.union(lists));
+
+        PostingLists.Counted counted = PostingLists.countedUnion(lists);
+        assertArrayEquals(new int[]{0, 1, 3, 4, 5, 7, 9, 12}, counted.ordinals());
+        assertArrayEquals(new int[]{1, 1, 2, 1, 3, 1, 3, 1}, counted.counts());
+    }
+
+    @Test
+    void handlesEmptyInput() {
+        assertArrayEquals(new int[0], PostingLists.intersect(List.of()));
+        assertArrayEquals(new int[0], PostingLists.union(List.of()));
+        assertArrayEquals(new int[0], PostingLists.intersect(List.of(new int[]{1, 2}, new int[0])));
+        assertArrayEquals(new int[]{1, 2}, PostingLists.union(List.of(new int[]{1, 2}, new int[0])));
+    }
+
+    @Test
+    void matchesSetOperationsOnSkewedLists() {
+        Random random = new Random(49);
+        for (int round = 0; round < 200; round++) {
+            int count = 1 + random.nextInt(4);
+            List<int[]> lists = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                // mix selective and popular lists so galloping takes long and short strides
+                lists.add(randomList(random, random.nextBoolean() ? 5 : 2_000, 10_000));
+            }
+            List<int[]> copies = lists.stream().map(int[]::clone).toList();
+
+            Map<Integer, Integer> occurrences = new TreeMap<>();
+            for (int[] list : lists) {
+                for (int value : list) occurrences.merge(value, 1, Integer::sum);
+            }
+            int[] union = occurrences.keySet().stream().mapToInt(Integer::intValue).toArray();
+            int[] counts = occurrences.values().stream().mapToInt(Integer::intValue).toArray();
+            int[] intersection = occurrences.entrySet().stream()
+                    .filter(entry -> entry.getValue() == count)
+                    .mapToInt(Map.Entry::getKey)
+                    .toArray();
+
+            assertArrayEquals(intersection, PostingLists.intersect(lists));
+            assertArrayEquals(union, PostingLists.union(lists));
+            PostingLists.Counted counted = PostingLists.countedUnion(lists);
+            assertArrayEquals(union, counted.ordinals());
+            assertArrayEquals(counts, counted.counts());
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(copies.get(i), lists.get(i), "input list was modified");
+            }
+        }
+    }
+
+    private static int[] randomList(Random random, int size, int bound) {
+        return random.ints(size, 0, bound).distinct().sorted().toArray();
+    }
+}
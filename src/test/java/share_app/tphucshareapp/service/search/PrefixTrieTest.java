@@ -0,0 +1,114 @@
+package share_app.tphucshareapp.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixTrieTest {
+
+    private final Map<String, Integer> scores = new HashMap<>();
+    private final Comparator<String> order = Comparator.comparingInt((String id) -> scores.get(id)).reversed()
+            .thenComparing(Comparator.naturalOrder());
+
+    @Test
+    void ranksIdsUnderSharedPrefixes() {
+        PrefixTrie trie = new PrefixTrie(3, order);
+        add(trie, "u1", "car", 5);
+        add(trie, "u2", "cart", 9);
+        add(trie, "u3", "care", 7);
+        add(trie, "u4", "dog", 1);
+        add(trie, "u5", "ca", 3);
+
+        assertEquals(List.of("u2", "u3", "u1"), trie.top("ca", 10));
+        assertEquals(List.of("u2", "u3", "u1"), trie.top("car", 10));
+        assertEquals(List.of("u3"), trie.top("care", 10));
+        assertEquals(List.of("u2", "u3"), trie.top("c", 2));
+        assertEquals(List.of(), trie.top("cars", 10));
+        assertEquals(List.of(), trie.top("x", 10));
+    }
+
+    @Test
+    void listsAnIdWithSeveralTermsOnce() {
+        PrefixTrie trie = new PrefixTrie(5, order);
+        add(trie, "u1", "anna", 4);
+        trie.add("u1", "annie");
+        add(trie, "u2", "ann", 2);
+        assertEquals(List.of("u1", "u2"), trie.top("ann", 10));
+
+        trie.remove("u1", "anna");
+        assertEquals(List.of("u1", "u2"), trie.top("ann", 10));
+        assertEquals(List.of(), trie.top("anna", 10));
+    }
+
+    @Test
+    void demotedIdGivesWayToOneTheListLeftOut() {
+        PrefixTrie trie = new PrefixTrie(2, order);
+        add(trie, "a", "sun", 9);
+        add(trie, "b", "sunny", 8);
+        add(trie, "c", "sunset", 7);
+        assertEquals(List.of("a", "b"), trie.top("sun", 10));
+
+        scores.put("a", 1);
+        trie.rescore("a", "sun");
+        assertEquals(List.of("b", "c"), trie.top("sun", 10));
+        assertEquals(List.of("b", "c"), trie.top("s", 10));
+    }
+
+    @Test
+    void matchesABruteForceScanUnderRandomUpdates() {
+        Random random = new Random(47);
+        PrefixTrie trie = new PrefixTrie(5, order);
+        Map<String, String> terms = new HashMap<>();
+        for (int step = 0; step < 5_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 5 || terms.isEmpty()) {
+                String id = "u" + random.nextInt(400);
+                if (terms.containsKey(id)) continue;
+                String term = randomTerm(random);
+                add(trie, id, term, random.nextInt(100));
+                terms.put(id, term);
+            } else {
+                List<String> ids = new ArrayList<>(terms.keySet());
+                String id = ids.get(random.nextInt(ids.size()));
+                if (op < 7) {
+                    trie.remove(id, terms.remove(id));
+                    scores.remove(id);
+                } else {
+                    scores.put(id, random.nextInt(100));
+                    trie.rescore(id, terms.get(id));
+                }
+            }
+            if (step % 50 == 0) {
+                for (String prefix : List.of("a", "b", "ab", "ba", "aab", "bba", "ababa")) {
+                    assertEquals(expected(terms, prefix, 5), trie.top(prefix, 5), "prefix '" + prefix + "' at step " + step);
+                }
+            }
+        }
+    }
+
+    private void add(PrefixTrie trie, String id, String term, int score) {
+        scores.put(id, score);
+        trie.add(id, term);
+    }
+
+    private List<String> expected(Map<String, String> terms, String prefix, int limit) {
+        return terms.entrySet().stream()
+                .filter(entry -> entry.getValue().startsWith(prefix))
+                .map(Map.Entry::getKey)
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
+
+    // short terms over a two-letter alphabet, so prefixes are shared and edges split often
+    private static String randomTerm(Random random) {
+        StringBuilder term = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            term.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        return term.toString();
+    }
+}
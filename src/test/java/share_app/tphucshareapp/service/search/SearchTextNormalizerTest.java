@@ -0,0 +1,42 @@
+package share_app.tphucshareapp.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTextNormalizerTest {
+
+    @Test
+    void foldsCaseDiacriticsAndSeparators() {
+        assertEquals("ha noi", SearchTextNormalizer.fold("Hà Nội"));
+        assertEquals("ha noi", SearchTextNormalizer.fold("ha noi"));
+        assertEquals("ha noi", SearchTextNormalizer.fold("HA-NOI"));
+        assertEquals("da lat", SearchTextNormalizer.fold("Đà Lạt!"));
+        assertEquals("cafe 24h", SearchTextNormalizer.fold("  Café   #24h... "));
+    }
+
+    @Test
+    void foldsEmptyInput() {
+        assertEquals("", SearchTextNormalizer.fold(null));
+        assertEquals("", SearchTextNormalizer.fold(""));
+        assertEquals("", SearchTextNormalizer.fold(" -!- "));
+        assertEquals(List.of(), SearchTextNormalizer.tokens(" -!- "));
+        assertEquals(List.of(), SearchTextNormalizer.terms(null));
+    }
+
+    @Test
+    void termsAddJoinedAdjacentPairs() {
+        assertEquals(List.of("pho", "ha", "noi", "phoha", "hanoi"), SearchTextNormalizer.terms("Phở Hà Nội"));
+        assertEquals(List.of("sunset"), SearchTextNormalizer.terms("Sunset"));
+    }
+
+    @Test
+    void indexTextAppendsTagTerms() {
+        assertEquals("bien dep biendep da nang danang",
+                SearchTextNormalizer.indexText("Biển đẹp", List.of("Đà Nẵng")));
+        assertEquals("travel", SearchTextNormalizer.indexText(null, List.of("travel")));
+        assertEquals("", SearchTextNormalizer.indexText(null, null));
+    }
+}